@@ -1,5 +1,7 @@
 package com.example.simplecamera.adapter;
 
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.util.Log;
@@ -12,28 +14,41 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.engine.GlideException;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.target.Target;
 import com.example.simplecamera.R;
 import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaIndex;
+import com.example.simplecamera.database.repository.MediaRepository;
+import com.example.simplecamera.metrics.CaptureTracer;
+import com.example.simplecamera.thumbnail.PackedThumbnail;
+import com.example.simplecamera.ui.camera.CaptureThumbnailCache;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
 public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder> {
     private static final String TAG = "MediaAdapter";
 
-    private List<MediaFile> mediaFiles;
-    private Set<Integer> selectedPositions;
+    // 直接读取仓库的列式索引，不为每一项创建对象
+    private MediaIndex index = MediaIndex.EMPTY;
+    // 按 id 记录选择，增量更新插入或删除条目后位置会移动
+    private Set<Long> selectedIds;
     private boolean isSelectionMode = false;
+    // 已应用的仓库变化版本，0 表示尚未收到
+    private long appliedVersion = 0;
 
     // 监听器接口
     public interface OnItemClickListener {
@@ -48,9 +63,8 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
     private OnItemClickListener onItemClickListener;
     private OnSelectionModeChangeListener onSelectionModeChangeListener;
 
-    public MediaAdapter(List<MediaFile> mediaFiles) {
-        this.mediaFiles = mediaFiles != null ? new ArrayList<>(mediaFiles) : new ArrayList<>();
-        this.selectedPositions = new HashSet<>();
+    public MediaAdapter() {
+        this.selectedIds = new HashSet<>();
     }
 
     @NonNull
@@ -63,73 +77,85 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        if (position < 0 || position >= mediaFiles.size()) {
+        if (position < 0 || position >= index.size()) {
             Log.e(TAG, "Invalid position: " + position);
             return;
         }
 
-        MediaFile mediaFile = mediaFiles.get(position);
-        if (mediaFile == null) {
-            Log.e(TAG, "MediaFile is null at position: " + position);
-            holder.imageView.setImageResource(R.drawable.ic_error);
-            return;
-        }
-
         // 绑定数据
-        bindMediaFile(holder, mediaFile, position);
+        bindMediaFile(holder, position);
 
         // 设置选择状态
-        updateSelectionState(holder, position);
+        updateSelectionState(holder, index.id(position));
 
         // 设置点击事件
-        setupClickListeners(holder, position, mediaFile);
+        setupClickListeners(holder);
     }
 
     /**
      * 绑定媒体文件数据
      */
-    private void bindMediaFile(ViewHolder holder, MediaFile mediaFile, int position) {
-        String filePath = mediaFile.getFilePath();
-        if (filePath == null) {
+    private void bindMediaFile(ViewHolder holder, int position) {
+        String filePath = index.path(position);
+        if (filePath.isEmpty()) {
             Log.e(TAG, "File path is null for media file at position: " + position);
             holder.imageView.setImageResource(R.drawable.ic_error);
             return;
         }
 
         Log.d(TAG, "Loading media file: " + filePath);
+        CaptureTracer tracer = CaptureTracer.get();
+        if (tracer.hasPending()) tracer.mark(filePath, CaptureTracer.Stage.ADAPTER_BOUND);
 
         if (filePath.startsWith("content://")) {
             // MediaStore URI
-            loadMediaStoreUri(holder, Uri.parse(filePath));
+            Uri uri = Uri.parse(filePath);
+            loadThumbnail(holder, new PackedThumbnail(index.id(position), filePath, index.type(position)), uri,
+                    placeholderFor(holder, filePath));
         } else {
             // 文件路径
             String actualPath = filePath.startsWith("file://") ?
                     filePath.replace("file://", "") : filePath;
-            loadFileUri(holder, actualPath);
+            loadFileUri(holder, new PackedThumbnail(index.id(position), actualPath, index.type(position)),
+                    placeholderFor(holder, filePath));
         }
 
         // 设置文件类型标识
-        setupFileTypeIndicator(holder, mediaFile);
+        setupFileTypeIndicator(holder, index.type(position), index.isBestShot(position));
+    }
+
+    /**
+     * 刚拍的照片用拍照时生成的缩略图作占位图，省去一次等待解码的空白
+     */
+    private Drawable placeholderFor(ViewHolder holder, String filePath) {
+        Bitmap thumbnail = CaptureThumbnailCache.get().get(filePath);
+        if (thumbnail != null) return new BitmapDrawable(holder.itemView.getResources(), thumbnail);
+        return ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.ic_placeholder);
     }
 
     /**
-     * 加载MediaStore URI
+     * 加载网格缩略图：先从打包的缩略图存储读取（缺失时生成），失败时退回由 Glide 解码原文件。
+     * 存储本身就是磁盘缓存，不再让 Glide 为每张缩略图另写一个缓存文件
      */
-    private void loadMediaStoreUri(ViewHolder holder, Uri uri) {
+    private void loadThumbnail(ViewHolder holder, PackedThumbnail thumbnail, Object original, Drawable placeholder) {
         Glide.with(holder.itemView.getContext())
-                .load(uri)
-                .placeholder(R.drawable.ic_placeholder)
-                .error(R.drawable.ic_error)
+                .load(thumbnail)
+                .diskCacheStrategy(DiskCacheStrategy.NONE)
+                .placeholder(placeholder)
+                .error(Glide.with(holder.itemView.getContext())
+                        .load(original)
+                        .error(R.drawable.ic_error)
+                        .centerCrop())
                 .addListener(new RequestListener<Drawable>() {
                     @Override
                     public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
-                        Log.e(TAG, "Failed to load MediaStore URI: " + uri, e);
+                        Log.e(TAG, "Failed to load thumbnail: " + thumbnail, e);
                         return false;
                     }
 
                     @Override
                     public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
-                        Log.d(TAG, "Successfully loaded MediaStore URI: " + uri);
+                        Log.d(TAG, "Successfully loaded thumbnail: " + thumbnail);
                         return false;
                     }
                 })
@@ -140,42 +166,24 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
     /**
      * 加载文件URI
      */
-    private void loadFileUri(ViewHolder holder, String filePath) {
-        File file = new File(filePath);
+    private void loadFileUri(ViewHolder holder, PackedThumbnail thumbnail, Drawable placeholder) {
+        File file = new File(thumbnail.pathOrUri);
         if (file.exists()) {
-            Log.d(TAG, "Loading file from path: " + filePath + ", size: " + file.length());
-            Glide.with(holder.itemView.getContext())
-                    .load(file)
-                    .placeholder(R.drawable.ic_placeholder)
-                    .error(R.drawable.ic_error)
-                    .addListener(new RequestListener<Drawable>() {
-                        @Override
-                        public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
-                            Log.e(TAG, "Failed to load file: " + filePath, e);
-                            return false;
-                        }
-
-                        @Override
-                        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
-                            Log.d(TAG, "Successfully loaded file: " + filePath);
-                            return false;
-                        }
-                    })
-                    .centerCrop()
-                    .into(holder.imageView);
+            Log.d(TAG, "Loading file from path: " + thumbnail.pathOrUri + ", size: " + file.length());
+            loadThumbnail(holder, thumbnail, file, placeholder);
         } else {
             // 文件不存在，显示错误图标
             holder.imageView.setImageResource(R.drawable.ic_error);
-            Log.e(TAG, "File does not exist: " + filePath);
+            Log.e(TAG, "File does not exist: " + thumbnail.pathOrUri);
         }
     }
 
     /**
      * 设置文件类型标识
      */
-    private void setupFileTypeIndicator(ViewHolder holder, MediaFile mediaFile) {
+    private void setupFileTypeIndicator(ViewHolder holder, int fileType, boolean bestShot) {
         if (holder.videoIcon != null) {
-            if (mediaFile.getFileType() == 1) { // 视频
+            if (fileType == 1) { // 视频
                 holder.videoIcon.setVisibility(View.VISIBLE);
             } else { // 图片
                 holder.videoIcon.setVisibility(View.GONE);
@@ -183,19 +191,24 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
         }
 
         if (holder.fileTypeText != null) {
-            if (mediaFile.getFileType() == 1) { // 视频
+            if (fileType == 1) { // 视频
                 holder.fileTypeText.setVisibility(View.VISIBLE);
                 holder.fileTypeText.setText("视频");
             } else { // 图片
                 holder.fileTypeText.setVisibility(View.GONE);
             }
         }
+
+        // 连拍择优选出的照片
+        if (holder.bestShotIcon != null) {
+            holder.bestShotIcon.setVisibility(bestShot ? View.VISIBLE : View.GONE);
+        }
     }
 
     /**
      * 更新选择状态
      */
-    private void updateSelectionState(ViewHolder holder, int position) {
+    private void updateSelectionState(ViewHolder holder, long id) {
         if (holder.checkBox == null) {
             Log.e(TAG, "CheckBox is null in ViewHolder");
             return;
@@ -203,10 +216,10 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
 
         if (isSelectionMode) {
             holder.checkBox.setVisibility(View.VISIBLE);
-            holder.checkBox.setChecked(selectedPositions.contains(position));
+            holder.checkBox.setChecked(selectedIds.contains(id));
 
             // 添加选中效果
-            if (selectedPositions.contains(position)) {
+            if (selectedIds.contains(id)) {
                 holder.imageView.setAlpha(0.7f);
             } else {
                 holder.imageView.setAlpha(1.0f);
@@ -218,13 +231,15 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
     }
 
     /**
-     * 设置点击事件
+     * 设置点击事件，点击时再取位置，绑定之后条目可能已被增量更新移动
      */
-    private void setupClickListeners(ViewHolder holder, int position, MediaFile mediaFile) {
+    private void setupClickListeners(ViewHolder holder) {
         holder.itemView.setOnClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || position >= index.size()) return;
             if (isSelectionMode) {
                 // 选择模式下，点击切换选中状态
-                toggleSelection(position);
+                toggleSelection(index.id(position));
                 notifyItemChanged(position);
 
                 // 通知选择变化
@@ -234,16 +249,18 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
             } else {
                 // 正常模式下，点击查看详情
                 if (onItemClickListener != null) {
-                    onItemClickListener.onItemClick(mediaFile);
+                    onItemClickListener.onItemClick(index.toMediaFile(position));
                 }
             }
         });
 
         holder.itemView.setOnLongClickListener(v -> {
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || position >= index.size()) return false;
             if (!isSelectionMode) {
                 // 进入选择模式
                 setSelectionMode(true);
-                toggleSelection(position);
+                toggleSelection(index.id(position));
                 notifyItemChanged(position);
 
                 // 通知选择模式变化
@@ -260,13 +277,11 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
     /**
      * 切换选择状态
      */
-    private void toggleSelection(int position) {
-        if (selectedPositions.contains(position)) {
-            selectedPositions.remove(position);
-        } else {
-            selectedPositions.add(position);
+    private void toggleSelection(long id) {
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
         }
-        Log.d(TAG, "Toggled selection at position: " + position + ", selected: " + selectedPositions.contains(position));
+        Log.d(TAG, "Toggled selection of id: " + id + ", selected: " + selectedIds.contains(id));
     }
 
     /**
@@ -298,13 +313,11 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
      * 获取选中的媒体文件
      */
     public List<MediaFile> getSelectedMediaFiles() {
-        List<MediaFile> selectedFiles = new ArrayList<>();
-        for (int position : selectedPositions) {
-            if (position >= 0 && position < mediaFiles.size()) {
-                MediaFile file = mediaFiles.get(position);
-                if (file != null) {
-                    selectedFiles.add(file);
-                }
+        List<MediaFile> selectedFiles = new ArrayList<>(selectedIds.size());
+        for (long id : selectedIds) {
+            int position = index.positionOfId(id);
+            if (position >= 0) {
+                selectedFiles.add(index.toMediaFile(position));
             }
         }
         Log.d(TAG, "getSelectedMediaFiles: " + selectedFiles.size() + " files selected");
@@ -315,14 +328,14 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
      * 获取选中数量
      */
     public int getSelectedCount() {
-        return selectedPositions.size();
+        return selectedIds.size();
     }
 
     /**
      * 清空选择
      */
     public void clearSelection() {
-        selectedPositions.clear();
+        selectedIds.clear();
         Log.d(TAG, "Selection cleared");
         if (isSelectionMode) {
             notifyDataSetChanged();
@@ -330,14 +343,63 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
     }
 
     /**
-     * 设置媒体文件数据
+     * 应用仓库的一次变化：按删除、新增、更新的顺序逐项通知，保留滚动位置与选择。
+     * 首次加载、版本跳号或应用后条数与新索引不一致时，改用新索引整体刷新；过期的变化直接忽略
      */
-    public void setMediaFiles(List<MediaFile> mediaFiles) {
-        this.mediaFiles = mediaFiles != null ? new ArrayList<>(mediaFiles) : new ArrayList<>();
-        clearSelection();
-        setSelectionMode(false);
+    public void applyChange(MediaIndex next, MediaRepository.ChangeEvent event) {
+        if (!event.reload && appliedVersion != 0 && event.version <= appliedVersion) return;
+        if (event.reload || appliedVersion == 0 || event.version != appliedVersion + 1) {
+            replaceAll(next, event.version);
+            return;
+        }
+        MediaIndex previous = index;
+        index = next;
+        appliedVersion = event.version;
+
+        // 删除按旧位置从后往前通知，前面的位置不受影响
+        int[] removedPositions = positionsIn(previous, event.removed);
+        for (int i = removedPositions.length - 1; i >= 0; i--) notifyItemRemoved(removedPositions[i]);
+        int removedCount = removedPositions.length;
+        for (Long id : event.removed) selectedIds.remove(id);
+
+        // 新增按新位置从前往后通知，前面的条目已就位，通知位置即新位置
+        int[] addedPositions = positionsIn(next, event.added);
+        for (int position : addedPositions) notifyItemInserted(position);
+        // 更新在最后通知，此时位置与新索引一致
+        for (int position : positionsIn(next, event.updated)) notifyItemChanged(position);
+
+        if (previous.size() - removedCount + addedPositions.length != next.size()) {
+            Log.w(TAG, "Incremental update diverged at " + event + ", reloading");
+            replaceAll(next, event.version);
+            return;
+        }
+        if (isSelectionMode && onSelectionModeChangeListener != null && removedCount > 0) {
+            onSelectionModeChangeListener.onSelectionChanged(getSelectedCount());
+        }
+    }
+
+    // 整体替换，保留仍然存在的选择
+    private void replaceAll(MediaIndex next, long version) {
+        appliedVersion = version;
+        index = next;
+        for (Iterator<Long> it = selectedIds.iterator(); it.hasNext(); ) {
+            if (index.positionOfId(it.next()) < 0) it.remove();
+        }
         notifyDataSetChanged();
-        Log.d(TAG, "Media files updated: " + this.mediaFiles.size() + " items");
+        Log.d(TAG, "Media files reloaded: " + index.size() + " items (v" + version + ")");
+    }
+
+    // ids 在 target 中的位置，升序；不存在的忽略
+    private static int[] positionsIn(MediaIndex target, List<Long> ids) {
+        int[] positions = new int[ids.size()];
+        int count = 0;
+        for (Long id : ids) {
+            int position = target.positionOfId(id);
+            if (position >= 0) positions[count++] = position;
+        }
+        positions = Arrays.copyOf(positions, count);
+        Arrays.sort(positions);
+        return positions;
     }
 
     public void setOnItemClickListener(OnItemClickListener listener) {
@@ -350,7 +412,7 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
 
     @Override
     public int getItemCount() {
-        return mediaFiles != null ? mediaFiles.size() : 0;
+        return index.size();
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
@@ -358,6 +420,7 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
         CheckBox checkBox;
         ImageView videoIcon;
         TextView fileTypeText;
+        ImageView bestShotIcon;
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -365,6 +428,7 @@ public class MediaAdapter extends RecyclerView.Adapter<MediaAdapter.ViewHolder>
             checkBox = itemView.findViewById(R.id.checkBox);
             videoIcon = itemView.findViewById(R.id.videoIcon);
             fileTypeText = itemView.findViewById(R.id.fileTypeText);
+            bestShotIcon = itemView.findViewById(R.id.bestShotIcon);
 
             if (checkBox != null) {
                 checkBox.setClickable(false);
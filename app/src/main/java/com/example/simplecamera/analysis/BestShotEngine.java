@@ -0,0 +1,143 @@
+package com.example.simplecamera.analysis;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.simplecamera.concurrent.TaskScheduler;
+import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaRepository;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BestShotEngine：在后台为最近连续拍摄的照片打分，并在每组中标记最好的一张。
+ * 新照片入库后调用 schedule()，短时间内的多次调用会合并为一次；
+ * 只对尚未打分的照片解码（降采样到 SCORE_SIZE_PX），分数经仓库存回数据库避免重复计算。
+ * 运行在调度器的 BACKFILL 通道上，拍照写盘期间会让出。
+ */
+public class BestShotEngine {
+    private static final String TAG = "BestShotEngine";
+    // 拍摄间隔不超过该值的照片视为同一场景
+    private static final long GROUP_GAP_MS = 2000;
+    // 只处理最近这段时间内的照片
+    private static final long LOOKBACK_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long DEBOUNCE_MS = 1500;
+    private static final int SCORE_SIZE_PX = 512;
+
+    private final Context context;
+    private final MediaRepository repository;
+    private final ShotScorer scorer = new ShotScorer(TaskScheduler.get().parallelPool());
+    private Future<?> pending;
+    private boolean shutdown = false;
+
+    // 解码缓冲，只在 BACKFILL 通道（单线程）上使用
+    private int[] pixels = new int[0];
+    private byte[] luma = new byte[0];
+
+    public BestShotEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.repository = MediaRepository.getInstance(this.context);
+    }
+
+    public synchronized void schedule() {
+        if (shutdown) return;
+        if (pending != null) pending.cancel(false);
+        pending = TaskScheduler.get().schedule(TaskScheduler.Lane.BACKFILL, this, this::run, DEBOUNCE_MS);
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        TaskScheduler.get().cancelAll(this);
+    }
+
+    private void run() {
+        long start = SystemClock.elapsedRealtime();
+        List<MediaFile> photos = repository.getPhotosSince(System.currentTimeMillis() - LOOKBACK_MS);
+        long[] dates = new long[photos.size()];
+        for (int i = 0; i < dates.length; i++) dates[i] = photos.get(i).createdDate;
+
+        int scored = 0;
+        for (int[] range : ShotScorer.groupByProximity(dates, GROUP_GAP_MS)) {
+            if (range[1] - range[0] < 2) continue;
+            MediaFile best = null;
+            List<Long> groupIds = new ArrayList<>(range[1] - range[0]);
+            for (int i = range[0]; i < range[1]; i++) {
+                MediaFile photo = photos.get(i);
+                groupIds.add(photo.id);
+                if (photo.shotScore == null) {
+                    // 打分在共用的并行池上进行，每张之前先让拍照写盘
+                    TaskScheduler.get().yieldToCapture();
+                    ShotScorer.Score score = scorePhoto(photo.filePath);
+                    if (score == null) continue;
+                    photo.shotScore = score.total;
+                    repository.updateShotScore(photo.id, score.total);
+                    scored++;
+                }
+                if (best == null || photo.shotScore > best.shotScore) best = photo;
+            }
+            if (best != null && !best.bestShot) {
+                repository.markBestShot(best.id, groupIds);
+                Log.d(TAG, "Best of " + groupIds.size() + ": " + best.filePath + " (" + best.shotScore + ")");
+            }
+        }
+        Log.d(TAG, "Scored " + scored + " photos in " + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    private ShotScorer.Score scorePhoto(String pathOrUri) {
+        try {
+            Bitmap bitmap = decodeDownsampled(pathOrUri);
+            if (bitmap == null) return null;
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int size = width * height;
+            if (pixels.length < size) {
+                pixels = new int[size];
+                luma = new byte[size];
+            }
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            bitmap.recycle();
+            for (int i = 0; i < size; i++) {
+                int c = pixels[i];
+                luma[i] = (byte) ((77 * ((c >> 16) & 0xFF) + 150 * ((c >> 8) & 0xFF) + 29 * (c & 0xFF)) >> 8);
+            }
+            return scorer.score(luma, width, height);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to score " + pathOrUri, e);
+            return null;
+        }
+    }
+
+    private Bitmap decodeDownsampled(String pathOrUri) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(pathOrUri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        int longest = Math.max(bounds.outWidth, bounds.outHeight);
+        options.inSampleSize = Math.max(1, Integer.highestOneBit(longest / SCORE_SIZE_PX));
+        try (InputStream in = open(pathOrUri)) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    private InputStream open(String pathOrUri) throws IOException {
+        if (pathOrUri.startsWith("content://")) {
+            InputStream in = context.getContentResolver().openInputStream(Uri.parse(pathOrUri));
+            if (in == null) throw new IOException("Cannot open " + pathOrUri);
+            return in;
+        }
+        return new FileInputStream(pathOrUri);
+    }
+}
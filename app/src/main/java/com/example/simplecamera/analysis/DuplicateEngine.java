@@ -0,0 +1,210 @@
+package com.example.simplecamera.analysis;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.simplecamera.concurrent.TaskScheduler;
+import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaRepository;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * DuplicateEngine：在后台为媒体计算去重用的哈希并存回数据库。
+ * 内容哈希是整个文件的 SHA-256，按 MAP_CHUNK 分段映射读取；照片另算 dHash，解码降采样到 PHASH_SIZE_PX 左右。
+ * 每次取 HASH_BATCH 个尚未计算的条目，用 fork/join 在调度器共用的 parallelPool 上并行处理（每个文件开始前让出拍照写盘），
+ * 一批在一个事务中写回。
+ * 读不了的文件内容哈希记为空串，不再重试。由 BACKFILL 通道驱动，调用 schedule() 后短时间内的多次调用会合并。
+ */
+public class DuplicateEngine {
+    private static final String TAG = "DuplicateEngine";
+    private static final long DEBOUNCE_MS = 3000;
+    private static final int HASH_BATCH = 64;
+    private static final int PHASH_SIZE_PX = 64;
+    private static final long MAP_CHUNK = 64L * 1024 * 1024;
+    private static final int READ_BUFFER = 256 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Context context;
+    private final MediaRepository repository;
+    private Future<?> pending;
+    private volatile boolean shutdown = false;
+
+    public DuplicateEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.repository = MediaRepository.getInstance(this.context);
+    }
+
+    public synchronized void schedule() {
+        if (shutdown) return;
+        if (pending != null) pending.cancel(false);
+        pending = TaskScheduler.get().schedule(TaskScheduler.Lane.BACKFILL, this, this::run, DEBOUNCE_MS);
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        TaskScheduler.get().cancelAll(this);
+    }
+
+    private void run() {
+        long start = SystemClock.elapsedRealtime();
+        long bytes = 0;
+        int hashed = 0;
+        while (!shutdown) {
+            List<MediaFile> batch = repository.getUnhashed(HASH_BATCH);
+            if (batch.isEmpty()) break;
+            long[] batchBytes = new long[batch.size()];
+            TaskScheduler.get().parallelPool().invoke(new HashTask(batch, batchBytes, 0, batch.size()));
+            if (shutdown) return;
+            for (long b : batchBytes) bytes += b;
+            repository.updateHashes(batch);
+            hashed += batch.size();
+        }
+        if (hashed == 0) return;
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+        Log.d(TAG, "Hashed " + hashed + " files (" + (bytes >> 20) + " MB) in " + elapsed + "ms");
+    }
+
+    // 每个叶子处理一个文件，读文件与解码都在池中的线程上并行；关闭后剩下的叶子直接跳过
+    private final class HashTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<MediaFile> files;
+        private final long[] bytes;
+        private final int from;
+        private final int to;
+
+        HashTask(List<MediaFile> files, long[] bytes, int from, int to) {
+            this.files = files;
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                if (shutdown) return;
+                TaskScheduler.get().yieldToCapture();
+                bytes[from] = hash(files.get(from));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new HashTask(files, bytes, from, mid), new HashTask(files, bytes, mid, to));
+        }
+    }
+
+    // 返回读取的字节数
+    private long hash(MediaFile file) {
+        long size = 0;
+        try (ParcelFileDescriptor pfd = open(file.filePath);
+             FileInputStream in = new FileInputStream(pfd.getFileDescriptor());
+             FileChannel channel = in.getChannel()) {
+            size = channel.size();
+            file.contentHash = sha256(channel, size);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot hash " + file.filePath + ": " + e);
+            file.contentHash = "";
+            return size;
+        }
+        if (file.fileType == 0) file.perceptualHash = perceptualHash(file.filePath);
+        return size;
+    }
+
+    private static String sha256(FileChannel channel, long size) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long position = 0;
+        try {
+            while (position < size) {
+                long length = Math.min(MAP_CHUNK, size - position);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                digest.update(mapped);
+                position += length;
+            }
+        } catch (IOException e) {
+            // 有些文件描述符（例如 FUSE 之外的提供方）不支持映射，从断点改为顺序读取
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER);
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read < 0) break;
+                buffer.flip();
+                digest.update(buffer);
+                position += read;
+            }
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private Long perceptualHash(String pathOrUri) {
+        try {
+            Bitmap bitmap = decodeDownsampled(pathOrUri);
+            if (bitmap == null) return null;
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            bitmap.recycle();
+            byte[] luma = new byte[pixels.length];
+            for (int i = 0; i < pixels.length; i++) {
+                int c = pixels[i];
+                luma[i] = (byte) ((77 * ((c >> 16) & 0xFF) + 150 * ((c >> 8) & 0xFF) + 29 * (c & 0xFF)) >> 8);
+            }
+            return PerceptualHash.dHash(luma, width, height);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Cannot compute perceptual hash of " + pathOrUri + ": " + e);
+            return null;
+        }
+    }
+
+    // 短边降到 PHASH_SIZE_PX 到两倍之间，dHash 只需要 9x8 个格子
+    private Bitmap decodeDownsampled(String pathOrUri) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (ParcelFileDescriptor pfd = open(pathOrUri)) {
+            BitmapFactory.decodeFileDescriptor(pfd.getFileDescriptor(), null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        int shortest = Math.min(bounds.outWidth, bounds.outHeight);
+        options.inSampleSize = Math.max(1, Integer.highestOneBit(shortest / PHASH_SIZE_PX));
+        try (ParcelFileDescriptor pfd = open(pathOrUri)) {
+            return BitmapFactory.decodeFileDescriptor(pfd.getFileDescriptor(), null, options);
+        }
+    }
+
+    private ParcelFileDescriptor open(String pathOrUri) throws IOException {
+        if (pathOrUri.startsWith("content://")) {
+            ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(Uri.parse(pathOrUri), "r");
+            if (pfd == null) throw new IOException("Cannot open " + pathOrUri);
+            return pfd;
+        }
+        return ParcelFileDescriptor.open(new File(pathOrUri), ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+}
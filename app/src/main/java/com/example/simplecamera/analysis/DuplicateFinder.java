@@ -0,0 +1,150 @@
+package com.example.simplecamera.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DuplicateFinder：按内容哈希与感知哈希把条目分成重复组。
+ * 内容哈希相同的是逐字节相同的副本；感知哈希汉明距离不超过阈值的是近似重复（连拍、重新导入后重新编码等），
+ * 近邻用 HammingIndex 查找，不做两两比较。关系可传递：A 近似 B、B 近似 C 时三者在同一组。
+ */
+public final class DuplicateFinder {
+    // 64 位 dHash 下连拍与重新编码的副本通常在这个距离以内，不相关的照片集中在 32 附近
+    public static final int NEAR_DUPLICATE_DISTANCE = 6;
+
+    /**
+     * 一个重复组，成员按加入顺序排列
+     */
+    public static final class Group {
+        public final long[] ids;
+        // 全部成员内容哈希相同
+        public final boolean exact;
+
+        Group(long[] ids, boolean exact) {
+            this.ids = ids;
+            this.exact = exact;
+        }
+    }
+
+    private long[] ids;
+    private String[] contentHashes;
+    private long[] perceptualHashes;
+    private boolean[] hasPerceptual;
+    private int size = 0;
+    private long lastChecked = 0;
+
+    public DuplicateFinder(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        ids = new long[capacity];
+        contentHashes = new String[capacity];
+        perceptualHashes = new long[capacity];
+        hasPerceptual = new boolean[capacity];
+    }
+
+    /**
+     * @param contentHash    可为 null
+     * @param perceptualHash 可为 null（例如视频）
+     */
+    public void add(long id, String contentHash, Long perceptualHash) {
+        if (size == ids.length) {
+            int grown = size * 2;
+            ids = Arrays.copyOf(ids, grown);
+            contentHashes = Arrays.copyOf(contentHashes, grown);
+            perceptualHashes = Arrays.copyOf(perceptualHashes, grown);
+            hasPerceptual = Arrays.copyOf(hasPerceptual, grown);
+        }
+        ids[size] = id;
+        contentHashes[size] = contentHash;
+        hasPerceptual[size] = perceptualHash != null;
+        perceptualHashes[size] = perceptualHash != null ? perceptualHash : 0;
+        size++;
+    }
+
+    /**
+     * 分组，只返回至少两个成员的组，按组内第一个成员的加入顺序排列
+     */
+    public List<Group> group(int maxDistance) {
+        int[] parent = new int[size];
+        for (int i = 0; i < size; i++) parent[i] = i;
+
+        Map<String, Integer> firstByContent = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (contentHashes[i] == null) continue;
+            Integer first = firstByContent.putIfAbsent(contentHashes[i], i);
+            if (first != null) union(parent, first, i);
+        }
+
+        // 只有感知哈希的条目进索引，indexed[k] 是第 k 个索引条目的下标
+        int[] indexed = new int[size];
+        long[] hashes = new long[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!hasPerceptual[i]) continue;
+            indexed[count] = i;
+            hashes[count++] = perceptualHashes[i];
+        }
+        HammingIndex index = new HammingIndex(hashes, count);
+        long checked = 0;
+        for (int k = 0; k < count; k++) {
+            int item = indexed[k];
+            checked += index.search(hashes[k], maxDistance, (other, distance) -> union(parent, item, indexed[other]));
+        }
+        lastChecked = checked;
+
+        int[] groupOf = new int[size];
+        Arrays.fill(groupOf, -1);
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) counts[find(parent, i)]++;
+        List<List<Integer>> members = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int root = find(parent, i);
+            if (counts[root] < 2) continue;
+            if (groupOf[root] < 0) {
+                groupOf[root] = members.size();
+                members.add(new ArrayList<>(counts[root]));
+            }
+            members.get(groupOf[root]).add(i);
+        }
+
+        List<Group> groups = new ArrayList<>(members.size());
+        for (List<Integer> group : members) {
+            long[] groupIds = new long[group.size()];
+            String content = contentHashes[group.get(0)];
+            boolean exact = content != null;
+            for (int j = 0; j < groupIds.length; j++) {
+                int member = group.get(j);
+                groupIds[j] = ids[member];
+                exact = exact && content.equals(contentHashes[member]);
+            }
+            groups.add(new Group(groupIds, exact));
+        }
+        return groups;
+    }
+
+    /**
+     * 最近一次 group() 在索引中核对过全距离的候选总数，用于评估剪枝效果
+     */
+    public long lastCheckedCandidates() {
+        return lastChecked;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA == rootB) return;
+        // 较早加入的作为根，保持组的顺序稳定
+        if (rootA < rootB) parent[rootB] = rootA;
+        else parent[rootA] = rootB;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.simplecamera.analysis;
+
+/**
+ * ExposureClippingAnalyzer：统计过曝（接近 255）与欠曝（接近 0）像素的比例，
+ * 超过阈值时给出警告，状态变化时才回调。
+ */
+public class ExposureClippingAnalyzer implements FrameAnalyzer {
+    private static final int SAMPLE_STEP = 2;
+    private static final int HIGHLIGHT_LEVEL = 250;
+    private static final int SHADOW_LEVEL = 5;
+
+    public interface Listener {
+        // 在分析线程上回调
+        void onClippingChanged(boolean highlightsClipped, boolean shadowsClipped);
+    }
+
+    private final double threshold;
+    private final Listener listener;
+    private volatile double highlightFraction;
+    private volatile double shadowFraction;
+    private boolean highlightsClipped = false;
+    private boolean shadowsClipped = false;
+
+    /**
+     * @param threshold 超过该比例（0..1）的像素被裁切即告警
+     */
+    public ExposureClippingAnalyzer(double threshold, Listener listener) {
+        this.threshold = threshold;
+        this.listener = listener;
+    }
+
+    @Override
+    public String getName() {
+        return "clipping";
+    }
+
+    @Override
+    public void analyze(LumaFrame frame) {
+        byte[] data = frame.data();
+        int width = frame.width();
+        int height = frame.height();
+        int highlights = 0;
+        int shadows = 0;
+        int samples = 0;
+        for (int y = 0; y < height; y += SAMPLE_STEP) {
+            int row = y * width;
+            for (int x = 0; x < width; x += SAMPLE_STEP) {
+                int v = data[row + x] & 0xFF;
+                if (v >= HIGHLIGHT_LEVEL) highlights++;
+                else if (v <= SHADOW_LEVEL) shadows++;
+                samples++;
+            }
+        }
+        if (samples == 0) return;
+        highlightFraction = (double) highlights / samples;
+        shadowFraction = (double) shadows / samples;
+        boolean highClipped = highlightFraction > threshold;
+        boolean lowClipped = shadowFraction > threshold;
+        if (highClipped != highlightsClipped || lowClipped != shadowsClipped) {
+            highlightsClipped = highClipped;
+            shadowsClipped = lowClipped;
+            if (listener != null) listener.onClippingChanged(highClipped, lowClipped);
+        }
+    }
+
+    public double getHighlightFraction() {
+        return highlightFraction;
+    }
+
+    public double getShadowFraction() {
+        return shadowFraction;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.simplecamera.analysis;
+
+/**
+ * FrameAnalyzer：分析管线中的一个可插拔分析器。
+ * 在分析线程上逐帧调用，实现中不应按帧分配对象，结果通过自身的字段或回调对外提供。
+ */
+public interface FrameAnalyzer {
+    // 用于日志与统计展示
+    String getName();
+
+    // frame 的缓冲在下一帧会被覆盖，需要保留的数据请自行拷贝
+    void analyze(LumaFrame frame);
+}
@@ -0,0 +1,96 @@
+package com.example.simplecamera.analysis;
+
+/**
+ * HammingIndex：64 位哈希的多索引（multi-index hashing），查找汉明距离不超过 r 的全部条目。
+ * 哈希切成 CHUNKS 段各 16 位，每段建一张桶表；两个哈希距离不超过 r 时，
+ * 至少有一段的距离不超过 r / CHUNKS（抽屉原理），所以只需在每张表里枚举这一小半径内的桶，再逐个核对全距离。
+ * 桶表用计数排序压成紧凑数组，建好后只读，可并发查询。
+ * 感知哈希的距离集中在 32 附近，BK 树在这里几乎无法剪枝，因此没有采用。
+ */
+public final class HammingIndex {
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = 16;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+
+    /**
+     * 每个命中的条目回调一次
+     */
+    public interface Visitor {
+        void visit(int item, int distance);
+    }
+
+    private final long[] hashes;
+    // 每张表：bucketStart[t][b] .. bucketStart[t][b + 1] 是桶 b 中条目在 entries[t] 里的区间
+    private final int[][] bucketStart = new int[CHUNKS][];
+    private final int[][] entries = new int[CHUNKS][];
+
+    /**
+     * 条目下标即 hashes 中的位置；建好后不能再修改 hashes
+     */
+    public HammingIndex(long[] hashes, int count) {
+        this.hashes = hashes;
+        for (int table = 0; table < CHUNKS; table++) {
+            int[] start = new int[BUCKETS + 1];
+            for (int i = 0; i < count; i++) start[chunk(hashes[i], table) + 1]++;
+            for (int b = 0; b < BUCKETS; b++) start[b + 1] += start[b];
+            int[] fill = new int[BUCKETS];
+            int[] items = new int[count];
+            for (int i = 0; i < count; i++) {
+                int bucket = chunk(hashes[i], table);
+                items[start[bucket] + fill[bucket]++] = i;
+            }
+            bucketStart[table] = start;
+            entries[table] = items;
+        }
+    }
+
+    /**
+     * 找出与 hash 距离不超过 maxDistance 的全部条目（每个只回调一次），返回核对过的候选数
+     */
+    public int search(long hash, int maxDistance, Visitor visitor) {
+        int chunkRadius = maxDistance / CHUNKS;
+        int[] checked = {0};
+        for (int table = 0; table < CHUNKS; table++) {
+            int key = chunk(hash, table);
+            int currentTable = table;
+            forEachNeighbour(key, chunkRadius, 0, bucket -> {
+                int[] items = entries[currentTable];
+                int end = bucketStart[currentTable][bucket + 1];
+                for (int k = bucketStart[currentTable][bucket]; k < end; k++) {
+                    int item = items[k];
+                    long other = hashes[item];
+                    // 在更早的表里已经能找到的条目跳过，避免重复回调
+                    if (foundInEarlierTable(hash, other, currentTable, chunkRadius)) continue;
+                    checked[0]++;
+                    int distance = PerceptualHash.distance(hash, other);
+                    if (distance <= maxDistance) visitor.visit(item, distance);
+                }
+            });
+        }
+        return checked[0];
+    }
+
+    private interface BucketVisitor {
+        void visit(int bucket);
+    }
+
+    // 枚举与 key 距离不超过 radius 的全部 16 位值，只翻转 fromBit 及更高的位，保证每个值只出现一次
+    private static void forEachNeighbour(int key, int radius, int fromBit, BucketVisitor visitor) {
+        visitor.visit(key);
+        if (radius == 0) return;
+        for (int bit = fromBit; bit < CHUNK_BITS; bit++) {
+            forEachNeighbour(key ^ (1 << bit), radius - 1, bit + 1, visitor);
+        }
+    }
+
+    private static boolean foundInEarlierTable(long a, long b, int table, int chunkRadius) {
+        for (int earlier = 0; earlier < table; earlier++) {
+            if (Integer.bitCount(chunk(a, earlier) ^ chunk(b, earlier)) <= chunkRadius) return true;
+        }
+        return false;
+    }
+
+    private static int chunk(long hash, int table) {
+        return (int) (hash >>> (table * CHUNK_BITS)) & (BUCKETS - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.simplecamera.analysis;
+
+/**
+ * LumaFrame：一帧的亮度（Y）平面，按 width 紧密排列（无行填充）。
+ * 缓冲在分辨率不变时跨帧复用。
+ */
+public final class LumaFrame {
+    private byte[] data = new byte[0];
+    private int width;
+    private int height;
+    private long timestampNanos;
+
+    /**
+     * 为新的一帧准备缓冲并返回，只有像素数变大时才重新分配
+     */
+    public byte[] prepare(int width, int height, long timestampNanos) {
+        int size = width * height;
+        if (data.length < size) data = new byte[size];
+        this.width = width;
+        this.height = height;
+        this.timestampNanos = timestampNanos;
+        return data;
+    }
+
+    public byte[] data() {
+        return data;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * (x, y) 处的亮度，0..255
+     */
+    public int luma(int x, int y) {
+        return data[y * width + x] & 0xFF;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.simplecamera.analysis;
+
+import java.util.Arrays;
+
+/**
+ * LumaHistogramAnalyzer：隔点采样统计 256 级亮度直方图与平均亮度。
+ */
+public class LumaHistogramAnalyzer implements FrameAnalyzer {
+    private static final int SAMPLE_STEP = 2;
+
+    private final int[] working = new int[256];
+    private final int[] published = new int[256];
+    private volatile double meanLuma;
+
+    @Override
+    public String getName() {
+        return "histogram";
+    }
+
+    @Override
+    public void analyze(LumaFrame frame) {
+        int[] bins = working;
+        Arrays.fill(bins, 0);
+        byte[] data = frame.data();
+        int width = frame.width();
+        int height = frame.height();
+        long sum = 0;
+        int samples = 0;
+        for (int y = 0; y < height; y += SAMPLE_STEP) {
+            int row = y * width;
+            for (int x = 0; x < width; x += SAMPLE_STEP) {
+                int v = data[row + x] & 0xFF;
+                bins[v]++;
+                sum += v;
+                samples++;
+            }
+        }
+        synchronized (published) {
+            System.arraycopy(bins, 0, published, 0, bins.length);
+        }
+        meanLuma = samples > 0 ? (double) sum / samples : 0;
+    }
+
+    /**
+     * 拷贝最近一帧的直方图到 out（长度至少 256）
+     */
+    public void getHistogram(int[] out) {
+        synchronized (published) {
+            System.arraycopy(published, 0, out, 0, published.length);
+        }
+    }
+
+    public double getMeanLuma() {
+        return meanLuma;
+    }
+}
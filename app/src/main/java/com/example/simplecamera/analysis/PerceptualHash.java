@@ -0,0 +1,47 @@
+package com.example.simplecamera.analysis;
+
+/**
+ * PerceptualHash：64 位 dHash。把亮度平面按块平均缩到 (GRID + 1) x GRID，
+ * 每行比较相邻两格的明暗得到 8 位；对缩放、轻微压缩与曝光整体偏移不敏感，
+ * 内容相近的照片汉明距离很小。
+ */
+public final class PerceptualHash {
+    private static final int GRID = 8;
+
+    private PerceptualHash() {}
+
+    /**
+     * @param luma 亮度平面，按 width 紧密排列；宽高都不能小于 GRID + 1
+     */
+    public static long dHash(byte[] luma, int width, int height) {
+        if (width <= GRID || height < GRID) {
+            throw new IllegalArgumentException("Image too small for dHash: " + width + "x" + height);
+        }
+        int columns = GRID + 1;
+        long[] sums = new long[columns * GRID];
+        int[] counts = new int[columns * GRID];
+        for (int y = 0; y < height; y++) {
+            int cellRow = y * GRID / height * columns;
+            int rowOffset = y * width;
+            for (int x = 0; x < width; x++) {
+                int cell = cellRow + x * columns / width;
+                sums[cell] += luma[rowOffset + x] & 0xFF;
+                counts[cell]++;
+            }
+        }
+        long hash = 0;
+        for (int row = 0; row < GRID; row++) {
+            for (int column = 0; column < GRID; column++) {
+                int left = row * columns + column;
+                // 比较均值：sums[l] / counts[l] > sums[r] / counts[r]，交叉相乘避免除法
+                boolean brighter = sums[left] * counts[left + 1] > sums[left + 1] * counts[left];
+                hash = (hash << 1) | (brighter ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.simplecamera.analysis;
+
+/**
+ * SharpnessAnalyzer：在降采样网格上计算拉普拉斯方差作为清晰度分数，数值越大越清晰。
+ */
+public class SharpnessAnalyzer implements FrameAnalyzer {
+    private static final int SAMPLE_STEP = 4;
+
+    private final long[] moments = new long[3];
+    private volatile double score;
+
+    @Override
+    public String getName() {
+        return "sharpness";
+    }
+
+    @Override
+    public void analyze(LumaFrame frame) {
+        long[] m = moments;
+        m[0] = m[1] = m[2] = 0;
+        laplacianMoments(frame.data(), frame.width(), frame.height(), 0, 0, frame.width(), frame.height(), SAMPLE_STEP, m);
+        score = variance(m);
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * 在区域 [x0, x1) × [y0, y1) 内、以 step 为间距累加 4 邻域拉普拉斯响应的矩：
+     * out[0] 个数、out[1] 之和、out[2] 平方和。邻点同样按 step 取，相当于先降采样再求拉普拉斯；
+     * 区域会被裁到距图像边缘 step 以内，分块计算时各块结果可直接相加。
+     */
+    public static void laplacianMoments(byte[] luma, int width, int height,
+                                        int x0, int y0, int x1, int y1, int step, long[] out) {
+        int rowStep = step * width;
+        int yStart = Math.max(y0, step);
+        int yEnd = Math.min(y1, height - step);
+        int xStart = Math.max(x0, step);
+        int xEnd = Math.min(x1, width - step);
+        long count = 0;
+        long sum = 0;
+        long sumSquares = 0;
+        // 起点对齐到 step 的整数倍，分块边界不影响采样位置
+        yStart += (step - yStart % step) % step;
+        xStart += (step - xStart % step) % step;
+        for (int y = yStart; y < yEnd; y += step) {
+            int row = y * width;
+            for (int x = xStart; x < xEnd; x += step) {
+                int i = row + x;
+                int lap = 4 * (luma[i] & 0xFF)
+                        - (luma[i - step] & 0xFF) - (luma[i + step] & 0xFF)
+                        - (luma[i - rowStep] & 0xFF) - (luma[i + rowStep] & 0xFF);
+                sum += lap;
+                sumSquares += (long) lap * lap;
+                count++;
+            }
+        }
+        out[0] += count;
+        out[1] += sum;
+        out[2] += sumSquares;
+    }
+
+    /**
+     * 由 laplacianMoments 的结果求方差
+     */
+    public static double variance(long[] moments) {
+        if (moments[0] == 0) return 0;
+        double mean = (double) moments[1] / moments[0];
+        return (double) moments[2] / moments[0] - mean * mean;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.simplecamera.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ShotScorer：给一张（已降采样的）照片打分，用于在一组连续拍摄中挑出最好的一张。
+ * 清晰度取拉普拉斯方差，曝光看平均亮度偏离中灰的程度与裁切像素比例；
+ * 图像按行切块交给 fork/join 并行计算，各块的矩相加后再求整体结果。
+ */
+public final class ShotScorer {
+
+    // 每个任务至少处理的行数，再小就不值得拆分
+    private static final int MIN_TILE_ROWS = 32;
+    private static final int HIGHLIGHT_LEVEL = 250;
+    private static final int SHADOW_LEVEL = 5;
+    private static final double MID_GREY = 118;
+    // 拉普拉斯方差到 [0, 1] 的归一化上限（取对数后）
+    private static final double SHARPNESS_LOG_CEILING = Math.log1p(4000);
+    private static final double SHARPNESS_WEIGHT = 0.7;
+
+    /**
+     * 打分结果，各分量都在 [0, 1]
+     */
+    public static final class Score {
+        public final double laplacianVariance;
+        public final double sharpness;
+        public final double exposure;
+        public final double total;
+
+        Score(double laplacianVariance, double sharpness, double exposure) {
+            this.laplacianVariance = laplacianVariance;
+            this.sharpness = sharpness;
+            this.exposure = exposure;
+            this.total = SHARPNESS_WEIGHT * sharpness + (1 - SHARPNESS_WEIGHT) * exposure;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "total=%.3f (sharpness=%.3f, var=%.0f, exposure=%.3f)",
+                    total, sharpness, laplacianVariance, exposure);
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    public ShotScorer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param luma 亮度平面，按 width 紧密排列
+     */
+    public Score score(byte[] luma, int width, int height) {
+        long[] m = pool.invoke(new TileTask(luma, width, height, 0, height));
+        double variance = SharpnessAnalyzer.variance(m);
+        double sharpness = Math.min(1, Math.log1p(variance) / SHARPNESS_LOG_CEILING);
+        double exposure = 0;
+        if (m[3] > 0) {
+            double mean = (double) m[4] / m[3];
+            double clipped = (double) m[5] / m[3];
+            exposure = 1 - Math.abs(mean - MID_GREY) / MID_GREY - 2 * clipped;
+            exposure = Math.max(0, Math.min(1, exposure));
+        }
+        return new Score(variance, sharpness, exposure);
+    }
+
+    /**
+     * 按 created_date 邻近程度分组：相邻两张间隔不超过 maxGapMs 即属于同一组。
+     * dates 须已升序，返回每组的 [起始下标, 结束下标)
+     */
+    public static List<int[]> groupByProximity(long[] dates, long maxGapMs) {
+        List<int[]> groups = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= dates.length; i++) {
+            if (i == dates.length || dates[i] - dates[i - 1] > maxGapMs) {
+                if (i > start) groups.add(new int[]{start, i});
+                start = i;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * 计算 [rowStart, rowEnd) 行的矩：
+     * [0..2] 拉普拉斯的个数/和/平方和，[3] 像素数，[4] 亮度和，[5] 裁切像素数
+     */
+    private static final class TileTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] luma;
+        private final int width;
+        private final int height;
+        private final int rowStart;
+        private final int rowEnd;
+
+        TileTask(byte[] luma, int width, int height, int rowStart, int rowEnd) {
+            this.luma = luma;
+            this.width = width;
+            this.height = height;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (rowEnd - rowStart > 2 * MIN_TILE_ROWS) {
+                int mid = (rowStart + rowEnd) >>> 1;
+                TileTask top = new TileTask(luma, width, height, rowStart, mid);
+                top.fork();
+                long[] bottom = new TileTask(luma, width, height, mid, rowEnd).compute();
+                long[] result = top.join();
+                for (int i = 0; i < result.length; i++) result[i] += bottom[i];
+                return result;
+            }
+            long[] m = new long[6];
+            SharpnessAnalyzer.laplacianMoments(luma, width, height, 0, rowStart, width, rowEnd, 1, m);
+            long lumaSum = 0;
+            long clipped = 0;
+            for (int i = rowStart * width, end = rowEnd * width; i < end; i++) {
+                int v = luma[i] & 0xFF;
+                lumaSum += v;
+                if (v >= HIGHLIGHT_LEVEL || v <= SHADOW_LEVEL) clipped++;
+            }
+            m[3] = (long) (rowEnd - rowStart) * width;
+            m[4] = lumaSum;
+            m[5] = clipped;
+            return m;
+        }
+    }
+}
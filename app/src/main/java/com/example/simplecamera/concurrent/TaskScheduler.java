@@ -0,0 +1,483 @@
+package com.example.simplecamera.concurrent;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.simplecamera.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TaskScheduler：全应用共用的后台任务调度器，按优先级分为若干通道。
+ * 每个通道有自己的线程（线程优先级依次降低）与有界队列，拍照写盘不会排在缩略图或回填任务后面；
+ * 长任务与回填任务在拍照写盘进行时会让出，最多等待 BACKFILL_YIELD_MAX_MS。
+ * 任务可以单独取消，也可以按 tag 成批取消；被丢弃或拒绝的任务会回调提交时给出的 onDropped。
+ * 每个通道统计队列深度、排队时间与执行时间。
+ * 需要并行计算的后台任务共用 parallelPool()（PARALLEL_THREADS 个后台优先级线程），其叶子任务开始前调用 yieldToCapture()。
+ */
+public final class TaskScheduler {
+    private static final String TAG = "TaskScheduler";
+    private static final long BACKFILL_YIELD_MAX_MS = 500;
+    private static final int PARALLEL_THREADS = 3;
+
+    /**
+     * 通道队列已满时的处理方式
+     */
+    enum Overflow {
+        CALLER_RUNS,    // 由提交方线程直接执行
+        BLOCK_OFF_MAIN, // 后台提交方等待队列腾出空间；主线程与计时线程不等待，拒绝新任务并回调 onDropped
+        DROP_OLDEST,    // 丢弃队列中最旧的任务
+        REJECT          // 拒绝新任务，已排队的不受影响
+    }
+
+    /**
+     * 通道，按优先级从高到低排列
+     */
+    public enum Lane {
+        // 拍照/录像相关的写盘与 CameraX 回调，队列满时由调用方线程执行，不丢任务
+        CAPTURE_IO(Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_MORE_FAVORABLE, 64, Overflow.CALLER_RUNS),
+        // 数据库读写，单线程保证提交顺序；队列满时后台提交方等待，主线程的提交被拒绝（Room 不允许在主线程执行，主线程也不能等）
+        DATABASE(Process.THREAD_PRIORITY_DEFAULT, 256, Overflow.BLOCK_OFF_MAIN),
+        // 缩略图解码，队列满时丢弃最旧的任务
+        THUMBNAIL(Process.THREAD_PRIORITY_BACKGROUND, 128, Overflow.DROP_OLDEST),
+        // 导入、导出、清理墓碑等有结果要交代的长任务，队列满时拒绝新任务并回调 onDropped
+        JOBS(Process.THREAD_PRIORITY_BACKGROUND, 32, Overflow.REJECT),
+        // 打分、哈希、探测、缩略图整理等可以延后、丢了下次再补的工作，队列满时丢弃最旧的任务
+        BACKFILL(Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE, 256, Overflow.DROP_OLDEST);
+
+        final int threadPriority;
+        final int capacity;
+        final Overflow overflow;
+
+        Lane(int threadPriority, int capacity, Overflow overflow) {
+            this.threadPriority = threadPriority;
+            this.capacity = capacity;
+            this.overflow = overflow;
+        }
+
+        // 拍照写盘进行时是否让出
+        boolean yieldsToCapture() {
+            return this == JOBS || this == BACKFILL;
+        }
+    }
+
+    /**
+     * 单个通道的统计快照
+     */
+    public static class LaneStats {
+        public final Lane lane;
+        public final int queued;
+        public final int running;
+        public final long completed;
+        public final long dropped;
+        public final long cancelled;
+        public final double meanWaitMs;
+        public final long p90WaitMs;
+        public final long maxWaitMs;
+        public final double meanRunMs;
+        public final long maxRunMs;
+
+        LaneStats(Lane lane, int queued, int running, long completed, long dropped, long cancelled,
+                  LatencyHistogram wait, LatencyHistogram run) {
+            this.lane = lane;
+            this.queued = queued;
+            this.running = running;
+            this.completed = completed;
+            this.dropped = dropped;
+            this.cancelled = cancelled;
+            this.meanWaitMs = wait.meanMs();
+            this.p90WaitMs = wait.percentileMs(0.9);
+            this.maxWaitMs = wait.maxMs();
+            this.meanRunMs = run.meanMs();
+            this.maxRunMs = run.maxMs();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: queued=%d, running=%d, done=%d, dropped=%d, cancelled=%d, wait avg=%.1fms p90=%dms max=%dms, run avg=%.1fms max=%dms",
+                    lane, queued, running, completed, dropped, cancelled, meanWaitMs, p90WaitMs, maxWaitMs,
+                    meanRunMs, maxRunMs);
+        }
+    }
+
+    private static volatile TaskScheduler instance;
+
+    public static TaskScheduler get() {
+        if (instance == null) {
+            synchronized (TaskScheduler.class) {
+                if (instance == null) instance = new TaskScheduler();
+            }
+        }
+        return instance;
+    }
+
+    private final LaneExecutor[] lanes = new LaneExecutor[Lane.values().length];
+    private final ScheduledExecutorService timer;
+    private volatile Thread timerThread;
+    private final ForkJoinPool parallelPool = new ForkJoinPool(PARALLEL_THREADS, parallelFactory(), null, false);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor mainExecutor = mainHandler::post;
+    // 已 schedule 但还没进入通道的任务
+    private final Set<LaneTask> delayed = ConcurrentHashMap.newKeySet();
+    // 当前线程正在执行的通道，BLOCK_OFF_MAIN 通道据此避免自己等自己
+    private final ThreadLocal<Lane> currentLane = new ThreadLocal<>();
+
+    // 正在执行或排队中的拍照写盘任务数，回填任务据此让出
+    private final AtomicInteger captureInFlight = new AtomicInteger();
+    private final Object captureIdleLock = new Object();
+
+    private TaskScheduler() {
+        for (Lane lane : Lane.values()) lanes[lane.ordinal()] = new LaneExecutor(lane);
+        ThreadFactory timerFactory = namedFactory("timer", Process.THREAD_PRIORITY_DEFAULT);
+        ScheduledThreadPoolExecutor scheduled = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = timerFactory.newThread(runnable);
+            timerThread = thread;
+            return thread;
+        });
+        scheduled.setRemoveOnCancelPolicy(true);
+        timer = scheduled;
+    }
+
+    /**
+     * 把任务提交到指定通道，返回的 Future 可用于取消
+     */
+    public Future<?> submit(Lane lane, Runnable task) {
+        return submit(lane, null, task);
+    }
+
+    /**
+     * 同上，tag 用于 cancelAll 成批取消（例如界面销毁时取消它发起的任务）
+     */
+    public Future<?> submit(Lane lane, Object tag, Runnable task) {
+        return submit(lane, tag, task, null);
+    }
+
+    /**
+     * 同上，任务因队列已满被丢弃或拒绝时调用 onDropped（在提交方或挤掉它的线程上）
+     */
+    public Future<?> submit(Lane lane, Object tag, Runnable task, Runnable onDropped) {
+        LaneTask laneTask = new LaneTask(lanes[lane.ordinal()], tag, task, onDropped);
+        laneTask.owner.enqueue(laneTask);
+        return laneTask;
+    }
+
+    /**
+     * 延迟 delayMs 后再进入通道排队；排队时间从进入通道算起
+     */
+    public Future<?> schedule(Lane lane, Object tag, Runnable task, long delayMs) {
+        return schedule(lane, tag, task, delayMs, null);
+    }
+
+    /**
+     * 同上，进入通道时被丢弃或拒绝则调用 onDropped
+     */
+    public Future<?> schedule(Lane lane, Object tag, Runnable task, long delayMs, Runnable onDropped) {
+        LaneTask laneTask = new LaneTask(lanes[lane.ordinal()], tag, task, onDropped);
+        delayed.add(laneTask);
+        timer.schedule(() -> {
+            delayed.remove(laneTask);
+            if (!laneTask.isCancelled()) laneTask.owner.enqueue(laneTask);
+        }, delayMs, TimeUnit.MILLISECONDS);
+        return laneTask;
+    }
+
+    /**
+     * 周期执行的轻量任务（如内存采样）：直接在计时线程上运行，不进入任何通道，也不计入拍照写盘；任务必须很快返回
+     */
+    public Future<?> scheduleAtFixedRate(Runnable task, long periodMs) {
+        return timer.scheduleAtFixedRate(task, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 作为普通 Executor 使用的通道（如 CameraX 回调），任务不可单独取消
+     */
+    public Executor executor(Lane lane) {
+        return task -> submit(lane, task);
+    }
+
+    /**
+     * 后台并行计算共用的 fork/join 池，线程数固定为 PARALLEL_THREADS，不要在上面做阻塞等待之外的长时间占用
+     */
+    public ForkJoinPool parallelPool() {
+        return parallelPool;
+    }
+
+    public Executor mainExecutor() {
+        return mainExecutor;
+    }
+
+    public void runOnMain(Runnable task) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            task.run();
+        } else {
+            mainHandler.post(task);
+        }
+    }
+
+    /**
+     * 延迟 delayMs 后在主线程执行，返回的 Future 取消后任务从主线程队列移除
+     */
+    public Future<?> runOnMainDelayed(Runnable task, long delayMs) {
+        FutureTask<Void> future = new FutureTask<Void>(task, null) {
+            @Override
+            protected void done() {
+                if (isCancelled()) mainHandler.removeCallbacks(this);
+            }
+        };
+        mainHandler.postDelayed(future, delayMs);
+        return future;
+    }
+
+    /**
+     * 取消所有带有该 tag、尚未开始执行的任务（包括还在延迟中的）
+     */
+    public void cancelAll(Object tag) {
+        if (tag == null) return;
+        for (LaneTask task : delayed) {
+            if (task.tag == tag) task.cancel(false);
+        }
+        for (LaneExecutor lane : lanes) lane.cancelTagged(tag);
+    }
+
+    public List<LaneStats> getStats() {
+        List<LaneStats> stats = new ArrayList<>(lanes.length);
+        for (LaneExecutor lane : lanes) stats.add(lane.stats());
+        return stats;
+    }
+
+    public String formatStats() {
+        StringBuilder sb = new StringBuilder();
+        for (LaneStats stats : getStats()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(stats);
+        }
+        return sb.toString();
+    }
+
+    private void onCaptureTaskFinished() {
+        if (captureInFlight.decrementAndGet() == 0) {
+            synchronized (captureIdleLock) {
+                captureIdleLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等拍照写盘清空（最多 BACKFILL_YIELD_MAX_MS），避免抢占存储带宽与 CPU。
+     * JOBS 与 BACKFILL 通道的任务开始前会自动调用，parallelPool() 上的叶子任务需要自己调用
+     */
+    public void yieldToCapture() {
+        long deadline = SystemClock.elapsedRealtime() + BACKFILL_YIELD_MAX_MS;
+        synchronized (captureIdleLock) {
+            long remaining;
+            while (captureInFlight.get() > 0 && (remaining = deadline - SystemClock.elapsedRealtime()) > 0) {
+                try {
+                    captureIdleLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory parallelFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return pool -> {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                @Override
+                protected void onStart() {
+                    super.onStart();
+                    try {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    } catch (Exception e) {
+                        Log.w(TAG, "Cannot set priority for " + getName(), e);
+                    }
+                }
+            };
+            thread.setName("sched-parallel-" + count.incrementAndGet());
+            return thread;
+        };
+    }
+
+    private static ThreadFactory namedFactory(String name, int threadPriority) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> new Thread(() -> {
+            try {
+                Process.setThreadPriority(threadPriority);
+            } catch (Exception e) {
+                Log.w(TAG, "Cannot set priority " + threadPriority + " for " + name, e);
+            }
+            runnable.run();
+        }, "sched-" + name + "-" + count.incrementAndGet());
+    }
+
+    /**
+     * 一个通道：单线程 + 有界队列
+     */
+    private final class LaneExecutor {
+        final Lane lane;
+        final ThreadPoolExecutor executor;
+        final LatencyHistogram waitHistogram = new LatencyHistogram();
+        final LatencyHistogram runHistogram = new LatencyHistogram();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+
+        LaneExecutor(Lane lane) {
+            this.lane = lane;
+            this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(lane.capacity),
+                    namedFactory(lane.name().toLowerCase(Locale.US), lane.threadPriority),
+                    this::onRejected);
+        }
+
+        void enqueue(LaneTask task) {
+            task.enqueuedAt = SystemClock.elapsedRealtime();
+            if (lane == Lane.CAPTURE_IO) captureInFlight.incrementAndGet();
+            executor.execute(task);
+        }
+
+        // 队列已满时按通道的 Overflow 处理
+        private void onRejected(Runnable runnable, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) return;
+            switch (lane.overflow) {
+                case DROP_OLDEST:
+                    drop(pool.getQueue().poll());
+                    pool.execute(runnable);
+                    break;
+                case REJECT:
+                    Log.w(TAG, lane + " queue full (" + lane.capacity + "), rejecting task");
+                    drop(runnable);
+                    break;
+                case BLOCK_OFF_MAIN:
+                    if (Looper.myLooper() == Looper.getMainLooper() || Thread.currentThread() == timerThread) {
+                        Log.w(TAG, lane + " queue full (" + lane.capacity + "), rejecting task from " +
+                                Thread.currentThread().getName());
+                        drop(runnable);
+                        break;
+                    }
+                    if (currentLane.get() == lane) {
+                        // 本通道的任务再提交到本通道：等下去会死锁，只能就地执行
+                        Log.w(TAG, lane + " queue full (" + lane.capacity + "), running nested task inline");
+                        runnable.run();
+                        break;
+                    }
+                    Log.w(TAG, lane + " queue full (" + lane.capacity + "), waiting for space");
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        drop(runnable);
+                    }
+                    break;
+                case CALLER_RUNS:
+                default:
+                    Log.w(TAG, lane + " queue full (" + lane.capacity + "), running on caller thread");
+                    runnable.run();
+                    break;
+            }
+        }
+
+        private void drop(Runnable runnable) {
+            if (!(runnable instanceof LaneTask)) return;
+            LaneTask task = (LaneTask) runnable;
+            dropped.incrementAndGet();
+            task.dropped = true;
+            task.cancel(false);
+        }
+
+        void cancelTagged(Object tag) {
+            for (Runnable queued : executor.getQueue().toArray(new Runnable[0])) {
+                if (queued instanceof LaneTask && ((LaneTask) queued).tag == tag) {
+                    ((LaneTask) queued).cancel(false);
+                }
+            }
+        }
+
+        LaneStats stats() {
+            return new LaneStats(lane, executor.getQueue().size(), executor.getActiveCount(), completed.get(),
+                    dropped.get(), cancelled.get(), waitHistogram, runHistogram);
+        }
+    }
+
+    /**
+     * 通道中的一个任务，记录排队与执行时间；取消后立即从队列移除
+     */
+    private final class LaneTask extends FutureTask<Void> {
+        final LaneExecutor owner;
+        final Object tag;
+        final Runnable onDropped;
+        volatile long enqueuedAt;
+        volatile boolean dropped;
+
+        LaneTask(LaneExecutor owner, Object tag, Runnable task, Runnable onDropped) {
+            super(task, null);
+            this.owner = owner;
+            this.tag = tag;
+            this.onDropped = onDropped;
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled()) return;
+            // 让出的时间计入排队时间
+            if (owner.lane.yieldsToCapture()) yieldToCapture();
+            long start = SystemClock.elapsedRealtime();
+            owner.waitHistogram.record(start - enqueuedAt);
+            Lane outer = currentLane.get();
+            currentLane.set(owner.lane);
+            try {
+                super.run();
+            } finally {
+                currentLane.set(outer);
+            }
+            owner.runHistogram.record(SystemClock.elapsedRealtime() - start);
+            owner.completed.incrementAndGet();
+        }
+
+        @Override
+        protected void done() {
+            if (owner.lane == Lane.CAPTURE_IO && enqueuedAt > 0) onCaptureTaskFinished();
+            if (isCancelled()) {
+                if (!dropped) owner.cancelled.incrementAndGet();
+                owner.executor.remove(this);
+                if (dropped && onDropped != null) {
+                    try {
+                        onDropped.run();
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, owner.lane + " onDropped failed", e);
+                    }
+                }
+            } else {
+                // Runnable 抛出的异常不会传到线程上，这里记下来
+                try {
+                    get();
+                } catch (Exception e) {
+                    Log.e(TAG, owner.lane + " task failed", e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        }
+    }
+}
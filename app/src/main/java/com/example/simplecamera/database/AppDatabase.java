@@ -3,23 +3,74 @@ package com.example.simplecamera.database;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import android.content.Context;
 
 import com.example.simplecamera.database.dao.MediaFileDao;
 import com.example.simplecamera.database.entity.MediaFile;
 
-@Database(entities = {MediaFile.class}, version = 1, exportSchema = false)
+@Database(entities = {MediaFile.class}, version = 6, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     public abstract MediaFileDao mediaFileDao();
 
     private static volatile AppDatabase INSTANCE;
 
+    // v2：视频行记录编码器统计的字节数与平均码率
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE media_files ADD COLUMN size_bytes INTEGER");
+            db.execSQL("ALTER TABLE media_files ADD COLUMN bitrate_bps INTEGER");
+        }
+    };
+
+    // v3：照片的连拍择优分数与标记
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE media_files ADD COLUMN shot_score REAL");
+            db.execSQL("ALTER TABLE media_files ADD COLUMN best_shot INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    // v4：分段录像的会话与段序号
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE media_files ADD COLUMN recording_session INTEGER");
+            db.execSQL("ALTER TABLE media_files ADD COLUMN segment_index INTEGER");
+        }
+    };
+
+    // v5：软删除的墓碑时间，带索引以便快速过滤与清理
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE media_files ADD COLUMN deleted_at INTEGER");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_media_files_deleted_at ON media_files(deleted_at)");
+        }
+    };
+
+    // v6：去重用的内容哈希与感知哈希
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE media_files ADD COLUMN content_hash TEXT");
+            db.execSQL("ALTER TABLE media_files ADD COLUMN perceptual_hash INTEGER");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_media_files_content_hash ON media_files(content_hash)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS index_media_files_perceptual_hash ON media_files(perceptual_hash)");
+        }
+    };
+
     public static AppDatabase getDatabase(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "media_database")
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                                    MIGRATION_5_6)
                             .fallbackToDestructiveMigration()
                             .build();
                 }
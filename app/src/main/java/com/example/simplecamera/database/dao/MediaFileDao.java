@@ -1,19 +1,22 @@
 package com.example.simplecamera.database.dao;
 
-import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
 
 import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.entity.MediaHashes;
 
 import java.util.List;
 
 @Dao
 public interface MediaFileDao {
     @Insert
-    void insert(MediaFile mediaFile);
+    long insert(MediaFile mediaFile);
+
+    @Insert
+    List<Long> insertAll(List<MediaFile> mediaFiles);
 
     @Delete
     void delete(MediaFile mediaFile);
@@ -21,10 +24,66 @@ public interface MediaFileDao {
     @Query("DELETE FROM media_files")
     void deleteAll();
 
-    @Query("SELECT * FROM media_files ORDER BY created_date DESC")
-    LiveData<List<MediaFile>> getAllMediaFiles();
-
-    @Query("SELECT * FROM media_files ORDER BY created_date DESC")
+    // 除清理任务外，查询都排除已软删除（deleted_at 非空）的行
+    @Query("SELECT * FROM media_files WHERE deleted_at IS NULL ORDER BY created_date DESC")
     List<MediaFile> getAllMediaFilesSync();
 
+    // 分段录像只列出第一段，代表整个录像
+    @Query("SELECT * FROM media_files WHERE deleted_at IS NULL AND (segment_index IS NULL OR segment_index = 0)")
+    List<MediaFile> getListedMediaFilesSync();
+
+    // 包括已软删除的行，导入时据此去重
+    @Query("SELECT file_path FROM media_files")
+    List<String> getAllFilePathsSync();
+
+    @Query("SELECT * FROM media_files WHERE deleted_at IS NULL AND file_type = 0 AND created_date >= :since ORDER BY created_date ASC")
+    List<MediaFile> getPhotosSinceSync(long since);
+
+    @Query("UPDATE media_files SET shot_score = :score WHERE id = :id")
+    void updateShotScore(long id, double score);
+
+    @Query("SELECT * FROM media_files WHERE deleted_at IS NULL AND recording_session = :session ORDER BY segment_index ASC")
+    List<MediaFile> getSessionSegmentsSync(long session);
+
+    @Query("DELETE FROM media_files WHERE recording_session = :session")
+    void deleteSession(long session);
+
+    // 软删除：行及其所在录像的其余各段一起打上墓碑
+    @Query("UPDATE media_files SET deleted_at = :deletedAt WHERE id IN (:ids) OR recording_session IN (:sessions)")
+    void markDeleted(List<Long> ids, List<Long> sessions, long deletedAt);
+
+    @Query("UPDATE media_files SET deleted_at = NULL WHERE id IN (:ids) OR recording_session IN (:sessions)")
+    void restore(List<Long> ids, List<Long> sessions);
+
+    @Query("SELECT * FROM media_files WHERE deleted_at IS NOT NULL AND deleted_at <= :before LIMIT :limit")
+    List<MediaFile> getTombstonesSync(long before, int limit);
+
+    @Query("DELETE FROM media_files WHERE id IN (:ids)")
+    void purge(List<Long> ids);
+
+    // 只改给定行的墓碑时间，清理任务逐行处理（分段录像的各段各有文件）
+    @Query("UPDATE media_files SET deleted_at = :deletedAt WHERE id IN (:ids)")
+    void setDeletedAt(List<Long> ids, Long deletedAt);
+
+    @Query("SELECT * FROM media_files WHERE id IN (:ids)")
+    List<MediaFile> getByIdsSync(List<Long> ids);
+
+    @Query("UPDATE media_files SET deleted_at = :deletedAt WHERE deleted_at = :tombstone")
+    void retimeTombstones(long tombstone, long deletedAt);
+
+    // 组内只保留 bestId 一张的标记
+    @Query("UPDATE media_files SET best_shot = (id = :bestId) WHERE id IN (:groupIds)")
+    void markBestShot(long bestId, List<Long> groupIds);
+
+    // 尚未计算哈希的列表条目，新的优先
+    @Query("SELECT * FROM media_files WHERE deleted_at IS NULL AND content_hash IS NULL AND (segment_index IS NULL OR segment_index = 0) ORDER BY id DESC LIMIT :limit")
+    List<MediaFile> getUnhashedSync(int limit);
+
+    @Query("UPDATE media_files SET content_hash = :contentHash, perceptual_hash = :perceptualHash WHERE id = :id")
+    void updateHashes(long id, String contentHash, Long perceptualHash);
+
+    // 去重分组的输入，只取算出了哈希的列表条目
+    @Query("SELECT id, content_hash, perceptual_hash FROM media_files WHERE deleted_at IS NULL AND content_hash IS NOT NULL AND content_hash != '' AND (segment_index IS NULL OR segment_index = 0) ORDER BY created_date DESC")
+    List<MediaHashes> getHashesSync();
+
 }
\ No newline at end of file
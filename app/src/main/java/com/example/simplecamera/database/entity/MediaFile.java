@@ -2,10 +2,12 @@ package com.example.simplecamera.database.entity;
 // MediaFile.java
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
 
-@Entity(tableName = "media_files")
+@Entity(tableName = "media_files",
+        indices = {@Index("deleted_at"), @Index("content_hash"), @Index("perceptual_hash")})
 public class MediaFile {
     @PrimaryKey(autoGenerate = true)
     public long id;
@@ -22,6 +24,33 @@ public class MediaFile {
     @ColumnInfo(name = "duration") // for video, in milliseconds
     public Long duration;
 
+    @ColumnInfo(name = "size_bytes") // for video, bytes reported by the encoder
+    public Long sizeBytes;
+
+    @ColumnInfo(name = "bitrate_bps") // for video, average bitrate
+    public Long bitrateBps;
+
+    @ColumnInfo(name = "shot_score") // for photo, best-shot score in [0, 1], null until scored
+    public Double shotScore;
+
+    @ColumnInfo(name = "best_shot", defaultValue = "0") // best photo of a quick sequence
+    public boolean bestShot;
+
+    @ColumnInfo(name = "recording_session") // for video, start time of the recording the segment belongs to
+    public Long recordingSession;
+
+    @ColumnInfo(name = "segment_index") // for video, 0-based segment number within the recording
+    public Integer segmentIndex;
+
+    @ColumnInfo(name = "deleted_at") // soft-delete tombstone time, null while the item is live
+    public Long deletedAt;
+
+    @ColumnInfo(name = "content_hash") // SHA-256 of the file bytes (hex), "" if unreadable, null until hashed
+    public String contentHash;
+
+    @ColumnInfo(name = "perceptual_hash") // for photo, 64-bit dHash of a downsampled decode
+    public Long perceptualHash;
+
     // 空构造函数，Room所需
     public MediaFile() {}
 
@@ -48,4 +77,25 @@ public class MediaFile {
 
     public Long getDuration() { return duration; }
     public void setDuration(Long duration) { this.duration = duration; }
+
+    public Long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(Long sizeBytes) { this.sizeBytes = sizeBytes; }
+
+    public Long getBitrateBps() { return bitrateBps; }
+    public void setBitrateBps(Long bitrateBps) { this.bitrateBps = bitrateBps; }
+
+    public Double getShotScore() { return shotScore; }
+    public void setShotScore(Double shotScore) { this.shotScore = shotScore; }
+
+    public boolean isBestShot() { return bestShot; }
+    public void setBestShot(boolean bestShot) { this.bestShot = bestShot; }
+
+    public Long getRecordingSession() { return recordingSession; }
+    public void setRecordingSession(Long recordingSession) { this.recordingSession = recordingSession; }
+
+    public Integer getSegmentIndex() { return segmentIndex; }
+    public void setSegmentIndex(Integer segmentIndex) { this.segmentIndex = segmentIndex; }
+
+    public Long getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(Long deletedAt) { this.deletedAt = deletedAt; }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.example.simplecamera.database.entity;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * media_files 中去重用到的几列
+ */
+public class MediaHashes {
+    public long id;
+
+    @ColumnInfo(name = "content_hash")
+    public String contentHash;
+
+    @ColumnInfo(name = "perceptual_hash")
+    public Long perceptualHash;
+}
@@ -0,0 +1,185 @@
+package com.example.simplecamera.database.repository;
+
+import android.app.PendingIntent;
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MediaFileRemover：删除媒体文件本身，逐项报告结果。
+ * MediaStore URI 每 URI_BATCH 个一组用 applyBatch 删除，整组失败时逐项重试；
+ * API 30+ 上没有写权限的条目（例如重装前拍摄的）报告为 NEEDS_CONSENT，由调用方攒齐后用 createDeleteRequest 请用户确认。
+ * 文件路径在常驻的小线程池中并行删除（空闲时线程退出），Q 以下再按 _data 批量清掉 MediaStore 中可能存在的记录。
+ * 要删除的条目已不存在时视为删除成功。
+ */
+final class MediaFileRemover {
+    private static final String TAG = "MediaFileRemover";
+
+    private static final int URI_BATCH = 100;
+    private static final int FILE_WORKERS = 3;
+    private static final long FILE_WORKER_IDLE_MS = 30_000;
+    // _data IN (...) 每条语句的参数个数
+    private static final int SQL_CHUNK = 400;
+
+    enum Outcome {
+        REMOVED,
+        // 需要用户确认，见 createDeleteRequest
+        NEEDS_CONSENT,
+        FAILED
+    }
+
+    static final class Result {
+        // 按输入顺序
+        final Map<String, Outcome> outcomes;
+
+        Result(Map<String, Outcome> outcomes) {
+            this.outcomes = Collections.unmodifiableMap(outcomes);
+        }
+
+        List<String> with(Outcome outcome) {
+            List<String> paths = new ArrayList<>();
+            for (Map.Entry<String, Outcome> entry : outcomes.entrySet()) {
+                if (entry.getValue() == outcome) paths.add(entry.getKey());
+            }
+            return paths;
+        }
+    }
+
+    private final ContentResolver resolver;
+    // 各批共用，不为每批新建线程池
+    private final ThreadPoolExecutor filePool;
+
+    MediaFileRemover(Context context) {
+        this.resolver = context.getContentResolver();
+        AtomicInteger count = new AtomicInteger();
+        this.filePool = new ThreadPoolExecutor(FILE_WORKERS, FILE_WORKERS, FILE_WORKER_IDLE_MS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "remover-" + count.incrementAndGet()));
+        this.filePool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 删除给定的 content:// URI 或文件路径（阻塞，不能在主线程调用）
+     */
+    Result remove(List<String> pathsOrUris) {
+        Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        List<String> uris = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        for (String pathOrUri : pathsOrUris) {
+            if (pathOrUri == null || outcomes.containsKey(pathOrUri)) continue;
+            outcomes.put(pathOrUri, Outcome.FAILED);
+            if (pathOrUri.startsWith("content://")) uris.add(pathOrUri);
+            else files.add(pathOrUri);
+        }
+
+        for (int start = 0; start < uris.size(); start += URI_BATCH) {
+            removeUriBatch(uris.subList(start, Math.min(uris.size(), start + URI_BATCH)), outcomes);
+        }
+        if (!files.isEmpty()) removeFiles(files, outcomes);
+        return new Result(outcomes);
+    }
+
+    /**
+     * 为 NEEDS_CONSENT 的条目创建一个系统删除确认请求；API 30 以下或创建失败时返回 null
+     */
+    PendingIntent createDeleteRequest(List<String> uris) {
+        if (uris.isEmpty() || Build.VERSION.SDK_INT < Build.VERSION_CODES.R) return null;
+        List<Uri> parsed = new ArrayList<>(uris.size());
+        for (String uri : uris) parsed.add(Uri.parse(uri));
+        try {
+            return MediaStore.createDeleteRequest(resolver, parsed);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to create delete request for " + uris.size() + " items", e);
+            return null;
+        }
+    }
+
+    private void removeUriBatch(List<String> batch, Map<String, Outcome> outcomes) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(batch.size());
+        for (String uri : batch) operations.add(ContentProviderOperation.newDelete(Uri.parse(uri)).build());
+        try {
+            resolver.applyBatch(MediaStore.AUTHORITY, operations);
+            // 删除 0 行说明条目已经不在了，同样算作已删除
+            for (String uri : batch) outcomes.put(uri, Outcome.REMOVED);
+            return;
+        } catch (Exception e) {
+            // MediaStore 的批量操作不是事务，失败项之前的可能已删除；逐项重试，已删除的再删一次返回 0
+            Log.w(TAG, "Batch delete of " + batch.size() + " items failed, retrying one by one: " + e);
+        }
+        for (String uri : batch) outcomes.put(uri, removeUri(Uri.parse(uri)));
+    }
+
+    private Outcome removeUri(Uri uri) {
+        try {
+            resolver.delete(uri, null, null);
+            return Outcome.REMOVED;
+        } catch (SecurityException e) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) return Outcome.NEEDS_CONSENT;
+            Log.w(TAG, "No permission to delete " + uri, e);
+            return Outcome.FAILED;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to delete " + uri, e);
+            return Outcome.FAILED;
+        }
+    }
+
+    private void removeFiles(List<String> paths, Map<String, Outcome> outcomes) {
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>(paths.size());
+            for (String path : paths) {
+                tasks.add(() -> {
+                    File file = new File(path.startsWith("file://") ? path.substring("file://".length()) : path);
+                    return file.delete() || !file.exists();
+                });
+            }
+            List<Future<Boolean>> results = filePool.invokeAll(tasks);
+            List<String> removed = new ArrayList<>(paths.size());
+            for (int i = 0; i < paths.size(); i++) {
+                boolean ok;
+                try {
+                    ok = results.get(i).get();
+                } catch (Exception e) {
+                    ok = false;
+                }
+                outcomes.put(paths.get(i), ok ? Outcome.REMOVED : Outcome.FAILED);
+                if (ok) removed.add(paths.get(i));
+            }
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) removeLegacyEntries(removed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Q 以下文件可能被媒体扫描收录过，按路径清掉残留记录；失败不影响结果
+    @SuppressWarnings("deprecation")
+    private void removeLegacyEntries(List<String> paths) {
+        Uri files = MediaStore.Files.getContentUri("external");
+        for (int start = 0; start < paths.size(); start += SQL_CHUNK) {
+            List<String> chunk = paths.subList(start, Math.min(paths.size(), start + SQL_CHUNK));
+            StringBuilder selection = new StringBuilder(MediaStore.MediaColumns.DATA).append(" IN (");
+            for (int i = 0; i < chunk.size(); i++) selection.append(i == 0 ? "?" : ",?");
+            selection.append(')');
+            try {
+                resolver.delete(files, selection.toString(), chunk.toArray(new String[0]));
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to remove MediaStore entries for deleted files", e);
+            }
+        }
+    }
+}
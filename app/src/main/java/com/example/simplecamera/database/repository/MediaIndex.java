@@ -0,0 +1,418 @@
+package com.example.simplecamera.database.repository;
+
+import com.example.simplecamera.database.entity.MediaFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MediaIndex：图库列表的列式内存索引，按拍摄时间倒序（同一时间按 id 倒序）。
+ * 每一列是一个基本类型数组，不为每一项创建 MediaFile 与装箱对象；路径拆成共享的目录前缀与文件名。
+ * 实例不可变，修改方法返回新实例，未改动的列在新旧实例之间共享。
+ * 按 id 查找走排序后的 id 列，按时间查找在时间列上二分，均为 O(log n)。
+ */
+public final class MediaIndex {
+    public static final MediaIndex EMPTY = new MediaIndex(0, new long[0], new long[0], new byte[0], new int[0],
+            new long[0], new int[0], new long[0], new long[0], new double[0], new byte[0], new String[]{""},
+            new short[0], new String[0], new long[0], new int[0]);
+
+    // 没有值时的占位
+    public static final int NO_DURATION = -1;
+    public static final long NO_SESSION = -1;
+    public static final int NO_SEGMENT = -1;
+    public static final long NO_SIZE = -1;
+    public static final long NO_BITRATE = -1;
+
+    private static final byte FLAG_BEST_SHOT = 1;
+
+    private final int size;
+    private final long[] ids;
+    private final long[] dates;
+    private final byte[] types;
+    private final int[] durations;
+    private final long[] sessions;
+    private final int[] segments;
+    private final long[] sizes;
+    private final long[] bitrates;
+    // 未打分为 NaN
+    private final double[] scores;
+    private final byte[] flags;
+    // 路径 = prefixes[prefixRefs[i]] + names[i]，prefixes[0] 恒为空串
+    private final String[] prefixes;
+    private final short[] prefixRefs;
+    private final String[] names;
+    // 按 id 升序排列的 id 及其在列表中的位置，增删时与列一起归并维护
+    private final long[] sortedIds;
+    private final int[] positionsById;
+
+    private MediaIndex(int size, long[] ids, long[] dates, byte[] types, int[] durations, long[] sessions,
+                       int[] segments, long[] sizes, long[] bitrates, double[] scores, byte[] flags,
+                       String[] prefixes, short[] prefixRefs, String[] names, long[] sortedIds, int[] positionsById) {
+        this.size = size;
+        this.ids = ids;
+        this.dates = dates;
+        this.types = types;
+        this.durations = durations;
+        this.sessions = sessions;
+        this.segments = segments;
+        this.sizes = sizes;
+        this.bitrates = bitrates;
+        this.scores = scores;
+        this.flags = flags;
+        this.prefixes = prefixes;
+        this.prefixRefs = prefixRefs;
+        this.names = names;
+        this.sortedIds = sortedIds;
+        this.positionsById = positionsById;
+    }
+
+    private MediaIndex(Columns columns, String[] prefixes, long[] sortedIds, int[] positionsById) {
+        this(columns.size, columns.ids, columns.dates, columns.types, columns.durations, columns.sessions,
+                columns.segments, columns.sizes, columns.bitrates, columns.scores, columns.flags, prefixes,
+                columns.prefixRefs, columns.names, sortedIds, positionsById);
+    }
+
+    /**
+     * 由任意顺序的 MediaFile 构建
+     */
+    public static MediaIndex of(Collection<MediaFile> files) {
+        return EMPTY.withAdded(files);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int position) {
+        return ids[position];
+    }
+
+    public long date(int position) {
+        return dates[position];
+    }
+
+    public int type(int position) {
+        return types[position];
+    }
+
+    /**
+     * 视频时长（毫秒），没有时为 NO_DURATION
+     */
+    public int duration(int position) {
+        return durations[position];
+    }
+
+    public String path(int position) {
+        return prefixes[prefixRefs[position]].concat(names[position]);
+    }
+
+    /**
+     * 分段录像的会话，没有时为 NO_SESSION
+     */
+    public long session(int position) {
+        return sessions[position];
+    }
+
+    /**
+     * 分段录像的段序，不是分段录像时为 NO_SEGMENT
+     */
+    public int segment(int position) {
+        return segments[position];
+    }
+
+    /**
+     * 文件大小（字节），未知时为 NO_SIZE
+     */
+    public long sizeBytes(int position) {
+        return sizes[position];
+    }
+
+    /**
+     * 视频平均码率，未知时为 NO_BITRATE
+     */
+    public long bitrateBps(int position) {
+        return bitrates[position];
+    }
+
+    /**
+     * 择优分数，未打分时为 NaN
+     */
+    public double shotScore(int position) {
+        return scores[position];
+    }
+
+    public boolean isBestShot(int position) {
+        return (flags[position] & FLAG_BEST_SHOT) != 0;
+    }
+
+    /**
+     * 不存在时返回 -1
+     */
+    public int positionOfId(long id) {
+        int k = Arrays.binarySearch(sortedIds, id);
+        return k >= 0 ? positionsById[k] : -1;
+    }
+
+    /**
+     * 第一个早于 date 拍摄的位置，即拍摄时间不早于 date 的条目数
+     */
+    public int firstOlderThan(long date) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dates[mid] >= date) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * 按路径查找，从最新的条目开始线性扫描；不存在时返回 -1
+     */
+    public int positionOfPath(String path) {
+        if (path == null) return -1;
+        for (int i = 0; i < size; i++) {
+            String prefix = prefixes[prefixRefs[i]];
+            if (path.startsWith(prefix) && path.regionMatches(prefix.length(), names[i], 0, names[i].length())
+                    && path.length() == prefix.length() + names[i].length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 取出一项，供点击、删除、导出等少量使用的场景；列表中展示与操作用到的字段都原样保留，
+     * 哈希与墓碑时间不在索引中，需要时按 id 查数据库
+     */
+    public MediaFile toMediaFile(int position) {
+        MediaFile file = new MediaFile(path(position), types[position], dates[position],
+                durations[position] != NO_DURATION ? Long.valueOf(durations[position]) : null);
+        file.id = ids[position];
+        file.recordingSession = sessions[position] != NO_SESSION ? sessions[position] : null;
+        file.segmentIndex = segments[position] != NO_SEGMENT ? segments[position] : null;
+        file.sizeBytes = sizes[position] != NO_SIZE ? sizes[position] : null;
+        file.bitrateBps = bitrates[position] != NO_BITRATE ? bitrates[position] : null;
+        file.shotScore = Double.isNaN(scores[position]) ? null : scores[position];
+        file.bestShot = isBestShot(position);
+        return file;
+    }
+
+    /**
+     * 合并新增条目，已存在的 id 会被替换。只排序新增的一批，再与现有的列和 id 表各归并一次
+     */
+    public MediaIndex withAdded(Collection<MediaFile> added) {
+        if (added.isEmpty()) return this;
+        List<MediaFile> incoming = new ArrayList<>(added);
+        Collections.sort(incoming, (a, b) -> compareNewestFirst(a.createdDate, a.id, b.createdDate, b.id));
+        long[] replaced = new long[incoming.size()];
+        int replacedCount = 0;
+        for (MediaFile file : incoming) {
+            if (positionOfId(file.id) >= 0) replaced[replacedCount++] = file.id;
+        }
+        MediaIndex base = replacedCount > 0 ? without(Arrays.copyOf(replaced, replacedCount)) : this;
+        return base.merge(incoming);
+    }
+
+    /**
+     * 删除给定 id，不存在的 id 忽略
+     */
+    public MediaIndex without(long[] removedIds) {
+        int[] newPositions = new int[size];
+        int dropped = 0;
+        for (long id : removedIds) {
+            int position = positionOfId(id);
+            if (position >= 0 && newPositions[position] != -1) {
+                newPositions[position] = -1;
+                dropped++;
+            }
+        }
+        if (dropped == 0) return this;
+        int n = size - dropped;
+        Columns columns = new Columns(n);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (newPositions[i] == -1) continue;
+            columns.copy(this, i, j);
+            newPositions[i] = j++;
+        }
+        long[] newSortedIds = new long[n];
+        int[] newPositionsById = new int[n];
+        j = 0;
+        for (int k = 0; k < size; k++) {
+            int position = newPositions[positionsById[k]];
+            if (position == -1) continue;
+            newSortedIds[j] = sortedIds[k];
+            newPositionsById[j++] = position;
+        }
+        return new MediaIndex(columns, prefixes, newSortedIds, newPositionsById);
+    }
+
+    /**
+     * 更新分数，只复制分数列
+     */
+    public MediaIndex withShotScore(long id, double score) {
+        int position = positionOfId(id);
+        if (position < 0) return this;
+        double[] newScores = scores.clone();
+        newScores[position] = score;
+        return new MediaIndex(size, ids, dates, types, durations, sessions, segments, sizes, bitrates, newScores,
+                flags, prefixes, prefixRefs, names, sortedIds, positionsById);
+    }
+
+    /**
+     * 组内只保留 bestId 一张的标记，只复制标记列
+     */
+    public MediaIndex withBestShot(long bestId, Collection<Long> groupIds) {
+        byte[] newFlags = null;
+        for (Long id : groupIds) {
+            int position = positionOfId(id);
+            if (position < 0) continue;
+            byte flag = id == bestId ? (byte) (flags[position] | FLAG_BEST_SHOT)
+                    : (byte) (flags[position] & ~FLAG_BEST_SHOT);
+            if (flag == flags[position]) continue;
+            if (newFlags == null) newFlags = flags.clone();
+            newFlags[position] = flag;
+        }
+        if (newFlags == null) return this;
+        return new MediaIndex(size, ids, dates, types, durations, sessions, segments, sizes, bitrates, scores,
+                newFlags, prefixes, prefixRefs, names, sortedIds, positionsById);
+    }
+
+    // incoming 已按倒序排列且不含本索引中的 id
+    private MediaIndex merge(List<MediaFile> incoming) {
+        int m = incoming.size();
+        int n = size + m;
+        Columns columns = new Columns(n);
+        Map<String, Integer> prefixPool = new HashMap<>();
+        List<String> newPrefixes = new ArrayList<>(Arrays.asList(prefixes));
+        for (int p = 0; p < prefixes.length; p++) prefixPool.put(prefixes[p], p);
+        // 原有条目与新增条目各自的新位置
+        int[] oldToNew = new int[size];
+        int[] incomingPositions = new int[m];
+
+        int i = 0;
+        int k = 0;
+        for (int j = 0; j < n; j++) {
+            MediaFile next = k < m ? incoming.get(k) : null;
+            if (next == null || (i < size && compareNewestFirst(dates[i], ids[i], next.createdDate, next.id) < 0)) {
+                columns.copy(this, i, j);
+                oldToNew[i++] = j;
+                continue;
+            }
+            columns.set(j, next);
+            String path = next.filePath != null ? next.filePath : "";
+            int split = path.lastIndexOf('/') + 1;
+            String prefix = path.substring(0, split);
+            Integer ref = prefixPool.get(prefix);
+            if (ref == null && newPrefixes.size() <= Short.MAX_VALUE) {
+                ref = newPrefixes.size();
+                newPrefixes.add(prefix);
+                prefixPool.put(prefix, ref);
+            }
+            if (ref != null) {
+                columns.prefixRefs[j] = (short) (int) ref;
+                columns.names[j] = path.substring(split);
+            } else {
+                // 前缀池已满，整条路径放在文件名列
+                columns.prefixRefs[j] = 0;
+                columns.names[j] = path;
+            }
+            incomingPositions[k++] = j;
+        }
+
+        // id 表：新增的一批按 id 排序后与原有的 id 表归并
+        Integer[] byId = new Integer[m];
+        for (int t = 0; t < m; t++) byId[t] = t;
+        Arrays.sort(byId, (a, b) -> Long.compare(incoming.get(a).id, incoming.get(b).id));
+        long[] newSortedIds = new long[n];
+        int[] newPositionsById = new int[n];
+        int a = 0;
+        int b = 0;
+        for (int j = 0; j < n; j++) {
+            if (b >= m || (a < size && sortedIds[a] < incoming.get(byId[b]).id)) {
+                newSortedIds[j] = sortedIds[a];
+                newPositionsById[j] = oldToNew[positionsById[a++]];
+            } else {
+                newSortedIds[j] = incoming.get(byId[b]).id;
+                newPositionsById[j] = incomingPositions[byId[b++]];
+            }
+        }
+        return new MediaIndex(columns, newPrefixes.toArray(new String[0]), newSortedIds, newPositionsById);
+    }
+
+    private static int compareNewestFirst(long dateA, long idA, long dateB, long idB) {
+        int byDate = Long.compare(dateB, dateA);
+        return byDate != 0 ? byDate : Long.compare(idB, idA);
+    }
+
+    /**
+     * 构建新实例时逐行填充的各列（路径前缀池由调用方维护）
+     */
+    private static final class Columns {
+        final int size;
+        final long[] ids;
+        final long[] dates;
+        final byte[] types;
+        final int[] durations;
+        final long[] sessions;
+        final int[] segments;
+        final long[] sizes;
+        final long[] bitrates;
+        final double[] scores;
+        final byte[] flags;
+        final short[] prefixRefs;
+        final String[] names;
+
+        Columns(int size) {
+            this.size = size;
+            ids = new long[size];
+            dates = new long[size];
+            types = new byte[size];
+            durations = new int[size];
+            sessions = new long[size];
+            segments = new int[size];
+            sizes = new long[size];
+            bitrates = new long[size];
+            scores = new double[size];
+            flags = new byte[size];
+            prefixRefs = new short[size];
+            names = new String[size];
+        }
+
+        void copy(MediaIndex from, int i, int j) {
+            ids[j] = from.ids[i];
+            dates[j] = from.dates[i];
+            types[j] = from.types[i];
+            durations[j] = from.durations[i];
+            sessions[j] = from.sessions[i];
+            segments[j] = from.segments[i];
+            sizes[j] = from.sizes[i];
+            bitrates[j] = from.bitrates[i];
+            scores[j] = from.scores[i];
+            flags[j] = from.flags[i];
+            prefixRefs[j] = from.prefixRefs[i];
+            names[j] = from.names[i];
+        }
+
+        // 路径两列由调用方填
+        void set(int j, MediaFile file) {
+            ids[j] = file.id;
+            dates[j] = file.createdDate;
+            types[j] = (byte) file.fileType;
+            durations[j] = file.duration != null ? (int) Math.min(Integer.MAX_VALUE, file.duration) : NO_DURATION;
+            sessions[j] = file.recordingSession != null ? file.recordingSession : NO_SESSION;
+            segments[j] = file.segmentIndex != null ? file.segmentIndex : NO_SEGMENT;
+            sizes[j] = file.sizeBytes != null ? file.sizeBytes : NO_SIZE;
+            bitrates[j] = file.bitrateBps != null ? file.bitrateBps : NO_BITRATE;
+            scores[j] = file.shotScore != null ? file.shotScore : Double.NaN;
+            flags[j] = file.bestShot ? FLAG_BEST_SHOT : 0;
+        }
+    }
+}
@@ -1,84 +1,629 @@
 package com.example.simplecamera.database.repository;
 
-import android.app.Application;
-import android.os.Handler;
-import android.os.Looper;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
-import androidx.lifecycle.LiveData;
-
+import com.example.simplecamera.analysis.DuplicateFinder;
+import com.example.simplecamera.concurrent.TaskScheduler;
 import com.example.simplecamera.database.AppDatabase;
 import com.example.simplecamera.database.dao.MediaFileDao;
 import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.entity.MediaHashes;
+import com.example.simplecamera.metrics.CaptureTracer;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.UnaryOperator;
 
+/**
+ * MediaRepository：进程内唯一的媒体仓库。
+ * 启动时从数据库加载一次图库列表到列式内存索引 MediaIndex，之后由本类的插入、删除、更新同步维护索引，
+ * 每次变化向观察者发布增量事件（新增、删除、更新的 id）及新的索引，界面不再重新查询数据库。
+ * 索引不可变，每次变化替换为新实例，观察者可以直接持有。
+ * 删除为软删除：先打墓碑、立即从索引移除，可在时限内撤销，之后由 JOBS 通道上的任务分批删除文件，
+ * 只清理文件确实删掉的行。
+ */
 public class MediaRepository {
     private static final String TAG = "MediaRepository";
+
+    private static volatile MediaRepository instance;
+
+    public static MediaRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MediaRepository.class) {
+                if (instance == null) instance = new MediaRepository(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 一次增量变化；version 连续递增，观察者发现跳号时应改用快照整体刷新
+     */
+    public static final class ChangeEvent {
+        public final long version;
+        // 初次加载：没有增量，直接使用快照
+        public final boolean reload;
+        public final List<Long> added;
+        public final List<Long> removed;
+        public final List<Long> updated;
+
+        ChangeEvent(long version, boolean reload, List<Long> added, List<Long> removed, List<Long> updated) {
+            this.version = version;
+            this.reload = reload;
+            this.added = Collections.unmodifiableList(added);
+            this.removed = Collections.unmodifiableList(removed);
+            this.updated = Collections.unmodifiableList(updated);
+        }
+
+        @Override
+        public String toString() {
+            return "v" + version + (reload ? " reload" : "") + " +" + added.size() + " -" + removed.size()
+                    + " ~" + updated.size();
+        }
+    }
+
+    /**
+     * 清理阶段删除文件的结果，主线程回调
+     */
+    public interface DeletionListener {
+        /**
+         * 部分文件需要用户在系统确认框中同意才能删除，结果交给 onDeleteConsentResult
+         */
+        void onDeleteConsentRequired(PendingIntent request, int count);
+
+        /**
+         * 这些文件没能删除，已恢复到图库
+         */
+        void onDeleteFailed(List<String> filePaths);
+    }
+
+    private static final class PendingConsent {
+        final PendingIntent request;
+        final List<MediaFile> files;
+
+        PendingConsent(PendingIntent request, List<MediaFile> files) {
+            this.request = request;
+            this.files = files;
+        }
+    }
+
+    public interface ChangeListener {
+        /**
+         * 主线程回调。index 为变化后的图库列表（按拍摄时间倒序，分段录像只含第一段）
+         */
+        void onMediaChanged(MediaIndex index, ChangeEvent event);
+    }
+
+    /**
+     * 软删除后可以撤销的时限，墓碑超过该时限才会被清理
+     */
+    public static final long UNDO_WINDOW_MS = 10_000;
+    // 撤销时限过后再等一会儿，避开紧接着的连续删除
+    private static final long PURGE_DELAY_MS = 5_000;
+    private static final int PURGE_BATCH = 200;
+    // 每条语句的 id 个数，id 与会话合计不超过 SQLite 的 999 个参数
+    private static final int SQL_CHUNK = 400;
+    // 数据库通道已满时，主线程提交的任务隔多久重新排队
+    private static final long DB_RETRY_DELAY_MS = 50;
+    // 等待用户确认删除的墓碑时间，大于任何真实时间，不会被清理任务选中
+    private static final long AWAITING_CONSENT = Long.MAX_VALUE;
+
+    private final AppDatabase db;
+    private final MediaFileRemover remover;
     private final MediaFileDao mediaFileDao;
-    private final ExecutorService executorService;
-    private final Handler mainHandler;
+    // 所有读写都走调度器的数据库通道，按提交顺序执行；加载任务最先提交。
+    // 通道已满时主线程的提交不等待而是被拒绝，由 runOnDb 稍后重新排队
+    private final Executor dbExecutor;
+    private final Executor mainExecutor;
+    private final CopyOnWriteArrayList<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 内存索引，只在数据库通道上替换
+    private MediaIndex index = MediaIndex.EMPTY;
+    private volatile boolean loaded = false;
+    private long version = 0;
 
-    public MediaRepository(Application application) {
-        AppDatabase db = AppDatabase.getDatabase(application);
+    // 清理任务
+    private final Object purgeTag = new Object();
+    private Future<?> pendingPurge;
+    private DeletionListener deletionListener;
+    // 同一时间只有一个确认框；框打开期间新出现的需要确认的条目先攒在 consentBacklog，结果回来后合成下一个请求
+    private PendingConsent pendingConsent;
+    private final List<MediaFile> consentBacklog = new ArrayList<>();
+
+    private MediaRepository(Context context) {
+        db = AppDatabase.getDatabase(context);
+        remover = new MediaFileRemover(context);
         mediaFileDao = db.mediaFileDao();
-        executorService = Executors.newSingleThreadExecutor();
-        mainHandler = new Handler(Looper.getMainLooper());
+        dbExecutor = this::runOnDb;
+        mainExecutor = TaskScheduler.get().mainExecutor();
+        dbExecutor.execute(this::load);
+    }
+
+    private void runOnDb(Runnable task) {
+        TaskScheduler.get().submit(TaskScheduler.Lane.DATABASE, null, task, () -> retryOnDb(task));
+    }
+
+    // 重新排队发生在计时线程上，那里同样不会等待；仍然满就再隔一段时间
+    private void retryOnDb(Runnable task) {
+        Log.w(TAG, "Database lane full, retrying in " + DB_RETRY_DELAY_MS + "ms");
+        TaskScheduler.get().schedule(TaskScheduler.Lane.DATABASE, null, task, DB_RETRY_DELAY_MS,
+                () -> retryOnDb(task));
+    }
+
+    private void load() {
+        // 上次进程在等待用户确认时退出，这些墓碑重新进入清理队列
+        mediaFileDao.retimeTombstones(AWAITING_CONSENT, 0L);
+        List<MediaFile> listed = mediaFileDao.getListedMediaFilesSync();
+        MediaIndex loadedIndex = MediaIndex.of(listed);
+        Log.d(TAG, "Loaded " + loadedIndex.size() + " media rows into the index");
+        publish(current -> loadedIndex, true, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        // 清理上次进程退出前留下的墓碑
+        schedulePurge(PURGE_DELAY_MS);
+    }
+
+    /**
+     * 注册观察者；索引已加载时立即（在主线程）收到一次 reload 事件
+     */
+    public void addListener(ChangeListener listener) {
+        listeners.addIfAbsent(listener);
+        if (!loaded) return;
+        mainExecutor.execute(() -> {
+            if (!listeners.contains(listener)) return;
+            MediaIndex current;
+            long currentVersion;
+            synchronized (this) {
+                current = index;
+                currentVersion = version;
+            }
+            listener.onMediaChanged(current, new ChangeEvent(currentVersion, true,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        });
+    }
+
+    public void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 当前图库列表
+     */
+    public synchronized MediaIndex getIndex() {
+        return index;
     }
 
-    public interface MediaDeleteCallback {
-        void onSuccess();
-        void onError(String errorMessage);
+    /**
+     * since 之后拍摄的照片，按拍摄时间升序。索引尚未加载时直接查询数据库（不能在主线程调用）
+     */
+    public List<MediaFile> getPhotosSince(long since) {
+        if (!loaded) return mediaFileDao.getPhotosSinceSync(since);
+        MediaIndex current = getIndex();
+        List<MediaFile> photos = new ArrayList<>();
+        for (int i = current.firstOlderThan(since) - 1; i >= 0; i--) {
+            if (current.type(i) == 0) photos.add(current.toMediaFile(i));
+        }
+        return photos;
     }
 
+    /**
+     * 同一次录像的各段，按段序排列。索引只含第一段，直接查询数据库（不能在主线程调用）
+     */
+    public List<MediaFile> getSessionSegments(long recordingSession) {
+        return mediaFileDao.getSessionSegmentsSync(recordingSession);
+    }
+
+    /**
+     * 尚未计算去重哈希的条目，最多 limit 个（不能在主线程调用）
+     */
+    public List<MediaFile> getUnhashed(int limit) {
+        return mediaFileDao.getUnhashedSync(limit);
+    }
+
+    /**
+     * 在一个事务中写回一批条目的 contentHash 与 perceptualHash（不能在主线程调用）
+     */
+    public void updateHashes(List<MediaFile> mediaFiles) {
+        if (mediaFiles.isEmpty()) return;
+        db.runInTransaction(() -> {
+            for (MediaFile file : mediaFiles) {
+                mediaFileDao.updateHashes(file.id, file.contentHash, file.perceptualHash);
+            }
+        });
+    }
+
+    /**
+     * 重复组：内容完全相同，或感知哈希汉明距离不超过 maxDistance（可传递）。
+     * 组按最新成员的拍摄时间从新到旧排列，组内同样从新到旧；尚未算出哈希的条目不参与（不能在主线程调用）
+     */
+    public List<List<MediaFile>> getDuplicates(int maxDistance) {
+        long start = SystemClock.elapsedRealtime();
+        List<MediaHashes> rows = mediaFileDao.getHashesSync();
+        DuplicateFinder finder = new DuplicateFinder(rows.size());
+        for (MediaHashes row : rows) finder.add(row.id, row.contentHash, row.perceptualHash);
+        List<DuplicateFinder.Group> groups = finder.group(maxDistance);
+
+        MediaIndex current = getIndex();
+        List<List<MediaFile>> duplicates = new ArrayList<>(groups.size());
+        for (DuplicateFinder.Group group : groups) {
+            List<MediaFile> files = new ArrayList<>(group.ids.length);
+            for (long id : group.ids) {
+                int position = current.positionOfId(id);
+                if (position >= 0) files.add(current.toMediaFile(position));
+            }
+            if (files.size() > 1) duplicates.add(files);
+        }
+        Log.d(TAG, "Found " + duplicates.size() + " duplicate groups among " + rows.size() + " items in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return duplicates;
+    }
+
+    /**
+     * 软删除：立即从索引移除并通知界面，数据库中只打上墓碑；
+     * 超过撤销时限后由后台清理任务分批删除数据库行与文件
+     */
+    public void softDelete(List<MediaFile> mediaFiles) {
+        if (mediaFiles == null || mediaFiles.isEmpty()) return;
+        long[] ids = new long[mediaFiles.size()];
+        List<Long> removed = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mediaFiles.get(i).id;
+            removed.add(ids[i]);
+        }
+        update(current -> current.without(ids), new ArrayList<>(), removed, new ArrayList<>());
+
+        long deletedAt = System.currentTimeMillis();
+        dbExecutor.execute(() -> {
+            try {
+                forEachChunk(mediaFiles, (chunkIds, sessions) ->
+                        mediaFileDao.markDeleted(chunkIds, sessions, deletedAt));
+                Log.d(TAG, "Soft deleted " + mediaFiles.size() + " media files");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to mark " + mediaFiles.size() + " media files deleted", e);
+            }
+        });
+        schedulePurge(UNDO_WINDOW_MS + PURGE_DELAY_MS);
+    }
 
     /**
-     * 批量删除媒体文件
+     * 撤销软删除，条目立即回到索引
      */
-    public void deleteMediaFiles(List<MediaFile> mediaFiles, MediaDeleteCallback callback) {
-        executorService.execute(() -> {
+    public void restore(List<MediaFile> mediaFiles) {
+        if (mediaFiles == null || mediaFiles.isEmpty()) return;
+        List<Long> added = new ArrayList<>(mediaFiles.size());
+        for (MediaFile file : mediaFiles) added.add(file.id);
+        update(current -> current.withAdded(mediaFiles), added, new ArrayList<>(), new ArrayList<>());
+        dbExecutor.execute(() -> {
             try {
-                int deletedCount = 0;
-                for (MediaFile mediaFile : mediaFiles) {
-                    try {
-                        mediaFileDao.delete(mediaFile);
-                        deletedCount++;
-                        Log.d(TAG, "Deleted media file: " + mediaFile.getFilePath());
-                    } catch (Exception e) {
-                        Log.e(TAG, "Failed to delete media file: " + mediaFile.getFilePath(), e);
-                    }
+                forEachChunk(mediaFiles, mediaFileDao::restore);
+                Log.d(TAG, "Restored " + mediaFiles.size() + " media files");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to restore " + mediaFiles.size() + " media files", e);
+            }
+        });
+    }
+
+    private interface ChunkAction {
+        void apply(List<Long> ids, List<Long> sessions);
+    }
+
+    // 按 SQLite 参数个数上限分批，在同一个事务中执行；分段录像按会话连同其余各段一起处理
+    private void forEachChunk(List<MediaFile> mediaFiles, ChunkAction action) {
+        db.runInTransaction(() -> {
+            for (int start = 0; start < mediaFiles.size(); start += SQL_CHUNK) {
+                List<MediaFile> chunk = mediaFiles.subList(start, Math.min(mediaFiles.size(), start + SQL_CHUNK));
+                List<Long> ids = new ArrayList<>(chunk.size());
+                List<Long> sessions = new ArrayList<>();
+                for (MediaFile file : chunk) {
+                    ids.add(file.id);
+                    if (file.recordingSession != null) sessions.add(file.recordingSession);
                 }
+                action.apply(ids, sessions);
+            }
+        });
+    }
 
-                final int finalDeletedCount = deletedCount;
-                mainHandler.post(() -> {
-                    if (callback != null) {
-                        if (finalDeletedCount > 0) {
-                            callback.onSuccess();
-                        } else {
-                            callback.onError("没有成功删除任何文件");
-                        }
-                    }
-                });
+    /**
+     * 在 delayMs 之后清理过了撤销时限的墓碑；重复调用只保留最后一次
+     */
+    public synchronized void schedulePurge(long delayMs) {
+        if (pendingPurge != null) pendingPurge.cancel(false);
+        pendingPurge = TaskScheduler.get().schedule(TaskScheduler.Lane.JOBS, purgeTag, this::purgeBatch, delayMs,
+                this::onPurgeRejected);
+    }
 
-            } catch (Exception e) {
-                Log.e(TAG, "Error in batch deletion", e);
-                mainHandler.post(() -> {
-                    if (callback != null) {
-                        callback.onError("批量删除失败: " + e.getMessage());
-                    }
-                });
+    // 长任务通道已满，稍后再清理；墓碑留在数据库里不会丢
+    private void onPurgeRejected() {
+        Log.w(TAG, "Purge rejected by a full job queue, retrying later");
+        schedulePurge(PURGE_DELAY_MS);
+    }
+
+    // 每批删除 PURGE_BATCH 行，批与批之间重新排队，让出 JOBS 通道。
+    // 只清理文件确实删掉的行；删不掉的恢复为正常条目，需要用户确认的标记后攒起来，整轮结束时合成一个确认请求
+    private void purgeBatch() {
+        long start = SystemClock.elapsedRealtime();
+        List<MediaFile> batch = mediaFileDao.getTombstonesSync(System.currentTimeMillis() - UNDO_WINDOW_MS, PURGE_BATCH);
+        if (batch.isEmpty()) {
+            requestDeleteConsent();
+            return;
+        }
+        List<String> paths = new ArrayList<>(batch.size());
+        for (MediaFile file : batch) paths.add(file.filePath);
+        MediaFileRemover.Result result = remover.remove(paths);
+
+        List<Long> purged = new ArrayList<>(batch.size());
+        List<MediaFile> failed = new ArrayList<>();
+        List<MediaFile> awaitingConsent = new ArrayList<>();
+        for (MediaFile file : batch) {
+            MediaFileRemover.Outcome outcome = file.filePath != null ? result.outcomes.get(file.filePath) : null;
+            if (outcome == null || outcome == MediaFileRemover.Outcome.REMOVED) {
+                purged.add(file.id);
+            } else if (outcome == MediaFileRemover.Outcome.NEEDS_CONSENT) {
+                awaitingConsent.add(file);
+            } else {
+                failed.add(file);
+            }
+        }
+        if (!purged.isEmpty()) mediaFileDao.purge(purged);
+        if (!awaitingConsent.isEmpty()) {
+            mediaFileDao.setDeletedAt(idsOf(awaitingConsent), AWAITING_CONSENT);
+            synchronized (this) {
+                consentBacklog.addAll(awaitingConsent);
+            }
+        }
+        if (!failed.isEmpty()) {
+            for (MediaFile file : failed) Log.w(TAG, "Could not delete " + file.filePath + ", restoring it");
+            reinstate(failed);
+            notifyDeleteFailed(failed);
+        }
+        Log.d(TAG, "Purged " + purged.size() + "/" + batch.size() + " tombstones (" + awaitingConsent.size()
+                + " awaiting consent, " + failed.size() + " failed) in " + (SystemClock.elapsedRealtime() - start) + "ms");
+        if (batch.size() == PURGE_BATCH) {
+            TaskScheduler.get().submit(TaskScheduler.Lane.JOBS, purgeTag, this::purgeBatch, this::onPurgeRejected);
+        } else {
+            requestDeleteConsent();
+        }
+    }
+
+    /**
+     * 注册删除结果的观察者（同一时间只有一个），回调在主线程；有等待中的确认请求时立即收到
+     */
+    public void setDeletionListener(DeletionListener listener) {
+        PendingConsent pending;
+        synchronized (this) {
+            deletionListener = listener;
+            pending = pendingConsent;
+        }
+        if (listener != null && pending != null) {
+            mainExecutor.execute(() -> listener.onDeleteConsentRequired(pending.request, pending.files.size()));
+        }
+    }
+
+    public synchronized void clearDeletionListener(DeletionListener listener) {
+        if (deletionListener == listener) deletionListener = null;
+    }
+
+    /**
+     * 用户对系统删除确认框的选择：同意时系统已删除文件，清理对应的行；拒绝时恢复为正常条目。
+     * 确认框打开期间攒下的条目随后合成下一个请求
+     */
+    public void onDeleteConsentResult(boolean granted) {
+        PendingConsent pending;
+        synchronized (this) {
+            pending = pendingConsent;
+            pendingConsent = null;
+        }
+        if (pending == null) return;
+        dbExecutor.execute(() -> {
+            if (granted) {
+                mediaFileDao.purge(idsOf(pending.files));
+                Log.d(TAG, "Purged " + pending.files.size() + " rows after user consent");
+            } else {
+                reinstate(pending.files);
+                Log.d(TAG, "User declined deleting " + pending.files.size() + " files, restored");
             }
         });
+        // 与清理任务同一通道，不会同时创建两个请求
+        TaskScheduler.get().submit(TaskScheduler.Lane.JOBS, purgeTag, this::requestDeleteConsent, this::onPurgeRejected);
     }
 
-    public LiveData<List<MediaFile>> getAllMediaFiles() {
-        return mediaFileDao.getAllMediaFiles();
+    // 在 JOBS 通道上调用：没有打开的确认框时，把攒下的条目合成一个请求交给界面
+    private void requestDeleteConsent() {
+        List<MediaFile> files;
+        synchronized (this) {
+            if (pendingConsent != null || consentBacklog.isEmpty()) return;
+            files = new ArrayList<>(consentBacklog);
+            consentBacklog.clear();
+        }
+        List<String> uris = new ArrayList<>(files.size());
+        for (MediaFile file : files) uris.add(file.filePath);
+        PendingIntent request = remover.createDeleteRequest(uris);
+        if (request == null) {
+            reinstate(files);
+            notifyDeleteFailed(files);
+            return;
+        }
+        DeletionListener listener;
+        synchronized (this) {
+            pendingConsent = new PendingConsent(request, files);
+            listener = deletionListener;
+        }
+        Log.d(TAG, files.size() + " files need user consent to delete");
+        if (listener != null) {
+            mainExecutor.execute(() -> listener.onDeleteConsentRequired(request, files.size()));
+        }
+    }
+
+    private void notifyDeleteFailed(List<MediaFile> failed) {
+        DeletionListener listener;
+        synchronized (this) {
+            listener = deletionListener;
+        }
+        if (listener == null) return;
+        List<String> paths = new ArrayList<>(failed.size());
+        for (MediaFile file : failed) paths.add(file.filePath);
+        mainExecutor.execute(() -> listener.onDeleteFailed(paths));
+    }
+
+    // 文件仍在：去掉墓碑并放回索引
+    private void reinstate(List<MediaFile> files) {
+        mediaFileDao.setDeletedAt(idsOf(files), null);
+        List<MediaFile> listed = new ArrayList<>();
+        List<Long> added = new ArrayList<>();
+        for (MediaFile file : files) {
+            file.deletedAt = null;
+            if (!isListed(file)) continue;
+            listed.add(file);
+            added.add(file.id);
+        }
+        if (!listed.isEmpty()) update(current -> current.withAdded(listed), added, new ArrayList<>(), new ArrayList<>());
+    }
+
+    private static List<Long> idsOf(List<MediaFile> files) {
+        List<Long> ids = new ArrayList<>(files.size());
+        for (MediaFile file : files) ids.add(file.id);
+        return ids;
     }
 
     public void insertMediaFile(MediaFile mediaFile) {
-        executorService.execute(() -> mediaFileDao.insert(mediaFile));
+        insertMediaFile(mediaFile, null);
+    }
+
+    /**
+     * 插入一条记录，完成（或失败）后在数据库线程上执行 onInserted（可为 null）
+     */
+    public void insertMediaFile(MediaFile mediaFile, Runnable onInserted) {
+        dbExecutor.execute(() -> {
+            try {
+                CaptureTracer tracer = CaptureTracer.get();
+                tracer.mark(mediaFile.getFilePath(), CaptureTracer.Stage.DB_START);
+                mediaFile.id = mediaFileDao.insert(mediaFile);
+                tracer.mark(mediaFile.getFilePath(), CaptureTracer.Stage.DB_INSERTED);
+                if (!isListed(mediaFile)) return;
+                update(current -> current.withAdded(Collections.singletonList(mediaFile)),
+                        Collections.singletonList(mediaFile.id), new ArrayList<>(), new ArrayList<>());
+            } finally {
+                if (onInserted != null) onInserted.run();
+            }
+        });
     }
 
-}
\ No newline at end of file
+    /**
+     * 批量插入，Room 在同一个事务中完成
+     */
+    public void insertMediaFiles(List<MediaFile> mediaFiles) {
+        if (mediaFiles == null || mediaFiles.isEmpty()) return;
+        dbExecutor.execute(() -> {
+            CaptureTracer tracer = CaptureTracer.get();
+            for (MediaFile file : mediaFiles) tracer.mark(file.getFilePath(), CaptureTracer.Stage.DB_START);
+            List<Long> ids = mediaFileDao.insertAll(mediaFiles);
+            for (MediaFile file : mediaFiles) tracer.mark(file.getFilePath(), CaptureTracer.Stage.DB_INSERTED);
+            List<MediaFile> listed = new ArrayList<>(ids.size());
+            List<Long> added = new ArrayList<>(ids.size());
+            for (int i = 0; i < mediaFiles.size(); i++) {
+                MediaFile file = mediaFiles.get(i);
+                file.id = ids.get(i);
+                if (!isListed(file)) continue;
+                listed.add(file);
+                added.add(file.id);
+            }
+            if (!listed.isEmpty()) update(current -> current.withAdded(listed), added, new ArrayList<>(), new ArrayList<>());
+        });
+    }
+
+    /**
+     * 导入已有文件：在数据库通道上一次事务批量插入并更新索引，等它完成后返回，返回后即已落库（阻塞，后台线程调用）
+     */
+    public void insertImported(List<MediaFile> mediaFiles) throws InterruptedException {
+        if (mediaFiles.isEmpty()) return;
+        FutureTask<Void> insert = new FutureTask<>(() -> {
+            List<Long> ids = mediaFileDao.insertAll(mediaFiles);
+            List<MediaFile> listed = new ArrayList<>(ids.size());
+            List<Long> added = new ArrayList<>(ids.size());
+            for (int i = 0; i < mediaFiles.size(); i++) {
+                MediaFile file = mediaFiles.get(i);
+                file.id = ids.get(i);
+                if (!isListed(file)) continue;
+                listed.add(file);
+                added.add(file.id);
+            }
+            if (!listed.isEmpty()) update(current -> current.withAdded(listed), added, new ArrayList<>(), new ArrayList<>());
+        }, null);
+        dbExecutor.execute(insert);
+        try {
+            insert.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to insert " + mediaFiles.size() + " imported files", e.getCause());
+        }
+    }
+
+    /**
+     * 已入库的全部路径（含已软删除的），阻塞
+     */
+    public Set<String> getKnownPathsSync() {
+        return new HashSet<>(mediaFileDao.getAllFilePathsSync());
+    }
+
+    public void updateShotScore(long id, double score) {
+        dbExecutor.execute(() -> {
+            mediaFileDao.updateShotScore(id, score);
+            if (getIndex().positionOfId(id) < 0) return;
+            update(current -> current.withShotScore(id, score), new ArrayList<>(), new ArrayList<>(),
+                    Collections.singletonList(id));
+        });
+    }
+
+    /**
+     * 组内只保留 bestId 一张的标记
+     */
+    public void markBestShot(long bestId, List<Long> groupIds) {
+        dbExecutor.execute(() -> {
+            mediaFileDao.markBestShot(bestId, groupIds);
+            MediaIndex current = getIndex();
+            List<Long> updated = new ArrayList<>();
+            for (Long id : groupIds) {
+                int position = current.positionOfId(id);
+                if (position >= 0 && current.isBestShot(position) != (id == bestId)) updated.add(id);
+            }
+            if (!updated.isEmpty()) {
+                update(latest -> latest.withBestShot(bestId, groupIds), new ArrayList<>(), new ArrayList<>(), updated);
+            }
+        });
+    }
+
+    // 只列出照片、普通视频与分段录像的第一段
+    private static boolean isListed(MediaFile file) {
+        return file.segmentIndex == null || file.segmentIndex == 0;
+    }
+
+    // 在锁内基于最新索引做修改，软删除与撤销在主线程调用，其余在数据库通道上
+    private void update(UnaryOperator<MediaIndex> change, List<Long> added, List<Long> removed,
+                        List<Long> updated) {
+        publish(change, false, added, removed, updated);
+    }
+
+    // 换上新索引并在主线程通知观察者；索引与版本号一起更新
+    private void publish(UnaryOperator<MediaIndex> change, boolean reload, List<Long> added, List<Long> removed,
+                         List<Long> updated) {
+        MediaIndex next;
+        ChangeEvent event;
+        synchronized (this) {
+            next = change.apply(index);
+            index = next;
+            loaded = true;
+            event = new ChangeEvent(++version, reload, added, removed, updated);
+        }
+        mainExecutor.execute(() -> {
+            for (ChangeListener listener : listeners) listener.onMediaChanged(next, event);
+        });
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.simplecamera.export;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.example.simplecamera.concurrent.TaskScheduler;
+import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaRepository;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * MediaExporter：把选中的照片与视频打包成一个 ZIP，写入用户通过 SAF 选择的文档。
+ * 分段录制的视频会展开成全部分段；单个文件打不开时跳过并记录，不影响其余文件。
+ * 在调度器的 JOBS 通道上运行，进度按 PROGRESS_INTERVAL_MS 节流后在主线程回调；
+ * 取消或失败时删除不完整的目标文档。
+ */
+public class MediaExporter {
+    private static final String TAG = "MediaExporter";
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    public interface Listener {
+        void onProgress(int filesDone, int filesTotal, long bytesDone, long bytesTotal);
+
+        /**
+         * skipped 为无法读取而未打包的文件
+         */
+        void onFinished(int exported, List<String> skipped, long zipBytes);
+
+        void onCancelled();
+
+        void onFailed(String reason);
+    }
+
+    private final Context context;
+    private final List<MediaFile> selection;
+    private final Uri destination;
+    private final Listener listener;
+    private final MediaRepository repository;
+    private volatile ZipStreamWriter writer;
+    private volatile boolean cancelled = false;
+
+    public MediaExporter(Context context, List<MediaFile> selection, Uri destination, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.selection = new ArrayList<>(selection);
+        this.destination = destination;
+        this.listener = listener;
+        this.repository = MediaRepository.getInstance(context);
+    }
+
+    public void start() {
+        TaskScheduler.get().submit(TaskScheduler.Lane.JOBS, this, this::run,
+                () -> TaskScheduler.get().runOnMain(() -> listener.onFailed("too many background jobs, try again later")));
+    }
+
+    /**
+     * 取消导出，可在任意线程调用；完成后回调 onCancelled
+     */
+    public void cancel() {
+        cancelled = true;
+        ZipStreamWriter current = writer;
+        if (current != null) current.cancel();
+    }
+
+    private void run() {
+        ContentResolver resolver = context.getContentResolver();
+        long start = SystemClock.elapsedRealtime();
+        List<MediaFile> files = expandSessions(selection);
+        // 开始前定下总字节数，进度百分比才有意义；数据库里没有大小的逐个查询
+        long[] sizes = new long[files.size()];
+        long bytesTotal = 0;
+        for (int i = 0; i < files.size(); i++) {
+            MediaFile file = files.get(i);
+            sizes[i] = file.sizeBytes != null ? file.sizeBytes : statSize(resolver, file.filePath);
+            bytesTotal += sizes[i];
+        }
+
+        List<String> skipped = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        long[] bytesDone = {0};
+        long[] lastReport = {0};
+        int exported = 0;
+        // 覆盖已有文件时必须截断（"w" 不保证），否则新的归档比旧文件短时尾部会留下旧数据
+        try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(destination, "wt")) {
+            if (pfd == null) throw new IOException("Cannot open " + destination);
+            try (FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor());
+                 FileChannel channel = out.getChannel();
+                 ZipStreamWriter zip = new ZipStreamWriter(channel)) {
+                writer = zip;
+                if (cancelled) zip.cancel();
+                for (int i = 0; i < files.size(); i++) {
+                    MediaFile file = files.get(i);
+                    ParcelFileDescriptor source;
+                    try {
+                        source = openSource(resolver, file.filePath);
+                    } catch (IOException | SecurityException | IllegalArgumentException e) {
+                        Log.w(TAG, "Skipping " + file.filePath + ": " + e);
+                        skipped.add(file.filePath);
+                        bytesTotal -= sizes[i];
+                        continue;
+                    }
+                    // 条目写到一半时出错 ZIP 已不完整，只能整体失败
+                    try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(source);
+                         FileChannel sourceChannel = in.getChannel()) {
+                        long size = sourceChannel.size();
+                        // 预估与实际大小不符时以实际大小为准
+                        bytesTotal += size - sizes[i];
+                        int filesDone = i;
+                        long total = bytesTotal;
+                        long fileStart = bytesDone[0];
+                        String name = uniqueName(entryName(resolver, file), usedNames);
+                        zip.putFile(name, sourceChannel, file.createdDate, isCompressed(name), delta -> {
+                            bytesDone[0] += delta;
+                            long now = SystemClock.elapsedRealtime();
+                            if (now - lastReport[0] >= PROGRESS_INTERVAL_MS) {
+                                lastReport[0] = now;
+                                postProgress(filesDone, files.size(), bytesDone[0], total);
+                            }
+                        });
+                        bytesDone[0] = fileStart + size;
+                        exported++;
+                    }
+                }
+                postProgress(files.size(), files.size(), bytesDone[0], bytesTotal);
+                zip.finish();
+                long zipBytes = zip.bytesWritten();
+                long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+                Log.d(TAG, String.format(Locale.US, "Exported %d files (%d bytes) in %dms (%.1f MB/s)",
+                        exported, zipBytes, elapsed, zipBytes / 1048576.0 * 1000 / elapsed));
+                int count = exported;
+                TaskScheduler.get().runOnMain(() -> listener.onFinished(count, skipped, zipBytes));
+            }
+        } catch (CancellationException e) {
+            Log.d(TAG, "Export cancelled");
+            deleteDestination(resolver);
+            TaskScheduler.get().runOnMain(listener::onCancelled);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Export failed", e);
+            deleteDestination(resolver);
+            TaskScheduler.get().runOnMain(() -> listener.onFailed(e.getMessage()));
+        } finally {
+            writer = null;
+        }
+    }
+
+    // 分段录制只在列表中出现第一段，导出时补齐其余分段
+    private List<MediaFile> expandSessions(List<MediaFile> mediaFiles) {
+        List<MediaFile> expanded = new ArrayList<>(mediaFiles.size());
+        for (MediaFile file : mediaFiles) {
+            if (file.recordingSession == null) {
+                expanded.add(file);
+                continue;
+            }
+            List<MediaFile> segments = repository.getSessionSegments(file.recordingSession);
+            if (segments.isEmpty()) expanded.add(file);
+            else expanded.addAll(segments);
+        }
+        return expanded;
+    }
+
+    private void postProgress(int filesDone, int filesTotal, long bytesDone, long bytesTotal) {
+        TaskScheduler.get().runOnMain(() -> listener.onProgress(filesDone, filesTotal, bytesDone, bytesTotal));
+    }
+
+    // 文件大小，查不到时为 0
+    private static long statSize(ContentResolver resolver, String pathOrUri) {
+        if (pathOrUri == null) return 0;
+        if (!pathOrUri.startsWith("content://")) return new File(pathOrUri).length();
+        try (Cursor cursor = resolver.query(Uri.parse(pathOrUri),
+                new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) return Math.max(0, cursor.getLong(0));
+        } catch (RuntimeException e) {
+            Log.w(TAG, "No size for " + pathOrUri, e);
+        }
+        return 0;
+    }
+
+    private static ParcelFileDescriptor openSource(ContentResolver resolver, String pathOrUri) throws IOException {
+        if (pathOrUri.startsWith("content://")) {
+            ParcelFileDescriptor pfd = resolver.openFileDescriptor(Uri.parse(pathOrUri), "r");
+            if (pfd == null) throw new IOException("Cannot open " + pathOrUri);
+            return pfd;
+        }
+        return ParcelFileDescriptor.open(new File(pathOrUri), ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    private static String entryName(ContentResolver resolver, MediaFile file) {
+        String pathOrUri = file.filePath;
+        if (!pathOrUri.startsWith("content://")) return new File(pathOrUri).getName();
+        try (Cursor cursor = resolver.query(Uri.parse(pathOrUri),
+                new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) return cursor.getString(0);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "No display name for " + pathOrUri, e);
+        }
+        return (file.fileType == 1 ? "VID_" : "IMG_") + file.id + (file.fileType == 1 ? ".mp4" : ".jpg");
+    }
+
+    // 同名文件加序号：IMG_1.jpg、IMG_1 (1).jpg……
+    private static String uniqueName(String name, Set<String> used) {
+        if (used.add(name)) return name;
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            String candidate = base + " (" + i + ")" + extension;
+            if (used.add(candidate)) return candidate;
+        }
+    }
+
+    // 已压缩的格式再压缩只会浪费时间
+    static boolean isCompressed(String name) {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".heic")
+                || lower.endsWith(".png") || lower.endsWith(".webp")
+                || lower.endsWith(".mp4") || lower.endsWith(".3gp") || lower.endsWith(".webm");
+    }
+
+    private void deleteDestination(ContentResolver resolver) {
+        try {
+            DocumentsContract.deleteDocument(resolver, destination);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to delete incomplete export " + destination, e);
+        }
+    }
+}
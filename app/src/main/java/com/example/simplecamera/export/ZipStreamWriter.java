@@ -0,0 +1,354 @@
+package com.example.simplecamera.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * ZipStreamWriter：把文件逐个流式写成 ZIP，目标只需是可顺序写入的通道（例如 SAF 文档的文件描述符）。
+ * 已压缩的媒体（JPEG、MP4）用 STORE：先映射源文件算出 CRC，写好本地头后用 FileChannel.transferTo 交给内核拷贝；
+ * 其他文件用 DEFLATE，经固定大小的缓冲压缩，大小与 CRC 写在数据描述符里。
+ * 内存占用与文件大小和数量无关（每个条目只在中央目录里保留几十字节），超过 4GB 时自动使用 ZIP64。
+ * 每写完一块回调进度并检查 cancel()，取消时抛出 CancellationException，目标中留下的是不完整的 ZIP。
+ */
+public final class ZipStreamWriter implements Closeable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // 每次 transferTo / 映射的上限，决定进度回调与取消检查的粒度
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final long MAP_CHUNK = 64L * 1024 * 1024;
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    // DEFLATE 的输出可能略大于输入，超过这个大小的源在本地头里预先声明 ZIP64
+    private static final long DEFLATE_ZIP64_THRESHOLD = ZIP64_MAGIC - (ZIP64_MAGIC >> 8);
+
+    /**
+     * 每写出一块数据回调一次，参数是这一块的源字节数
+     */
+    public interface ProgressListener {
+        void onBytesWritten(long sourceBytes);
+    }
+
+    // 写中央目录需要的条目信息
+    private static final class CentralEntry {
+        final byte[] name;
+        final int flags;
+        final int method;
+        final int dosTime;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long offset;
+
+        CentralEntry(byte[] name, int flags, int method, int dosTime, long crc, long compressedSize, long size,
+                     long offset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer header = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] deflateInput = new byte[BUFFER_SIZE];
+    private final byte[] deflateOutput = new byte[BUFFER_SIZE];
+    private final CRC32 crc = new CRC32();
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private Deflater deflater;
+    private long written = 0;
+    private boolean finished = false;
+    private volatile boolean cancelled = false;
+
+    public ZipStreamWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * 可在任意线程调用；写入线程在下一块数据前抛出 CancellationException
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 已写出的字节数（ZIP 文件当前大小）
+     */
+    public long bytesWritten() {
+        return written;
+    }
+
+    /**
+     * 写入一个条目，源从当前内容的开头读到结尾。store 为 true 时原样存储
+     */
+    public void putFile(String name, FileChannel source, long lastModified, boolean store,
+                        ProgressListener listener) throws IOException {
+        if (finished) throw new IllegalStateException("ZIP already finished");
+        checkCancelled();
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 0xFFFF) throw new IOException("Entry name too long: " + name);
+        long size = source.size();
+        int dosTime = dosTime(lastModified);
+        long offset = written;
+        if (store) {
+            long checksum = checksum(source, size);
+            boolean zip64 = size >= ZIP64_MAGIC;
+            writeLocalHeader(nameBytes, FLAG_UTF8, 0, dosTime, checksum, size, size, zip64);
+            transfer(source, size, listener);
+            entries.add(new CentralEntry(nameBytes, FLAG_UTF8, 0, dosTime, checksum, size, size, offset));
+        } else {
+            int flags = FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+            boolean zip64 = size >= DEFLATE_ZIP64_THRESHOLD;
+            writeLocalHeader(nameBytes, flags, Deflater.DEFLATED, dosTime, 0, 0, 0, zip64);
+            long compressed = deflate(source, listener);
+            long checksum = crc.getValue();
+            long read = deflater.getBytesRead();
+            writeDataDescriptor(checksum, compressed, read, zip64);
+            entries.add(new CentralEntry(nameBytes, flags, Deflater.DEFLATED, dosTime, checksum, compressed, read,
+                    offset));
+        }
+    }
+
+    /**
+     * 写出中央目录与结尾记录；之后不能再添加条目。不会关闭目标通道
+     */
+    public void finish() throws IOException {
+        if (finished) return;
+        checkCancelled();
+        long centralStart = written;
+        for (CentralEntry entry : entries) writeCentralHeader(entry);
+        long centralSize = written - centralStart;
+        if (entries.size() >= ZIP64_MAGIC_COUNT || centralStart >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC) {
+            long zip64End = written;
+            header.clear();
+            header.putInt(ZIP64_END_SIG).putLong(44)
+                    .putShort((short) VERSION_ZIP64).putShort((short) VERSION_ZIP64)
+                    .putInt(0).putInt(0)
+                    .putLong(entries.size()).putLong(entries.size())
+                    .putLong(centralSize).putLong(centralStart);
+            header.putInt(ZIP64_LOCATOR_SIG).putInt(0).putLong(zip64End).putInt(1);
+            writeHeader();
+        }
+        int count = Math.min(entries.size(), ZIP64_MAGIC_COUNT);
+        header.clear();
+        header.putInt(END_SIG).putShort((short) 0).putShort((short) 0)
+                .putShort((short) count).putShort((short) count)
+                .putInt((int) Math.min(centralSize, ZIP64_MAGIC))
+                .putInt((int) Math.min(centralStart, ZIP64_MAGIC))
+                .putShort((short) 0);
+        writeHeader();
+        finished = true;
+    }
+
+    @Override
+    public void close() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    // STORE 需要在数据之前写出 CRC：映射源文件计算（不经过 Java 堆），映射失败时退回到缓冲读取
+    private long checksum(FileChannel source, long size) throws IOException {
+        crc.reset();
+        long position = 0;
+        try {
+            while (position < size) {
+                checkCancelled();
+                long length = Math.min(MAP_CHUNK, size - position);
+                MappedByteBuffer mapped = source.map(FileChannel.MapMode.READ_ONLY, position, length);
+                crc.update(mapped);
+                position += length;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            while (position < size) {
+                checkCancelled();
+                buffer.clear();
+                int read = source.read(buffer, position);
+                if (read < 0) throw new IOException("Source shrank while exporting");
+                buffer.flip();
+                crc.update(buffer);
+                position += read;
+            }
+        }
+        return crc.getValue();
+    }
+
+    // 交给内核拷贝；transferTo 不支持（返回 0）时经直接缓冲拷贝这一块
+    private void transfer(FileChannel source, long size, ProgressListener listener) throws IOException {
+        long position = 0;
+        while (position < size) {
+            checkCancelled();
+            long length = Math.min(TRANSFER_CHUNK, size - position);
+            long moved = source.transferTo(position, length, out);
+            if (moved <= 0) moved = copy(source, position, length);
+            position += moved;
+            written += moved;
+            if (listener != null) listener.onBytesWritten(moved);
+        }
+    }
+
+    private long copy(FileChannel source, long position, long length) throws IOException {
+        buffer.clear();
+        if (length < buffer.capacity()) buffer.limit((int) length);
+        int read = source.read(buffer, position);
+        if (read <= 0) throw new IOException("Source shrank while exporting");
+        buffer.flip();
+        while (buffer.hasRemaining()) out.write(buffer);
+        return read;
+    }
+
+    private long deflate(FileChannel source, ProgressListener listener) throws IOException {
+        if (deflater == null) deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.reset();
+        crc.reset();
+        long compressed = 0;
+        long position = 0;
+        ByteBuffer input = ByteBuffer.wrap(deflateInput);
+        while (true) {
+            checkCancelled();
+            input.clear();
+            int read = source.read(input, position);
+            if (read < 0) break;
+            position += read;
+            crc.update(deflateInput, 0, read);
+            deflater.setInput(deflateInput, 0, read);
+            while (!deflater.needsInput()) compressed += drainDeflater();
+            if (listener != null) listener.onBytesWritten(read);
+        }
+        deflater.finish();
+        while (!deflater.finished()) compressed += drainDeflater();
+        return compressed;
+    }
+
+    private int drainDeflater() throws IOException {
+        int length = deflater.deflate(deflateOutput);
+        ByteBuffer chunk = ByteBuffer.wrap(deflateOutput, 0, length);
+        while (chunk.hasRemaining()) out.write(chunk);
+        written += length;
+        return length;
+    }
+
+    private void writeLocalHeader(byte[] name, int flags, int method, int dosTime, long checksum,
+                                  long compressedSize, long size, boolean zip64) throws IOException {
+        header.clear();
+        header.putInt(LOCAL_HEADER_SIG)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) flags)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt((int) checksum)
+                .putInt((int) (zip64 ? ZIP64_MAGIC : compressedSize))
+                .putInt((int) (zip64 ? ZIP64_MAGIC : size))
+                .putShort((short) name.length)
+                .putShort((short) (zip64 ? 20 : 0));
+        writeHeader();
+        writeBytes(name);
+        if (zip64) {
+            header.clear();
+            header.putShort((short) 0x0001).putShort((short) 16).putLong(size).putLong(compressedSize);
+            writeHeader();
+        }
+    }
+
+    private void writeDataDescriptor(long checksum, long compressedSize, long size, boolean zip64)
+            throws IOException {
+        header.clear();
+        header.putInt(DATA_DESCRIPTOR_SIG).putInt((int) checksum);
+        if (zip64) header.putLong(compressedSize).putLong(size);
+        else header.putInt((int) compressedSize).putInt((int) size);
+        writeHeader();
+    }
+
+    private void writeCentralHeader(CentralEntry entry) throws IOException {
+        boolean bigSize = entry.size >= ZIP64_MAGIC;
+        boolean bigCompressed = entry.compressedSize >= ZIP64_MAGIC;
+        boolean bigOffset = entry.offset >= ZIP64_MAGIC;
+        int extraLength = (bigSize ? 8 : 0) + (bigCompressed ? 8 : 0) + (bigOffset ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+        header.clear();
+        header.putInt(CENTRAL_HEADER_SIG)
+                .putShort((short) VERSION_ZIP64)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) entry.flags)
+                .putShort((short) entry.method)
+                .putInt(entry.dosTime)
+                .putInt((int) entry.crc)
+                .putInt((int) (bigCompressed ? ZIP64_MAGIC : entry.compressedSize))
+                .putInt((int) (bigSize ? ZIP64_MAGIC : entry.size))
+                .putShort((short) entry.name.length)
+                .putShort((short) (zip64 ? extraLength + 4 : 0))
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) (bigOffset ? ZIP64_MAGIC : entry.offset));
+        writeHeader();
+        writeBytes(entry.name);
+        if (zip64) {
+            header.clear();
+            header.putShort((short) 0x0001).putShort((short) extraLength);
+            if (bigSize) header.putLong(entry.size);
+            if (bigCompressed) header.putLong(entry.compressedSize);
+            if (bigOffset) header.putLong(entry.offset);
+            writeHeader();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        header.flip();
+        written += header.remaining();
+        while (header.hasRemaining()) out.write(header);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+        written += bytes.length;
+        while (wrapped.hasRemaining()) out.write(wrapped);
+    }
+
+    private void checkCancelled() {
+        if (cancelled) throw new CancellationException("ZIP export cancelled");
+    }
+
+    // MS-DOS 日期时间，本地时区，最早 1980 年
+    private static int dosTime(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) return (1 << 21) | (1 << 16);
+        return (year - 1980) << 25
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+}
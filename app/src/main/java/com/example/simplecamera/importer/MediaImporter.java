@@ -0,0 +1,251 @@
+package com.example.simplecamera.importer;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.example.simplecamera.concurrent.TaskScheduler;
+import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaRepository;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * MediaImporter：首次运行时把已有的 SimpleCamera 照片与视频导入 media_files。
+ * 先按 _ID 分页读取 MediaStore 中 SimpleCamera 目录下的条目，再并行遍历应用的照片目录与 Movies/SimpleCamera，
+ * 只读取大小、时间、时长等廉价元数据，每 INSERT_BATCH 条在一个事务中插入。
+ * 进度（MediaStore 已处理到的 _ID、已遍历完的目录）写入 SharedPreferences，进程被杀后从断点继续；
+ * 已入库的路径会被跳过，重复执行不会产生重复条目。运行在调度器的 JOBS 通道上。
+ */
+public class MediaImporter {
+    private static final String TAG = "MediaImporter";
+
+    private static final String PREFS = "media_import";
+    private static final String KEY_COMPLETE = "complete_v1";
+    private static final String KEY_IMAGES_AFTER_ID = "images_after_id";
+    private static final String KEY_VIDEOS_AFTER_ID = "videos_after_id";
+    private static final String KEY_ROOTS_DONE = "roots_done";
+
+    private static final int PAGE_SIZE = 500;
+    private static final int INSERT_BATCH = 500;
+
+    private static volatile MediaImporter instance;
+
+    public static MediaImporter getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MediaImporter.class) {
+                if (instance == null) instance = new MediaImporter(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final MediaRepository repository;
+    private boolean started = false;
+
+    private MediaImporter(Context context) {
+        this.context = context;
+        this.prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        this.repository = MediaRepository.getInstance(context);
+    }
+
+    /**
+     * 尚未导入完成时在后台开始（或继续）导入；每个进程只执行一次
+     */
+    public synchronized void startIfNeeded(File appStorageDir) {
+        if (started || prefs.getBoolean(KEY_COMPLETE, false)) return;
+        started = true;
+        TaskScheduler.get().submit(TaskScheduler.Lane.JOBS, this, () -> run(appStorageDir), this::onRejected);
+    }
+
+    // 长任务通道已满：允许下次 startIfNeeded 再试，断点保留在 SharedPreferences 中
+    private synchronized void onRejected() {
+        Log.w(TAG, "Import rejected by a full job queue, will retry on next start");
+        started = false;
+    }
+
+    private void run(File appStorageDir) {
+        long start = SystemClock.elapsedRealtime();
+        Set<String> known = Collections.synchronizedSet(repository.getKnownPathsSync());
+        int imported = 0;
+        try {
+            imported += importMediaStore(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, 0,
+                    Environment.DIRECTORY_PICTURES, KEY_IMAGES_AFTER_ID, known);
+            imported += importMediaStore(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, 1,
+                    Environment.DIRECTORY_MOVIES, KEY_VIDEOS_AFTER_ID, known);
+            @SuppressWarnings("deprecation")
+            File movies = new File(Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_MOVIES),
+                    "SimpleCamera");
+            imported += importDirectory(appStorageDir, known);
+            imported += importDirectory(movies, known);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Import interrupted after " + imported + " files, will resume next launch");
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            // 例如没有读取权限；保留断点，下次启动再试
+            Log.e(TAG, "Import failed after " + imported + " files", e);
+            return;
+        }
+        prefs.edit().putBoolean(KEY_COMPLETE, true).apply();
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+        Log.d(TAG, String.format(Locale.US, "Imported %d files in %dms (%.0f files/s)",
+                imported, elapsed, imported * 1000.0 / elapsed));
+    }
+
+    // 按 _ID 升序分页，每页入库后记下最后一个 _ID
+    private int importMediaStore(Uri collection, int fileType, String directory, String checkpointKey,
+                                 Set<String> known) throws InterruptedException {
+        long afterId = prefs.getLong(checkpointKey, 0);
+        boolean scoped = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+        String[] projection = {
+                MediaStore.MediaColumns._ID,
+                MediaStore.MediaColumns.DATA,
+                MediaStore.MediaColumns.SIZE,
+                MediaStore.MediaColumns.DATE_ADDED,
+                MediaStore.Images.ImageColumns.DATE_TAKEN,
+                fileType == 1 ? MediaStore.Video.VideoColumns.DURATION : MediaStore.MediaColumns._ID,
+        };
+        String location = scoped ? MediaStore.MediaColumns.RELATIVE_PATH + " LIKE ?"
+                : MediaStore.MediaColumns.DATA + " LIKE ?";
+        String locationArg = scoped ? directory + "/SimpleCamera%" : "%/" + directory + "/SimpleCamera/%";
+        int imported = 0;
+        while (true) {
+            List<MediaFile> page = new ArrayList<>(PAGE_SIZE);
+            long lastId = afterId;
+            try (Cursor cursor = queryPage(collection, projection, MediaStore.MediaColumns._ID + " > ? AND " + location,
+                    new String[]{String.valueOf(afterId), locationArg})) {
+                if (cursor == null) break;
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    String uri = ContentUris.withAppendedId(collection, lastId).toString();
+                    String dataPath = cursor.getString(1);
+                    // 同一个文件可能既有 URI 又有路径，两种形式都算已知；只认得其中一种时把另一种也记下，
+                    // 否则随后遍历目录时会按路径再导入一次
+                    if (known.contains(uri) || (dataPath != null && known.contains(dataPath))) {
+                        known.add(uri);
+                        if (dataPath != null) known.add(dataPath);
+                        continue;
+                    }
+                    long taken = cursor.getLong(4);
+                    long created = taken > 0 ? taken : cursor.getLong(3) * 1000;
+                    MediaFile file = new MediaFile(uri, fileType, created,
+                            fileType == 1 && !cursor.isNull(5) ? cursor.getLong(5) : null);
+                    file.sizeBytes = cursor.isNull(2) ? null : cursor.getLong(2);
+                    page.add(file);
+                    known.add(uri);
+                    if (dataPath != null) known.add(dataPath);
+                }
+            }
+            if (lastId == afterId) break;
+            repository.insertImported(page);
+            imported += page.size();
+            afterId = lastId;
+            prefs.edit().putLong(checkpointKey, afterId).apply();
+        }
+        return imported;
+    }
+
+    // R 起 MediaStore 不再接受写在排序里的 LIMIT，O 及以上改用查询参数
+    private Cursor queryPage(Uri collection, String[] projection, String selection, String[] selectionArgs) {
+        String sortOrder = MediaStore.MediaColumns._ID + " ASC";
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            Bundle args = new Bundle();
+            args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+            args.putInt(ContentResolver.QUERY_ARG_LIMIT, PAGE_SIZE);
+            return context.getContentResolver().query(collection, projection, args, null);
+        }
+        return context.getContentResolver().query(collection, projection, selection, selectionArgs,
+                sortOrder + " LIMIT " + PAGE_SIZE);
+    }
+
+    private int importDirectory(File root, Set<String> known) throws InterruptedException {
+        if (root == null || !root.isDirectory()) return 0;
+        Set<String> rootsDone = prefs.getStringSet(KEY_ROOTS_DONE, Collections.emptySet());
+        if (rootsDone.contains(root.getAbsolutePath())) return 0;
+
+        BatchInserter inserter = new BatchInserter(known);
+        TaskScheduler scheduler = TaskScheduler.get();
+        new ParallelDirectoryWalker(scheduler.parallelPool(), scheduler::yieldToCapture)
+                .walk(root, MediaImporter::isMediaFile, inserter);
+        int imported = inserter.flush();
+        // 最后一批没插入完就不能把这个目录记为已完成
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedException("Import of " + root + " interrupted");
+
+        Set<String> updated = new HashSet<>(rootsDone);
+        updated.add(root.getAbsolutePath());
+        prefs.edit().putStringSet(KEY_ROOTS_DONE, updated).apply();
+        return imported;
+    }
+
+    // 遍历线程并发调用，攒够一批在一个事务中插入；插入被中断时抛出，由 walk() 在导入线程上重新抛出。
+    // 已插入的部分凭去重在下次跳过
+    private final class BatchInserter implements ParallelDirectoryWalker.Sink {
+        private final Set<String> known;
+        private final List<MediaFile> pending = new ArrayList<>(INSERT_BATCH);
+        private int inserted = 0;
+
+        BatchInserter(Set<String> known) {
+            this.known = known;
+        }
+
+        @Override
+        public void accept(List<ParallelDirectoryWalker.Entry> batch) throws InterruptedException {
+            List<MediaFile> files = new ArrayList<>(batch.size());
+            for (ParallelDirectoryWalker.Entry entry : batch) {
+                if (!known.add(entry.path)) continue;
+                MediaFile file = new MediaFile(entry.path, typeOf(entry.path), entry.lastModified, null);
+                file.sizeBytes = entry.length;
+                files.add(file);
+            }
+            synchronized (this) {
+                pending.addAll(files);
+                if (pending.size() >= INSERT_BATCH) insertPending();
+            }
+        }
+
+        synchronized int flush() throws InterruptedException {
+            insertPending();
+            return inserted;
+        }
+
+        // 没插入的文件下次导入时不在已知路径中，会重新插入
+        private void insertPending() throws InterruptedException {
+            if (pending.isEmpty()) return;
+            repository.insertImported(new ArrayList<>(pending));
+            inserted += pending.size();
+            pending.clear();
+        }
+    }
+
+    private static boolean isMediaFile(String fileName) {
+        return typeOf(fileName) >= 0;
+    }
+
+    // 0 照片，1 视频，其余为 -1
+    private static int typeOf(String fileName) {
+        String lower = fileName.toLowerCase(Locale.US);
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return 0;
+        if (lower.endsWith(".mp4")) return 1;
+        return -1;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.simplecamera.importer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ParallelDirectoryWalker：在调用方给出的线程池（通常是调度器的 parallelPool）上并行遍历目录树。
+ * 每个目录是一个任务，子目录作为新任务提交；每个任务开始前先调用 beforeVisit（例如让出拍照写盘）。
+ * 命中的文件只读取长度与修改时间，按目录分批交给 Sink。
+ * 调用 walk() 的线程被中断或 Sink 抛出 InterruptedException 时停止派发，等进行中的目录结束后在调用线程上抛出。
+ */
+public class ParallelDirectoryWalker {
+    private static final int SINK_BATCH = 256;
+
+    /**
+     * 一个命中的文件
+     */
+    public static final class Entry {
+        public final String path;
+        public final long length;
+        public final long lastModified;
+
+        Entry(String path, long length, long lastModified) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public interface Filter {
+        boolean accept(String fileName);
+    }
+
+    /**
+     * 在工作线程上被并发调用，实现需要线程安全；抛出 InterruptedException 表示放弃遍历
+     */
+    public interface Sink {
+        void accept(List<Entry> batch) throws InterruptedException;
+    }
+
+    private final Executor executor;
+    private final Runnable beforeVisit;
+
+    /**
+     * @param executor    执行目录任务的线程池，生命周期由调用方管理
+     * @param beforeVisit 每个目录任务开始前在工作线程上调用，可为 null
+     */
+    public ParallelDirectoryWalker(Executor executor, Runnable beforeVisit) {
+        this.executor = executor;
+        this.beforeVisit = beforeVisit;
+    }
+
+    /**
+     * 遍历 root（阻塞），返回命中的文件数。Sink 抛出的运行时异常会终止遍历并在这里重新抛出
+     */
+    public long walk(File root, Filter filter, Sink sink) throws InterruptedException {
+        Walk walk = new Walk(filter, sink);
+        walk.submit(root);
+        try {
+            walk.done.await();
+        } catch (InterruptedException e) {
+            walk.cancelled = true;
+            awaitUninterruptibly(walk.done);
+            throw e;
+        }
+        if (walk.failure != null) throw walk.failure;
+        if (walk.cancelled) throw new InterruptedException("Walk of " + root + " interrupted");
+        return walk.matched.get();
+    }
+
+    // 已取消的任务不再访问目录，很快就会全部结束
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException ignored) {
+                // 已经要抛出中断，继续等工作线程退出
+            }
+        }
+    }
+
+    private final class Walk {
+        final Filter filter;
+        final Sink sink;
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicLong matched = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile RuntimeException failure;
+        volatile boolean cancelled;
+
+        Walk(Filter filter, Sink sink) {
+            this.filter = filter;
+            this.sink = sink;
+        }
+
+        boolean stopped() {
+            return failure != null || cancelled;
+        }
+
+        void submit(File dir) {
+            pending.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (stopped()) return;
+                        if (beforeVisit != null) beforeVisit.run();
+                        if (!stopped()) visit(dir);
+                    } catch (InterruptedException e) {
+                        cancelled = true;
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    } finally {
+                        finishOne();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                failure = e;
+                finishOne();
+            }
+        }
+
+        void finishOne() {
+            if (pending.decrementAndGet() == 0) done.countDown();
+        }
+
+        void visit(File dir) throws InterruptedException {
+            File[] children = dir.listFiles();
+            if (children == null) return;
+            List<Entry> batch = new ArrayList<>();
+            for (File child : children) {
+                if (stopped()) return;
+                String name = child.getName();
+                if (name.startsWith(".")) continue;
+                if (child.isDirectory()) {
+                    submit(child);
+                } else if (filter.accept(name)) {
+                    batch.add(new Entry(child.getPath(), child.length(), child.lastModified()));
+                    if (batch.size() >= SINK_BATCH) {
+                        deliver(batch);
+                        batch = new ArrayList<>();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) deliver(batch);
+        }
+
+        void deliver(List<Entry> batch) throws InterruptedException {
+            matched.addAndGet(batch.size());
+            sink.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.simplecamera.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * CaptureProfileStats：按拍摄预设累计实测数据（出片耗时、文件大小、内存峰值），
+ * 导出为 CSV 后可按设备档次挑选默认预设。
+ */
+public final class CaptureProfileStats {
+
+    private static final class Entry {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long shots;
+        long totalBytes;
+        long maxBytes;
+        long peakMemoryBytes;
+    }
+
+    private static final CaptureProfileStats INSTANCE = new CaptureProfileStats();
+
+    public static CaptureProfileStats get() {
+        return INSTANCE;
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private CaptureProfileStats() {
+    }
+
+    /**
+     * 记录一次拍照
+     *
+     * @param latencyMs   按下快门到文件写完
+     * @param bytes       文件大小，未知时传 -1
+     * @param memoryBytes 拍照期间采样到的最高内存占用（Java 堆 + native 堆）
+     */
+    public synchronized void record(String profile, long latencyMs, long bytes, long memoryBytes) {
+        Entry entry = entries.get(profile);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(profile, entry);
+        }
+        entry.latency.record(latencyMs);
+        entry.shots++;
+        if (bytes > 0) {
+            entry.totalBytes += bytes;
+            entry.maxBytes = Math.max(entry.maxBytes, bytes);
+        }
+        entry.peakMemoryBytes = Math.max(entry.peakMemoryBytes, memoryBytes);
+    }
+
+    public synchronized String format(String profile) {
+        Entry entry = entries.get(profile);
+        if (entry == null) return profile + ": no shots";
+        return String.format(Locale.US, "%s: %d shots, p50 %dms, p90 %dms, avg %dKB, peak mem %dMB",
+                profile, entry.shots, entry.latency.percentileMs(0.5), entry.latency.percentileMs(0.9),
+                entry.totalBytes / Math.max(1, entry.shots) / 1024, entry.peakMemoryBytes >> 20);
+    }
+
+    public synchronized String exportCsv() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("profile,shots,avg_bytes,max_bytes,peak_memory_bytes,").append(LatencyHistogram.csvHeader()).append('\n');
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            sb.append(e.getKey()).append(',')
+                    .append(entry.shots).append(',')
+                    .append(entry.totalBytes / Math.max(1, entry.shots)).append(',')
+                    .append(entry.maxBytes).append(',')
+                    .append(entry.peakMemoryBytes).append(',')
+                    .append(entry.latency.toCsvRow()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public void exportCsv(File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(exportCsv());
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.simplecamera.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * CaptureTracer：从按下快门到相册里出现这一行的全链路耗时追踪。
+ * 每次拍照分配一个 trace id，保存完成后以文件路径关联到后续的 ViewModel、数据库、LiveData 与 Adapter 阶段；
+ * 各阶段使用单调时钟打点，结束后把阶段间隔累计到直方图，并保留最近若干条供调试浮层展示。
+ */
+public final class CaptureTracer {
+
+    /**
+     * 追踪阶段，按链路先后排列
+     */
+    public enum Stage {
+        SHUTTER("shutter"),             // takePhoto 被调用
+        CAPTURE_SAVED("save"),          // 相机回调照片已保存
+        UI_DISPATCHED("ui"),            // 切回主线程
+        VIEWMODEL_SAVE("vm"),           // CameraViewModel.savePhoto
+        DB_START("queue"),              // 仓库线程开始执行
+        DB_INSERTED("db"),              // Room 插入完成
+        LIVEDATA_DELIVERED("live"),     // 相册 LiveData 收到新列表
+        ADAPTER_BOUND("bind");          // 对应条目被绑定显示
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * 一次拍照的打点记录
+     */
+    public static class Trace {
+        public final long id;
+        private final long[] stageNanos = new long[Stage.values().length];
+        private String path;
+
+        Trace(long id) {
+            this.id = id;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean has(Stage stage) {
+            return stageNanos[stage.ordinal()] != 0;
+        }
+
+        /**
+         * 该阶段距上一个已记录阶段的间隔，未记录时返回 -1
+         */
+        public long stageMs(Stage stage) {
+            int index = stage.ordinal();
+            if (index == 0 || stageNanos[index] == 0) return -1;
+            for (int prev = index - 1; prev >= 0; prev--) {
+                if (stageNanos[prev] != 0) {
+                    return TimeUnit.NANOSECONDS.toMillis(stageNanos[index] - stageNanos[prev]);
+                }
+            }
+            return -1;
+        }
+
+        public long totalMs() {
+            return TimeUnit.NANOSECONDS.toMillis(lastNanos() - stageNanos[0]);
+        }
+
+        long lastNanos() {
+            for (int i = stageNanos.length - 1; i >= 0; i--) {
+                if (stageNanos[i] != 0) return stageNanos[i];
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('#').append(id).append(" total ").append(totalMs()).append("ms |");
+            for (Stage stage : Stage.values()) {
+                long ms = stageMs(stage);
+                if (ms >= 0) sb.append(' ').append(stage.label).append(' ').append(ms);
+            }
+            return sb.toString();
+        }
+    }
+
+    public interface Listener {
+        // 在完成追踪的线程上回调，UI 需自行切换线程
+        void onTraceCompleted(Trace trace);
+    }
+
+    // 入库后迟迟没有 UI 阶段（相册未打开）即视为结束；一直没保存成功的视为失败丢弃
+    private static final long COMPLETE_AFTER_DB_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long ABANDON_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int RECENT_CAPACITY = 10;
+
+    private static final CaptureTracer INSTANCE = new CaptureTracer();
+
+    public static CaptureTracer get() {
+        return INSTANCE;
+    }
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, Trace> activeById = new HashMap<>();
+    private final Map<String, Trace> activeByPath = new HashMap<>();
+    private final ArrayDeque<Trace> recent = new ArrayDeque<>();
+    private final EnumMap<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final LatencyHistogram totalHistogram = new LatencyHistogram();
+    private volatile boolean hasPathTraces = false;
+    private volatile Listener listener;
+
+    private CaptureTracer() {
+        for (Stage stage : Stage.values()) {
+            if (stage != Stage.SHUTTER) histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 按下快门：开始一条追踪，返回 trace id
+     */
+    public long begin() {
+        long id = nextId.getAndIncrement();
+        Trace trace = new Trace(id);
+        trace.stageNanos[Stage.SHUTTER.ordinal()] = System.nanoTime();
+        List<Trace> completed;
+        synchronized (this) {
+            completed = expireLocked(trace.stageNanos[0]);
+            activeById.put(id, trace);
+        }
+        notifyCompleted(completed);
+        return id;
+    }
+
+    /**
+     * 照片已保存：记录 CAPTURE_SAVED，并把 trace 与文件路径关联，后续阶段按路径打点
+     */
+    public void attachPath(long traceId, String path) {
+        link(traceId, path, System.nanoTime());
+    }
+
+    /**
+     * 输出位置已确定但尚未写盘：只关联路径，CAPTURE_SAVED 在写盘完成后用 mark 记录
+     */
+    public void linkPath(long traceId, String path) {
+        link(traceId, path, 0);
+    }
+
+    private void link(long traceId, String path, long savedNanos) {
+        if (path == null) return;
+        synchronized (this) {
+            Trace trace = activeById.remove(traceId);
+            if (trace == null) return;
+            trace.path = path;
+            if (savedNanos != 0) trace.stageNanos[Stage.CAPTURE_SAVED.ordinal()] = savedNanos;
+            activeByPath.put(path, trace);
+            hasPathTraces = true;
+        }
+    }
+
+    /**
+     * 拍照失败，丢弃追踪
+     */
+    public synchronized void abandon(long traceId) {
+        activeById.remove(traceId);
+    }
+
+    /**
+     * 是否有等待后续阶段的追踪，供热路径（如 onBindViewHolder）快速跳过
+     */
+    public boolean hasPending() {
+        return hasPathTraces;
+    }
+
+    public void mark(String path, Stage stage) {
+        if (!hasPathTraces || path == null) return;
+        long now = System.nanoTime();
+        Trace completed = null;
+        synchronized (this) {
+            Trace trace = activeByPath.get(path);
+            if (trace == null || trace.has(stage)) return;
+            trace.stageNanos[stage.ordinal()] = now;
+            if (stage == Stage.ADAPTER_BOUND) {
+                completed = completeLocked(trace);
+            }
+        }
+        if (completed != null) notifyCompleted(Collections.singletonList(completed));
+    }
+
+    /**
+     * 相册 LiveData 收到新列表：新行按时间倒序位于列表头部，只检查前面几项
+     */
+    public void markDelivered(int size, IntFunction<String> pathAt) {
+        if (!hasPathTraces) return;
+        int pending;
+        synchronized (this) {
+            pending = activeByPath.size();
+        }
+        int limit = Math.min(size, pending + 8);
+        for (int i = 0; i < limit; i++) {
+            mark(pathAt.apply(i), Stage.LIVEDATA_DELIVERED);
+        }
+    }
+
+    /**
+     * 把已入库但长时间没有 UI 阶段的追踪收尾，返回最近完成的若干条（新的在前）
+     */
+    public List<Trace> getRecentTraces() {
+        List<Trace> completed;
+        List<Trace> result;
+        synchronized (this) {
+            completed = expireLocked(System.nanoTime());
+            result = new ArrayList<>(recent);
+        }
+        notifyCompleted(completed);
+        return result;
+    }
+
+    /**
+     * 导出各阶段直方图（CSV）
+     */
+    public String exportHistograms() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("stage,").append(LatencyHistogram.csvHeader()).append('\n');
+        for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+            sb.append(entry.getKey().label).append(',').append(entry.getValue().toCsvRow()).append('\n');
+        }
+        sb.append("total,").append(totalHistogram.toCsvRow()).append('\n');
+        return sb.toString();
+    }
+
+    public void exportHistograms(File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(exportHistograms());
+        }
+    }
+
+    private Trace completeLocked(Trace trace) {
+        activeByPath.remove(trace.path);
+        hasPathTraces = !activeByPath.isEmpty();
+        for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet()) {
+            long ms = trace.stageMs(entry.getKey());
+            if (ms >= 0) entry.getValue().record(ms);
+        }
+        totalHistogram.record(trace.totalMs());
+        recent.addFirst(trace);
+        while (recent.size() > RECENT_CAPACITY) recent.removeLast();
+        return trace;
+    }
+
+    private List<Trace> expireLocked(long now) {
+        List<Trace> completed = new ArrayList<>();
+        Iterator<Trace> pathIterator = activeByPath.values().iterator();
+        while (pathIterator.hasNext()) {
+            Trace trace = pathIterator.next();
+            if (trace.has(Stage.DB_INSERTED)) {
+                if (now - trace.lastNanos() > COMPLETE_AFTER_DB_NANOS) completed.add(trace);
+            } else if (now - trace.stageNanos[0] > ABANDON_NANOS) {
+                pathIterator.remove();
+            }
+        }
+        for (Trace trace : completed) completeLocked(trace);
+        hasPathTraces = !activeByPath.isEmpty();
+        activeById.values().removeIf(trace -> now - trace.stageNanos[0] > ABANDON_NANOS);
+        return completed;
+    }
+
+    private void notifyCompleted(List<Trace> completed) {
+        Listener l = listener;
+        if (l == null) return;
+        for (Trace trace : completed) l.onTraceCompleted(trace);
+    }
+
+    /**
+     * 调试浮层用的多行文本
+     */
+    public String formatRecent() {
+        StringBuilder sb = new StringBuilder();
+        for (Trace trace : getRecentTraces()) {
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(trace);
+        }
+        return sb.length() > 0 ? sb.toString() : "no captures traced";
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.simplecamera.metrics;
+
+import java.util.Locale;
+
+/**
+ * LatencyHistogram：按 2 的幂划分桶的毫秒级延迟直方图（1ms ~ 4096ms，另加溢出桶）。
+ * 只做计数，记录开销固定，适合长期累积后导出。
+ */
+public class LatencyHistogram {
+    private static final long[] BUCKET_UPPER_MS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048, 4096};
+
+    private final long[] counts = new long[BUCKET_UPPER_MS.length + 1];
+    private long total = 0;
+    private long sumMs = 0;
+    private long maxMs = 0;
+
+    public synchronized void record(long ms) {
+        if (ms < 0) ms = 0;
+        int bucket = BUCKET_UPPER_MS.length;
+        for (int i = 0; i < BUCKET_UPPER_MS.length; i++) {
+            if (ms < BUCKET_UPPER_MS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        counts[bucket]++;
+        total++;
+        sumMs += ms;
+        if (ms > maxMs) maxMs = ms;
+    }
+
+    public synchronized long count() {
+        return total;
+    }
+
+    public synchronized long maxMs() {
+        return maxMs;
+    }
+
+    public synchronized double meanMs() {
+        return total > 0 ? (double) sumMs / total : 0;
+    }
+
+    /**
+     * 百分位估计（返回所在桶的上界），quantile 取 0~1
+     */
+    public synchronized long percentileMs(double quantile) {
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return i < BUCKET_UPPER_MS.length ? BUCKET_UPPER_MS[i] : maxMs;
+            }
+        }
+        return maxMs;
+    }
+
+    /**
+     * CSV 表头，与 toCsvRow 的列一一对应
+     */
+    public static String csvHeader() {
+        StringBuilder sb = new StringBuilder("count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms");
+        for (long upper : BUCKET_UPPER_MS) sb.append(",lt_").append(upper);
+        sb.append(",ge_").append(BUCKET_UPPER_MS[BUCKET_UPPER_MS.length - 1]);
+        return sb.toString();
+    }
+
+    public synchronized String toCsvRow() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(total).append(',')
+                .append(String.format(Locale.US, "%.1f", meanMs())).append(',')
+                .append(percentileMs(0.5)).append(',')
+                .append(percentileMs(0.9)).append(',')
+                .append(percentileMs(0.99)).append(',')
+                .append(maxMs);
+        for (long count : counts) sb.append(',').append(count);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.simplecamera.metrics;
+
+import java.util.Locale;
+
+/**
+ * RecordingTelemetry：录像过程中某一时刻的编码统计快照（不可变）。
+ * 时长与字节数直接取自 CameraX 的 RecordingStats，码率按相邻两次状态事件的差值计算，
+ * 用于发现编码器停顿（时长不再前进）与存储写入过慢（字节增长跟不上）的问题。
+ */
+public final class RecordingTelemetry {
+
+    // 录制时长前进得比墙上时钟慢一半以上，视为编码器停顿
+    private static final double STALL_RATIO = 0.5;
+    private static final long MIN_STALL_WINDOW_MS = 1000;
+
+    public final long recordedDurationMs;   // 已编码的媒体时长
+    public final long bytesWritten;         // 已写入输出的字节数
+    public final long bitrateBps;           // 最近一个状态区间内的有效码率
+    public final long averageBitrateBps;    // 从开始到现在的平均码率
+    public final String audioState;         // 音频状态，如 ACTIVE / DISABLED / SOURCE_SILENCED
+    public final boolean stalled;           // 最近一个状态区间内编码是否停顿
+
+    public RecordingTelemetry(long recordedDurationMs, long bytesWritten, long bitrateBps,
+                              long averageBitrateBps, String audioState, boolean stalled) {
+        this.recordedDurationMs = recordedDurationMs;
+        this.bytesWritten = bytesWritten;
+        this.bitrateBps = bitrateBps;
+        this.averageBitrateBps = averageBitrateBps;
+        this.audioState = audioState;
+        this.stalled = stalled;
+    }
+
+    /**
+     * 由本次与上一次状态事件计算快照，previous 为 null 表示本次是第一条
+     *
+     * @param wallDeltaMs 两次事件之间的墙上时钟间隔
+     */
+    public static RecordingTelemetry from(long recordedDurationNanos, long bytesWritten, String audioState,
+                                          RecordingTelemetry previous, long wallDeltaMs) {
+        long durationMs = recordedDurationNanos / 1_000_000L;
+        long average = durationMs > 0 ? bytesWritten * 8_000L / durationMs : 0;
+        long bitrate = average;
+        boolean stalled = false;
+        if (previous != null && wallDeltaMs > 0) {
+            long bytesDelta = Math.max(0, bytesWritten - previous.bytesWritten);
+            bitrate = bytesDelta * 8_000L / wallDeltaMs;
+            long durationDelta = durationMs - previous.recordedDurationMs;
+            stalled = wallDeltaMs >= MIN_STALL_WINDOW_MS && durationDelta < wallDeltaMs * STALL_RATIO;
+        }
+        return new RecordingTelemetry(durationMs, bytesWritten, bitrate, average, audioState, stalled);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "duration=%dms, bytes=%d, bitrate=%dkbps, avg=%dkbps, audio=%s%s",
+                recordedDurationMs, bytesWritten, bitrateBps / 1000, averageBitrateBps / 1000, audioState,
+                stalled ? ", STALLED" : "");
+    }
+}
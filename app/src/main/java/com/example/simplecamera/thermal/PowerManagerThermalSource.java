@@ -0,0 +1,40 @@
+package com.example.simplecamera.thermal;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * PowerManagerThermalSource：基于 PowerManager 的温控状态（Android 10 及以上），
+ * 更低版本没有该接口，始终报告 STATUS_NONE。
+ */
+public class PowerManagerThermalSource implements ThermalSource {
+    private final Context context;
+    private final PowerManager powerManager;
+    private PowerManager.OnThermalStatusChangedListener registered;
+
+    public PowerManagerThermalSource(Context context) {
+        this.context = context.getApplicationContext();
+        this.powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    @Override
+    public int getCurrentStatus() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || powerManager == null) return STATUS_NONE;
+        return powerManager.getCurrentThermalStatus();
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || powerManager == null) return;
+        if (registered != null) {
+            powerManager.removeThermalStatusListener(registered);
+            registered = null;
+        }
+        if (listener == null) return;
+        registered = listener::onThermalStatusChanged;
+        powerManager.addThermalStatusListener(ContextCompat.getMainExecutor(context), registered);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.simplecamera.thermal;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * ThermalGovernor：根据温控状态逐级降低拍摄负载。
+ * 依次降低录像质量、预览帧率、分析频率；温度上升时立即升级，
+ * 回落后须在 recoveryDelayMs 内保持较低状态才会降一级（滞回），避免在阈值附近来回切换。
+ * 不依赖 Android，温控来源与时钟均可注入。
+ */
+public final class ThermalGovernor {
+
+    /**
+     * 一个降级档位
+     */
+    public static final class Level {
+        public final int index;
+        // 录像质量在自动选择结果基础上下调的档数
+        public final int videoQualitySteps;
+        // 预览帧率上限，0 表示不限制
+        public final int maxPreviewFps;
+        // 每隔多少帧分析一次，1 表示每帧
+        public final int analysisFrameStride;
+
+        Level(int index, int videoQualitySteps, int maxPreviewFps, int analysisFrameStride) {
+            this.index = index;
+            this.videoQualitySteps = videoQualitySteps;
+            this.maxPreviewFps = maxPreviewFps;
+            this.analysisFrameStride = analysisFrameStride;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "L%d(video -%d, fps<=%s, analysis 1/%d)", index, videoQualitySteps,
+                    maxPreviewFps > 0 ? String.valueOf(maxPreviewFps) : "any", analysisFrameStride);
+        }
+    }
+
+    public static final Level[] LEVELS = {
+            new Level(0, 0, 0, 1),
+            new Level(1, 1, 0, 1),      // 先降录像质量
+            new Level(2, 1, 24, 1),     // 再限制预览帧率
+            new Level(3, 2, 15, 4),     // 最后降低分析频率，其余进一步收紧
+    };
+
+    public interface Listener {
+        void onLevelChanged(Level level);
+    }
+
+    private final ThermalSource source;
+    private final LongSupplier clockMs;
+    private final long recoveryDelayMs;
+    private Listener listener;
+
+    private int status = ThermalSource.STATUS_NONE;
+    private int current = 0;
+    // 目标档位持续低于当前档位的起始时间，-1 表示没有在回落
+    private long belowSince = -1;
+
+    public ThermalGovernor(ThermalSource source, LongSupplier clockMs, long recoveryDelayMs) {
+        this.source = source;
+        this.clockMs = clockMs;
+        this.recoveryDelayMs = recoveryDelayMs;
+    }
+
+    public synchronized void start(Listener listener) {
+        this.listener = listener;
+        source.setListener(this::onThermalStatusChanged);
+        onThermalStatusChanged(source.getCurrentStatus());
+    }
+
+    public void stop() {
+        source.setListener(null);
+        synchronized (this) {
+            listener = null;
+        }
+    }
+
+    public synchronized Level getLevel() {
+        return LEVELS[current];
+    }
+
+    public synchronized int getStatus() {
+        return status;
+    }
+
+    public void onThermalStatusChanged(int newStatus) {
+        synchronized (this) {
+            status = newStatus;
+        }
+        evaluate();
+    }
+
+    /**
+     * 过热状态下录像失败：即使状态没变也额外升一级，同样按滞回规则恢复
+     */
+    public void reportRecordingFailure() {
+        Level changed = null;
+        synchronized (this) {
+            if (status >= ThermalSource.STATUS_LIGHT && current < LEVELS.length - 1) {
+                current++;
+                belowSince = -1;
+                changed = LEVELS[current];
+            }
+        }
+        notifyChanged(changed);
+    }
+
+    /**
+     * 重新评估档位；处于回落过程中时需要调用方定期调用（见 isRecovering）
+     */
+    public void evaluate() {
+        Level changed = null;
+        synchronized (this) {
+            long now = clockMs.getAsLong();
+            int target = levelForStatus(status);
+            if (target > current) {
+                current = target;
+                belowSince = -1;
+                changed = LEVELS[current];
+            } else if (target < current) {
+                if (belowSince < 0) {
+                    belowSince = now;
+                } else if (now - belowSince >= recoveryDelayMs) {
+                    // 每次只降一级，下一级需要再等一个周期
+                    current--;
+                    belowSince = current > target ? now : -1;
+                    changed = LEVELS[current];
+                }
+            } else {
+                belowSince = -1;
+            }
+        }
+        notifyChanged(changed);
+    }
+
+    /**
+     * 是否在等待降级恢复
+     */
+    public synchronized boolean isRecovering() {
+        return current > levelForStatus(status);
+    }
+
+    static int levelForStatus(int status) {
+        if (status >= ThermalSource.STATUS_CRITICAL) return 3;
+        if (status >= ThermalSource.STATUS_SEVERE) return 2;
+        if (status >= ThermalSource.STATUS_MODERATE) return 1;
+        return 0;
+    }
+
+    private void notifyChanged(Level level) {
+        if (level == null) return;
+        Listener l;
+        synchronized (this) {
+            l = listener;
+        }
+        if (l != null) l.onLevelChanged(level);
+    }
+}
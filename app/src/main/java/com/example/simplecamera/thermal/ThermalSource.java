@@ -0,0 +1,24 @@
+package com.example.simplecamera.thermal;
+
+/**
+ * ThermalSource：设备温控状态来源。状态值与 PowerManager.THERMAL_STATUS_* 一致，
+ * 抽象出来便于在 JVM 单元测试中注入假的温控状态。
+ */
+public interface ThermalSource {
+    int STATUS_NONE = 0;
+    int STATUS_LIGHT = 1;
+    int STATUS_MODERATE = 2;
+    int STATUS_SEVERE = 3;
+    int STATUS_CRITICAL = 4;
+    int STATUS_EMERGENCY = 5;
+    int STATUS_SHUTDOWN = 6;
+
+    interface Listener {
+        void onThermalStatusChanged(int status);
+    }
+
+    int getCurrentStatus();
+
+    // 传入 null 取消监听
+    void setListener(Listener listener);
+}
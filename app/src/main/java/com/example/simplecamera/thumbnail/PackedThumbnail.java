@@ -0,0 +1,38 @@
+package com.example.simplecamera.thumbnail;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 图库网格缩略图的 Glide 模型：按 MediaFile.id 从 PackedThumbnailStore 读取，缺失时由原文件生成
+ */
+public final class PackedThumbnail {
+    public final long id;
+    // 文件路径或 content:// URI
+    public final String pathOrUri;
+    // 0 照片，1 视频
+    public final int fileType;
+
+    public PackedThumbnail(long id, String pathOrUri, int fileType) {
+        this.id = id;
+        this.pathOrUri = pathOrUri;
+        this.fileType = fileType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedThumbnail)) return false;
+        return id == ((PackedThumbnail) o).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PackedThumbnail{" + id + ", " + pathOrUri + "}";
+    }
+}
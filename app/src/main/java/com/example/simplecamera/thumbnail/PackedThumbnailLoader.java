@@ -0,0 +1,101 @@
+package com.example.simplecamera.thumbnail;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * PackedThumbnailLoader：把 PackedThumbnail 交给 Glide，数据是 ThumbnailRepository 返回的映射切片，
+ * 由 Glide 内置的 ByteBuffer 解码器直接读取，不经过中间文件或数组拷贝
+ */
+public class PackedThumbnailLoader implements ModelLoader<PackedThumbnail, ByteBuffer> {
+    private final ThumbnailRepository repository;
+
+    PackedThumbnailLoader(ThumbnailRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public LoadData<ByteBuffer> buildLoadData(@NonNull PackedThumbnail model, int width, int height,
+                                              @NonNull Options options) {
+        return new LoadData<>(new ObjectKey("packed-thumbnail:" + model.id), new Fetcher(repository, model));
+    }
+
+    @Override
+    public boolean handles(@NonNull PackedThumbnail model) {
+        return true;
+    }
+
+    public static class Factory implements ModelLoaderFactory<PackedThumbnail, ByteBuffer> {
+        private final ThumbnailRepository repository;
+
+        public Factory(Context context) {
+            this.repository = ThumbnailRepository.getInstance(context);
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<PackedThumbnail, ByteBuffer> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new PackedThumbnailLoader(repository);
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+
+    private static class Fetcher implements DataFetcher<ByteBuffer> {
+        private final ThumbnailRepository repository;
+        private final PackedThumbnail model;
+        private volatile boolean cancelled = false;
+
+        Fetcher(ThumbnailRepository repository, PackedThumbnail model) {
+            this.repository = repository;
+            this.model = model;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super ByteBuffer> callback) {
+            if (cancelled) return;
+            try {
+                callback.onDataReady(repository.load(model));
+            } catch (IOException | RuntimeException e) {
+                callback.onLoadFailed(e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+
+        @Override
+        public void cleanup() {
+            // 切片指向共享的映射，没有需要释放的资源
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @NonNull
+        @Override
+        public Class<ByteBuffer> getDataClass() {
+            return ByteBuffer.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+}
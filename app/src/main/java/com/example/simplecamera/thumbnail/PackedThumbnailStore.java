@@ -0,0 +1,321 @@
+package com.example.simplecamera.thumbnail;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * PackedThumbnailStore：把编码好的缩略图存进一个大文件的定长槽位里，按 MediaFile.id 索引。
+ * 文件按段（SLOTS_PER_SEGMENT 个槽）内存映射，增长时只追加新段，已映射的段与交出去的缓冲不受影响；
+ * 读取返回映射上的只读切片，不经过 Java 堆拷贝。
+ * 每个槽以 32 字节的槽头开始（标记、长度、id、代数、数据 CRC、槽头 CRC），先写数据再写槽头，槽头 CRC 最后写；
+ * 崩溃留下的半截槽头校验不过视为空槽，数据不完整则在首次读取时被数据 CRC 发现并丢弃。
+ * 替换时新数据写进另一个槽、代数加一后才释放旧槽，打开时同一 id 只保留代数最大的。
+ * get() 交出的切片在存储打开期间一直有效：删除或替换只清掉旧槽的槽头，槽位要到下次打开才重新分配。
+ * 打开时空槽从最低的位置分配，并把尾部段里的缩略图搬进前面的空槽、截掉空出的段。
+ * 文件头只在创建时写一次（魔数、版本、槽大小），不匹配时整个文件重建——这只是缓存。
+ */
+public final class PackedThumbnailStore implements Closeable {
+    public static final int SLOT_SIZE = 16 * 1024;
+    private static final int SLOT_HEADER = 32;
+    public static final int MAX_THUMBNAIL_BYTES = SLOT_SIZE - SLOT_HEADER;
+    static final int SLOTS_PER_SEGMENT = 512;
+    private static final long SEGMENT_BYTES = (long) SLOTS_PER_SEGMENT * SLOT_SIZE;
+    static final int FILE_HEADER = 4096;
+
+    private static final int FILE_MAGIC = 0x53435448; // "SCTH"
+    private static final int FILE_VERSION = 1;
+    private static final int SLOT_MAGIC = 0x54484D42; // "THMB"
+
+    // 槽头各字段的偏移
+    private static final int H_MAGIC = 0;
+    private static final int H_LENGTH = 4;
+    private static final int H_ID = 8;
+    private static final int H_GENERATION = 16;
+    private static final int H_DATA_CRC = 24;
+    private static final int H_HEADER_CRC = 28;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private final BitSet used = new BitSet();
+    // 数据 CRC 已核对过的槽
+    private final BitSet verified = new BitSet();
+    // 本次打开期间释放的槽，可能仍有切片指向它们，仍算作占用，下次打开时回收
+    private final BitSet retired = new BitSet();
+    private long[] slotIds = new long[0];
+    private long[] generations = new long[0];
+    private long nextGeneration = 1;
+    private final CRC32 crc = new CRC32();
+    private final byte[] headerBytes = new byte[SLOT_HEADER];
+
+    private PackedThumbnailStore(File file, RandomAccessFile raf) {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+    }
+
+    /**
+     * 打开（不存在或格式不符时新建）并扫描槽头重建索引
+     */
+    public static PackedThumbnailStore open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        PackedThumbnailStore store = new PackedThumbnailStore(file, raf);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        boolean valid = channel.size() >= FILE_HEADER && channel.read(header, 0) == 16
+                && header.getInt(0) == FILE_MAGIC && header.getInt(4) == FILE_VERSION
+                && header.getInt(8) == SLOT_SIZE;
+        if (!valid) {
+            raf.setLength(0);
+            header.clear();
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(SLOT_SIZE).putInt(SLOTS_PER_SEGMENT).flip();
+            channel.write(header, 0);
+            raf.setLength(FILE_HEADER);
+        }
+        // 只认完整的段；增长时崩溃留下的半段截掉
+        int segmentCount = (int) ((channel.size() - FILE_HEADER) / SEGMENT_BYTES);
+        raf.setLength(FILE_HEADER + segmentCount * SEGMENT_BYTES);
+        for (int s = 0; s < segmentCount; s++) mapSegment(s);
+
+        for (int slot = 0; slot < capacity(); slot++) {
+            ByteBuffer buffer = slotBuffer(slot);
+            if (!readHeader(buffer)) continue;
+            long id = buffer.getLong(H_ID);
+            long generation = buffer.getLong(H_GENERATION);
+            Integer existing = slotsById.get(id);
+            if (existing != null) {
+                // 替换到一半崩溃：保留新的一份
+                if (generations[existing] >= generation) {
+                    clearHeader(slot);
+                    continue;
+                }
+                release(existing);
+            }
+            occupy(slot, id, generation);
+            nextGeneration = Math.max(nextGeneration, generation + 1);
+        }
+        reclaimRetired();
+        compact();
+    }
+
+    public synchronized int size() {
+        return slotsById.size();
+    }
+
+    public synchronized int capacity() {
+        return segments.size() * SLOTS_PER_SEGMENT;
+    }
+
+    public synchronized boolean contains(long id) {
+        return slotsById.containsKey(id);
+    }
+
+    /**
+     * 写入或替换 id 的缩略图；超过 MAX_THUMBNAIL_BYTES 时不写入并返回 false
+     */
+    public synchronized boolean put(long id, byte[] data, int offset, int length) throws IOException {
+        if (length > MAX_THUMBNAIL_BYTES) return false;
+        int slot = used.nextClearBit(0);
+        if (slot >= capacity()) mapSegment(segments.size());
+        ByteBuffer buffer = slotBuffer(slot);
+        buffer.position(SLOT_HEADER);
+        buffer.put(data, offset, length);
+        crc.reset();
+        crc.update(data, offset, length);
+        long generation = nextGeneration++;
+        writeHeader(buffer, id, length, generation, (int) crc.getValue());
+
+        Integer previous = slotsById.get(id);
+        if (previous != null) release(previous);
+        occupy(slot, id, generation);
+        verified.set(slot);
+        return true;
+    }
+
+    /**
+     * id 的缩略图数据：映射上的只读切片，没有或已损坏时返回 null。
+     * 切片直接指向槽位，存储关闭前不会被改写
+     */
+    public synchronized ByteBuffer get(long id) {
+        Integer slot = slotsById.get(id);
+        if (slot == null) return null;
+        ByteBuffer buffer = slotBuffer(slot);
+        int length = buffer.getInt(H_LENGTH);
+        buffer.position(SLOT_HEADER).limit(SLOT_HEADER + length);
+        ByteBuffer data = buffer.slice();
+        if (!verified.get(slot)) {
+            crc.reset();
+            crc.update(data.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(H_DATA_CRC)) {
+                release(slot);
+                return null;
+            }
+            verified.set(slot);
+        }
+        return data.asReadOnlyBuffer();
+    }
+
+    public synchronized void remove(long id) {
+        Integer slot = slotsById.get(id);
+        if (slot != null) release(slot);
+    }
+
+    /**
+     * 删除 ids 之外的全部缩略图，返回删除的数量；空出的槽在下次打开时回收
+     */
+    public synchronized int retainAll(Set<Long> ids) {
+        List<Integer> stale = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : slotsById.entrySet()) {
+            if (!ids.contains(entry.getKey())) stale.add(entry.getValue());
+        }
+        for (int slot : stale) release(slot);
+        return stale.size();
+    }
+
+    /**
+     * 本次打开期间已释放、要到下次打开才回收的槽数
+     */
+    public synchronized int retiredSlots() {
+        return retired.cardinality();
+    }
+
+    // 打开时调用（还没有交出任何切片）：把尾部段中的缩略图搬进前面的空槽，截掉完全空出的段
+    private void compact() throws IOException {
+        int neededSegments = (slotsById.size() + SLOTS_PER_SEGMENT - 1) / SLOTS_PER_SEGMENT;
+        if (neededSegments >= segments.size()) return;
+        int limit = neededSegments * SLOTS_PER_SEGMENT;
+        for (int from = used.nextSetBit(limit); from >= 0; from = used.nextSetBit(from + 1)) {
+            int to = used.nextClearBit(0);
+            ByteBuffer source = slotBuffer(from);
+            ByteBuffer target = slotBuffer(to);
+            int length = source.getInt(H_LENGTH);
+            source.position(SLOT_HEADER).limit(SLOT_HEADER + length);
+            target.position(SLOT_HEADER);
+            target.put(source);
+            long id = slotIds[from];
+            long generation = nextGeneration++;
+            // 先让新槽生效（代数更大），再释放旧槽；中途崩溃时打开会保留新的一份
+            writeHeader(target, id, length, generation, source.getInt(H_DATA_CRC));
+            boolean wasVerified = verified.get(from);
+            release(from);
+            occupy(to, id, generation);
+            if (wasVerified) verified.set(to);
+        }
+        reclaimRetired();
+        while (segments.size() > neededSegments) segments.remove(segments.size() - 1);
+        raf.setLength(FILE_HEADER + neededSegments * SEGMENT_BYTES);
+    }
+
+    private void reclaimRetired() {
+        used.andNot(retired);
+        retired.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments.clear();
+        slotsById.clear();
+        used.clear();
+        retired.clear();
+        raf.close();
+    }
+
+    /**
+     * 删除存储文件（例如格式升级或用户清除缓存后）
+     */
+    public synchronized void deleteFile() throws IOException {
+        close();
+        if (!file.delete() && file.exists()) throw new IOException("Cannot delete " + file);
+    }
+
+    private void mapSegment(int index) throws IOException {
+        long position = FILE_HEADER + index * SEGMENT_BYTES;
+        if (channel.size() < position + SEGMENT_BYTES) raf.setLength(position + SEGMENT_BYTES);
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_BYTES);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segments.add(segment);
+        int capacity = segments.size() * SLOTS_PER_SEGMENT;
+        if (slotIds.length < capacity) {
+            slotIds = Arrays.copyOf(slotIds, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+        }
+    }
+
+    // 槽位的独立视图，position 0 是槽头
+    private ByteBuffer slotBuffer(int slot) {
+        ByteBuffer segment = segments.get(slot / SLOTS_PER_SEGMENT).duplicate();
+        int start = (slot % SLOTS_PER_SEGMENT) * SLOT_SIZE;
+        segment.position(start).limit(start + SLOT_SIZE);
+        return segment.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private boolean readHeader(ByteBuffer slot) {
+        if (slot.getInt(H_MAGIC) != SLOT_MAGIC) return false;
+        int length = slot.getInt(H_LENGTH);
+        if (length < 0 || length > MAX_THUMBNAIL_BYTES) return false;
+        slot.position(0);
+        slot.get(headerBytes);
+        crc.reset();
+        crc.update(headerBytes, 0, H_HEADER_CRC);
+        return (int) crc.getValue() == slot.getInt(H_HEADER_CRC);
+    }
+
+    private void writeHeader(ByteBuffer slot, long id, int length, long generation, int dataCrc) {
+        ByteBuffer header = ByteBuffer.wrap(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(H_MAGIC, SLOT_MAGIC)
+                .putInt(H_LENGTH, length)
+                .putLong(H_ID, id)
+                .putLong(H_GENERATION, generation)
+                .putInt(H_DATA_CRC, dataCrc);
+        crc.reset();
+        crc.update(headerBytes, 0, H_HEADER_CRC);
+        slot.position(0);
+        slot.put(headerBytes, 0, H_HEADER_CRC);
+        slot.putInt(H_HEADER_CRC, (int) crc.getValue());
+    }
+
+    private void clearHeader(int slot) {
+        slotBuffer(slot).putInt(H_MAGIC, 0);
+    }
+
+    private void occupy(int slot, long id, long generation) {
+        used.set(slot);
+        slotIds[slot] = id;
+        generations[slot] = generation;
+        slotsById.put(id, slot);
+    }
+
+    // 槽头清掉后打开时不再认它，数据区保持原样，直到回收前都不会分配出去
+    private void release(int slot) {
+        clearHeader(slot);
+        retired.set(slot);
+        verified.clear(slot);
+        Integer current = slotsById.get(slotIds[slot]);
+        if (current != null && current == slot) slotsById.remove(slotIds[slot]);
+    }
+}
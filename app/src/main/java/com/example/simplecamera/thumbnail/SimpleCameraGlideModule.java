@@ -0,0 +1,28 @@
+package com.example.simplecamera.thumbnail;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 注册 PackedThumbnail 的加载器
+ */
+@GlideModule
+public final class SimpleCameraGlideModule extends AppGlideModule {
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
+        registry.prepend(PackedThumbnail.class, ByteBuffer.class, new PackedThumbnailLoader.Factory(context));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.simplecamera.thumbnail;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.simplecamera.concurrent.TaskScheduler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * ThumbnailRepository：图库网格缩略图的来源，持有应用唯一的 PackedThumbnailStore（缓存目录下的 thumbnails.pack）。
+ * 命中时直接返回映射上的切片；缺失时从原文件生成 THUMBNAIL_SIZE_PX 见方的 JPEG 写入存储，质量逐级降低直到放得进一个槽。
+ * 存储打不开时每次都重新生成，不影响显示。
+ */
+public class ThumbnailRepository {
+    private static final String TAG = "ThumbnailRepository";
+    private static final String STORE_FILE = "thumbnails.pack";
+    private static final int THUMBNAIL_SIZE_PX = 256;
+    private static final int[] JPEG_QUALITIES = {85, 70, 55};
+
+    private static volatile ThumbnailRepository instance;
+
+    public static ThumbnailRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ThumbnailRepository.class) {
+                if (instance == null) instance = new ThumbnailRepository(context.getApplicationContext());
+            }
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private PackedThumbnailStore store;
+    private boolean storeFailed = false;
+
+    private ThumbnailRepository(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 缩略图的编码数据；在 Glide 的加载线程上调用
+     */
+    public ByteBuffer load(PackedThumbnail thumbnail) throws IOException {
+        PackedThumbnailStore packed = store();
+        if (packed != null) {
+            ByteBuffer cached = packed.get(thumbnail.id);
+            if (cached != null) return cached;
+        }
+        byte[] encoded = generate(thumbnail);
+        if (packed != null && packed.put(thumbnail.id, encoded, 0, encoded.length)) {
+            ByteBuffer stored = packed.get(thumbnail.id);
+            if (stored != null) return stored;
+        }
+        return ByteBuffer.wrap(encoded);
+    }
+
+    /**
+     * 删除 liveIds 之外的缩略图。load() 交出的切片不受影响，空出的槽在下次打开存储时回收并压缩文件
+     */
+    public void trim(Set<Long> liveIds) {
+        TaskScheduler.get().submit(TaskScheduler.Lane.BACKFILL, this, () -> {
+            PackedThumbnailStore packed = store();
+            if (packed == null) return;
+            long start = SystemClock.elapsedRealtime();
+            int removed = packed.retainAll(liveIds);
+            Log.d(TAG, "Trimmed thumbnails: " + removed + " removed, " + packed.size() + " kept, "
+                    + packed.retiredSlots() + " slots to reclaim on next open in "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        });
+    }
+
+    private synchronized PackedThumbnailStore store() {
+        if (store == null && !storeFailed) {
+            File file = new File(context.getCacheDir(), STORE_FILE);
+            try {
+                store = PackedThumbnailStore.open(file);
+                Log.d(TAG, "Opened thumbnail store: " + store.size() + " thumbnails, " + file.length() + " bytes");
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot open thumbnail store " + file, e);
+                storeFailed = true;
+            }
+        }
+        return store;
+    }
+
+    private byte[] generate(PackedThumbnail thumbnail) throws IOException {
+        Bitmap source = thumbnail.fileType == 1 ? videoFrame(thumbnail.pathOrUri) : decodePhoto(thumbnail.pathOrUri);
+        if (source == null) throw new IOException("Cannot decode " + thumbnail.pathOrUri);
+        Bitmap square = centerCrop(source);
+        try {
+            byte[] encoded = null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(PackedThumbnailStore.MAX_THUMBNAIL_BYTES);
+            for (int quality : JPEG_QUALITIES) {
+                out.reset();
+                square.compress(Bitmap.CompressFormat.JPEG, quality, out);
+                encoded = out.toByteArray();
+                if (encoded.length <= PackedThumbnailStore.MAX_THUMBNAIL_BYTES) break;
+            }
+            return encoded;
+        } finally {
+            square.recycle();
+        }
+    }
+
+    // 降采样到短边不小于 THUMBNAIL_SIZE_PX，并按 EXIF 方向转正
+    private Bitmap decodePhoto(String pathOrUri) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        int rotation;
+        try (ParcelFileDescriptor pfd = open(pathOrUri)) {
+            BitmapFactory.decodeFileDescriptor(pfd.getFileDescriptor(), null, bounds);
+            rotation = rotationOf(new ExifInterface(pfd.getFileDescriptor())
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL));
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        int shortest = Math.min(bounds.outWidth, bounds.outHeight);
+        options.inSampleSize = Math.max(1, Integer.highestOneBit(shortest / THUMBNAIL_SIZE_PX));
+        Bitmap bitmap;
+        try (ParcelFileDescriptor pfd = open(pathOrUri)) {
+            bitmap = BitmapFactory.decodeFileDescriptor(pfd.getFileDescriptor(), null, options);
+        }
+        if (bitmap == null || rotation == 0) return bitmap;
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotation);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) bitmap.recycle();
+        return rotated;
+    }
+
+    private static int rotationOf(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    private Bitmap videoFrame(String pathOrUri) throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try (ParcelFileDescriptor pfd = open(pathOrUri)) {
+            retriever.setDataSource(pfd.getFileDescriptor());
+            return retriever.getFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot read video frame of " + pathOrUri, e);
+        } finally {
+            retriever.release();
+        }
+    }
+
+    // 居中裁成正方形并缩放到 THUMBNAIL_SIZE_PX，回收 source
+    private static Bitmap centerCrop(Bitmap source) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        float scale = Math.min(1f, (float) THUMBNAIL_SIZE_PX / side);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        Bitmap square = Bitmap.createBitmap(source, (source.getWidth() - side) / 2,
+                (source.getHeight() - side) / 2, side, side, matrix, true);
+        if (square != source) source.recycle();
+        return square;
+    }
+
+    private ParcelFileDescriptor open(String pathOrUri) throws IOException {
+        if (pathOrUri.startsWith("content://")) {
+            ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(Uri.parse(pathOrUri), "r");
+            if (pfd == null) throw new IOException("Cannot open " + pathOrUri);
+            return pfd;
+        }
+        return ParcelFileDescriptor.open(new File(pathOrUri), ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+}
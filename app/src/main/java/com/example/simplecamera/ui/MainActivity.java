@@ -3,6 +3,7 @@ package com.example.simplecamera.ui;
 import android.os.Bundle;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.fragment.app.Fragment;
 
 import com.example.simplecamera.R;
 import com.example.simplecamera.ui.camera.CameraFragment;
@@ -20,4 +21,14 @@ public class MainActivity extends AppCompatActivity {
                     .commit();
         }
     }
+
+    @Override
+    public void onUserInteraction() {
+        super.onUserInteraction();
+        // 通知相机页面退出省电状态
+        Fragment current = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
+        if (current instanceof CameraFragment) {
+            ((CameraFragment) current).onUserInteraction();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,375 @@
+package com.example.simplecamera.ui.camera;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+
+import com.example.simplecamera.metrics.CaptureTracer;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BurstCaptureSession：按住快门时连续拍照。
+ * 拍到的帧先拷贝进有界内存队列（立即归还 ImageProxy，避免占满 ImageReader 缓冲），
+ * 再由工作线程池并行编码并写入 MediaStore，结束时一次性回调所有结果供批量入库。
+ */
+class BurstCaptureSession {
+    private static final String TAG = "BurstCaptureSession";
+
+    /**
+     * 队列已满时的处理策略
+     */
+    public enum DropPolicy {
+        DROP_NEWEST,    // 丢弃刚拍到的帧
+        DROP_OLDEST,    // 丢弃队列中最旧的帧
+        BACKPRESSURE    // 暂停拍摄，直到队列腾出空间
+    }
+
+    /**
+     * 连拍配置
+     */
+    public static class Config {
+        public final int queueCapacity;
+        public final int workerCount;
+        public final DropPolicy dropPolicy;
+
+        public Config(int queueCapacity, int workerCount, DropPolicy dropPolicy) {
+            this.queueCapacity = Math.max(1, queueCapacity);
+            this.workerCount = Math.max(1, workerCount);
+            this.dropPolicy = dropPolicy;
+        }
+
+        public static Config defaults() {
+            int workers = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            return new Config(8, workers, DropPolicy.DROP_OLDEST);
+        }
+    }
+
+    /**
+     * 一次连拍的统计
+     */
+    public static class Stats {
+        public final int framesCaptured;
+        public final int framesSaved;
+        public final int framesDropped;
+        public final int saveFailures;
+        // 从按下快门到最后一张写盘完成
+        public final long durationMs;
+
+        Stats(int framesCaptured, int framesSaved, int framesDropped, int saveFailures, long durationMs) {
+            this.framesCaptured = framesCaptured;
+            this.framesSaved = framesSaved;
+            this.framesDropped = framesDropped;
+            this.saveFailures = saveFailures;
+            this.durationMs = durationMs;
+        }
+
+        /**
+         * 持续的每秒成片数（以最终写盘成功的张数计）
+         */
+        public double shotsPerSecond() {
+            return durationMs > 0 ? framesSaved * 1000.0 / durationMs : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "captured=%d, saved=%d, dropped=%d, failed=%d, %.1f shots/s",
+                    framesCaptured, framesSaved, framesDropped, saveFailures, shotsPerSecond());
+        }
+    }
+
+    public interface Listener {
+        void onBurstCompleted(List<String> savedPaths, Stats stats);
+        void onBurstError(String message);
+    }
+
+    /**
+     * 队列中的一帧：已编码为 JPEG 或尚待编码的 YUV 数据
+     */
+    private static class Frame {
+        final int sequence;
+        // CaptureTracer 的追踪 id，写盘后按路径继续打点
+        final long traceId;
+        final int format;
+        final int width;
+        final int height;
+        final int rotationDegrees;
+        final byte[] data;
+
+        Frame(int sequence, long traceId, int format, int width, int height, int rotationDegrees, byte[] data) {
+            this.sequence = sequence;
+            this.traceId = traceId;
+            this.format = format;
+            this.width = width;
+            this.height = height;
+            this.rotationDegrees = rotationDegrees;
+            this.data = data;
+        }
+    }
+
+    private final Context context;
+    private final ImageCapture imageCapture;
+    private final Executor captureExecutor;
+    private final File appStorageDir;
+    private final Config config;
+    private final Listener listener;
+
+    private final BlockingQueue<Frame> frameQueue;
+    private final ExecutorService workerPool;
+    private final List<String> savedPaths = Collections.synchronizedList(new ArrayList<>());
+    private final String burstId;
+
+    private volatile boolean capturing = false;
+    private boolean captureInFlight = false;
+    // BACKPRESSURE 下队列已满，下一张等保存线程取走一帧后再发出
+    private boolean waitingForSpace = false;
+    private volatile boolean finished = false;
+    private long startTime = 0;
+    private final AtomicInteger pendingSaves = new AtomicInteger();
+    private final AtomicInteger framesCaptured = new AtomicInteger();
+    private final AtomicInteger framesSaved = new AtomicInteger();
+    private final AtomicInteger framesDropped = new AtomicInteger();
+    private final AtomicInteger saveFailures = new AtomicInteger();
+
+    BurstCaptureSession(Context context, ImageCapture imageCapture, Executor captureExecutor,
+                        File appStorageDir, Config config, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.imageCapture = imageCapture;
+        this.captureExecutor = captureExecutor;
+        this.appStorageDir = appStorageDir;
+        this.config = config;
+        this.listener = listener;
+        this.frameQueue = new ArrayBlockingQueue<>(config.queueCapacity);
+        this.workerPool = Executors.newFixedThreadPool(config.workerCount);
+        this.burstId = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+    }
+
+    public void start() {
+        synchronized (this) {
+            if (capturing || finished) return;
+            capturing = true;
+            startTime = SystemClock.elapsedRealtime();
+        }
+        Log.d(TAG, "Burst started, queue=" + config.queueCapacity + ", workers=" + config.workerCount
+                + ", policy=" + config.dropPolicy);
+        captureNext();
+    }
+
+    /**
+     * 松开快门：停止继续拍摄，已入队的帧会全部写完后回调
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!capturing) return;
+            capturing = false;
+        }
+        Log.d(TAG, "Burst stop requested");
+        maybeFinish();
+    }
+
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    private void captureNext() {
+        synchronized (this) {
+            if (!capturing) return;
+            captureInFlight = true;
+        }
+        long traceId = CaptureTracer.get().begin();
+        imageCapture.takePicture(captureExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                Frame frame;
+                try {
+                    frame = copyFrame(image, framesCaptured.incrementAndGet(), traceId);
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to copy burst frame", e);
+                    CaptureTracer.get().abandon(traceId);
+                    frame = null;
+                } finally {
+                    image.close();
+                }
+                if (frame != null) enqueue(frame);
+                onCaptureFinished();
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                Log.e(TAG, "Burst capture failed", exception);
+                CaptureTracer.get().abandon(traceId);
+                synchronized (BurstCaptureSession.this) {
+                    capturing = false;
+                }
+                if (listener != null) listener.onBurstError("Burst capture failed: " + exception.getMessage());
+                onCaptureFinished();
+            }
+        });
+    }
+
+    private void onCaptureFinished() {
+        synchronized (this) {
+            captureInFlight = false;
+            if (capturing && config.dropPolicy == DropPolicy.BACKPRESSURE && frameQueue.remainingCapacity() == 0) {
+                // 在发出下一张之前施加背压，不阻塞拍摄回调所在的线程
+                waitingForSpace = true;
+                return;
+            }
+        }
+        if (capturing) {
+            captureNext();
+        } else {
+            maybeFinish();
+        }
+    }
+
+    private static Frame copyFrame(ImageProxy image, int sequence, long traceId) {
+        int rotation = image.getImageInfo().getRotationDegrees();
+        if (image.getFormat() == ImageFormat.JPEG) {
+            return new Frame(sequence, traceId, ImageFormat.JPEG, image.getWidth(), image.getHeight(), rotation,
+                    ImageUtils.copyJpeg(image));
+        }
+        return new Frame(sequence, traceId, ImageFormat.NV21, image.getWidth(), image.getHeight(), rotation,
+                ImageUtils.toNv21(image));
+    }
+
+    private void enqueue(Frame frame) {
+        if (finished) {
+            // cancel() 之后才回来的帧
+            CaptureTracer.get().abandon(frame.traceId);
+            return;
+        }
+        switch (config.dropPolicy) {
+            case DROP_NEWEST:
+                if (!frameQueue.offer(frame)) {
+                    CaptureTracer.get().abandon(frame.traceId);
+                    framesDropped.incrementAndGet();
+                    return;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!frameQueue.offer(frame)) {
+                    Frame dropped = frameQueue.poll();
+                    if (dropped != null) {
+                        // 被挤掉的帧对应的保存任务会在取不到帧时直接结束
+                        CaptureTracer.get().abandon(dropped.traceId);
+                        framesDropped.incrementAndGet();
+                    }
+                }
+                break;
+            case BACKPRESSURE:
+            default:
+                // 只有队列有空位时才会发出拍摄（见 onCaptureFinished），这里正常不会满
+                if (!frameQueue.offer(frame)) {
+                    CaptureTracer.get().abandon(frame.traceId);
+                    framesDropped.incrementAndGet();
+                    return;
+                }
+                break;
+        }
+        pendingSaves.incrementAndGet();
+        try {
+            workerPool.execute(this::saveOne);
+        } catch (RejectedExecutionException e) {
+            // 与 cancel() 竞争时线程池已关闭
+            pendingSaves.decrementAndGet();
+            if (frameQueue.remove(frame)) CaptureTracer.get().abandon(frame.traceId);
+        }
+    }
+
+    private void saveOne() {
+        try {
+            Frame frame = frameQueue.poll();
+            if (frame == null) return;
+            resumeAfterBackpressure();
+            try {
+                byte[] jpeg = encode(frame);
+                String path = write(frame, jpeg);
+                if (path != null) {
+                    CaptureTracer.get().attachPath(frame.traceId, path);
+                    savedPaths.add(path);
+                    framesSaved.incrementAndGet();
+                } else {
+                    CaptureTracer.get().abandon(frame.traceId);
+                    saveFailures.incrementAndGet();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to save burst frame #" + frame.sequence, e);
+                CaptureTracer.get().abandon(frame.traceId);
+                saveFailures.incrementAndGet();
+            }
+        } finally {
+            pendingSaves.decrementAndGet();
+            maybeFinish();
+        }
+    }
+
+    private void resumeAfterBackpressure() {
+        synchronized (this) {
+            if (!waitingForSpace) return;
+            waitingForSpace = false;
+        }
+        captureNext();
+    }
+
+    private static byte[] encode(Frame frame) {
+        if (frame.format == ImageFormat.JPEG) return frame.data;
+        return ImageUtils.nv21ToJpeg(frame.data, frame.width, frame.height, 95);
+    }
+
+    private String write(Frame frame, byte[] jpeg) throws Exception {
+        String fileName = String.format(Locale.US, "IMG_%s_BURST%03d.jpg", burstId, frame.sequence);
+        // JPEG 帧的方向已由相机写入 EXIF，只有自行编码的 YUV 帧需要补写
+        int rotation = frame.format == ImageFormat.JPEG ? 0 : frame.rotationDegrees;
+        return MediaStoreWriter.writeJpeg(context, appStorageDir, fileName, jpeg, rotation);
+    }
+
+    private void maybeFinish() {
+        Stats stats;
+        List<String> paths;
+        synchronized (this) {
+            if (finished || capturing || captureInFlight || pendingSaves.get() > 0) return;
+            finished = true;
+            stats = new Stats(framesCaptured.get(), framesSaved.get(), framesDropped.get(),
+                    saveFailures.get(), SystemClock.elapsedRealtime() - startTime);
+            paths = new ArrayList<>(savedPaths);
+        }
+        workerPool.shutdown();
+        Log.d(TAG, "Burst finished: " + stats);
+        if (listener != null) listener.onBurstCompleted(paths, stats);
+    }
+
+    /**
+     * 强制结束（释放相机时在主线程调用），丢弃尚未写盘的帧。
+     * 不等待也不中断工作线程：正在写的那张在池中写完（或自行失败并撤销），不会留下半截的 MediaStore 条目
+     */
+    public void cancel() {
+        List<Frame> dropped = new ArrayList<>();
+        synchronized (this) {
+            capturing = false;
+            finished = true;
+        }
+        frameQueue.drainTo(dropped);
+        for (Frame frame : dropped) CaptureTracer.get().abandon(frame.traceId);
+        workerPool.shutdown();
+    }
+}
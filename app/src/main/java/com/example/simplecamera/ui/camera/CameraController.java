@@ -3,140 +3,1021 @@ package com.example.simplecamera.ui.camera;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureRequest;
+import android.net.Uri;
 import android.os.Build;
+import android.os.Debug;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.util.Range;
 import android.util.Size;
 import android.view.Surface;
 
 import androidx.annotation.NonNull;
-import androidx.camera.core.AspectRatio;
+import androidx.annotation.OptIn;
+import androidx.camera.camera2.interop.Camera2CameraControl;
+import androidx.camera.camera2.interop.Camera2CameraInfo;
+import androidx.camera.camera2.interop.CaptureRequestOptions;
+import androidx.camera.camera2.interop.ExperimentalCamera2Interop;
+import androidx.camera.core.Camera;
+import androidx.camera.core.CameraInfo;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.DynamicRange;
+import androidx.camera.core.ExperimentalZeroShutterLag;
+import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
+import androidx.camera.core.UseCase;
+import androidx.camera.core.resolutionselector.AspectRatioStrategy;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.video.FallbackStrategy;
 import androidx.camera.video.MediaStoreOutputOptions;
+import androidx.camera.video.AudioStats;
 import androidx.camera.video.Quality;
 import androidx.camera.video.QualitySelector;
 import androidx.camera.video.Recorder;
 import androidx.camera.video.Recording;
+import androidx.camera.video.RecordingStats;
 import androidx.camera.video.VideoCapture;
 import androidx.camera.video.VideoRecordEvent;
 import androidx.core.content.ContextCompat;
 import androidx.camera.view.PreviewView;
 import androidx.lifecycle.LifecycleOwner;
 
+import com.example.simplecamera.analysis.FrameAnalyzer;
+import com.example.simplecamera.concurrent.TaskScheduler;
+import com.example.simplecamera.metrics.CaptureProfileStats;
+import com.example.simplecamera.metrics.CaptureTracer;
+import com.example.simplecamera.metrics.RecordingTelemetry;
+import com.example.simplecamera.thermal.PowerManagerThermalSource;
+import com.example.simplecamera.thermal.ThermalGovernor;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * CameraController：封装摄像头初始化、绑定、拍照与录像控制。
  * 通过 Callback 将结果与错误回调给调用方。
+ * 绑定请求经由会话状态机统一调度：重复请求会被合并，过期请求会被丢弃，失败时指数退避重试。
  */
 public class CameraController {
     private static final String TAG = "CameraController";
+    // 绑定失败重试：首次 250ms，之后翻倍，上限 4s，超过次数后降级为仅预览
+    private static final long RETRY_BASE_DELAY_MS = 250;
+    private static final long RETRY_MAX_DELAY_MS = 4000;
+    private static final int MAX_BIND_RETRIES = 4;
+    // 切换镜头时冻结帧的最长保留时间，防止新流一直未就绪导致画面卡住
+    private static final long FREEZE_FRAME_TIMEOUT_MS = 1500;
+    // 自建零延迟缓冲保留的帧数，以及保留的快门偏移记录条数
+    private static final int ZSL_RING_CAPACITY = 3;
+    private static final int MAX_SHUTTER_OFFSET_RECORDS = 32;
+    private static final long PREPARED_OUTPUT_MAX_AGE_MS = 60_000;
+    private static final Size FRAME_ANALYSIS_SIZE = new Size(640, 480);
+    private static final Size IDLE_PREVIEW_SIZE = new Size(640, 360);
+    // 空闲时预览帧率上限
+    private static final int IDLE_MAX_FPS = 15;
+
     private final Context context;
     private final LifecycleOwner lifecycleOwner;
     private final PreviewView previewView;
     private final File appStorageDir;
-    private final ExecutorService cameraExecutor;
+    // CameraX 回调与拍照写盘走共享调度器的 CAPTURE_IO 通道
+    private final Executor cameraExecutor;
 
     private ProcessCameraProvider cameraProvider;
+    private Camera camera;
+    private Preview preview;
     private ImageCapture imageCapture;
+    private ImageAnalysis zslAnalysis;
     private VideoCapture<Recorder> videoCapture;
     private Recording activeRecording;
     private boolean isRecording = false;
-    private long recordingStartTime = 0;
+
+    // 分段录像：单段达到大小或时长上限时切到新的输出，已完成的段立即入库，崩溃时只丢当前段
+    private static final long DEFAULT_SEGMENT_MAX_BYTES = 1024L * 1024 * 1024;
+    private static final long DEFAULT_SEGMENT_MAX_DURATION_MS = 10 * 60 * 1000L;
+    private boolean segmentedRecording = true;
+    private long segmentMaxBytes = DEFAULT_SEGMENT_MAX_BYTES;
+    private long segmentMaxDurationMs = DEFAULT_SEGMENT_MAX_DURATION_MS;
+    // 当前段；之前各段的时长与字节数累加到会话基数上，遥测按整次录像连续计算
+    private RecordingSegment currentSegment;
+    // 段边界上温控要求的录像质量变了：下一段等上一段收尾、按新质量重新绑定后再开始
+    private boolean rebindBeforeNextSegment = false;
+    private long sessionBaseDurationNanos = 0;
+    private long sessionBaseBytes = 0;
+
+    /**
+     * 一次录像中的一段
+     */
+    private static final class RecordingSegment {
+        final long session;
+        final int index;
+        // 上一段请求切换的时间，用于统计两段之间的空档
+        long rolloverTime = 0;
+
+        RecordingSegment(long session, int index) {
+            this.session = session;
+            this.index = index;
+        }
+    }
+
+    // 录像遥测：上一次状态事件的快照与到达时间
+    private RecordingTelemetry lastTelemetry;
+    private long lastTelemetryTime = 0;
 
     private boolean useFrontCamera = false;
 
+    // 连拍
+    private BurstCaptureSession burstSession;
+    private BurstCaptureSession.Config burstConfig = BurstCaptureSession.Config.defaults();
+
+    // 零延迟快门：由拍摄预设决定，绑定时生效；设备支持时用 CameraX 的 ZSL 模式，否则用自建的预览环形缓冲
+    private boolean zeroShutterLagEnabled = false;
+    private boolean cameraXZslActive = false;
+    private ZslRingBuffer zslRingBuffer;
+    private ExecutorService zslAnalysisExecutor;
+
+    // 预览分析管线：注册了分析器时绑定一个低分辨率 ImageAnalysis（与零延迟缓冲、录像用例互斥）
+    private final FrameAnalysisPipeline frameAnalysisPipeline = new FrameAnalysisPipeline();
+    private ImageAnalysis frameAnalysis;
+    private ExecutorService frameAnalysisExecutor;
+    // 传感器时间戳是否以 elapsedRealtime 为基准（否则为 uptime）
+    private boolean sensorTimestampRealtime = false;
+    private final ArrayDeque<Long> shutterOffsetsMs = new ArrayDeque<>();
+
+    // 内存拍照管线：写盘、入库、缩略图并行；由拍摄预设决定，绑定时生效
+    private boolean inMemoryCaptureEnabled = false;
+    private InMemoryCapturePipeline inMemoryPipeline;
+    private volatile InMemoryCapturePipeline.StageTimings lastCaptureTimings;
+
     private final Callback callback;
 
+    /**
+     * 相机会话状态
+     */
+    private enum SessionState {
+        IDLE,       // 尚未绑定
+        OPENING,    // 等待 ProcessCameraProvider 初始化
+        BOUND,      // 用例已绑定
+        BACKOFF,    // 绑定失败，等待退避重试
+        RELEASED    // 已释放，丢弃所有请求
+    }
+
+    // 会话状态机（仅在主线程读写）
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable pendingBindRunnable = this::runPendingBind;
+    private final Runnable retryBindRunnable = this::runRetryBind;
+    private SessionState sessionState = SessionState.IDLE;
+    private boolean bindPending = false;
+    private long pendingSince = 0;
+    // 配置版本：影响绑定结果的参数变化时递增，已绑定版本与之相同则说明会话已是最新
+    private int configVersion = 0;
+    private int boundConfigVersion = -1;
+    private int failedAttempts = 0;
+
+    // 绑定统计
+    private int bindsIssued = 0;
+    private int bindsSucceeded = 0;
+    private int bindsCoalesced = 0;
+    private int bindsDropped = 0;
+    private int bindFailures = 0;
+    private long lastBindLatencyMs = 0;
+    private long totalBindLatencyMs = 0;
+
+    // 镜头信息缓存：首次枚举后复用，切换镜头时不再重新查询
+    private final Map<Integer, LensProfile> lensProfiles = new HashMap<>();
+    private boolean lensProfilesLoaded = false;
+
+    // 镜头切换统计
+    private final Runnable unfreezeRunnable = this::unfreezePreview;
+    private long lensSwitchStartTime = 0;
+    private int lensSwitches = 0;
+    private long lastLensSwitchLatencyMs = 0;
+
+    // 省电状态：空闲时降低预览帧率并暂停分析，深度空闲时再降低预览分辨率
+    private IdleDetector.State powerState = IdleDetector.State.ACTIVE;
+
+    // 温控降级：过热时依次降低录像质量、预览帧率与分析频率
+    private static final long THERMAL_RECOVERY_DELAY_MS = 60_000;
+    private static final long THERMAL_EVALUATE_INTERVAL_MS = 10_000;
+    private final ThermalGovernor thermalGovernor;
+    private ThermalGovernor.Level thermalLevel = ThermalGovernor.LEVELS[0];
+    private final Runnable thermalEvaluateRunnable = this::evaluateThermal;
+
+    // 拍摄预设：拍照模式、分辨率、JPEG 质量、预览尺寸与录像质量上限
+    private CaptureProfile captureProfile = CaptureProfile.BALANCED;
+
+    // 录像质量：按设备写入吞吐与镜头能力自动选择，可由用户覆盖
+    private final VideoCapabilityProfiler videoProfiler;
+    private Quality recorderQuality;
+
+    // 预备录像：进入录像模式时提前绑定 Recorder 并准备输出；记录点击到首帧编码的耗时
+    private boolean recorderArmed = false;
+    private MediaStoreOutputOptions preparedOutput;
+    private long preparedOutputTime = 0;
+    private long recordTapTime = 0;
+    private boolean recordTapArmed = false;
+    private long lastRecordStartLatencyMs = 0;
+    private boolean lastRecordStartArmed = false;
+
     public CameraController(Context context, LifecycleOwner lifecycleOwner, PreviewView previewView, File appStorageDir, Callback callback) {
         this.context = context.getApplicationContext();
         this.lifecycleOwner = lifecycleOwner;
         this.previewView = previewView;
         this.appStorageDir = appStorageDir;
         this.callback = callback;
-        this.cameraExecutor = Executors.newSingleThreadExecutor();
+        this.cameraExecutor = TaskScheduler.get().executor(TaskScheduler.Lane.CAPTURE_IO);
+        this.videoProfiler = new VideoCapabilityProfiler(this.context);
+        videoProfiler.ensureProbed();
+        this.thermalGovernor = new ThermalGovernor(new PowerManagerThermalSource(this.context),
+                SystemClock::elapsedRealtime, THERMAL_RECOVERY_DELAY_MS);
+        thermalGovernor.start(level -> mainHandler.post(() -> onThermalLevelChanged(level)));
+        // 预览流重新进入 STREAMING 即视为镜头切换完成
+        previewView.getPreviewStreamState().observe(lifecycleOwner, state -> {
+            if (state == PreviewView.StreamState.STREAMING) onPreviewStreaming();
+        });
     }
 
     public interface Callback {
         void onRecordingStarted();
         void onRecordingStopped();
         void onRecordingError(String message);
+        // 分段录像中的一段没能保存，录像仍在下一段继续，只需提示
+        void onSegmentError(int segmentIndex, String message);
+        // 照片已写盘，上层入库并提示
         void onPhotoSaved(String filePathOrUri);
-        void onVideoSaved(String fileUri, long durationMs);
+        // 内存拍照管线：照片已写盘并发布，上层应立即开始入库，插入完成后调用 onInserted
+        void onPhotoWritten(String filePathOrUri, Runnable onInserted);
+        // 内存拍照管线：onPhotoWritten 之后入库也已完成，只需提示
+        void onPhotoPersisted(String filePathOrUri);
+        // 拍照后尽快回调一张小缩略图（写盘完成之前）；取自预览画面时路径尚未确定，filePathOrUri 为 null
+        void onPhotoThumbnail(String filePathOrUri, Bitmap thumbnail);
+        // 每次录像状态事件回调一次（主线程）
+        void onRecordingTelemetry(RecordingTelemetry telemetry);
+        // 每完成一段回调一次；finalStats 的时长与字节数取自该段的 RecordingStats，
+        // 同一次录像的各段 recordingSession 相同，segmentIndex 从 0 开始
+        void onVideoSaved(String fileUri, RecordingTelemetry finalStats, long recordingSession, int segmentIndex);
+        void onBurstCompleted(List<String> filePathsOrUris, BurstCaptureSession.Stats stats);
+    }
+
+    /**
+     * 单个镜头的缓存信息：选择器、CameraInfo 与支持的录像质量
+     */
+    public static class LensProfile {
+        public final int lensFacing;
+        public final CameraSelector selector;
+        public final CameraInfo cameraInfo;
+        public final List<Quality> supportedQualities;
+
+        LensProfile(int lensFacing, CameraSelector selector, CameraInfo cameraInfo, List<Quality> supportedQualities) {
+            this.lensFacing = lensFacing;
+            this.selector = selector;
+            this.cameraInfo = cameraInfo;
+            this.supportedQualities = supportedQualities;
+        }
+    }
+
+    /**
+     * 会话绑定统计快照
+     */
+    public static class SessionStats {
+        public final int bindsIssued;
+        public final int bindsSucceeded;
+        public final int bindsCoalesced;
+        public final int bindsDropped;
+        public final int bindFailures;
+        public final long lastBindLatencyMs;
+        public final long averageBindLatencyMs;
+        public final int lensSwitches;
+        public final long lastLensSwitchLatencyMs;
+        // 最近一次点击录制到首帧编码的耗时，以及当时录像用例是否已预备
+        public final long lastRecordStartLatencyMs;
+        public final boolean lastRecordStartArmed;
+
+        SessionStats(int bindsIssued, int bindsSucceeded, int bindsCoalesced, int bindsDropped,
+                     int bindFailures, long lastBindLatencyMs, long averageBindLatencyMs,
+                     int lensSwitches, long lastLensSwitchLatencyMs,
+                     long lastRecordStartLatencyMs, boolean lastRecordStartArmed) {
+            this.bindsIssued = bindsIssued;
+            this.bindsSucceeded = bindsSucceeded;
+            this.bindsCoalesced = bindsCoalesced;
+            this.bindsDropped = bindsDropped;
+            this.bindFailures = bindFailures;
+            this.lastBindLatencyMs = lastBindLatencyMs;
+            this.averageBindLatencyMs = averageBindLatencyMs;
+            this.lensSwitches = lensSwitches;
+            this.lastLensSwitchLatencyMs = lastLensSwitchLatencyMs;
+            this.lastRecordStartLatencyMs = lastRecordStartLatencyMs;
+            this.lastRecordStartArmed = lastRecordStartArmed;
+        }
+
+        @Override
+        public String toString() {
+            return "issued=" + bindsIssued + ", succeeded=" + bindsSucceeded
+                    + ", coalesced=" + bindsCoalesced + ", dropped=" + bindsDropped
+                    + ", failures=" + bindFailures + ", lastLatency=" + lastBindLatencyMs
+                    + "ms, avgLatency=" + averageBindLatencyMs + "ms, lensSwitches=" + lensSwitches
+                    + ", lastSwitchLatency=" + lastLensSwitchLatencyMs + "ms"
+                    + ", lastRecordStart=" + lastRecordStartLatencyMs + "ms"
+                    + (lastRecordStartArmed ? " (armed)" : " (cold)");
+        }
     }
 
     public void setUseFrontCamera(boolean useFront) {
-        this.useFrontCamera = useFront;
+        if (this.useFrontCamera != useFront) {
+            this.useFrontCamera = useFront;
+            configVersion++;
+        }
     }
 
+    /**
+     * 请求启动/刷新相机会话。多次调用会合并为一次绑定，会话已是最新时直接丢弃。
+     */
     public void startCamera() {
+        requestBind("startCamera");
+    }
+
+    /**
+     * 获取绑定统计
+     */
+    public SessionStats getSessionStats() {
+        long average = bindsSucceeded > 0 ? totalBindLatencyMs / bindsSucceeded : 0;
+        return new SessionStats(bindsIssued, bindsSucceeded, bindsCoalesced, bindsDropped,
+                bindFailures, lastBindLatencyMs, average, lensSwitches, lastLensSwitchLatencyMs,
+                lastRecordStartLatencyMs, lastRecordStartArmed);
+    }
+
+    /**
+     * 切换前后置镜头。会话已绑定时走快速路径：复用已有用例与缓存的选择器，
+     * 切换期间冻结最后一帧预览；否则退回普通的绑定请求。
+     */
+    public void switchLens(boolean useFront) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> switchLens(useFront));
+            return;
+        }
+        if (useFront == useFrontCamera && sessionState != SessionState.IDLE) return;
+        // 零延迟模式下 ZSL 支持情况因镜头而异，走完整绑定重新判定
+        boolean canFastSwitch = sessionState == SessionState.BOUND && boundConfigVersion == configVersion
+                && !zeroShutterLagEnabled && cameraProvider != null && camera != null && preview != null && imageCapture != null;
+        // 先确认镜头存在再改朝向，不存在时保持当前绑定与朝向不变
+        LensProfile profile = cameraProvider != null ? getLensProfile(useFront) : null;
+        if (cameraProvider != null && profile == null) {
+            Log.w(TAG, "Requested lens not available, front=" + useFront);
+            if (callback != null) callback.onRecordingError("Camera not available");
+            return;
+        }
+        setUseFrontCamera(useFront);
+        if (!canFastSwitch) {
+            requestBind("switchLens");
+            return;
+        }
+
+        lensSwitchStartTime = SystemClock.elapsedRealtime();
+        freezePreview();
+        bindsIssued++;
+        try {
+            cameraProvider.unbindAll();
+            // 录像质量取决于镜头，已有的 Recorder 按新镜头的质量重建
+            if (videoCapture != null) ensureVideoCapture();
+            imageCapture.setTargetRotation(currentRotation());
+            bindUseCasesToLifecycle(profile.selector);
+            bindsSucceeded++;
+            boundConfigVersion = configVersion;
+            Log.d(TAG, "Lens switched to " + (useFront ? "front" : "back") + ", rebind took "
+                    + (SystemClock.elapsedRealtime() - lensSwitchStartTime) + "ms");
+        } catch (Exception e) {
+            Log.e(TAG, "Fast lens switch failed, falling back to full bind", e);
+            bindFailures++;
+            lensSwitchStartTime = 0;
+            unfreezePreview();
+            camera = null;
+            invalidateSession();
+            requestBind("switchLensFallback");
+        }
+    }
+
+    /**
+     * 获取指定镜头的缓存信息，摄像头尚未初始化或镜头不存在时返回 null
+     */
+    public LensProfile getLensProfile(boolean front) {
+        loadLensProfiles();
+        return lensProfiles.get(front ? CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK);
+    }
+
+    private void loadLensProfiles() {
+        if (lensProfilesLoaded || cameraProvider == null) return;
+        List<CameraInfo> available = cameraProvider.getAvailableCameraInfos();
+        for (int lensFacing : new int[]{CameraSelector.LENS_FACING_BACK, CameraSelector.LENS_FACING_FRONT}) {
+            CameraSelector selector = new CameraSelector.Builder().requireLensFacing(lensFacing).build();
+            try {
+                List<CameraInfo> matched = selector.filter(available);
+                if (matched.isEmpty()) continue;
+                CameraInfo info = matched.get(0);
+                List<Quality> qualities = Collections.unmodifiableList(
+                        Recorder.getVideoCapabilities(info).getSupportedQualities(DynamicRange.SDR));
+                lensProfiles.put(lensFacing, new LensProfile(lensFacing, selector, info, qualities));
+                Log.d(TAG, "Lens " + lensFacing + " cached, qualities: " + qualities);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to enumerate lens " + lensFacing, e);
+            }
+        }
+        lensProfilesLoaded = true;
+    }
+
+    /**
+     * 用最后一帧覆盖预览，等新镜头出流后再移除
+     */
+    private void freezePreview() {
+        try {
+            Bitmap lastFrame = previewView.getBitmap();
+            if (lastFrame != null) {
+                previewView.setForeground(new BitmapDrawable(previewView.getResources(), lastFrame));
+                mainHandler.removeCallbacks(unfreezeRunnable);
+                mainHandler.postDelayed(unfreezeRunnable, FREEZE_FRAME_TIMEOUT_MS);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to freeze preview frame", e);
+        }
+    }
+
+    private void unfreezePreview() {
+        mainHandler.removeCallbacks(unfreezeRunnable);
+        previewView.setForeground(null);
+    }
+
+    private void onPreviewStreaming() {
+        if (lensSwitchStartTime > 0) {
+            lastLensSwitchLatencyMs = SystemClock.elapsedRealtime() - lensSwitchStartTime;
+            lensSwitchStartTime = 0;
+            lensSwitches++;
+            Log.d(TAG, "Lens switch latency: " + lastLensSwitchLatencyMs + "ms");
+        }
+        unfreezePreview();
+    }
+
+    private int currentRotation() {
+        return previewView.getDisplay() != null ? previewView.getDisplay().getRotation() : Surface.ROTATION_0;
+    }
+
+    /**
+     * 标记当前会话失效，下一次绑定请求会真正重新绑定
+     */
+    private void invalidateSession() {
+        configVersion++;
+    }
+
+    private void requestBind(String reason) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> requestBind(reason));
+            return;
+        }
+        switch (sessionState) {
+            case RELEASED:
+                Log.d(TAG, "Bind request dropped after release: " + reason);
+                return;
+            case OPENING:
+            case BACKOFF:
+                // 正在打开或等待重试，届时会按最新配置绑定
+                bindsCoalesced++;
+                Log.d(TAG, "Bind request coalesced (" + sessionState + "): " + reason);
+                return;
+            default:
+                break;
+        }
+        if (bindPending) {
+            bindsCoalesced++;
+            Log.d(TAG, "Bind request coalesced (pending): " + reason);
+            return;
+        }
+        bindPending = true;
+        pendingSince = SystemClock.elapsedRealtime();
+        mainHandler.post(pendingBindRunnable);
+    }
+
+    private void runPendingBind() {
+        bindPending = false;
+        if (sessionState == SessionState.RELEASED) return;
+        if (sessionState == SessionState.BOUND && boundConfigVersion == configVersion) {
+            bindsDropped++;
+            pendingSince = 0;
+            Log.d(TAG, "Stale bind request dropped, session is up to date");
+            return;
+        }
+        if (cameraProvider == null) {
+            openCameraProvider();
+        } else {
+            performBind();
+        }
+    }
+
+    private void runRetryBind() {
+        if (sessionState != SessionState.BACKOFF) return;
+        if (cameraProvider == null) {
+            openCameraProvider();
+        } else {
+            performBind();
+        }
+    }
+
+    private void openCameraProvider() {
+        sessionState = SessionState.OPENING;
         //拿到一个异步初始化句柄
         ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(context);
         //注册完成回调
         cameraProviderFuture.addListener(() -> {
+            if (sessionState == SessionState.RELEASED) return;
             try {
                 cameraProvider = cameraProviderFuture.get();
-                bindCameraUseCases();
+                performBind();
             } catch (Exception e) {
                 Log.e(TAG, "Camera start failed", e);
-                if (callback != null) callback.onRecordingError("Camera start failed: " + e.getMessage());
+                if (failedAttempts == 0 && callback != null) callback.onRecordingError("Camera start failed: " + e.getMessage());
+                bindFailures++;
+                scheduleRetry();
             }
         }, ContextCompat.getMainExecutor(context));
     }
 
-    private void bindCameraUseCases() {
-        if (cameraProvider == null) return;
+    /**
+     * 立即按当前配置绑定，成功返回 true；失败则进入退避重试
+     */
+    private boolean performBind() {
+        // 立即绑定会覆盖尚未执行的请求
+        if (bindPending) {
+            mainHandler.removeCallbacks(pendingBindRunnable);
+            bindPending = false;
+            bindsCoalesced++;
+        }
+        mainHandler.removeCallbacks(retryBindRunnable);
+
+        bindsIssued++;
+        long start = SystemClock.elapsedRealtime();
+        int version = configVersion;
+        if (bindCameraUseCases()) {
+            long now = SystemClock.elapsedRealtime();
+            lastBindLatencyMs = now - (pendingSince > 0 ? pendingSince : start);
+            totalBindLatencyMs += lastBindLatencyMs;
+            bindsSucceeded++;
+            pendingSince = 0;
+            failedAttempts = 0;
+            boundConfigVersion = version;
+            sessionState = SessionState.BOUND;
+            Log.d(TAG, "Bind took " + (now - start) + "ms, stats: " + getSessionStats());
+            return true;
+        }
+        bindFailures++;
+        scheduleRetry();
+        return false;
+    }
+
+    private void scheduleRetry() {
+        failedAttempts++;
+        if (failedAttempts > MAX_BIND_RETRIES) {
+            Log.w(TAG, "Bind failed " + (failedAttempts - 1) + " retries, falling back");
+            failedAttempts = 0;
+            pendingSince = 0;
+            tryFallbackCameraConfiguration();
+            // 降级后视为当前配置已处理，避免外部重复请求再次进入失败循环
+            boundConfigVersion = configVersion;
+            sessionState = cameraProvider != null ? SessionState.BOUND : SessionState.IDLE;
+            return;
+        }
+        long delay = Math.min(RETRY_BASE_DELAY_MS << (failedAttempts - 1), RETRY_MAX_DELAY_MS);
+        sessionState = SessionState.BACKOFF;
+        Log.w(TAG, "Bind retry #" + failedAttempts + " in " + delay + "ms");
+        mainHandler.postDelayed(retryBindRunnable, delay);
+    }
+
+    private boolean bindCameraUseCases() {
+        if (cameraProvider == null) return false;
 
         try {
             cameraProvider.unbindAll();
-            //前后置选择
-            int lensFacing = useFrontCamera ? CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK;
-            CameraSelector cameraSelector = new CameraSelector.Builder().requireLensFacing(lensFacing).build();
+            //前后置选择，优先使用缓存的选择器
+            LensProfile profile = getLensProfile(useFrontCamera);
+            CameraSelector cameraSelector = profile != null ? profile.selector
+                    : new CameraSelector.Builder().requireLensFacing(
+                            useFrontCamera ? CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK).build();
 
-            // 使用 AspectRatio 让 CameraX 选择更合适的分辨率，把相机流喂给控件
-            Preview preview = new Preview.Builder()
-                    .setTargetAspectRatio(AspectRatio.RATIO_16_9)
+            // 按当前拍摄预设的目标分辨率选择预览与拍照尺寸，把相机流喂给控件
+            CaptureProfile profileConfig = captureProfile;
+            preview = new Preview.Builder()
+                    .setResolutionSelector(new ResolutionSelector.Builder()
+                            .setAspectRatioStrategy(AspectRatioStrategy.RATIO_16_9_FALLBACK_AUTO_STRATEGY)
+                            .setResolutionStrategy(new ResolutionStrategy(
+                                    powerState == IdleDetector.State.DEEP_IDLE ? IDLE_PREVIEW_SIZE : profileConfig.previewSize,
+                                    ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                            .build())
                     .build();
             preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
-            // 对照片使用 4:3 比例，并保留最小延迟模式
+            // 录像模式下随绑定一起准备录像用例（镜头变化时按新镜头的质量重建）
+            if (recorderArmed) ensureVideoCapture();
+
+            // 零延迟快门：优先使用 CameraX 自带的 ZSL，录像用例已绑定时 CameraX 不支持 ZSL
+            CameraInfo cameraInfo = profile != null ? profile.cameraInfo : null;
+            sensorTimestampRealtime = cameraInfo != null && isSensorTimestampRealtime(cameraInfo);
+            zeroShutterLagEnabled = profileConfig.zeroShutterLag;
+            inMemoryCaptureEnabled = profileConfig.inMemoryCapture;
+            cameraXZslActive = zeroShutterLagEnabled && videoCapture == null
+                    && cameraInfo != null && supportsCameraXZsl(cameraInfo);
+
+            // 对照片使用 4:3 比例，拍照模式与 JPEG 质量取自拍摄预设
+            ResolutionStrategy photoStrategy = profileConfig.photoSize != null
+                    ? new ResolutionStrategy(profileConfig.photoSize, ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER)
+                    : ResolutionStrategy.HIGHEST_AVAILABLE_STRATEGY;
             imageCapture = new ImageCapture.Builder()
-                    .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
-                    .setTargetAspectRatio(AspectRatio.RATIO_4_3)
-                    .setTargetRotation(previewView.getDisplay() != null ? previewView.getDisplay().getRotation() : Surface.ROTATION_0)
+                    .setCaptureMode(cameraXZslActive ? zeroShutterLagCaptureMode() : profileConfig.captureMode)
+                    .setResolutionSelector(new ResolutionSelector.Builder()
+                            .setAspectRatioStrategy(AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY)
+                            .setResolutionStrategy(photoStrategy)
+                            .build())
+                    .setJpegQuality(profileConfig.jpegQuality)
+                    .setTargetRotation(currentRotation())
                     .build();
 
-            // 如果已经准备了 videoCapture 则一起绑定到生命周期，否则只绑定 preview + imageCapture
-            if (videoCapture == null) {
-                cameraProvider.bindToLifecycle(lifecycleOwner, cameraSelector, preview, imageCapture);
-            } else {
-                cameraProvider.bindToLifecycle(lifecycleOwner, cameraSelector, preview, imageCapture, videoCapture);
-            }
+            setupZslRingBuffer(zeroShutterLagEnabled && !cameraXZslActive && videoCapture == null);
+            // 相机同时只能绑定一个 ImageAnalysis，且四路用例在不少设备上无法同时配置
+            setupFrameAnalysis(!frameAnalysisPipeline.isEmpty() && zslAnalysis == null && videoCapture == null);
+
+            bindUseCasesToLifecycle(cameraSelector);
             Log.d(TAG, "Camera bound successfully");
+            return true;
         } catch (Exception e) {
+            camera = null;
             Log.e(TAG, "Camera binding failed", e);
-            if (callback != null) callback.onRecordingError("Camera binding failed: " + e.getMessage());
-            tryFallbackCameraConfiguration();
+            // 只在首次失败时通知，重试期间不重复打扰
+            if (failedAttempts == 0 && callback != null) callback.onRecordingError("Camera binding failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // 如果已经准备了 videoCapture / 零延迟缓冲分析用例则一起绑定到生命周期，否则只绑定 preview + imageCapture
+    private void bindUseCasesToLifecycle(CameraSelector cameraSelector) {
+        List<UseCase> useCases = new ArrayList<>();
+        useCases.add(preview);
+        useCases.add(imageCapture);
+        if (zslAnalysis != null) useCases.add(zslAnalysis);
+        if (frameAnalysis != null) useCases.add(frameAnalysis);
+        if (videoCapture != null) useCases.add(videoCapture);
+        camera = cameraProvider.bindToLifecycle(lifecycleOwner, cameraSelector, useCases.toArray(new UseCase[0]));
+        // 新会话沿用当前的省电与温控设置
+        if (powerState != IdleDetector.State.ACTIVE) {
+            applyPowerSaving(true);
+        } else if (thermalLevel.maxPreviewFps > 0) {
+            applyFrameRateLimit();
+        }
+    }
+
+    private void onThermalLevelChanged(ThermalGovernor.Level level) {
+        if (sessionState == SessionState.RELEASED || level == thermalLevel) return;
+        Log.w(TAG, "Thermal level " + thermalLevel + " -> " + level + " (status " + thermalGovernor.getStatus() + ")");
+        thermalLevel = level;
+        frameAnalysisPipeline.setFrameStride(level.analysisFrameStride);
+        // 录像中不改帧率与录像质量，结束后再生效
+        if (!isRecording) applyThermalLevel();
+        scheduleThermalEvaluate();
+    }
+
+    // 按当前温控档位调整预览帧率，已预备的 Recorder 质量不符时重建
+    private void applyThermalLevel() {
+        applyFrameRateLimit();
+        if (recorderArmed && camera != null && ensureVideoCapture()) {
+            invalidateSession();
+            requestBind("thermal");
+        }
+    }
+
+    // 回落过程中没有新的状态回调，需要定期重新评估才能恢复
+    private void scheduleThermalEvaluate() {
+        mainHandler.removeCallbacks(thermalEvaluateRunnable);
+        if (thermalGovernor.isRecovering()) {
+            mainHandler.postDelayed(thermalEvaluateRunnable, THERMAL_EVALUATE_INTERVAL_MS);
+        }
+    }
+
+    private void evaluateThermal() {
+        if (sessionState == SessionState.RELEASED) return;
+        thermalGovernor.evaluate();
+        scheduleThermalEvaluate();
+    }
+
+    public ThermalGovernor.Level getThermalLevel() {
+        return thermalLevel;
+    }
+
+    /**
+     * 切换省电状态。帧率与分析的调整直接作用于当前会话、立即生效；
+     * 预览分辨率只在进出 DEEP_IDLE 时通过重新绑定改变，恢复期间冻结最后一帧
+     */
+    void setPowerState(IdleDetector.State state) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(() -> setPowerState(state));
+            return;
+        }
+        if (state == powerState || sessionState == SessionState.RELEASED) return;
+        boolean resolutionChanged = (state == IdleDetector.State.DEEP_IDLE) != (powerState == IdleDetector.State.DEEP_IDLE);
+        powerState = state;
+        Log.d(TAG, "Power state -> " + state);
+        applyPowerSaving(state != IdleDetector.State.ACTIVE);
+        if (resolutionChanged && camera != null) {
+            if (state == IdleDetector.State.ACTIVE) freezePreview();
+            invalidateSession();
+            requestBind("powerState");
+        }
+    }
+
+    // 限制/恢复预览帧率，并暂停/恢复所有分析用例
+    private void applyPowerSaving(boolean saving) {
+        applyFrameRateLimit();
+        if (saving) {
+            if (frameAnalysis != null) frameAnalysis.clearAnalyzer();
+            if (zslAnalysis != null) zslAnalysis.clearAnalyzer();
+            if (zslRingBuffer != null) zslRingBuffer.clear();
+        } else {
+            if (frameAnalysis != null && frameAnalysisExecutor != null) {
+                frameAnalysisExecutor.execute(frameAnalysisPipeline::resetFrameClock);
+                frameAnalysis.setAnalyzer(frameAnalysisExecutor, frameAnalysisPipeline);
+            }
+            if (zslAnalysis != null && zslAnalysisExecutor != null && zslRingBuffer != null) {
+                zslAnalysis.setAnalyzer(zslAnalysisExecutor, zslRingBuffer);
+            }
+        }
+    }
+
+    /**
+     * 通过 Camera2 interop 设置预览帧率范围：空闲时取最低的范围，否则按温控档位的上限取最高的范围，
+     * 两者都不限制时清除设置
+     */
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
+    private void applyFrameRateLimit() {
+        if (camera == null) return;
+        try {
+            Camera2CameraControl control = Camera2CameraControl.from(camera.getCameraControl());
+            Range<Integer> range = null;
+            if (powerState != IdleDetector.State.ACTIVE) {
+                range = fpsRangeAtMost(camera.getCameraInfo(), IDLE_MAX_FPS, true);
+            }
+            if (range == null && thermalLevel.maxPreviewFps > 0) {
+                range = fpsRangeAtMost(camera.getCameraInfo(), thermalLevel.maxPreviewFps, false);
+            }
+            if (range != null) {
+                control.setCaptureRequestOptions(new CaptureRequestOptions.Builder()
+                        .setCaptureRequestOption(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, range)
+                        .build());
+            } else {
+                control.clearCaptureRequestOptions();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to apply frame rate range", e);
         }
     }
 
+    // 设备支持的帧率范围中上限不高于 maxFps 的一个：lowest 时取上限最低的，否则取上限最高的；下限都尽量低
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
+    private static Range<Integer> fpsRangeAtMost(CameraInfo cameraInfo, int maxFps, boolean lowest) {
+        Range<Integer>[] ranges = Camera2CameraInfo.from(cameraInfo)
+                .getCameraCharacteristic(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        if (ranges == null) return null;
+        Range<Integer> best = null;
+        for (Range<Integer> range : ranges) {
+            if (range.getUpper() > maxFps) continue;
+            int cmp = best == null ? -1 : Integer.compare(range.getUpper(), best.getUpper());
+            if (!lowest) cmp = -cmp;
+            if (best == null || cmp < 0 || (cmp == 0 && range.getLower() < best.getLower())) {
+                best = range;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 切换拍摄预设：所有相关用例在同一次绑定中按新预设重建。录像或连拍进行中时拒绝切换
+     */
+    public boolean setCaptureProfile(CaptureProfile profile) {
+        if (profile == null || profile == captureProfile) return true;
+        if (isRecording || isBursting()) return false;
+        captureProfile = profile;
+        invalidateSession();
+        requestBind("captureProfile");
+        Log.d(TAG, "Capture profile -> " + profile);
+        return true;
+    }
+
+    public CaptureProfile getCaptureProfile() {
+        return captureProfile;
+    }
+
+    /**
+     * 当前绑定是否使用零延迟快门（取决于拍摄预设）
+     */
+    public boolean isZeroShutterLagEnabled() {
+        return zeroShutterLagEnabled;
+    }
+
+    /**
+     * 最近若干次零延迟拍照的快门偏移（毫秒）：所取帧时间戳减去按下快门的时间，负值表示取到的是按下前的帧
+     */
+    public List<Long> getRecentShutterOffsetsMs() {
+        synchronized (shutterOffsetsMs) {
+            return new ArrayList<>(shutterOffsetsMs);
+        }
+    }
+
+    @OptIn(markerClass = ExperimentalZeroShutterLag.class)
+    private static int zeroShutterLagCaptureMode() {
+        return ImageCapture.CAPTURE_MODE_ZERO_SHUTTER_LAG;
+    }
+
+    // CameraX 的 ZSL 依赖 PRIVATE 格式重处理能力
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
+    private static boolean supportsCameraXZsl(CameraInfo cameraInfo) {
+        int[] capabilities = Camera2CameraInfo.from(cameraInfo)
+                .getCameraCharacteristic(CameraCharacteristics.REQUEST_AVAILABLE_CAPABILITIES);
+        if (capabilities == null) return false;
+        for (int capability : capabilities) {
+            if (capability == CameraMetadata.REQUEST_AVAILABLE_CAPABILITIES_PRIVATE_REPROCESSING) return true;
+        }
+        return false;
+    }
+
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
+    private static boolean isSensorTimestampRealtime(CameraInfo cameraInfo) {
+        Integer source = Camera2CameraInfo.from(cameraInfo)
+                .getCameraCharacteristic(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+        return source != null && source == CameraMetadata.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+    }
+
+    // 与传感器时间戳同一时间基准的当前时刻
+    private long sensorClockNanos() {
+        return sensorTimestampRealtime ? SystemClock.elapsedRealtimeNanos() : System.nanoTime();
+    }
+
+    private void setupZslRingBuffer(boolean enabled) {
+        if (!enabled) {
+            zslAnalysis = null;
+            if (zslRingBuffer != null) zslRingBuffer.clear();
+            return;
+        }
+        if (zslRingBuffer == null) zslRingBuffer = new ZslRingBuffer(ZSL_RING_CAPACITY);
+        if (zslAnalysisExecutor == null) zslAnalysisExecutor = Executors.newSingleThreadExecutor();
+        // 在与其他用例组合允许的范围内取最高分辨率，与拍照保持 4:3
+        ResolutionSelector resolutionSelector = new ResolutionSelector.Builder()
+                .setAspectRatioStrategy(AspectRatioStrategy.RATIO_4_3_FALLBACK_AUTO_STRATEGY)
+                .setResolutionStrategy(ResolutionStrategy.HIGHEST_AVAILABLE_STRATEGY)
+                .build();
+        zslAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(resolutionSelector)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setTargetRotation(currentRotation())
+                .build();
+        zslAnalysis.setAnalyzer(zslAnalysisExecutor, zslRingBuffer);
+    }
+
+    private void setupFrameAnalysis(boolean enabled) {
+        if (!enabled) {
+            frameAnalysis = null;
+            return;
+        }
+        if (frameAnalysisExecutor == null) frameAnalysisExecutor = Executors.newSingleThreadExecutor();
+        ResolutionSelector resolutionSelector = new ResolutionSelector.Builder()
+                .setResolutionStrategy(new ResolutionStrategy(FRAME_ANALYSIS_SIZE,
+                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                .build();
+        frameAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(resolutionSelector)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .build();
+        frameAnalysisExecutor.execute(frameAnalysisPipeline::resetFrameClock);
+        frameAnalysis.setAnalyzer(frameAnalysisExecutor, frameAnalysisPipeline);
+    }
+
+    /**
+     * 注册预览分析器；第一个分析器注册时会重新绑定以加入分析用例
+     */
+    public void addFrameAnalyzer(FrameAnalyzer analyzer) {
+        boolean wasEmpty = frameAnalysisPipeline.isEmpty();
+        frameAnalysisPipeline.addAnalyzer(analyzer);
+        if (wasEmpty) {
+            invalidateSession();
+            requestBind("frameAnalysis");
+        }
+    }
+
+    public void removeFrameAnalyzer(FrameAnalyzer analyzer) {
+        frameAnalysisPipeline.removeAnalyzer(analyzer);
+        if (frameAnalysisPipeline.isEmpty() && frameAnalysis != null) {
+            invalidateSession();
+            requestBind("frameAnalysis");
+        }
+    }
+
+    /**
+     * 分析管线统计：每个分析器的耗时、估算的丢帧数以及是否已被自动停用
+     */
+    public FrameAnalysisPipeline.Stats getFrameAnalysisStats() {
+        return frameAnalysisPipeline.getStats();
+    }
+
+    private void recordShutterOffset(long frameTimestampNanos, long shutterNanos) {
+        long offsetMs = TimeUnit.NANOSECONDS.toMillis(frameTimestampNanos - shutterNanos);
+        synchronized (shutterOffsetsMs) {
+            if (shutterOffsetsMs.size() >= MAX_SHUTTER_OFFSET_RECORDS) shutterOffsetsMs.removeFirst();
+            shutterOffsetsMs.addLast(offsetMs);
+        }
+        Log.d(TAG, "Shutter-to-frame offset: " + offsetMs + "ms");
+    }
+
+    /**
+     * 零延迟拍照：环形缓冲里有帧就直接取最接近快门时刻的一帧，否则走 CameraX（ZSL 或普通）内存拍照
+     */
+    private void takePhotoZeroShutterLag(long traceId, String fileName, ShotRecord shot) {
+        long shutterNanos = sensorClockNanos();
+        ZslRingBuffer.Snapshot snapshot = zslRingBuffer != null && zslAnalysis != null
+                ? zslRingBuffer.pickClosest(shutterNanos) : null;
+        if (snapshot != null) {
+            recordShutterOffset(snapshot.timestampNanos, shutterNanos);
+            cameraExecutor.execute(() -> {
+                try {
+                    byte[] jpeg = ImageUtils.nv21ToJpeg(snapshot.nv21, snapshot.width, snapshot.height,
+                            shot.profile.jpegQuality);
+                    String path = MediaStoreWriter.writeJpeg(context, appStorageDir, fileName, jpeg, snapshot.rotationDegrees);
+                    recordProfileShot(shot, path, jpeg.length);
+                    notifyPhotoSaved(traceId, shot, path);
+                } catch (Exception e) {
+                    Log.e(TAG, "Zero shutter lag save failed", e);
+                    notifyPhotoFailed(traceId, "Photo failed: " + e.getMessage());
+                }
+            });
+            return;
+        }
+
+        imageCapture.takePicture(cameraExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                byte[] jpeg;
+                try {
+                    recordShutterOffset(image.getImageInfo().getTimestamp(), shutterNanos);
+                    jpeg = ImageUtils.copyJpeg(image);
+                } finally {
+                    image.close();
+                }
+                try {
+                    // 方向已由相机写入 JPEG 的 EXIF
+                    String path = MediaStoreWriter.writeJpeg(context, appStorageDir, fileName, jpeg, 0);
+                    recordProfileShot(shot, path, jpeg.length);
+                    notifyPhotoSaved(traceId, shot, path);
+                } catch (Exception e) {
+                    Log.e(TAG, "Zero shutter lag save failed", e);
+                    notifyPhotoFailed(traceId, "Photo failed: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                Log.e(TAG, "Photo capture failed", exception);
+                notifyPhotoFailed(traceId, "Photo failed: " + exception.getMessage());
+            }
+        });
+    }
+
     //降级到最简单的“只预览”模式
     private void tryFallbackCameraConfiguration() {
         if (cameraProvider == null) return;
+        camera = null;
         try {
             cameraProvider.unbindAll();
             CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
@@ -156,9 +1037,24 @@ public class CameraController {
             return;
         }
 
+        // 全链路追踪从这里开始，保存后按文件路径继续打点
+        long traceId = CaptureTracer.get().begin();
+        ShotRecord shot = new ShotRecord(captureProfile);
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
         String fileName = "IMG_" + timeStamp + ".jpg";
 
+        // 内存管线会从 JPEG 解码缩略图，其余路径拿不到帧，先用快门时刻的预览画面
+        if (zeroShutterLagEnabled || !inMemoryCaptureEnabled) showPreviewThumbnail(shot);
+
+        if (zeroShutterLagEnabled) {
+            takePhotoZeroShutterLag(traceId, fileName, shot);
+            return;
+        }
+        if (inMemoryCaptureEnabled) {
+            takePhotoInMemory(traceId, fileName, shot);
+            return;
+        }
+
         //根据系统版本，选择两条不同的保存路径，把拍出来的照片写进相册
         ImageCapture.OutputFileOptions outputOptions;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
@@ -186,57 +1082,303 @@ public class CameraController {
                     } else {
                         filePath = getLatestImagePath();
                     }
+                    recordProfileShot(shot, filePath, -1);
                     //结果交给上层
-                    if (callback != null) callback.onPhotoSaved(filePath);
+                    notifyPhotoSaved(traceId, shot, filePath);
                 } catch (Exception e) {
                     Log.e(TAG, "onImageSaved error", e);
-                    if (callback != null) callback.onRecordingError("Photo saved but handling failed: " + e.getMessage());
+                    notifyPhotoFailed(traceId, "Photo saved but handling failed: " + e.getMessage());
                 }
             }
 
             @Override
             public void onError(@NonNull ImageCaptureException exception) {
                 Log.e(TAG, "Photo capture failed", exception);
-                if (callback != null) callback.onRecordingError("Photo failed: " + exception.getMessage());
+                notifyPhotoFailed(traceId, "Photo failed: " + exception.getMessage());
             }
         });
     }
 
-    public void toggleRecording() {
-        if (!isRecording) {
-            startRecording();
-        } else {
-            stopRecording();
+    /**
+     * 把当前预览画面缩成缩略图立即交给上层显示，写盘完成后再按路径放入 CaptureThumbnailCache
+     */
+    private void showPreviewThumbnail(ShotRecord shot) {
+        if (Looper.myLooper() != Looper.getMainLooper()) return;
+        try {
+            Bitmap frame = previewView.getBitmap();
+            if (frame == null) return;
+            shot.thumbnail = ImageUtils.downscale(frame, InMemoryCapturePipeline.THUMBNAIL_SIZE_PX);
+            if (callback != null) callback.onPhotoThumbnail(null, shot.thumbnail);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to snapshot preview thumbnail", e);
         }
     }
 
-    public void startRecording() {
-        if (cameraProvider == null) {
-            if (callback != null) callback.onRecordingError("Camera provider not ready");
-            return;
+    /**
+     * 一次拍照开始时的预设与采样，写盘完成后记入 CaptureProfileStats。
+     * 从快门起每 MEMORY_SAMPLE_INTERVAL_MS 采样一次内存，取整个拍摄过程中的峰值
+     */
+    private static final class ShotRecord {
+        final CaptureProfile profile;
+        final long shutterTime = SystemClock.elapsedRealtime();
+        private final AtomicLong peakMemory = new AtomicLong(memoryInUse());
+        // 快门时刻的小缩略图，没有时为 null
+        volatile Bitmap thumbnail;
+
+        ShotRecord(CaptureProfile profile) {
+            this.profile = profile;
+            MemorySampler.INSTANCE.add(this);
         }
 
-        // 如果还没有 videoCapture，延迟创建 Recorder
-        if (videoCapture == null) {
-            try {
-                Recorder recorder = new Recorder.Builder()
-                        // 优先使用 HD 或 SD，避免使用 Quality.HIGHEST 导致编码/初始化延迟
-                        .setQualitySelector(QualitySelector.from(Quality.HD,
-                                FallbackStrategy.higherQualityOrLowerThan(Quality.SD)))
-                        .build();
-                //把刚才配置好的 Recorder 包装成一个 VideoCapture 用例
-                videoCapture = VideoCapture.withOutput(recorder);
-            } catch (Exception e) {
-                Log.w(TAG, "Recorder init failed", e);
-                if (callback != null) callback.onRecordingError("Recorder init failed: " + e.getMessage());
-                // 仍然尝试继续
-                return;
+        void sample(long memory) {
+            peakMemory.accumulateAndGet(memory, Math::max);
+        }
+
+        /**
+         * 停止采样，返回拍摄过程中的内存峰值
+         */
+        long finish() {
+            MemorySampler.INSTANCE.remove(this);
+            sample(memoryInUse());
+            return peakMemory.get();
+        }
+    }
+
+    /**
+     * 进行中的拍照共用一个采样任务，在调度器的计时线程上每 SAMPLE_INTERVAL_MS 采一次；
+     * 不占用拍照写盘通道，编码与写盘期间照常采样。没有进行中的拍照时停止
+     */
+    private static final class MemorySampler {
+        static final MemorySampler INSTANCE = new MemorySampler();
+        private static final long SAMPLE_INTERVAL_MS = 20;
+        // 失败的拍照不会调用 finish()，最多采样这么久
+        private static final long SAMPLE_LIMIT_MS = 10_000;
+
+        private final Set<ShotRecord> shots = new HashSet<>();
+        private Future<?> task;
+
+        synchronized void add(ShotRecord shot) {
+            shots.add(shot);
+            if (task == null) task = TaskScheduler.get().scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL_MS);
+        }
+
+        synchronized void remove(ShotRecord shot) {
+            shots.remove(shot);
+            stopIfIdle();
+        }
+
+        private synchronized void sample() {
+            long memory = memoryInUse();
+            long now = SystemClock.elapsedRealtime();
+            for (Iterator<ShotRecord> it = shots.iterator(); it.hasNext(); ) {
+                ShotRecord shot = it.next();
+                shot.sample(memory);
+                if (now - shot.shutterTime >= SAMPLE_LIMIT_MS) it.remove();
+            }
+            stopIfIdle();
+        }
+
+        private void stopIfIdle() {
+            if (!shots.isEmpty() || task == null) return;
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    // Java 堆已用 + native 堆已分配（相机缓冲与 Bitmap 多在 native 堆）
+    private static long memoryInUse() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+
+    private void recordProfileShot(ShotRecord shot, String filePathOrUri, long knownBytes) {
+        long latency = SystemClock.elapsedRealtime() - shot.shutterTime;
+        long bytes = knownBytes >= 0 ? knownBytes : sizeOf(filePathOrUri);
+        long memory = shot.finish();
+        CaptureProfileStats.get().record(shot.profile.name(), latency, bytes, memory);
+    }
+
+    private long sizeOf(String filePathOrUri) {
+        if (filePathOrUri == null) return -1;
+        if (!filePathOrUri.startsWith("content://")) return new File(filePathOrUri).length();
+        try (AssetFileDescriptor afd = context.getContentResolver()
+                .openAssetFileDescriptor(Uri.parse(filePathOrUri), "r")) {
+            return afd != null ? afd.getLength() : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void notifyPhotoSaved(long traceId, ShotRecord shot, String filePathOrUri) {
+        CaptureTracer.get().attachPath(traceId, filePathOrUri);
+        // 快门时生成的缩略图留给图库作占位图
+        CaptureThumbnailCache.get().put(filePathOrUri, shot.thumbnail);
+        if (callback != null) callback.onPhotoSaved(filePathOrUri);
+    }
+
+    private void notifyPhotoFailed(long traceId, String message) {
+        CaptureTracer.get().abandon(traceId);
+        if (callback != null) callback.onRecordingError(message);
+    }
+
+    /**
+     * 最近一次内存管线拍照的各阶段耗时，尚未拍过时返回 null
+     */
+    public InMemoryCapturePipeline.StageTimings getLastCaptureTimings() {
+        return lastCaptureTimings;
+    }
+
+    private void takePhotoInMemory(long traceId, String fileName, ShotRecord shot) {
+        if (inMemoryPipeline == null) {
+            inMemoryPipeline = new InMemoryCapturePipeline(context, appStorageDir, cameraExecutor,
+                    TaskScheduler.get().executor(TaskScheduler.Lane.THUMBNAIL));
+        }
+        inMemoryPipeline.capture(imageCapture, fileName, new InMemoryCapturePipeline.Listener() {
+            @Override
+            public void onOutputAllocated(String filePathOrUri) {
+                CaptureTracer.get().linkPath(traceId, filePathOrUri);
+            }
+
+            @Override
+            public void onThumbnailDecoded(String filePathOrUri, Bitmap thumbnail) {
+                CaptureThumbnailCache.get().put(filePathOrUri, thumbnail);
+                if (callback != null) callback.onPhotoThumbnail(filePathOrUri, thumbnail);
+            }
+
+            @Override
+            public void onWritten(String filePathOrUri, Runnable onInserted) {
+                CaptureTracer.get().mark(filePathOrUri, CaptureTracer.Stage.CAPTURE_SAVED);
+                if (callback != null) {
+                    callback.onPhotoWritten(filePathOrUri, onInserted);
+                } else {
+                    onInserted.run();
+                }
+            }
+
+            @Override
+            public void onSaved(String filePathOrUri, InMemoryCapturePipeline.StageTimings timings) {
+                lastCaptureTimings = timings;
+                recordProfileShot(shot, filePathOrUri, -1);
+                if (callback != null) callback.onPhotoPersisted(filePathOrUri);
+            }
+
+            @Override
+            public void onDiscarded(String filePathOrUri, String message) {
+                CaptureThumbnailCache.get().remove(filePathOrUri);
+                notifyPhotoFailed(traceId, message);
+            }
+
+            @Override
+            public void onError(String message) {
+                notifyPhotoFailed(traceId, message);
             }
-            // 重新绑定用例
-            bindCameraUseCases();
+        });
+    }
+
+    /**
+     * 设置连拍队列容量、工作线程数与队列满时的策略，下次连拍生效
+     */
+    public void setBurstConfig(BurstCaptureSession.Config config) {
+        if (config != null) this.burstConfig = config;
+    }
+
+    /**
+     * 开始连拍（按住快门），直到 stopBurst 为止
+     */
+    public void startBurst() {
+        if (imageCapture == null) {
+            if (callback != null) callback.onRecordingError("ImageCapture not ready");
+            return;
         }
+        if (burstSession != null && burstSession.isCapturing()) return;
+        burstSession = new BurstCaptureSession(context, imageCapture, cameraExecutor, appStorageDir, burstConfig,
+                new BurstCaptureSession.Listener() {
+                    @Override
+                    public void onBurstCompleted(List<String> savedPaths, BurstCaptureSession.Stats stats) {
+                        if (callback != null) callback.onBurstCompleted(savedPaths, stats);
+                    }
+
+                    @Override
+                    public void onBurstError(String message) {
+                        if (callback != null) callback.onRecordingError(message);
+                    }
+                });
+        burstSession.start();
+    }
 
-        // 准备 MediaStore 输出等（与原逻辑一致）
+    /**
+     * 松开快门结束连拍，已拍到的帧写完后回调 onBurstCompleted
+     */
+    public void stopBurst() {
+        if (burstSession != null) burstSession.stop();
+    }
+
+    public boolean isBursting() {
+        return burstSession != null && burstSession.isCapturing();
+    }
+
+    /**
+     * 进入录像模式时调用：提前创建 Recorder 并绑定、准备好下一次的输出参数，
+     * 之后点击录制只剩编码器启动的开销
+     */
+    public void armRecorder() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(this::armRecorder);
+            return;
+        }
+        recorderArmed = true;
+        prepareNextOutput();
+        // 摄像头尚未就绪时由绑定流程负责创建录像用例
+        try {
+            if (cameraProvider != null && ensureVideoCapture()) invalidateSession();
+        } catch (Exception e) {
+            Log.w(TAG, "Recorder pre-arm failed", e);
+        }
+        requestBind("armRecorder");
+    }
+
+    /**
+     * 离开录像模式：解绑录像用例，拍照模式下可重新启用 CameraX 零延迟快门
+     */
+    public void disarmRecorder() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(this::disarmRecorder);
+            return;
+        }
+        recorderArmed = false;
+        preparedOutput = null;
+        if (videoCapture == null || isRecording) return;
+        videoCapture = null;
+        recorderQuality = null;
+        invalidateSession();
+        requestBind("disarmRecorder");
+    }
+
+    /**
+     * 确保存在与当前镜头质量匹配的录像用例，新建了用例时返回 true（需要重新绑定）
+     */
+    private boolean ensureVideoCapture() {
+        // 当前镜头应使用的质量与已有 Recorder 不同（切换了镜头或用户改了设置）时重建
+        Quality targetQuality = selectVideoQuality();
+        if (videoCapture != null) {
+            if (targetQuality.equals(recorderQuality)) return false;
+            Log.d(TAG, "Video quality changed " + recorderQuality + " -> " + targetQuality + ", rebuilding recorder");
+        }
+        Recorder recorder = new Recorder.Builder()
+                // 选中的质量不可用时向下回退，避免超出写入能力
+                .setQualitySelector(QualitySelector.from(targetQuality,
+                        FallbackStrategy.lowerQualityOrHigherThan(targetQuality)))
+                .build();
+        //把刚才配置好的 Recorder 包装成一个 VideoCapture 用例
+        videoCapture = VideoCapture.withOutput(recorder);
+        recorderQuality = targetQuality;
+        return true;
+    }
+
+    /**
+     * 预先生成下一次录像的 MediaStore 输出参数
+     */
+    private void prepareNextOutput() {
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
         ContentValues contentValues = new ContentValues();
         contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, "VID_" + timeStamp + ".mp4");
@@ -245,21 +1387,94 @@ public class CameraController {
             contentValues.put(MediaStore.Video.Media.RELATIVE_PATH, Environment.DIRECTORY_MOVIES + "/SimpleCamera");
         }
 
-        MediaStoreOutputOptions outputOptions = new MediaStoreOutputOptions.Builder(
+        preparedOutput = new MediaStoreOutputOptions.Builder(
                 context.getContentResolver(),
                 MediaStore.Video.Media.EXTERNAL_CONTENT_URI)
                 .setContentValues(contentValues)
                 .build();
+        preparedOutputTime = SystemClock.elapsedRealtime();
+    }
+
+    // 取走预先准备的输出；准备得太久则重新生成，避免文件名时间与实际录制相差过大
+    private MediaStoreOutputOptions takePreparedOutput() {
+        if (preparedOutput == null || SystemClock.elapsedRealtime() - preparedOutputTime > PREPARED_OUTPUT_MAX_AGE_MS) {
+            prepareNextOutput();
+        }
+        MediaStoreOutputOptions output = preparedOutput;
+        preparedOutput = null;
+        return output;
+    }
+
+    /**
+     * 当前镜头的录像质量：用户指定优先，否则取写入吞吐允许的最高受支持质量；过热时再按温控档位下调
+     */
+    private Quality selectVideoQuality() {
+        LensProfile profile = getLensProfile(useFrontCamera);
+        List<Quality> supported = profile != null ? profile.supportedQualities : null;
+        Quality quality = videoProfiler.selectQuality(supported, captureProfile.maxVideoQuality);
+        return VideoCapabilityProfiler.stepDown(quality, thermalLevel.videoQualitySteps, supported);
+    }
+
+    /**
+     * 循环切换用户指定的录像质量（自动 → SD → HD → FHD → UHD → 自动），返回用于展示的文字
+     */
+    public String cycleVideoQualityOverride() {
+        LensProfile profile = getLensProfile(useFrontCamera);
+        Quality override = videoProfiler.cycleOverride(profile != null ? profile.supportedQualities : null);
+        return getVideoQualityLabel(override);
+    }
+
+    public String getVideoQualityLabel() {
+        return getVideoQualityLabel(videoProfiler.getOverride());
+    }
+
+    private String getVideoQualityLabel(Quality override) {
+        if (override != null) return VideoCapabilityProfiler.nameOf(override);
+        return "Auto (" + VideoCapabilityProfiler.nameOf(selectVideoQuality()) + ")";
+    }
+
+    public void toggleRecording() {
+        if (!isRecording) {
+            startRecording();
+        } else {
+            stopRecording();
+        }
+    }
+
+    public void startRecording() {
+        if (cameraProvider == null) {
+            if (callback != null) callback.onRecordingError("Camera provider not ready");
+            return;
+        }
+        long tapTime = SystemClock.elapsedRealtime();
+
+        // 已预备好的录像用例直接使用，否则（冷启动或质量变化）先创建并同步绑定
+        boolean rebuilt;
+        try {
+            rebuilt = ensureVideoCapture();
+        } catch (Exception e) {
+            Log.w(TAG, "Recorder init failed", e);
+            if (callback != null) callback.onRecordingError("Recorder init failed: " + e.getMessage());
+            return;
+        }
+        boolean armed = !rebuilt && sessionState == SessionState.BOUND && boundConfigVersion == configVersion;
+        if (!armed) {
+            // 重新绑定用例（同步执行，并吞掉尚未执行的绑定请求）
+            invalidateSession();
+            if (!performBind()) return;
+        }
 
         try {
             if (ContextCompat.checkSelfPermission(context, android.Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
-                activeRecording = videoCapture.getOutput()
-                        .prepareRecording(context, outputOptions)
-                        .withAudioEnabled()
-                        .start(ContextCompat.getMainExecutor(context), this::handleRecordingEvent);
+                sessionBaseDurationNanos = 0;
+                sessionBaseBytes = 0;
+                activeRecording = startSegment(new RecordingSegment(System.currentTimeMillis(), 0));
 
                 isRecording = true;
-                recordingStartTime = System.currentTimeMillis();
+                lastTelemetry = null;
+                lastTelemetryTime = 0;
+                recordTapTime = tapTime;
+                recordTapArmed = armed;
                 if (callback != null) callback.onRecordingStarted();
                 Log.d(TAG, "Recording started");
             } else {
@@ -271,12 +1486,70 @@ public class CameraController {
         }
     }
 
+    // 在预先准备好的输出上开始一段录制
+    private Recording startSegment(RecordingSegment segment) {
+        MediaStoreOutputOptions outputOptions = takePreparedOutput();
+        Recording recording = videoCapture.getOutput()
+                .prepareRecording(context, outputOptions)
+                .withAudioEnabled()
+                .start(ContextCompat.getMainExecutor(context), event -> handleRecordingEvent(event, segment));
+        currentSegment = segment;
+        return recording;
+    }
+
+    /**
+     * 设置分段录像：maxBytes / maxDurationMs 任一为 0 表示不按该条件切分，两者都为 0 时关闭分段。
+     * 录像中修改从下一次检查起生效
+     */
+    public void setSegmentedRecording(long maxBytes, long maxDurationMs) {
+        segmentMaxBytes = Math.max(0, maxBytes);
+        segmentMaxDurationMs = Math.max(0, maxDurationMs);
+        segmentedRecording = segmentMaxBytes > 0 || segmentMaxDurationMs > 0;
+    }
+
+    // 当前段是否达到切分条件
+    private boolean shouldRollOver(RecordingStats stats) {
+        if (!segmentedRecording) return false;
+        return (segmentMaxBytes > 0 && stats.getNumBytesRecorded() >= segmentMaxBytes)
+                || (segmentMaxDurationMs > 0 && stats.getRecordedDurationNanos() / 1_000_000L >= segmentMaxDurationMs);
+    }
+
+    /**
+     * 结束当前段并立即开始下一段。Recorder 在上一段收尾期间会把新的录制排队，
+     * 上一段 Finalize 后马上开始，空档只有封装收尾的时间；排队失败时等 Finalize 后再开始
+     */
+    private void rollOverSegment(RecordingSegment segment, RecordingStats stats) {
+        sessionBaseDurationNanos += stats.getRecordedDurationNanos();
+        sessionBaseBytes += stats.getNumBytesRecorded();
+        RecordingSegment next = new RecordingSegment(segment.session, segment.index + 1);
+        next.rolloverTime = SystemClock.elapsedRealtime();
+        Log.d(TAG, "Segment " + segment.index + " full (" + stats.getNumBytesRecorded() + " bytes), rolling over");
+        activeRecording.stop();
+        activeRecording = null;
+        // 录像中推迟的温控调整在段边界生效：帧率立即调整，录像质量变化时重建 Recorder
+        applyFrameRateLimit();
+        if (!selectVideoQuality().equals(recorderQuality)) {
+            Log.d(TAG, "Thermal level " + thermalLevel + ", rebinding recorder before segment " + next.index);
+            currentSegment = next;
+            rebindBeforeNextSegment = true;
+            return;
+        }
+        try {
+            activeRecording = startSegment(next);
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Recorder busy, starting segment " + next.index + " after finalize", e);
+            currentSegment = next;
+        }
+    }
+
     public void stopRecording() {
         try {
             if (activeRecording != null) {
                 activeRecording.stop();
                 activeRecording = null;
             }
+            currentSegment = null;
+            rebindBeforeNextSegment = false;
         } catch (Exception e) {
             Log.e(TAG, "Error stopping recording", e);
             if (callback != null) callback.onRecordingError("Stop recording error: " + e.getMessage());
@@ -286,30 +1559,121 @@ public class CameraController {
         }
     }
 
-    private void handleRecordingEvent(VideoRecordEvent event) {
+    private void handleRecordingEvent(VideoRecordEvent event, RecordingSegment segment) {
         if (event instanceof VideoRecordEvent.Finalize) {
             VideoRecordEvent.Finalize finalizeEvent = (VideoRecordEvent.Finalize) event;
+            // 录像已经切到下一段（或下一段正等着这一段收尾）
+            boolean continued = isRecording && currentSegment != null && currentSegment != segment;
             if (finalizeEvent.hasError()) {
                 String message = "Recording finalize error: " + finalizeEvent.getError();
                 Log.e(TAG, message);
-                if (callback != null) callback.onRecordingError(message);
-                // 尝试重新绑定摄像头以恢复状态
-                startCamera();
+                if (callback != null) {
+                    if (continued) {
+                        callback.onSegmentError(segment.index, message);
+                    } else {
+                        callback.onRecordingError(message);
+                    }
+                }
+                // 过热时的录像失败视为负载过高，额外降一级后再重建
+                thermalGovernor.reportRecordingFailure();
+                if (!continued) {
+                    // 尝试重新绑定摄像头以恢复状态
+                    invalidateSession();
+                    requestBind("finalizeError");
+                }
             } else {
-                long duration = System.currentTimeMillis() - recordingStartTime;
+                // 录像期间推迟的温控调整此时生效
+                if (!isRecording) applyThermalLevel();
+                RecordingStats stats = finalizeEvent.getRecordingStats();
+                RecordingTelemetry finalStats = RecordingTelemetry.from(stats.getRecordedDurationNanos(),
+                        stats.getNumBytesRecorded(), audioStateName(stats.getAudioStats().getAudioState()), null, 0);
+                Log.d(TAG, "Segment " + segment.index + " finalized: " + finalStats);
                 String uriStr = finalizeEvent.getOutputResults().getOutputUri() != null ?
                         finalizeEvent.getOutputResults().getOutputUri().toString() : null;
                 if (uriStr != null && callback != null) {
-                    callback.onVideoSaved(uriStr, duration);
-                } else {
-                    if (callback != null) callback.onRecordingError("Video saved but URI is null");
+                    callback.onVideoSaved(uriStr, finalStats, segment.session, segment.index);
+                } else if (callback != null) {
+                    if (continued) {
+                        callback.onSegmentError(segment.index, "Video saved but URI is null");
+                    } else {
+                        callback.onRecordingError("Video saved but URI is null");
+                    }
+                }
+            }
+            // 下一段没能排队时在这里补上
+            if (continued && activeRecording == null) {
+                try {
+                    if (rebindBeforeNextSegment) {
+                        rebindBeforeNextSegment = false;
+                        ensureVideoCapture();
+                        invalidateSession();
+                        if (!performBind()) throw new IllegalStateException("Rebind for thermal level failed");
+                    }
+                    activeRecording = startSegment(currentSegment);
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to start segment " + currentSegment.index, e);
+                    if (callback != null) callback.onRecordingError("Start segment failed: " + e.getMessage());
+                    stopRecording();
                 }
             }
         } else if (event instanceof VideoRecordEvent.Start) {
-            Log.d(TAG, "Recording event: Start");
+            if (segment.rolloverTime > 0) {
+                Log.d(TAG, "Recording event: Start (segment " + segment.index + ", gap "
+                        + (SystemClock.elapsedRealtime() - segment.rolloverTime) + "ms)");
+            } else {
+                Log.d(TAG, "Recording event: Start");
+            }
+            // 为下一次录像（或下一段）提前准备输出
+            if (recorderArmed || segmentedRecording) prepareNextOutput();
         } else if (event instanceof VideoRecordEvent.Status) {
-            // 可用于监控编码状态
-            Log.d(TAG, "Recording status: " + ((VideoRecordEvent.Status) event).getRecordingStats());
+            // 上一段收尾期间的状态事件不再计入
+            if (segment != currentSegment) return;
+            RecordingStats stats = event.getRecordingStats();
+            if (isRecording && activeRecording != null && shouldRollOver(stats)) {
+                rollOverSegment(segment, stats);
+                return;
+            }
+            RecordingTelemetry telemetry = updateTelemetry(stats);
+            if (recordTapTime > 0 && telemetry.recordedDurationMs > 0) {
+                lastRecordStartLatencyMs = SystemClock.elapsedRealtime() - recordTapTime;
+                lastRecordStartArmed = recordTapArmed;
+                recordTapTime = 0;
+                Log.d(TAG, "Tap to first encoded frame: " + lastRecordStartLatencyMs + "ms ("
+                        + (lastRecordStartArmed ? "armed" : "cold") + ")");
+            }
+            if (telemetry.stalled) Log.w(TAG, "Encoder stalled: " + telemetry);
+            if (callback != null) callback.onRecordingTelemetry(telemetry);
+        }
+    }
+
+    /**
+     * 由 RecordingStats 生成遥测快照，码率按与上一次事件的差值计算
+     */
+    private RecordingTelemetry updateTelemetry(RecordingStats stats) {
+        long now = SystemClock.elapsedRealtime();
+        long wallDelta = lastTelemetryTime > 0 ? now - lastTelemetryTime : 0;
+        RecordingTelemetry telemetry = RecordingTelemetry.from(sessionBaseDurationNanos + stats.getRecordedDurationNanos(),
+                sessionBaseBytes + stats.getNumBytesRecorded(), audioStateName(stats.getAudioStats().getAudioState()),
+                lastTelemetry, wallDelta);
+        lastTelemetry = telemetry;
+        lastTelemetryTime = now;
+        return telemetry;
+    }
+
+    private static String audioStateName(int audioState) {
+        switch (audioState) {
+            case AudioStats.AUDIO_STATE_ACTIVE:
+                return "ACTIVE";
+            case AudioStats.AUDIO_STATE_DISABLED:
+                return "DISABLED";
+            case AudioStats.AUDIO_STATE_SOURCE_SILENCED:
+                return "SOURCE_SILENCED";
+            case AudioStats.AUDIO_STATE_ENCODER_ERROR:
+                return "ENCODER_ERROR";
+            case AudioStats.AUDIO_STATE_SOURCE_ERROR:
+                return "SOURCE_ERROR";
+            default:
+                return "UNKNOWN(" + audioState + ")";
         }
     }
 
@@ -332,28 +1696,48 @@ public class CameraController {
     }
     public void release() {
         Log.d(TAG, "Releasing camera resources...");
+        // 0. 停止会话状态机，丢弃所有未执行的绑定请求
+        sessionState = SessionState.RELEASED;
+        bindPending = false;
+        mainHandler.removeCallbacks(pendingBindRunnable);
+        mainHandler.removeCallbacks(retryBindRunnable);
+        mainHandler.removeCallbacks(unfreezeRunnable);
+        mainHandler.removeCallbacks(thermalEvaluateRunnable);
+        thermalGovernor.stop();
+        Log.d(TAG, "Session stats: " + getSessionStats());
         try {
             // 1. 停止录像
             if (isRecording && activeRecording != null) {
                 Log.d(TAG, "Stopping active recording");
                 activeRecording.stop();
                 activeRecording = null;
+                currentSegment = null;
                 isRecording = false;
             }
 
-            // 2. 关闭执行器
-            if (cameraExecutor != null && !cameraExecutor.isShutdown()) {
-                Log.d(TAG, "Shutting down camera executor");
-                cameraExecutor.shutdown();
-                try {
-                    if (!cameraExecutor.awaitTermination(2, TimeUnit.SECONDS)) {
-                        cameraExecutor.shutdownNow();
-                    }
-                } catch (InterruptedException e) {
-                    cameraExecutor.shutdownNow();
-                    Thread.currentThread().interrupt();
-                }
+            // 1.5 终止连拍
+            if (burstSession != null) {
+                burstSession.cancel();
+                burstSession = null;
+            }
+
+            // 1.6 关闭零延迟缓冲
+            if (zslAnalysisExecutor != null) {
+                zslAnalysisExecutor.shutdownNow();
+                zslAnalysisExecutor = null;
             }
+            if (zslRingBuffer != null) zslRingBuffer.clear();
+
+            // 1.65 关闭预览分析
+            if (frameAnalysis != null) frameAnalysis.clearAnalyzer();
+            if (frameAnalysisExecutor != null) {
+                frameAnalysisExecutor.shutdownNow();
+                frameAnalysisExecutor = null;
+            }
+
+            // 1.7 拍照写盘与缩略图在共享调度器上执行，已提交的写盘照常完成，这里不关闭线程
+            inMemoryPipeline = null;
+            Log.d(TAG, "Scheduler stats:\n" + TaskScheduler.get().formatStats());
 
             // 3. 解绑所有摄像头用例
             if (cameraProvider != null) {
@@ -363,7 +1747,11 @@ public class CameraController {
             }
 
             // 4. 清理其他资源
+            camera = null;
+            preview = null;
             imageCapture = null;
+            zslAnalysis = null;
+            frameAnalysis = null;
             videoCapture = null;
 
             Log.d(TAG, "Camera resources released successfully");
@@ -1,11 +1,15 @@
 package com.example.simplecamera.ui.camera;
 
 import android.Manifest;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
@@ -18,23 +22,45 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import com.example.simplecamera.R;
+import com.example.simplecamera.analysis.ExposureClippingAnalyzer;
+import com.example.simplecamera.analysis.LumaHistogramAnalyzer;
+import com.example.simplecamera.analysis.SharpnessAnalyzer;
+import com.example.simplecamera.concurrent.TaskScheduler;
+import com.example.simplecamera.metrics.CaptureProfileStats;
+import com.example.simplecamera.metrics.CaptureTracer;
+import com.example.simplecamera.metrics.RecordingTelemetry;
 import com.example.simplecamera.viewmodel.CameraViewModel;
+import java.io.File;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
 public class CameraFragment extends Fragment implements CameraController.Callback {
     private static final String TAG = "CameraFragment";
     private static final int PERMISSION_REQUEST_CODE = 1001;
+    // 入库后 5 秒内没有 UI 阶段的追踪会被收尾，稍晚一点刷新浮层
+    private static final long TRACE_OVERLAY_REFRESH_DELAY_MS = 6000;
+    // 无操作 30 秒降帧率、暂停分析，2 分钟后再降低预览分辨率
+    private static final long IDLE_TIMEOUT_MS = 30_000;
+    private static final long DEEP_IDLE_TIMEOUT_MS = 120_000;
 
     private PreviewView previewView;
     private TextView recordingTimer;
     private ImageButton captureButton;
     private ImageButton recordButton;
     private ImageButton modeSwitchButton;
+    private ImageButton galleryButton;
+    private TextView captureTraceOverlay;
+    private final Runnable refreshTraceOverlayRunnable = this::refreshCaptureTraceOverlay;
+    // 调试浮层上展示的预览分析结果
+    private LumaHistogramAnalyzer histogramAnalyzer;
+    private SharpnessAnalyzer sharpnessAnalyzer;
     private CameraViewModel viewModel;
     private CameraController cameraController;
+    private IdleDetector idleDetector;
 
     // UI 计时器（仅用于显示）
-    private final Handler recordingTimerHandler = new Handler();
+    private Future<?> recordingTimerTick;
 
     private final String[] REQUIRED_PERMISSIONS = {
             Manifest.permission.CAMERA,
@@ -52,6 +78,8 @@ public class CameraFragment extends Fragment implements CameraController.Callbac
         captureButton = view.findViewById(R.id.captureButton);
         recordButton = view.findViewById(R.id.recordButton);
         modeSwitchButton = view.findViewById(R.id.modeSwitchButton);
+        galleryButton = view.findViewById(R.id.galleryButton);
+        captureTraceOverlay = view.findViewById(R.id.captureTraceOverlay);
 
         // 获取 ViewModel
         viewModel = new ViewModelProvider(requireActivity()).get(CameraViewModel.class);
@@ -64,18 +92,30 @@ public class CameraFragment extends Fragment implements CameraController.Callbac
                 viewModel.getAppStorageDir(),
                 this
         );
+        setupCaptureTraceOverlay();
+        idleDetector = new IdleDetector(new Handler(Looper.getMainLooper()), IDLE_TIMEOUT_MS, DEEP_IDLE_TIMEOUT_MS,
+                state -> cameraController.setPowerState(state));
 
-        // 观察摄像头方向变化
+        // 观察摄像头方向变化，已绑定时走快速切换路径
         viewModel.isFrontCamera.observe(getViewLifecycleOwner(), isFront -> {
-            cameraController.setUseFrontCamera(isFront != null && isFront);
-            cameraController.startCamera();
+            cameraController.switchLens(isFront != null && isFront);
         });
 
-        // 观察相机模式变化
+        // 观察相机模式变化：进入录像模式即预备录像用例，离开时解绑
         viewModel.currentMode.observe(getViewLifecycleOwner(), mode -> {
             updateUIForCurrentMode(mode);
             if (mode == CameraViewModel.CameraMode.VIDEO) {
-                previewView.postDelayed(() -> cameraController.startCamera(), 200);
+                cameraController.armRecorder();
+            } else {
+                cameraController.disarmRecorder();
+            }
+        });
+
+        // 观察拍摄预设变化，切换失败（录像或连拍中）时恢复原值
+        viewModel.captureProfile.observe(getViewLifecycleOwner(), profile -> {
+            if (!cameraController.setCaptureProfile(profile)) {
+                Toast.makeText(getContext(), "Can't change profile while capturing", Toast.LENGTH_SHORT).show();
+                viewModel.captureProfile.setValue(cameraController.getCaptureProfile());
             }
         });
 
@@ -83,24 +123,48 @@ public class CameraFragment extends Fragment implements CameraController.Callbac
         viewModel.isRecording.observe(getViewLifecycleOwner(), isRecording -> {
             if (isRecording) {
                 startRecordingTimer();
+                idleDetector.setHeld(true);
                 updateRecordButton(true);
             } else {
                 stopRecordingTimer();
+                idleDetector.setHeld(false);
                 updateRecordButton(false);
             }
         });
 
         // 设置点击事件
         captureButton.setOnClickListener(v -> cameraController.takePhoto());
+        // 长按快门连拍，松开结束
+        captureButton.setOnLongClickListener(v -> {
+            cameraController.startBurst();
+            idleDetector.setHeld(true);
+            return true;
+        });
+        captureButton.setOnTouchListener((v, event) -> {
+            int action = event.getActionMasked();
+            if ((action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+                    && cameraController.isBursting()) {
+                cameraController.stopBurst();
+                idleDetector.setHeld(false);
+            }
+            return false;
+        });
         recordButton.setOnClickListener(v -> {
             if (viewModel.currentMode.getValue() == CameraViewModel.CameraMode.VIDEO) {
                 cameraController.toggleRecording();
             }
         });
+        // 录像模式下长按录制按钮切换录像质量
+        recordButton.setOnLongClickListener(v -> {
+            if (viewModel.isRecording.getValue() != null && viewModel.isRecording.getValue()) return false;
+            String label = cameraController.cycleVideoQualityOverride();
+            Toast.makeText(getContext(), "Video quality: " + label, Toast.LENGTH_SHORT).show();
+            return true;
+        });
         view.findViewById(R.id.flipButton).setOnClickListener(v -> {
             viewModel.toggleCameraFacing();
         });
-        view.findViewById(R.id.galleryButton).setOnClickListener(v -> openGallery());
+        galleryButton.setOnClickListener(v -> openGallery());
         modeSwitchButton.setOnClickListener(v -> {
             // 检查是否正在录制
             if (viewModel.isRecording.getValue() != null && viewModel.isRecording.getValue()) {
@@ -109,6 +173,15 @@ public class CameraFragment extends Fragment implements CameraController.Callbac
             }
             viewModel.toggleCameraMode();
         });
+        // 长按模式按钮切换拍摄预设，并显示该预设的实测数据
+        modeSwitchButton.setOnLongClickListener(v -> {
+            viewModel.cycleCaptureProfile();
+            CaptureProfile profile = viewModel.captureProfile.getValue();
+            if (profile != null) {
+                Toast.makeText(getContext(), CaptureProfileStats.get().format(profile.name()), Toast.LENGTH_SHORT).show();
+            }
+            return true;
+        });
 
         // 检查权限
         if (viewModel.checkAllPermissions(REQUIRED_PERMISSIONS)) {
@@ -137,6 +210,54 @@ public class CameraFragment extends Fragment implements CameraController.Callbac
         }
     }
 
+    /**
+     * 调试浮层：展示最近几次拍照各阶段耗时，长按导出直方图
+     */
+    private void setupCaptureTraceOverlay() {
+        boolean debuggable = (requireContext().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        if (!debuggable || captureTraceOverlay == null) return;
+        captureTraceOverlay.setVisibility(View.VISIBLE);
+        captureTraceOverlay.setOnLongClickListener(v -> {
+            File out = new File(requireContext().getExternalFilesDir(null), "capture_latency.csv");
+            try {
+                CaptureTracer.get().exportHistograms(out);
+                CaptureProfileStats.get().exportCsv(new File(out.getParentFile(), "capture_profiles.csv"));
+                Toast.makeText(getContext(), "Exported to " + out.getAbsolutePath(), Toast.LENGTH_SHORT).show();
+            } catch (Exception e) {
+                Log.e(TAG, "Export capture histograms failed", e);
+            }
+            return true;
+        });
+        CaptureTracer.get().setListener(trace -> captureTraceOverlay.post(refreshTraceOverlayRunnable));
+
+        // 预览分析：亮度直方图、清晰度与曝光裁切，裁切状态变化时刷新浮层
+        histogramAnalyzer = new LumaHistogramAnalyzer();
+        sharpnessAnalyzer = new SharpnessAnalyzer();
+        cameraController.addFrameAnalyzer(histogramAnalyzer);
+        cameraController.addFrameAnalyzer(sharpnessAnalyzer);
+        cameraController.addFrameAnalyzer(new ExposureClippingAnalyzer(0.05,
+                (highlights, shadows) -> captureTraceOverlay.post(refreshTraceOverlayRunnable)));
+        refreshCaptureTraceOverlay();
+    }
+
+    private void refreshCaptureTraceOverlay() {
+        if (captureTraceOverlay == null || captureTraceOverlay.getVisibility() != View.VISIBLE) return;
+        String text = CaptureTracer.get().formatRecent();
+        if (histogramAnalyzer != null && sharpnessAnalyzer != null && cameraController != null) {
+            text += String.format(Locale.US, "\nluma %.0f, sharpness %.0f\n%s",
+                    histogramAnalyzer.getMeanLuma(), sharpnessAnalyzer.getScore(),
+                    cameraController.getFrameAnalysisStats());
+        }
+        if (idleDetector != null) {
+            text += "\n" + idleDetector.getStats();
+        }
+        if (cameraController != null) {
+            text += "\nthermal " + cameraController.getThermalLevel();
+        }
+        text += "\n" + TaskScheduler.get().formatStats();
+        captureTraceOverlay.setText(text);
+    }
+
     private void updateUIForCurrentMode(CameraViewModel.CameraMode mode) {
         if (captureButton == null || recordButton == null || modeSwitchButton == null) return;
         if (mode == CameraViewModel.CameraMode.VIDEO) {
@@ -165,70 +286,148 @@ public class CameraFragment extends Fragment implements CameraController.Callbac
         }
     }
 
-    // CameraController.Callback 实现
+    // CameraController.Callback 实现：回调来自后台通道，统一经调度器切到主线程。
+    // 只更新界面的回调在界面已销毁时直接丢弃；涉及录像状态或入库的回调照常交给 ViewModel，只跳过提示
+    private void onMainIfAdded(Runnable action) {
+        TaskScheduler.get().runOnMain(() -> {
+            if (isAdded()) action.run();
+        });
+    }
+
+    private void toast(String text, int duration) {
+        if (isAdded()) Toast.makeText(requireContext(), text, duration).show();
+    }
+
     @Override
     public void onRecordingStarted() {
-        requireActivity().runOnUiThread(() -> {
+        TaskScheduler.get().runOnMain(() -> {
             viewModel.startRecording();
-            Toast.makeText(getContext(), "Recording started", Toast.LENGTH_SHORT).show();
+            toast("Recording started", Toast.LENGTH_SHORT);
         });
     }
 
     @Override
     public void onRecordingStopped() {
-        requireActivity().runOnUiThread(() -> {
+        TaskScheduler.get().runOnMain(() -> {
             viewModel.stopRecording();
-            Toast.makeText(getContext(), "Recording stopped", Toast.LENGTH_SHORT).show();
+            toast("Recording stopped", Toast.LENGTH_SHORT);
         });
     }
 
     @Override
     public void onRecordingError(String message) {
-        requireActivity().runOnUiThread(() -> {
+        TaskScheduler.get().runOnMain(() -> {
             viewModel.stopRecording();
-            Toast.makeText(getContext(), "Recording error: " + message, Toast.LENGTH_LONG).show();
             Log.e(TAG, "Recording error: " + message);
+            if (!isAdded()) return;
+            toast("Recording error: " + message, Toast.LENGTH_LONG);
             previewView.postDelayed(() -> cameraController.startCamera(), 500);
         });
     }
 
+    @Override
+    public void onSegmentError(int segmentIndex, String message) {
+        onMainIfAdded(() -> {
+            Toast.makeText(getContext(), "Segment " + (segmentIndex + 1) + " lost: " + message, Toast.LENGTH_LONG).show();
+            Log.e(TAG, "Segment " + segmentIndex + " error: " + message);
+        });
+    }
+
     @Override
     public void onPhotoSaved(String filePathOrUri) {
-        requireActivity().runOnUiThread(() -> {
+        TaskScheduler.get().runOnMain(() -> {
+            CaptureTracer.get().mark(filePathOrUri, CaptureTracer.Stage.UI_DISPATCHED);
             viewModel.savePhoto(filePathOrUri);
+            toast("Photo saved", Toast.LENGTH_SHORT);
+            if (captureTraceOverlay != null) {
+                captureTraceOverlay.postDelayed(refreshTraceOverlayRunnable, TRACE_OVERLAY_REFRESH_DELAY_MS);
+            }
+        });
+    }
+
+    @Override
+    public void onPhotoWritten(String filePathOrUri, Runnable onInserted) {
+        TaskScheduler.get().runOnMain(() -> {
+            CaptureTracer.get().mark(filePathOrUri, CaptureTracer.Stage.UI_DISPATCHED);
+            viewModel.savePhoto(filePathOrUri, onInserted);
+        });
+    }
+
+    @Override
+    public void onPhotoPersisted(String filePathOrUri) {
+        onMainIfAdded(() -> {
             Toast.makeText(getContext(), "Photo saved", Toast.LENGTH_SHORT).show();
+            if (captureTraceOverlay != null) {
+                captureTraceOverlay.postDelayed(refreshTraceOverlayRunnable, TRACE_OVERLAY_REFRESH_DELAY_MS);
+            }
         });
     }
 
     @Override
-    public void onVideoSaved(String fileUri, long durationMs) {
-        requireActivity().runOnUiThread(() -> {
-            viewModel.saveVideo(fileUri, durationMs);
-            Toast.makeText(getContext(), "Video saved", Toast.LENGTH_SHORT).show();
+    public void onPhotoThumbnail(String filePathOrUri, Bitmap thumbnail) {
+        onMainIfAdded(() -> {
+            if (galleryButton != null) galleryButton.setImageBitmap(thumbnail);
+        });
+    }
+
+    @Override
+    public void onRecordingTelemetry(RecordingTelemetry telemetry) {
+        onMainIfAdded(() -> viewModel.updateRecordingTelemetry(telemetry));
+    }
+
+    @Override
+    public void onVideoSaved(String fileUri, RecordingTelemetry finalStats, long recordingSession, int segmentIndex) {
+        TaskScheduler.get().runOnMain(() -> {
+            viewModel.saveVideo(fileUri, finalStats, recordingSession, segmentIndex);
+            // 录像途中完成的段静默入库，只在整次录像结束后提示
+            if (!Boolean.TRUE.equals(viewModel.isRecording.getValue())) {
+                toast("Video saved", Toast.LENGTH_SHORT);
+            }
+        });
+    }
+
+    @Override
+    public void onBurstCompleted(List<String> filePathsOrUris, BurstCaptureSession.Stats stats) {
+        TaskScheduler.get().runOnMain(() -> {
+            for (String path : filePathsOrUris) CaptureTracer.get().mark(path, CaptureTracer.Stage.UI_DISPATCHED);
+            viewModel.savePhotos(filePathsOrUris);
+            toast(String.format(Locale.getDefault(), "Burst saved %d photos (%.1f/s, %d dropped)",
+                    stats.framesSaved, stats.shotsPerSecond(), stats.framesDropped), Toast.LENGTH_SHORT);
         });
     }
 
     // 计时器逻辑（仅用于 UI 显示）
     private void startRecordingTimer() {
-        recordingTimerHandler.postDelayed(new Runnable() {
+        stopRecordingTimerTick();
+        recordingTimerTick = TaskScheduler.get().runOnMainDelayed(new Runnable() {
             @Override
             public void run() {
                 Boolean isRecording = viewModel.isRecording.getValue();
                 Long startTime = viewModel.recordingStartTime.getValue();
                 if (isRecording != null && isRecording && startTime != null && startTime > 0) {
-                    long elapsedTime = System.currentTimeMillis() - startTime;
+                    // 优先显示编码器统计的真实时长，首个状态事件到达前按墙上时钟估算
+                    RecordingTelemetry telemetry = viewModel.recordingTelemetry.getValue();
+                    long elapsedTime = telemetry != null ? telemetry.recordedDurationMs
+                            : System.currentTimeMillis() - startTime;
                     updateTimerText(elapsedTime);
-                    recordingTimerHandler.postDelayed(this, 1000);
+                    recordingTimerTick = TaskScheduler.get().runOnMainDelayed(this, 1000);
                 }
             }
         }, 1000);
     }
 
     private void stopRecordingTimer() {
-        recordingTimerHandler.removeCallbacksAndMessages(null);
+        stopRecordingTimerTick();
         if (recordingTimer != null) recordingTimer.setText("00:00");
     }
 
+    private void stopRecordingTimerTick() {
+        if (recordingTimerTick != null) {
+            recordingTimerTick.cancel(false);
+            recordingTimerTick = null;
+        }
+    }
+
     private void updateTimerText(long elapsedTime) {
         long seconds = elapsedTime / 1000;
         long minutes = seconds / 60;
@@ -249,10 +448,39 @@ public class CameraFragment extends Fragment implements CameraController.Callbac
         }
     }
 
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (idleDetector != null) idleDetector.start();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        if (idleDetector != null) {
+            idleDetector.stop();
+            Log.d(TAG, "Idle stats: " + idleDetector.getStats());
+        }
+    }
+
+    /**
+     * 由 Activity 在任意触摸/按键时调用，立即退出省电状态
+     */
+    public void onUserInteraction() {
+        if (idleDetector != null) idleDetector.onUserInteraction();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        CaptureTracer.get().setListener(null);
+        if (captureTraceOverlay != null) captureTraceOverlay.removeCallbacks(refreshTraceOverlayRunnable);
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         if (cameraController != null) cameraController.release();
-        recordingTimerHandler.removeCallbacksAndMessages(null);
+        stopRecordingTimerTick();
     }
 }
\ No newline at end of file
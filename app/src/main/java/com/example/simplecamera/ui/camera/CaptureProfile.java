@@ -0,0 +1,50 @@
+package com.example.simplecamera.ui.camera;
+
+import android.util.Size;
+
+import androidx.camera.core.ImageCapture;
+import androidx.camera.video.Quality;
+
+/**
+ * CaptureProfile：拍摄预设。一个预设同时决定拍照模式、照片分辨率策略、JPEG 质量、
+ * 预览目标分辨率、录像质量上限、是否使用零延迟快门与内存拍照管线，由 CameraController 在一次绑定中整体生效。
+ */
+public enum CaptureProfile {
+    // 更小的照片与预览，优先出片速度，并使用零延迟快门
+    FAST(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY, new Size(2048, 1536), 80, new Size(1280, 720), Quality.HD, true, true),
+    // 与原先默认行为一致：最高 4:3 照片、1080p 以内预览、录像优先 HD；照片走内存管线，写盘完成后立即入库
+    BALANCED(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY, null, 95, new Size(1920, 1080), Quality.HD, false, true),
+    // 最高画质，拍照走多帧处理并由 CameraX 直接写盘，录像不设上限
+    MAX(ImageCapture.CAPTURE_MODE_MAXIMIZE_QUALITY, null, 100, new Size(1920, 1080), Quality.UHD, false, false);
+
+    public final int captureMode;
+    // 照片目标分辨率，null 表示取最高可用
+    public final Size photoSize;
+    public final int jpegQuality;
+    public final Size previewSize;
+    // 自动选择录像质量时的上限，用户手动指定的质量不受限制
+    public final Quality maxVideoQuality;
+    // 零延迟快门：取按下快门前后的帧，优先于 captureMode
+    public final boolean zeroShutterLag;
+    // 照片用 InMemoryCapturePipeline 保存（零延迟快门开启时不使用），否则由 CameraX 写盘
+    public final boolean inMemoryCapture;
+
+    CaptureProfile(int captureMode, Size photoSize, int jpegQuality, Size previewSize, Quality maxVideoQuality,
+                   boolean zeroShutterLag, boolean inMemoryCapture) {
+        this.captureMode = captureMode;
+        this.photoSize = photoSize;
+        this.jpegQuality = jpegQuality;
+        this.previewSize = previewSize;
+        this.maxVideoQuality = maxVideoQuality;
+        this.zeroShutterLag = zeroShutterLag;
+        this.inMemoryCapture = inMemoryCapture;
+    }
+
+    /**
+     * 依次切换到下一个预设
+     */
+    public CaptureProfile next() {
+        CaptureProfile[] all = values();
+        return all[(ordinal() + 1) % all.length];
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.simplecamera.ui.camera;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * CaptureThumbnailCache：最近拍摄照片的小缩略图，按文件路径/URI 索引。
+ * 拍照时生成的缩略图先显示在图库按钮上，之后图库列表把它作为该项的占位图，
+ * 在 Glide 完成解码之前就能看到内容。只保留最近的少量图片，按字节数淘汰。
+ */
+public final class CaptureThumbnailCache {
+    private static final int MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final CaptureThumbnailCache INSTANCE = new CaptureThumbnailCache();
+
+    private final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(MAX_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getByteCount();
+        }
+    };
+
+    public static CaptureThumbnailCache get() {
+        return INSTANCE;
+    }
+
+    private CaptureThumbnailCache() {
+    }
+
+    public void put(String filePathOrUri, Bitmap thumbnail) {
+        if (filePathOrUri == null || thumbnail == null) return;
+        cache.put(filePathOrUri, thumbnail);
+    }
+
+    /**
+     * 没有缓存时返回 null
+     */
+    public Bitmap get(String filePathOrUri) {
+        return filePathOrUri != null ? cache.get(filePathOrUri) : null;
+    }
+
+    public void remove(String filePathOrUri) {
+        if (filePathOrUri != null) cache.remove(filePathOrUri);
+    }
+}
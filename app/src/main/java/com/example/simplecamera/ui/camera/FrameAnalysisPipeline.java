@@ -0,0 +1,226 @@
+package com.example.simplecamera.ui.camera;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.example.simplecamera.analysis.FrameAnalyzer;
+import com.example.simplecamera.analysis.LumaFrame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * FrameAnalysisPipeline：预览分析管线。
+ * 每帧把 Y 平面拷入复用的 LumaFrame，再依次调用已注册的分析器；
+ * 统计每个分析器的耗时与被 KEEP_ONLY_LATEST 丢掉的帧数，持续超出预算的分析器会被自动停用。
+ */
+public class FrameAnalysisPipeline implements ImageAnalysis.Analyzer {
+    private static final String TAG = "FrameAnalysisPipeline";
+
+    // 单个分析器的耗时预算，连续超出 SLOW_FRAMES_TO_DISABLE 帧则停用
+    private static final long ANALYZER_BUDGET_NANOS = 8_000_000L;
+    private static final int SLOW_FRAMES_TO_DISABLE = 30;
+    // 耗时滑动平均的权重
+    private static final double EMA_ALPHA = 0.1;
+
+    /**
+     * 单个分析器的统计
+     */
+    public static class AnalyzerStats {
+        public final String name;
+        public final double averageMs;
+        public final double lastMs;
+        public final boolean disabled;
+
+        AnalyzerStats(String name, double averageMs, double lastMs, boolean disabled) {
+            this.name = name;
+            this.averageMs = averageMs;
+            this.lastMs = lastMs;
+            this.disabled = disabled;
+        }
+    }
+
+    /**
+     * 管线统计
+     */
+    public static class Stats {
+        public final long framesAnalyzed;
+        public final long framesDropped;
+        public final double averageFrameMs;
+        public final List<AnalyzerStats> analyzers;
+
+        Stats(long framesAnalyzed, long framesDropped, double averageFrameMs, List<AnalyzerStats> analyzers) {
+            this.framesAnalyzed = framesAnalyzed;
+            this.framesDropped = framesDropped;
+            this.averageFrameMs = averageFrameMs;
+            this.analyzers = analyzers;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                    "frames=%d, dropped=%d, avg=%.1fms", framesAnalyzed, framesDropped, averageFrameMs));
+            for (AnalyzerStats a : analyzers) {
+                sb.append(String.format(Locale.US, " | %s %.1fms%s", a.name, a.averageMs, a.disabled ? " (off)" : ""));
+            }
+            return sb.toString();
+        }
+    }
+
+    private static class Slot {
+        final FrameAnalyzer analyzer;
+        volatile boolean disabled = false;
+        volatile double averageNanos = 0;
+        volatile long lastNanos = 0;
+        int slowFrames = 0;
+
+        Slot(FrameAnalyzer analyzer) {
+            this.analyzer = analyzer;
+        }
+    }
+
+    private final CopyOnWriteArrayList<Slot> slots = new CopyOnWriteArrayList<>();
+    private final LumaFrame frame = new LumaFrame();
+
+    private volatile long framesAnalyzed = 0;
+    // 每隔多少帧分析一次（温控降级时调大），其余帧直接归还
+    private volatile int frameStride = 1;
+    private long frameCounter = 0;
+    private volatile long framesDropped = 0;
+    private volatile double averageFrameNanos = 0;
+    // 用于估算丢帧：最近一帧的时间戳与观察到的最小帧间隔
+    private long lastTimestampNanos = 0;
+    private long minFrameIntervalNanos = Long.MAX_VALUE;
+
+    public void addAnalyzer(FrameAnalyzer analyzer) {
+        for (Slot slot : slots) {
+            if (slot.analyzer == analyzer) return;
+        }
+        slots.add(new Slot(analyzer));
+    }
+
+    public void removeAnalyzer(FrameAnalyzer analyzer) {
+        slots.removeIf(slot -> slot.analyzer == analyzer);
+    }
+
+    public boolean isEmpty() {
+        return slots.isEmpty();
+    }
+
+    public void setFrameStride(int stride) {
+        frameStride = Math.max(1, stride);
+    }
+
+    /**
+     * 重新启用被自动停用的分析器
+     */
+    public void resetDisabled() {
+        for (Slot slot : slots) {
+            slot.slowFrames = 0;
+            slot.disabled = false;
+        }
+    }
+
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        long frameStart = System.nanoTime();
+        try {
+            long timestamp = image.getImageInfo().getTimestamp();
+            countDroppedFrames(timestamp);
+            if (frameStride > 1 && frameCounter++ % frameStride != 0) {
+                image.close();
+                return;
+            }
+            copyLuma(image, timestamp);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read luma plane", e);
+            image.close();
+            return;
+        }
+        // Y 平面已拷出，尽早归还帧让相机继续出图
+        image.close();
+
+        for (Slot slot : slots) {
+            if (slot.disabled) continue;
+            long start = System.nanoTime();
+            try {
+                slot.analyzer.analyze(frame);
+            } catch (Exception e) {
+                Log.e(TAG, "Analyzer " + slot.analyzer.getName() + " failed, disabling", e);
+                slot.disabled = true;
+                continue;
+            }
+            long elapsed = System.nanoTime() - start;
+            slot.lastNanos = elapsed;
+            slot.averageNanos = slot.averageNanos == 0 ? elapsed
+                    : slot.averageNanos + EMA_ALPHA * (elapsed - slot.averageNanos);
+            if (elapsed > ANALYZER_BUDGET_NANOS) {
+                if (++slot.slowFrames >= SLOW_FRAMES_TO_DISABLE) {
+                    slot.disabled = true;
+                    Log.w(TAG, "Analyzer " + slot.analyzer.getName() + " can't keep up ("
+                            + String.format(Locale.US, "%.1fms", slot.averageNanos / 1e6) + "), disabled");
+                }
+            } else {
+                slot.slowFrames = 0;
+            }
+        }
+
+        long frameElapsed = System.nanoTime() - frameStart;
+        averageFrameNanos = averageFrameNanos == 0 ? frameElapsed
+                : averageFrameNanos + EMA_ALPHA * (frameElapsed - averageFrameNanos);
+        framesAnalyzed++;
+    }
+
+    // 按行拷贝，去掉行填充；Y 平面的 pixelStride 恒为 1
+    private void copyLuma(ImageProxy image, long timestamp) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+        ByteBuffer buffer = plane.getBuffer();
+        int rowStride = plane.getRowStride();
+        byte[] data = frame.prepare(width, height, timestamp);
+        if (rowStride == width) {
+            buffer.position(0);
+            buffer.get(data, 0, width * height);
+            return;
+        }
+        for (int row = 0; row < height; row++) {
+            buffer.position(row * rowStride);
+            buffer.get(data, row * width, width);
+        }
+    }
+
+    // 时间戳间隔超过最小帧间隔的部分即视为被丢弃的帧
+    private void countDroppedFrames(long timestamp) {
+        if (lastTimestampNanos > 0 && timestamp > lastTimestampNanos) {
+            long interval = timestamp - lastTimestampNanos;
+            if (interval < minFrameIntervalNanos) minFrameIntervalNanos = interval;
+            long missed = Math.round((double) interval / minFrameIntervalNanos) - 1;
+            if (missed > 0) framesDropped += missed;
+        }
+        lastTimestampNanos = timestamp;
+    }
+
+    /**
+     * 重新绑定后帧间隔可能变化，重新开始估算
+     */
+    public void resetFrameClock() {
+        lastTimestampNanos = 0;
+        minFrameIntervalNanos = Long.MAX_VALUE;
+    }
+
+    public Stats getStats() {
+        List<AnalyzerStats> analyzers = new ArrayList<>();
+        for (Slot slot : slots) {
+            analyzers.add(new AnalyzerStats(slot.analyzer.getName(), slot.averageNanos / 1e6,
+                    slot.lastNanos / 1e6, slot.disabled));
+        }
+        return new Stats(framesAnalyzed, framesDropped, averageFrameNanos / 1e6, analyzers);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.simplecamera.ui.camera;
 
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.os.Bundle;
@@ -11,6 +12,9 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.IntentSenderRequest;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
@@ -21,11 +25,17 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.simplecamera.R;
 import com.example.simplecamera.adapter.MediaAdapter;
+import com.example.simplecamera.concurrent.TaskScheduler;
 import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaIndex;
+import com.example.simplecamera.metrics.CaptureTracer;
 import com.example.simplecamera.viewmodel.GalleryViewModel;
+import com.google.android.material.snackbar.Snackbar;
 
-import java.util.ArrayList;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectionModeChangeListener {
     private static final String TAG = "GalleryFragment";
@@ -36,14 +46,33 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
     private TextView titleText;
     private ImageButton backButton;
     private ImageButton deleteButton;
+    private ImageButton exportButton;
     private ImageButton cancelSelectionButton;
     private TextView selectionCountText;
     private TextView emptyText;
+    // 导出进行中时常驻的进度提示条
+    private Snackbar exportSnackbar;
 
     // 选择模式相关UI
     private View selectionModeToolbar;
     private View normalModeToolbar;
 
+    // 系统删除确认框（API 30+ 删除不属于本应用的媒体时）
+    private final ActivityResultLauncher<IntentSenderRequest> deleteConsentLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartIntentSenderForResult(),
+            result -> viewModel.onDeleteConsentResult(result.getResultCode() == Activity.RESULT_OK));
+
+    // 选择导出的 ZIP 保存位置；选定前的选择保存在 pendingExport
+    private List<MediaFile> pendingExport;
+    private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument("application/zip"), uri -> {
+                List<MediaFile> files = pendingExport;
+                pendingExport = null;
+                if (uri == null || files == null) return;
+                viewModel.exportMediaFiles(files, uri);
+                exitSelectionMode();
+            });
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -61,6 +90,7 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
         titleText = view.findViewById(R.id.titleText);
         backButton = view.findViewById(R.id.backButton);
         deleteButton = view.findViewById(R.id.deleteButton);
+        exportButton = view.findViewById(R.id.exportButton);
         cancelSelectionButton = view.findViewById(R.id.cancelSelectionButton);
         selectionCountText = view.findViewById(R.id.selectionCountText);
         emptyText = view.findViewById(R.id.emptyText);
@@ -73,7 +103,7 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
     private void setupRecyclerView() {
         recyclerView.setLayoutManager(new GridLayoutManager(getContext(), 3));
 
-        adapter = new MediaAdapter(new ArrayList<>());
+        adapter = new MediaAdapter();
         recyclerView.setAdapter(adapter);
 
         // 设置点击监听
@@ -90,29 +120,31 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
 
     private void setupViewModel() {
         viewModel = new ViewModelProvider(requireActivity()).get(GalleryViewModel.class);
-        viewModel.getAllMediaFiles().observe(getViewLifecycleOwner(), mediaFiles -> {
-            if (mediaFiles != null && !mediaFiles.isEmpty()) {
-                adapter.setMediaFiles(mediaFiles);
-                adapter.notifyDataSetChanged();
-                showEmptyState(false);
-            } else {
-                showEmptyState(true);
+        viewModel.getMediaUpdates().observe(getViewLifecycleOwner(), update -> {
+            if (update == null) return;
+            MediaIndex index = update.index;
+            if (index.size() > 0) {
+                CaptureTracer.get().markDelivered(index.size(), index::path);
             }
+            // 只通知变化的条目，新照片入库不再整页重绑
+            adapter.applyChange(index, update.event);
+            showEmptyState(index.size() == 0);
+        });
+
+        viewModel.getDeleteConsent().observe(getViewLifecycleOwner(), request -> {
+            if (request == null) return;
+            viewModel.onDeleteConsentShown();
+            deleteConsentLauncher.launch(new IntentSenderRequest.Builder(request.getIntentSender()).build());
         });
 
+        viewModel.getExportProgress().observe(getViewLifecycleOwner(), this::showExportProgress);
+
         // 观察操作状态
         viewModel.getOperationStatus().observe(getViewLifecycleOwner(), status -> {
             if (status != null && !status.isEmpty()) {
                 Toast.makeText(getContext(), status, Toast.LENGTH_SHORT).show();
             }
         });
-
-        // 观察删除状态（可选，用于禁用按钮等）
-        viewModel.getIsDeleting().observe(getViewLifecycleOwner(), isDeleting -> {
-            if (deleteButton != null) {
-                deleteButton.setEnabled(!isDeleting);
-            }
-        });
     }
 
     private void setupClickListeners() {
@@ -132,6 +164,10 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
             deleteButton.setOnClickListener(v -> showDeleteConfirmationDialog());
         }
 
+        if (exportButton != null) {
+            exportButton.setOnClickListener(v -> exportSelectedFiles());
+        }
+
         if (cancelSelectionButton != null) {
             cancelSelectionButton.setOnClickListener(v -> exitSelectionMode());
         }
@@ -149,8 +185,8 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
 
         int count = selectedFiles.size();
         String message = count == 1 ?
-                "确定要删除这个文件吗？此操作不可撤销。" :
-                "确定要删除这" + count + "个文件吗？此操作不可撤销。";
+                "确定要删除这个文件吗？" :
+                "确定要删除这" + count + "个文件吗？";
 
         new AlertDialog.Builder(requireContext())
                 .setTitle("确认删除")
@@ -164,15 +200,9 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
     }
 
     /**
-     * 删除选中的文件
+     * 删除选中的文件：条目立即消失，提示条上可以撤销，文件在撤销时限过后由后台清理
      */
     private void deleteSelectedFiles() {
-        // 检查是否正在删除
-        if (viewModel.getIsDeleting().getValue() != null && viewModel.getIsDeleting().getValue()) {
-            Log.w(TAG, "Delete operation already in progress");
-            return;
-        }
-
         if (adapter == null || viewModel == null || !isAdded()) {
             Log.e(TAG, "Cannot delete files: Fragment not ready");
             return;
@@ -183,38 +213,48 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
             Toast.makeText(getContext(), "没有选择要删除的文件", Toast.LENGTH_SHORT).show();
             return;
         }
-        Log.d(TAG, "Starting deletion of " + selectedFiles.size() + " files");
-
-        try {
-            // 显示删除进度
-            Toast.makeText(getContext(), "正在删除 " + selectedFiles.size() + " 个文件...", Toast.LENGTH_SHORT).show();
-
-            // 使用一次性观察者
-            final androidx.lifecycle.Observer<String> statusObserver = new androidx.lifecycle.Observer<String>() {
-                @Override
-                public void onChanged(String status) {
-                    if (status != null && !status.isEmpty()) {
-                        Log.d(TAG, "Delete operation status: " + status);
-
-                        if (status.contains("成功") || status.contains("失败")) {
-                            // 删除操作完成
-                            exitSelectionMode();
-
-                            // 安全地移除观察者
-                            if (viewModel != null && viewModel.getOperationStatus().hasObservers()) {
-                                viewModel.getOperationStatus().removeObserver(this);
-                            }
-                        }
+        Log.d(TAG, "Deleting " + selectedFiles.size() + " files");
+
+        viewModel.deleteMediaFiles(selectedFiles);
+        exitSelectionMode();
+        Snackbar.make(requireView(), "已删除 " + selectedFiles.size() + " 个文件", Snackbar.LENGTH_LONG)
+                .setAction("撤销", v -> {
+                    if (!viewModel.undoDelete()) {
+                        Toast.makeText(getContext(), "已超过撤销时限", Toast.LENGTH_SHORT).show();
                     }
-                }
-            };
+                })
+                .show();
+    }
 
-            viewModel.getOperationStatus().observe(getViewLifecycleOwner(), statusObserver);
-            viewModel.deleteMediaFiles(selectedFiles);
+    /**
+     * 导出选中的文件：先让用户选择 ZIP 的保存位置
+     */
+    private void exportSelectedFiles() {
+        List<MediaFile> selectedFiles = adapter.getSelectedMediaFiles();
+        if (selectedFiles.isEmpty()) {
+            Toast.makeText(getContext(), "请先选择要导出的文件", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        pendingExport = selectedFiles;
+        String name = "SimpleCamera_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".zip";
+        exportLauncher.launch(name);
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error during file deletion", e);
-            Toast.makeText(getContext(), "删除过程出错", Toast.LENGTH_SHORT).show();
+    private void showExportProgress(GalleryViewModel.ExportProgress progress) {
+        if (progress == null) {
+            if (exportSnackbar != null) {
+                exportSnackbar.dismiss();
+                exportSnackbar = null;
+            }
+            return;
+        }
+        String text = "正在导出 " + progress.filesDone + "/" + progress.filesTotal + "（" + progress.percent() + "%）";
+        if (exportSnackbar == null) {
+            exportSnackbar = Snackbar.make(requireView(), text, Snackbar.LENGTH_INDEFINITE)
+                    .setAction("取消", v -> viewModel.cancelExport());
+            exportSnackbar.show();
+        } else {
+            exportSnackbar.setText(text);
         }
     }
 
@@ -244,7 +284,7 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
     private void updateUIForNormalMode() {
         if (!isAdded() || getActivity() == null) return;
 
-        requireActivity().runOnUiThread(() -> {
+        TaskScheduler.get().runOnMain(() -> {
             try {
                 if (selectionModeToolbar != null) {
                     selectionModeToolbar.setVisibility(View.GONE);
@@ -267,7 +307,7 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
     private void updateUIForSelectionMode() {
         if (!isAdded()) return;
 
-        requireActivity().runOnUiThread(() -> {
+        TaskScheduler.get().runOnMain(() -> {
             try {
                 if (selectionModeToolbar != null) {
                     selectionModeToolbar.setVisibility(View.VISIBLE);
@@ -310,7 +350,8 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
         }
 
         try {
-            MediaPreviewFragment preview = MediaPreviewFragment.newInstance(mediaFile.getFilePath(), mediaFile.getFileType());
+            MediaPreviewFragment preview = MediaPreviewFragment.newInstance(mediaFile.getFilePath(),
+                    mediaFile.getFileType(), mediaFile.getRecordingSession());
             requireActivity().getSupportFragmentManager()
                     .beginTransaction()
                     .replace(R.id.fragment_container, preview)
@@ -360,6 +401,8 @@ public class GalleryFragment extends Fragment implements MediaAdapter.OnSelectio
     public void onDestroyView() {
         super.onDestroyView();
         Log.d(TAG, "onDestroyView: Cleaning up gallery resources");
+        // 导出在 ViewModel 中继续，重建视图后重新显示进度
+        exportSnackbar = null;
 
         // 清理资源
         if (adapter != null) {
@@ -0,0 +1,165 @@
+package com.example.simplecamera.ui.camera;
+
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+/**
+ * IdleDetector：无人操作时逐级进入省电状态，任何触摸立即回到活跃状态。
+ * 同时按状态累计停留时间与进程 CPU 时间，以活跃状态的 CPU 占用率为基准估算省下的 CPU 时间。
+ */
+class IdleDetector {
+
+    enum State {
+        ACTIVE,     // 正常预览
+        IDLE,       // 降帧率、暂停分析，可立即恢复
+        DEEP_IDLE   // 另外降低预览分辨率，恢复需要重新绑定
+    }
+
+    interface Listener {
+        void onIdleStateChanged(State state);
+    }
+
+    /**
+     * 各状态的停留时间与 CPU 时间（毫秒）
+     */
+    static class Stats {
+        final long[] wallMs;
+        final long[] cpuMs;
+
+        Stats(long[] wallMs, long[] cpuMs) {
+            this.wallMs = wallMs;
+            this.cpuMs = cpuMs;
+        }
+
+        /**
+         * 假如空闲期间保持活跃状态的 CPU 占用率，相比实际多用的 CPU 时间
+         */
+        long cpuSavedMs() {
+            int active = State.ACTIVE.ordinal();
+            if (wallMs[active] == 0) return 0;
+            double activeRate = (double) cpuMs[active] / wallMs[active];
+            double saved = 0;
+            for (State state : State.values()) {
+                if (state == State.ACTIVE) continue;
+                saved += activeRate * wallMs[state.ordinal()] - cpuMs[state.ordinal()];
+            }
+            return Math.max(0, Math.round(saved));
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (State state : State.values()) {
+                int i = state.ordinal();
+                sb.append(String.format(Locale.US, "%s %ds (cpu %dms), ", state.name().toLowerCase(Locale.US),
+                        wallMs[i] / 1000, cpuMs[i]));
+            }
+            return sb.append("cpu saved ").append(cpuSavedMs()).append("ms").toString();
+        }
+    }
+
+    private final Handler handler;
+    private final Listener listener;
+    private long idleTimeoutMs;
+    private long deepIdleTimeoutMs;
+
+    private State state = State.ACTIVE;
+    private boolean running = false;
+    private boolean held = false;
+    private final long[] wallMs = new long[State.values().length];
+    private final long[] cpuMs = new long[State.values().length];
+    private long stateSinceWall;
+    private long stateSinceCpu;
+
+    private final Runnable idleRunnable = () -> transition(State.IDLE);
+    private final Runnable deepIdleRunnable = () -> transition(State.DEEP_IDLE);
+
+    /**
+     * @param idleTimeoutMs     无操作多久后进入 IDLE
+     * @param deepIdleTimeoutMs 无操作多久后进入 DEEP_IDLE（从最后一次操作算起）
+     */
+    IdleDetector(Handler handler, long idleTimeoutMs, long deepIdleTimeoutMs, Listener listener) {
+        this.handler = handler;
+        this.listener = listener;
+        setTimeouts(idleTimeoutMs, deepIdleTimeoutMs);
+    }
+
+    void setTimeouts(long idleTimeoutMs, long deepIdleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.deepIdleTimeoutMs = Math.max(idleTimeoutMs, deepIdleTimeoutMs);
+        if (running) reschedule();
+    }
+
+    void start() {
+        if (running) return;
+        running = true;
+        stateSinceWall = SystemClock.elapsedRealtime();
+        stateSinceCpu = Process.getElapsedCpuTime();
+        reschedule();
+    }
+
+    void stop() {
+        if (!running) return;
+        transition(State.ACTIVE);
+        accumulate();
+        running = false;
+        handler.removeCallbacks(idleRunnable);
+        handler.removeCallbacks(deepIdleRunnable);
+    }
+
+    /**
+     * 用户有操作：立即回到活跃状态并重新计时
+     */
+    void onUserInteraction() {
+        if (!running) return;
+        transition(State.ACTIVE);
+        reschedule();
+    }
+
+    /**
+     * 录像、连拍等进行中时保持活跃，不计时
+     */
+    void setHeld(boolean held) {
+        this.held = held;
+        if (!running) return;
+        if (held) transition(State.ACTIVE);
+        reschedule();
+    }
+
+    State getState() {
+        return state;
+    }
+
+    Stats getStats() {
+        if (running) accumulate();
+        return new Stats(wallMs.clone(), cpuMs.clone());
+    }
+
+    private void reschedule() {
+        handler.removeCallbacks(idleRunnable);
+        handler.removeCallbacks(deepIdleRunnable);
+        if (held) return;
+        handler.postDelayed(idleRunnable, idleTimeoutMs);
+        handler.postDelayed(deepIdleRunnable, deepIdleTimeoutMs);
+    }
+
+    private void transition(State next) {
+        if (state == next) return;
+        accumulate();
+        state = next;
+        listener.onIdleStateChanged(next);
+    }
+
+    // 把当前状态自上次结算以来的时间记入该状态
+    private void accumulate() {
+        long wall = SystemClock.elapsedRealtime();
+        long cpu = Process.getElapsedCpuTime();
+        wallMs[state.ordinal()] += wall - stateSinceWall;
+        cpuMs[state.ordinal()] += cpu - stateSinceCpu;
+        stateSinceWall = wall;
+        stateSinceCpu = cpu;
+    }
+}
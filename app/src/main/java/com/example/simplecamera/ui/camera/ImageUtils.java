@@ -0,0 +1,93 @@
+package com.example.simplecamera.ui.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+import androidx.camera.core.ImageProxy;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * ImageUtils：ImageProxy 与 JPEG/NV21 之间的转换工具，以及缩略图缩放。
+ */
+final class ImageUtils {
+
+    private ImageUtils() {}
+
+    /**
+     * 拷贝 JPEG 帧的压缩数据
+     */
+    static byte[] copyJpeg(ImageProxy image) {
+        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+        buffer.rewind();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    static int nv21Size(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * YUV_420_888 -> NV21，写入调用方提供的数组（可复用，长度至少 nv21Size），
+     * 按行/像素步长拷贝以兼容带 padding 的平面
+     */
+    static void copyToNv21(ImageProxy image, byte[] out) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ImageProxy.PlaneProxy y = image.getPlanes()[0];
+        ImageProxy.PlaneProxy u = image.getPlanes()[1];
+        ImageProxy.PlaneProxy v = image.getPlanes()[2];
+
+        ByteBuffer yBuffer = y.getBuffer();
+        int yRowStride = y.getRowStride();
+        int pos = 0;
+        for (int row = 0; row < height; row++) {
+            yBuffer.position(row * yRowStride);
+            yBuffer.get(out, pos, width);
+            pos += width;
+        }
+
+        ByteBuffer uBuffer = u.getBuffer();
+        ByteBuffer vBuffer = v.getBuffer();
+        int uvRowStride = u.getRowStride();
+        int uvPixelStride = u.getPixelStride();
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                int index = row * uvRowStride + col * uvPixelStride;
+                out[pos++] = vBuffer.get(index);
+                out[pos++] = uBuffer.get(index);
+            }
+        }
+    }
+
+    static byte[] toNv21(ImageProxy image) {
+        byte[] out = new byte[nv21Size(image.getWidth(), image.getHeight())];
+        copyToNv21(image, out);
+        return out;
+    }
+
+    static byte[] nv21ToJpeg(byte[] nv21, int width, int height, int quality) {
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(nv21.length / 4);
+        yuvImage.compressToJpeg(new Rect(0, 0, width, height), quality, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 等比缩小到长边不超过 maxSizePx，src 不再使用（缩放后回收）
+     */
+    static Bitmap downscale(Bitmap src, int maxSizePx) {
+        int longest = Math.max(src.getWidth(), src.getHeight());
+        if (longest <= maxSizePx) return src;
+        float scale = (float) maxSizePx / longest;
+        Bitmap scaled = Bitmap.createScaledBitmap(src, Math.max(1, Math.round(src.getWidth() * scale)),
+                Math.max(1, Math.round(src.getHeight() * scale)), true);
+        if (scaled != src) src.recycle();
+        return scaled;
+    }
+}
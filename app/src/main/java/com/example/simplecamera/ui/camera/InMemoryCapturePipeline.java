@@ -0,0 +1,263 @@
+package com.example.simplecamera.ui.camera;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * InMemoryCapturePipeline：基于 OnImageCapturedCallback 的拍照管线。
+ * 先在 MediaStore 中占位拿到 URI，随后并行进行两件事：
+ * JPEG 平面的 ByteBuffer 经 FileChannel 直接写入文件描述符（不做额外的堆拷贝）、
+ * 从同一块缓冲解码缩略图；写入与缩略图结束后归还 ImageProxy。
+ * 写完并发布后才通知上层入库（与缩略图解码、归还帧并行），图库不会看到、也不会为写到一半的文件生成缩略图；
+ * 写入与入库都完成后回调 onSaved。
+ */
+class InMemoryCapturePipeline {
+    private static final String TAG = "InMemoryCapturePipeline";
+    static final int THUMBNAIL_SIZE_PX = 192;
+
+    /**
+     * 各阶段耗时（毫秒）
+     */
+    public static class StageTimings {
+        public long captureMs;      // 按下快门到拿到帧
+        public long allocateMs;     // MediaStore 占位
+        public long writeMs;        // 通道写入
+        public volatile long thumbnailMs;    // 缩略图解码（与写入并行）
+        public volatile long insertMs;       // 写完到数据库插入完成
+        public volatile long totalMs;        // 按下快门到写入、发布与入库全部完成
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "capture=%dms, allocate=%dms, write=%dms, insert=%dms, thumbnail=%dms, total=%dms",
+                    captureMs, allocateMs, writeMs, insertMs, thumbnailMs, totalMs);
+        }
+    }
+
+    public interface Listener {
+        // 输出位置已确定（尚未写盘）
+        void onOutputAllocated(String filePathOrUri);
+        void onThumbnailDecoded(String filePathOrUri, Bitmap thumbnail);
+        // 写入并发布完成，可以开始数据库插入；插入完成后调用 onInserted
+        void onWritten(String filePathOrUri, Runnable onInserted);
+        // 写入与入库都已完成
+        void onSaved(String filePathOrUri, StageTimings timings);
+        // 已占位但写入失败，占位已删除，尚未入库
+        void onDiscarded(String filePathOrUri, String message);
+        void onError(String message);
+    }
+
+    private final Context context;
+    private final File appStorageDir;
+    private final Executor captureExecutor;
+    private final Executor thumbnailExecutor;
+
+    InMemoryCapturePipeline(Context context, File appStorageDir, Executor captureExecutor, Executor thumbnailExecutor) {
+        this.context = context.getApplicationContext();
+        this.appStorageDir = appStorageDir;
+        this.captureExecutor = captureExecutor;
+        this.thumbnailExecutor = thumbnailExecutor;
+    }
+
+    public void capture(ImageCapture imageCapture, String fileName, Listener listener) {
+        final long shutterTime = SystemClock.elapsedRealtime();
+        imageCapture.takePicture(captureExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                process(image, fileName, shutterTime, listener);
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                Log.e(TAG, "Photo capture failed", exception);
+                listener.onError("Photo failed: " + exception.getMessage());
+            }
+        });
+    }
+
+    private void process(ImageProxy image, String fileName, long shutterTime, Listener listener) {
+        StageTimings timings = new StageTimings();
+        long captured = SystemClock.elapsedRealtime();
+        timings.captureMs = captured - shutterTime;
+
+        // 写入与缩略图都结束后再归还帧
+        AtomicInteger holders = new AtomicInteger(2);
+        Runnable release = () -> {
+            if (holders.decrementAndGet() == 0) image.close();
+        };
+
+        Output output;
+        try {
+            output = allocate(fileName);
+        } catch (Exception e) {
+            image.close();
+            Log.e(TAG, "Failed to allocate output", e);
+            listener.onError("Photo failed: " + e.getMessage());
+            return;
+        }
+        timings.allocateMs = SystemClock.elapsedRealtime() - captured;
+        listener.onOutputAllocated(output.path);
+
+        ByteBuffer jpeg = image.getPlanes()[0].getBuffer();
+        int rotationDegrees = image.getImageInfo().getRotationDegrees();
+        ByteBuffer thumbnailSource = jpeg.duplicate();
+        thumbnailExecutor.execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                Bitmap thumbnail = decodeThumbnail(thumbnailSource, rotationDegrees);
+                timings.thumbnailMs = SystemClock.elapsedRealtime() - start;
+                if (thumbnail != null) listener.onThumbnailDecoded(output.path, thumbnail);
+            } catch (Exception e) {
+                Log.w(TAG, "Thumbnail decode failed", e);
+            } finally {
+                release.run();
+            }
+        });
+
+        long writeStart = SystemClock.elapsedRealtime();
+        try {
+            write(output, jpeg.duplicate());
+            publish(output);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to write " + output.path, e);
+            discard(output);
+            listener.onDiscarded(output.path, "Photo failed: " + e.getMessage());
+            return;
+        } finally {
+            release.run();
+        }
+        long written = SystemClock.elapsedRealtime();
+        timings.writeMs = written - writeStart;
+        AtomicBoolean inserted = new AtomicBoolean(false);
+        listener.onWritten(output.path, () -> {
+            if (!inserted.compareAndSet(false, true)) return;
+            timings.insertMs = SystemClock.elapsedRealtime() - written;
+            timings.totalMs = SystemClock.elapsedRealtime() - shutterTime;
+            Log.d(TAG, "Saved " + output.path + ": " + timings);
+            listener.onSaved(output.path, timings);
+        });
+    }
+
+    /**
+     * 输出位置：Q 及以上为 IS_PENDING 的 MediaStore 行，以下为应用目录中的文件
+     */
+    private static class Output {
+        final String path;
+        final Uri uri;
+        final File file;
+
+        Output(String path, Uri uri, File file) {
+            this.path = path;
+            this.uri = uri;
+            this.file = file;
+        }
+    }
+
+    private Output allocate(String fileName) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+            values.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
+            values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/SimpleCamera");
+            values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+            Uri uri = context.getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+            if (uri == null) throw new IOException("MediaStore insert failed for " + fileName);
+            return new Output(uri.toString(), uri, null);
+        }
+        File file = new File(appStorageDir, fileName);
+        return new Output(file.getAbsolutePath(), null, file);
+    }
+
+    // 直接把（通常是 direct 的）JPEG 缓冲交给 FileChannel，由内核完成拷贝
+    private void write(Output output, ByteBuffer jpeg) throws IOException {
+        jpeg.rewind();
+        if (output.uri != null) {
+            ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(output.uri, "w");
+            if (pfd == null) throw new IOException("Cannot open " + output.uri);
+            try (FileOutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(pfd);
+                 FileChannel channel = out.getChannel()) {
+                while (jpeg.hasRemaining()) channel.write(jpeg);
+            }
+        } else {
+            try (FileOutputStream out = new FileOutputStream(output.file);
+                 FileChannel channel = out.getChannel()) {
+                while (jpeg.hasRemaining()) channel.write(jpeg);
+            }
+        }
+    }
+
+    private void publish(Output output) {
+        if (output.uri == null) return;
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+        context.getContentResolver().update(output.uri, values, null, null);
+    }
+
+    private void discard(Output output) {
+        try {
+            if (output.uri != null) {
+                ContentResolver resolver = context.getContentResolver();
+                resolver.delete(output.uri, null, null);
+            } else if (output.file != null && output.file.exists() && !output.file.delete()) {
+                Log.w(TAG, "Failed to delete partial file " + output.file);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to discard " + output.path, e);
+        }
+    }
+
+    /**
+     * 从 JPEG 缓冲解码缩略图：P 及以上用 ImageDecoder 直接读缓冲（自动处理 EXIF 方向），
+     * 以下只能拷出字节后按采样率解码，再按帧旋转角度转正
+     */
+    static Bitmap decodeThumbnail(ByteBuffer jpeg, int rotationDegrees) throws IOException {
+        jpeg.rewind();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            ImageDecoder.Source source = ImageDecoder.createSource(jpeg);
+            return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+                int longest = Math.max(info.getSize().getWidth(), info.getSize().getHeight());
+                decoder.setTargetSampleSize(Math.max(1, Integer.highestOneBit(longest / THUMBNAIL_SIZE_PX)));
+            });
+        }
+        byte[] data = new byte[jpeg.remaining()];
+        jpeg.get(data);
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        int longest = Math.max(bounds.outWidth, bounds.outHeight);
+        options.inSampleSize = Math.max(1, Integer.highestOneBit(longest / THUMBNAIL_SIZE_PX));
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (bitmap == null || rotationDegrees == 0) return bitmap;
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotationDegrees);
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+}
@@ -1,8 +1,10 @@
 
 package com.example.simplecamera.ui.camera;
 
+import android.content.Context;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,24 +20,44 @@ import androidx.fragment.app.Fragment;
 
 import com.bumptech.glide.Glide;
 import com.example.simplecamera.R;
+import com.example.simplecamera.concurrent.TaskScheduler;
+import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaRepository;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MediaPreviewFragment extends Fragment {
+    private static final String TAG = "MediaPreviewFragment";
     private static final String ARG_FILE_PATH = "arg_file_path";
     private static final String ARG_FILE_TYPE = "arg_file_type"; // 0 image, 1 video
+    private static final String ARG_RECORDING_SESSION = "arg_recording_session";
 
     public static MediaPreviewFragment newInstance(String filePath, int fileType) {
+        return newInstance(filePath, fileType, null);
+    }
+
+    /**
+     * recordingSession 不为空时按段序依次播放该次录像的所有分段
+     */
+    public static MediaPreviewFragment newInstance(String filePath, int fileType, Long recordingSession) {
         MediaPreviewFragment f = new MediaPreviewFragment();
         Bundle args = new Bundle();
         args.putString(ARG_FILE_PATH, filePath);
         args.putInt(ARG_FILE_TYPE, fileType);
+        if (recordingSession != null) args.putLong(ARG_RECORDING_SESSION, recordingSession);
         f.setArguments(args);
         return f;
     }
 
     private String filePath;
     private int fileType;
+    private long recordingSession = -1;
+
+    // 分段录像的播放列表
+    private final List<String> segmentPaths = new ArrayList<>();
+    private int segmentPosition = 0;
 
     private ImageView imageView;
     private VideoView videoView;
@@ -57,6 +79,7 @@ public class MediaPreviewFragment extends Fragment {
         if (getArguments() != null) {
             filePath = getArguments().getString(ARG_FILE_PATH);
             fileType = getArguments().getInt(ARG_FILE_TYPE, 0);
+            recordingSession = getArguments().getLong(ARG_RECORDING_SESSION, -1);
         }
 
         backButton.setOnClickListener(v -> {
@@ -94,6 +117,9 @@ public class MediaPreviewFragment extends Fragment {
                 videoView.setVideoURI(uri);
                 videoView.requestFocus();
                 videoView.start();
+                // 一段播完接着播下一段
+                videoView.setOnCompletionListener(mp -> playNextSegment());
+                if (recordingSession >= 0) loadSegments();
                 // 点击 VideoView 切换播放/暂停
                 videoView.setOnClickListener(v -> {
                     if (videoView.isPlaying()) videoView.pause();
@@ -105,6 +131,34 @@ public class MediaPreviewFragment extends Fragment {
         }
     }
 
+    private void loadSegments() {
+        Context appContext = requireContext().getApplicationContext();
+        TaskScheduler.get().submit(TaskScheduler.Lane.DATABASE, this, () -> {
+            List<MediaFile> segments = MediaRepository.getInstance(appContext).getSessionSegments(recordingSession);
+            List<String> paths = new ArrayList<>(segments.size());
+            for (MediaFile segment : segments) paths.add(segment.getFilePath());
+            TaskScheduler.get().runOnMain(() -> {
+                if (!isAdded()) return;
+                segmentPaths.clear();
+                segmentPaths.addAll(paths);
+                segmentPosition = Math.max(0, segmentPaths.indexOf(filePath));
+            });
+        }, () -> Log.w(TAG, "Database lane full, segment navigation unavailable"));
+    }
+
+    private void playNextSegment() {
+        if (videoView == null || segmentPosition + 1 >= segmentPaths.size()) return;
+        segmentPosition++;
+        videoView.setVideoURI(parseToUri(segmentPaths.get(segmentPosition)));
+        videoView.start();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        TaskScheduler.get().cancelAll(this);
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -0,0 +1,96 @@
+package com.example.simplecamera.ui.camera;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * MediaStoreWriter：把内存中的 JPEG 写入相册（Q 及以上走 MediaStore，以下写入应用目录），
+ * 供自行处理帧数据的拍照路径（连拍、零延迟快门等）共用。
+ */
+final class MediaStoreWriter {
+    private static final String TAG = "MediaStoreWriter";
+
+    private MediaStoreWriter() {}
+
+    /**
+     * 写入 JPEG 并返回 content:// URI 或绝对路径；rotationDegrees 非 0 时写入 EXIF 方向
+     */
+    static String writeJpeg(Context context, File appStorageDir, String fileName,
+                            byte[] jpeg, int rotationDegrees) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            ContentResolver resolver = context.getContentResolver();
+            ContentValues values = new ContentValues();
+            values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+            values.put(MediaStore.MediaColumns.MIME_TYPE, "image/jpeg");
+            values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/SimpleCamera");
+            values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+            Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+            if (uri == null) throw new IOException("MediaStore insert failed for " + fileName);
+            try {
+                try (OutputStream out = resolver.openOutputStream(uri)) {
+                    if (out == null) throw new IOException("Cannot open " + uri);
+                    out.write(jpeg);
+                }
+                if (rotationDegrees != 0) {
+                    try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "rw")) {
+                        if (pfd != null) writeOrientation(new ExifInterface(pfd.getFileDescriptor()), rotationDegrees);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                resolver.delete(uri, null, null);
+                throw e;
+            }
+            values.clear();
+            values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+            resolver.update(uri, values, null, null);
+            return uri.toString();
+        } else {
+            File photoFile = new File(appStorageDir, fileName);
+            try (FileOutputStream out = new FileOutputStream(photoFile)) {
+                out.write(jpeg);
+            }
+            if (rotationDegrees != 0) {
+                writeOrientation(new ExifInterface(photoFile.getAbsolutePath()), rotationDegrees);
+            }
+            return photoFile.getAbsolutePath();
+        }
+    }
+
+    private static void writeOrientation(ExifInterface exif, int rotationDegrees) {
+        int orientation;
+        switch (rotationDegrees) {
+            case 90:
+                orientation = ExifInterface.ORIENTATION_ROTATE_90;
+                break;
+            case 180:
+                orientation = ExifInterface.ORIENTATION_ROTATE_180;
+                break;
+            case 270:
+                orientation = ExifInterface.ORIENTATION_ROTATE_270;
+                break;
+            default:
+                orientation = ExifInterface.ORIENTATION_NORMAL;
+                break;
+        }
+        try {
+            exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
+            exif.saveAttributes();
+        } catch (IOException e) {
+            // 方向写入失败不影响照片本身
+            Log.w(TAG, "Failed to write EXIF orientation", e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.simplecamera.ui.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.camera.video.Quality;
+
+import com.example.simplecamera.concurrent.TaskScheduler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * VideoCapabilityProfiler：按设备选择录像质量。
+ * 每台设备（以系统指纹区分）只测一次媒体卷的持续写入吞吐并缓存到 SharedPreferences，
+ * 结合镜头支持的质量列表，选出写盘速度跟得上的最高质量；用户可手动指定质量覆盖自动选择。
+ */
+class VideoCapabilityProfiler {
+    private static final String TAG = "VideoCapabilityProfiler";
+    private static final String PREFS_NAME = "video_capability";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_THROUGHPUT = "write_throughput_bps";
+    private static final String KEY_OVERRIDE = "quality_override";
+
+    // 探测写入 32MB，每 4MB 落盘一次，测的是持续吞吐而不是页缓存速度
+    private static final int PROBE_BYTES = 32 * 1024 * 1024;
+    private static final int PROBE_CHUNK_BYTES = 1024 * 1024;
+    private static final int PROBE_SYNC_EVERY_BYTES = 4 * 1024 * 1024;
+    // 写入吞吐需要留出的余量（音频、容器开销与码率波动）
+    private static final double THROUGHPUT_HEADROOM = 1.5;
+
+    // 从低到高排列的质量及其典型视频码率（bps）
+    private static final Quality[] QUALITIES = {Quality.SD, Quality.HD, Quality.FHD, Quality.UHD};
+    private static final String[] QUALITY_NAMES = {"SD", "HD", "FHD", "UHD"};
+    private static final long[] QUALITY_BITRATES = {4_000_000L, 12_000_000L, 20_000_000L, 50_000_000L};
+    // 尚未测出吞吐时沿用原先的默认质量
+    private static final Quality DEFAULT_QUALITY = Quality.HD;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private boolean probing = false;
+    private volatile long throughputBytesPerSec;
+
+    VideoCapabilityProfiler(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.throughputBytesPerSec = Build.FINGERPRINT.equals(prefs.getString(KEY_FINGERPRINT, null))
+                ? prefs.getLong(KEY_THROUGHPUT, 0) : 0;
+    }
+
+    /**
+     * 当前设备还没有缓存结果时在 BACKFILL 通道上探测一次（拍照写盘期间让出）
+     */
+    synchronized void ensureProbed() {
+        if (throughputBytesPerSec > 0 || probing) return;
+        probing = true;
+        TaskScheduler.get().submit(TaskScheduler.Lane.BACKFILL, () -> {
+            long measured = probeWriteThroughput();
+            if (measured > 0) {
+                throughputBytesPerSec = measured;
+                prefs.edit()
+                        .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                        .putLong(KEY_THROUGHPUT, measured)
+                        .apply();
+            }
+            synchronized (VideoCapabilityProfiler.this) {
+                probing = false;
+            }
+        });
+    }
+
+    long getThroughputBytesPerSec() {
+        return throughputBytesPerSec;
+    }
+
+    /**
+     * 为指定镜头选择录像质量：用户指定且镜头支持时直接使用，否则取吞吐允许且不超过 cap 的最高质量
+     */
+    Quality selectQuality(List<Quality> supported, Quality cap) {
+        Quality override = getOverride();
+        if (override != null && (supported == null || supported.contains(override))) return override;
+        if (supported == null || supported.isEmpty()) return DEFAULT_QUALITY;
+        long throughput = throughputBytesPerSec;
+        int capIndex = cap != null && indexOf(cap) >= 0 ? indexOf(cap) : QUALITIES.length - 1;
+        Quality best = null;
+        for (int i = 0; i < QUALITIES.length; i++) {
+            if (!supported.contains(QUALITIES[i])) continue;
+            boolean affordable = i <= capIndex && (throughput > 0
+                    ? QUALITY_BITRATES[i] / 8.0 * THROUGHPUT_HEADROOM <= throughput
+                    : i <= indexOf(DEFAULT_QUALITY));
+            // 最低的受支持质量总是保底可选
+            if (best == null || affordable) best = QUALITIES[i];
+        }
+        return best != null ? best : supported.get(0);
+    }
+
+    /**
+     * 在镜头支持的质量中从 quality 往下降 steps 档，没有更低的可用质量时保持最低一档
+     */
+    static Quality stepDown(Quality quality, int steps, List<Quality> supported) {
+        int index = indexOf(quality);
+        if (steps <= 0 || index < 0) return quality;
+        Quality result = quality;
+        for (int i = index - 1; i >= 0 && steps > 0; i--) {
+            if (supported == null || supported.contains(QUALITIES[i])) {
+                result = QUALITIES[i];
+                steps--;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用户指定的质量，null 表示自动
+     */
+    Quality getOverride() {
+        return fromName(prefs.getString(KEY_OVERRIDE, null));
+    }
+
+    void setOverride(Quality quality) {
+        prefs.edit().putString(KEY_OVERRIDE, nameOf(quality)).apply();
+    }
+
+    /**
+     * 在 自动 → SD → HD → FHD → UHD → 自动 之间循环（只包含镜头支持的质量），返回新的设置
+     */
+    Quality cycleOverride(List<Quality> supported) {
+        Quality current = getOverride();
+        int start = current == null ? -1 : indexOf(current);
+        Quality next = null;
+        for (int i = start + 1; i < QUALITIES.length; i++) {
+            if (supported == null || supported.contains(QUALITIES[i])) {
+                next = QUALITIES[i];
+                break;
+            }
+        }
+        setOverride(next);
+        return next;
+    }
+
+    static String nameOf(Quality quality) {
+        int index = quality == null ? -1 : indexOf(quality);
+        return index >= 0 ? QUALITY_NAMES[index] : null;
+    }
+
+    private static Quality fromName(String name) {
+        if (name == null) return null;
+        for (int i = 0; i < QUALITY_NAMES.length; i++) {
+            if (QUALITY_NAMES[i].equals(name)) return QUALITIES[i];
+        }
+        return null;
+    }
+
+    private static int indexOf(Quality quality) {
+        for (int i = 0; i < QUALITIES.length; i++) {
+            if (QUALITIES[i].equals(quality)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 在与 MediaStore 相同的外部存储卷上顺序写入并定期 fsync，返回字节/秒，失败返回 0
+     */
+    private long probeWriteThroughput() {
+        File dir = context.getExternalFilesDir(Environment.DIRECTORY_MOVIES);
+        if (dir == null) return 0;
+        File probe = new File(dir, ".throughput_probe");
+        ByteBuffer chunk = ByteBuffer.allocateDirect(PROBE_CHUNK_BYTES);
+        long start = SystemClock.elapsedRealtime();
+        try (FileOutputStream out = new FileOutputStream(probe);
+             FileChannel channel = out.getChannel()) {
+            int written = 0;
+            while (written < PROBE_BYTES) {
+                chunk.clear();
+                while (chunk.hasRemaining()) written += channel.write(chunk);
+                if (written % PROBE_SYNC_EVERY_BYTES == 0) channel.force(false);
+            }
+            channel.force(false);
+            long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+            long bytesPerSec = PROBE_BYTES * 1000L / elapsed;
+            Log.d(TAG, "Write throughput " + (bytesPerSec / 1024) + " KB/s (" + elapsed + "ms for "
+                    + (PROBE_BYTES >> 20) + "MB)");
+            return bytesPerSec;
+        } catch (IOException e) {
+            Log.w(TAG, "Write throughput probe failed", e);
+            return 0;
+        } finally {
+            if (probe.exists() && !probe.delete()) Log.w(TAG, "Failed to delete " + probe);
+        }
+    }
+}
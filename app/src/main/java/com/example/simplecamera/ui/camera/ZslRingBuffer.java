@@ -0,0 +1,97 @@
+package com.example.simplecamera.ui.camera;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+/**
+ * ZslRingBuffer：设备不支持 CameraX 零延迟快门时的替代方案。
+ * 作为 ImageAnalysis 的 Analyzer 持续保存最近几帧（NV21，槽位预分配并循环复用），
+ * 按下快门时取时间戳最接近的一帧来编码保存。
+ */
+class ZslRingBuffer implements ImageAnalysis.Analyzer {
+
+    /**
+     * 从环形缓冲中取出的一帧（数据已拷贝，不再受后续写入影响）
+     */
+    static class Snapshot {
+        final byte[] nv21;
+        final int width;
+        final int height;
+        final int rotationDegrees;
+        final long timestampNanos;
+
+        Snapshot(byte[] nv21, int width, int height, int rotationDegrees, long timestampNanos) {
+            this.nv21 = nv21;
+            this.width = width;
+            this.height = height;
+            this.rotationDegrees = rotationDegrees;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+
+    private final int capacity;
+    private final byte[][] slots;
+    private final long[] timestamps;
+    private final int[] rotations;
+    private int width = 0;
+    private int height = 0;
+    private int next = 0;
+    private int count = 0;
+
+    ZslRingBuffer(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.slots = new byte[this.capacity][];
+        this.timestamps = new long[this.capacity];
+        this.rotations = new int[this.capacity];
+    }
+
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        try {
+            synchronized (this) {
+                // 分辨率变化时丢弃旧帧并重新分配槽位
+                if (image.getWidth() != width || image.getHeight() != height) {
+                    width = image.getWidth();
+                    height = image.getHeight();
+                    for (int i = 0; i < capacity; i++) slots[i] = null;
+                    next = 0;
+                    count = 0;
+                }
+                int size = ImageUtils.nv21Size(width, height);
+                if (slots[next] == null) slots[next] = new byte[size];
+                ImageUtils.copyToNv21(image, slots[next]);
+                timestamps[next] = image.getImageInfo().getTimestamp();
+                rotations[next] = image.getImageInfo().getRotationDegrees();
+                next = (next + 1) % capacity;
+                if (count < capacity) count++;
+            }
+        } finally {
+            image.close();
+        }
+    }
+
+    /**
+     * 取时间戳最接近 targetNanos 的一帧，缓冲为空时返回 null
+     */
+    synchronized Snapshot pickClosest(long targetNanos) {
+        if (count == 0) return null;
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int index = (next - 1 - i + capacity) % capacity;
+            long distance = Math.abs(timestamps[index] - targetNanos);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = index;
+            }
+        }
+        return new Snapshot(slots[best].clone(), width, height, rotations[best], timestamps[best]);
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < capacity; i++) slots[i] = null;
+        next = 0;
+        count = 0;
+    }
+}
@@ -8,18 +8,32 @@ import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.MutableLiveData;
+import com.example.simplecamera.analysis.BestShotEngine;
+import com.example.simplecamera.analysis.DuplicateEngine;
 import com.example.simplecamera.database.entity.MediaFile;
 import com.example.simplecamera.database.repository.MediaRepository;
+import com.example.simplecamera.importer.MediaImporter;
+import com.example.simplecamera.metrics.CaptureTracer;
+import com.example.simplecamera.metrics.RecordingTelemetry;
+import com.example.simplecamera.ui.camera.CaptureProfile;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CameraViewModel extends AndroidViewModel {
     private MediaRepository repository;
+    // 连续拍摄的照片入库后在后台择优
+    private final BestShotEngine bestShotEngine;
+    private final DuplicateEngine duplicateEngine;
 
     // UI 状态
     public MutableLiveData<Boolean> isFrontCamera = new MutableLiveData<>(false);
     public MutableLiveData<CameraMode> currentMode = new MutableLiveData<>(CameraMode.PHOTO);
     public MutableLiveData<Boolean> isRecording = new MutableLiveData<>(false);
+    public MutableLiveData<CaptureProfile> captureProfile = new MutableLiveData<>(CaptureProfile.BALANCED);
     public MutableLiveData<Long> recordingStartTime = new MutableLiveData<>(0L);
+    // 录像中的编码遥测，未录像时为 null
+    public MutableLiveData<RecordingTelemetry> recordingTelemetry = new MutableLiveData<>(null);
 
     // 权限状态
     public MutableLiveData<Boolean> hasAllPermissions = new MutableLiveData<>(false);
@@ -33,8 +47,19 @@ public class CameraViewModel extends AndroidViewModel {
 
     public CameraViewModel(@NonNull Application application) {
         super(application);
-        repository = new MediaRepository(application);
+        repository = MediaRepository.getInstance(application);
+        bestShotEngine = new BestShotEngine(application);
+        duplicateEngine = new DuplicateEngine(application);
         initAppStorageDir();
+        // 补算尚未计算哈希的已有条目
+        duplicateEngine.schedule();
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        bestShotEngine.shutdown();
+        duplicateEngine.shutdown();
     }
 
     /**
@@ -49,6 +74,8 @@ public class CameraViewModel extends AndroidViewModel {
         if (!appStorageDir.exists()) {
             appStorageDir.mkdirs();
         }
+        // 目录里已有的照片与视频（例如重装前拍摄的）导入相册
+        MediaImporter.getInstance(getApplication()).startIfNeeded(appStorageDir);
     }
 
     /**
@@ -80,6 +107,14 @@ public class CameraViewModel extends AndroidViewModel {
         }
     }
 
+    /**
+     * 切换到下一个拍摄预设
+     */
+    public void cycleCaptureProfile() {
+        CaptureProfile current = captureProfile.getValue();
+        captureProfile.setValue(current != null ? current.next() : CaptureProfile.BALANCED);
+    }
+
     /**
      * 切换相机模式
      */
@@ -96,28 +131,70 @@ public class CameraViewModel extends AndroidViewModel {
      * 保存照片到数据库
      */
     public void savePhoto(String filePathOrUri) {
+        savePhoto(filePathOrUri, null);
+    }
+
+    /**
+     * 保存照片到数据库，插入完成后在数据库线程上执行 onInserted（可为 null）
+     */
+    public void savePhoto(String filePathOrUri, Runnable onInserted) {
         if (filePathOrUri != null) {
+            CaptureTracer.get().mark(filePathOrUri, CaptureTracer.Stage.VIEWMODEL_SAVE);
             MediaFile mediaFile = new MediaFile(filePathOrUri, 0, System.currentTimeMillis(), null);
-            repository.insertMediaFile(mediaFile);
+            repository.insertMediaFile(mediaFile, onInserted);
+            bestShotEngine.schedule();
+            duplicateEngine.schedule();
+        }
+    }
+
+    /**
+     * 批量保存照片到数据库（连拍结果一次性插入）
+     */
+    public void savePhotos(List<String> filePathsOrUris) {
+        if (filePathsOrUris == null || filePathsOrUris.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        CaptureTracer tracer = CaptureTracer.get();
+        List<MediaFile> mediaFiles = new ArrayList<>(filePathsOrUris.size());
+        for (String path : filePathsOrUris) {
+            if (path == null) continue;
+            tracer.mark(path, CaptureTracer.Stage.VIEWMODEL_SAVE);
+            mediaFiles.add(new MediaFile(path, 0, now, null));
         }
+        repository.insertMediaFiles(mediaFiles);
+        bestShotEngine.schedule();
+        duplicateEngine.schedule();
     }
 
     /**
-     * 保存视频到数据库
+     * 保存视频（或分段录像的一段）到数据库，时长、大小与码率取自编码器对该段的最终统计。
+     * 同一次录像的各段共用 recordingSession，按 segmentIndex 排序
      */
-    public void saveVideo(String fileUri, long durationMs) {
+    public void saveVideo(String fileUri, RecordingTelemetry finalStats, long recordingSession, int segmentIndex) {
         if (fileUri != null) {
-            MediaFile mediaFile = new MediaFile(fileUri, 1, System.currentTimeMillis(), durationMs);
+            MediaFile mediaFile = new MediaFile(fileUri, 1, System.currentTimeMillis(), finalStats.recordedDurationMs);
+            mediaFile.sizeBytes = finalStats.bytesWritten;
+            mediaFile.bitrateBps = finalStats.averageBitrateBps;
+            mediaFile.recordingSession = recordingSession;
+            mediaFile.segmentIndex = segmentIndex;
             repository.insertMediaFile(mediaFile);
+            if (segmentIndex == 0) duplicateEngine.schedule();
         }
     }
 
+    /**
+     * 更新录像遥测（主线程调用）
+     */
+    public void updateRecordingTelemetry(RecordingTelemetry telemetry) {
+        recordingTelemetry.setValue(telemetry);
+    }
+
     /**
      * 开始录制
      */
     public void startRecording() {
         isRecording.setValue(true);
         recordingStartTime.setValue(System.currentTimeMillis());
+        recordingTelemetry.setValue(null);
     }
 
     /**
@@ -126,5 +203,6 @@ public class CameraViewModel extends AndroidViewModel {
     public void stopRecording() {
         isRecording.setValue(false);
         recordingStartTime.setValue(0L);
+        recordingTelemetry.setValue(null);
     }
 }
\ No newline at end of file
@@ -1,70 +1,233 @@
 package com.example.simplecamera.viewmodel;
 
 import android.app.Application;
+import android.app.PendingIntent;
+import android.net.Uri;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.example.simplecamera.analysis.DuplicateFinder;
+import com.example.simplecamera.concurrent.TaskScheduler;
 import com.example.simplecamera.database.entity.MediaFile;
+import com.example.simplecamera.database.repository.MediaIndex;
 import com.example.simplecamera.database.repository.MediaRepository;
+import com.example.simplecamera.export.MediaExporter;
+import com.example.simplecamera.thumbnail.ThumbnailRepository;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class GalleryViewModel extends AndroidViewModel {
     private static final String TAG = "GalleryViewModel";
 
+    /**
+     * 图库列表索引及产生它的那次变化
+     */
+    public static class MediaUpdate {
+        public final MediaIndex index;
+        public final MediaRepository.ChangeEvent event;
+
+        MediaUpdate(MediaIndex index, MediaRepository.ChangeEvent event) {
+            this.index = index;
+            this.event = event;
+        }
+    }
+
+    /**
+     * 导出进度；没有进行中的导出时 LiveData 的值为 null
+     */
+    public static class ExportProgress {
+        public final int filesDone;
+        public final int filesTotal;
+        public final long bytesDone;
+        public final long bytesTotal;
+
+        ExportProgress(int filesDone, int filesTotal, long bytesDone, long bytesTotal) {
+            this.filesDone = filesDone;
+            this.filesTotal = filesTotal;
+            this.bytesDone = bytesDone;
+            this.bytesTotal = bytesTotal;
+        }
+
+        public int percent() {
+            return bytesTotal > 0 ? (int) Math.min(100, bytesDone * 100 / bytesTotal) : 0;
+        }
+    }
+
     private MediaRepository repository;
-    private LiveData<List<MediaFile>> allMediaFiles;
+    private final MutableLiveData<MediaUpdate> mediaUpdates = new MutableLiveData<>();
+    // 仓库在主线程回调，直接 setValue，保证每次变化都送达而不被合并
+    private final MediaRepository.ChangeListener changeListener =
+            (index, event) -> mediaUpdates.setValue(new MediaUpdate(index, event));
     private MutableLiveData<String> operationStatus = new MutableLiveData<>("");
-    private MutableLiveData<Boolean> isDeleting = new MutableLiveData<>(false);
+    // 等待用户确认的系统删除请求，界面发起后置空
+    private final MutableLiveData<PendingIntent> deleteConsent = new MutableLiveData<>(null);
+    private final MediaRepository.DeletionListener deletionListener = new MediaRepository.DeletionListener() {
+        @Override
+        public void onDeleteConsentRequired(PendingIntent request, int count) {
+            Log.d(TAG, count + " files need user consent to delete");
+            deleteConsent.setValue(request);
+        }
+
+        @Override
+        public void onDeleteFailed(List<String> filePaths) {
+            operationStatus.setValue("有 " + filePaths.size() + " 个文件无法删除，已恢复到相册");
+        }
+    };
+    private final MutableLiveData<ExportProgress> exportProgress = new MutableLiveData<>(null);
+    // 最近一次查重的结果，每组至少两个文件
+    private final MutableLiveData<List<List<MediaFile>>> duplicates = new MutableLiveData<>();
+    private MediaExporter exporter;
+    // 最近一次删除，供撤销
+    private List<MediaFile> lastDeleted = new ArrayList<>();
+    private long lastDeletedAt = 0;
 
     public GalleryViewModel(@NonNull Application application) {
         super(application);
-        repository = new MediaRepository(application);
-        allMediaFiles = repository.getAllMediaFiles();
+        repository = MediaRepository.getInstance(application);
+        repository.addListener(changeListener);
+        repository.setDeletionListener(deletionListener);
     }
 
-    public LiveData<List<MediaFile>> getAllMediaFiles() {
-        return allMediaFiles;
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        repository.removeListener(changeListener);
+        repository.clearDeletionListener(deletionListener);
+        cancelExport();
+        trimThumbnails();
+    }
+
+    /**
+     * 图库列表的变化。观察者重新订阅时只会拿到最近一次，应由 MediaAdapter 根据版本号判断是否整体刷新
+     */
+    public LiveData<MediaUpdate> getMediaUpdates() {
+        return mediaUpdates;
     }
 
     public LiveData<String> getOperationStatus() {
         return operationStatus;
     }
 
+    public LiveData<ExportProgress> getExportProgress() {
+        return exportProgress;
+    }
+
+    public LiveData<List<List<MediaFile>>> getDuplicates() {
+        return duplicates;
+    }
+
+    public LiveData<PendingIntent> getDeleteConsent() {
+        return deleteConsent;
+    }
+
     /**
-     * 获取删除状态
+     * 系统删除确认框已经弹出
      */
-    public LiveData<Boolean> getIsDeleting() {
-        return isDeleting;
+    public void onDeleteConsentShown() {
+        deleteConsent.setValue(null);
+    }
+
+    public void onDeleteConsentResult(boolean granted) {
+        repository.onDeleteConsentResult(granted);
+        if (!granted) operationStatus.setValue("已取消删除，文件已恢复到相册");
     }
 
     /**
-     * 批量删除媒体文件
+     * 删除选中的文件：立即从列表移除，可在 MediaRepository.UNDO_WINDOW_MS 内撤销
      */
     public void deleteMediaFiles(List<MediaFile> mediaFiles) {
         if (mediaFiles == null || mediaFiles.isEmpty()) {
-            operationStatus.postValue("没有选择要删除的文件");
+            operationStatus.setValue("没有选择要删除的文件");
             return;
         }
+        lastDeleted = new ArrayList<>(mediaFiles);
+        lastDeletedAt = SystemClock.elapsedRealtime();
+        repository.softDelete(lastDeleted);
+        Log.d(TAG, "Soft deleted " + mediaFiles.size() + " media files");
+    }
+
+    /**
+     * 撤销最近一次删除；超过时限或没有可撤销的删除时返回 false
+     */
+    public boolean undoDelete() {
+        if (lastDeleted.isEmpty()
+                || SystemClock.elapsedRealtime() - lastDeletedAt > MediaRepository.UNDO_WINDOW_MS) {
+            return false;
+        }
+        repository.restore(lastDeleted);
+        operationStatus.setValue("已恢复 " + lastDeleted.size() + " 个文件");
+        lastDeleted = new ArrayList<>();
+        return true;
+    }
+
+    /**
+     * 把选中的文件打包成 ZIP 写入 destination（SAF 文档），同一时间只进行一个导出
+     */
+    public void exportMediaFiles(List<MediaFile> mediaFiles, Uri destination) {
+        if (mediaFiles == null || mediaFiles.isEmpty()) {
+            operationStatus.setValue("没有选择要导出的文件");
+            return;
+        }
+        if (exporter != null) {
+            operationStatus.setValue("正在导出，请稍候");
+            return;
+        }
+        exportProgress.setValue(new ExportProgress(0, mediaFiles.size(), 0, 0));
+        exporter = new MediaExporter(getApplication(), mediaFiles, destination, new MediaExporter.Listener() {
+            @Override
+            public void onProgress(int filesDone, int filesTotal, long bytesDone, long bytesTotal) {
+                if (exporter == null) return;
+                exportProgress.setValue(new ExportProgress(filesDone, filesTotal, bytesDone, bytesTotal));
+            }
 
-        isDeleting.postValue(true);
-        operationStatus.postValue("正在删除 " + mediaFiles.size() + " 个文件...");
+            @Override
+            public void onFinished(int exported, List<String> skipped, long zipBytes) {
+                exportFinished(skipped.isEmpty() ? "已导出 " + exported + " 个文件"
+                        : "已导出 " + exported + " 个文件，" + skipped.size() + " 个无法读取");
+            }
 
-        repository.deleteMediaFiles(mediaFiles, new MediaRepository.MediaDeleteCallback() {
             @Override
-            public void onSuccess() {
-                Log.d(TAG, "Successfully deleted " + mediaFiles.size() + " media files");
-                operationStatus.postValue("成功删除 " + mediaFiles.size() + " 个文件");
-                isDeleting.postValue(false);
+            public void onCancelled() {
+                exportFinished("已取消导出");
             }
 
             @Override
-            public void onError(String errorMessage) {
-                Log.e(TAG, "Failed to delete media files: " + errorMessage);
-                operationStatus.postValue("删除失败: " + errorMessage);
-                isDeleting.postValue(false);
+            public void onFailed(String reason) {
+                exportFinished("导出失败：" + reason);
             }
         });
+        exporter.start();
+        Log.d(TAG, "Exporting " + mediaFiles.size() + " media files to " + destination);
+    }
+
+    /**
+     * 在后台查找完全相同与近似重复的照片、视频，结果发布到 getDuplicates()；只包含已算出哈希的条目
+     */
+    public void findDuplicates() {
+        TaskScheduler.get().submit(TaskScheduler.Lane.BACKFILL, () ->
+                duplicates.postValue(repository.getDuplicates(DuplicateFinder.NEAR_DUPLICATE_DISTANCE)));
+    }
+
+    // 界面销毁后清掉已不在列表中的缩略图，存储文件在下次打开时压缩
+    private void trimThumbnails() {
+        MediaIndex index = repository.getIndex();
+        Set<Long> liveIds = new HashSet<>(index.size() * 2);
+        for (int i = 0; i < index.size(); i++) liveIds.add(index.id(i));
+        ThumbnailRepository.getInstance(getApplication()).trim(liveIds);
+    }
+
+    public void cancelExport() {
+        if (exporter != null) exporter.cancel();
+    }
+
+    private void exportFinished(String status) {
+        exporter = null;
+        exportProgress.setValue(null);
+        operationStatus.setValue(status);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package com.example.simplecamera.analysis;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * dHash、HammingIndex 与重复分组的正确性；ITEMS 个随机条目的分组结果与两两比较对照
+ */
+public class DuplicateFinderTest {
+    private static final int ITEMS = 2_000;
+    private static final int MAX_DISTANCE = 6;
+
+    @Test
+    public void dHashToleratesBrightnessAndNoise() {
+        int width = 96;
+        int height = 72;
+        byte[] image = gradientScene(width, height);
+        byte[] brighter = new byte[image.length];
+        byte[] noisy = new byte[image.length];
+        Random random = new Random(5);
+        for (int i = 0; i < image.length; i++) {
+            int value = image[i] & 0xFF;
+            brighter[i] = (byte) Math.min(255, value + 30);
+            noisy[i] = (byte) Math.max(0, Math.min(255, value + random.nextInt(7) - 3));
+        }
+        byte[] mirrored = new byte[image.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) mirrored[y * width + x] = image[y * width + width - 1 - x];
+        }
+
+        long hash = PerceptualHash.dHash(image, width, height);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(brighter, width, height)) <= 2);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(noisy, width, height)) <= MAX_DISTANCE);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(mirrored, width, height)) > 20);
+    }
+
+    @Test
+    public void hammingIndexMatchesLinearScan() {
+        Random random = new Random(11);
+        long[] hashes = new long[5000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = i % 5 == 0 && i > 0 ? flipBits(hashes[i - 1], random.nextInt(12), random) : random.nextLong();
+        }
+        HammingIndex index = new HammingIndex(hashes, hashes.length);
+        for (int maxDistance : new int[]{0, 3, MAX_DISTANCE, 10}) {
+            for (int q = 0; q < 200; q++) {
+                long query = flipBits(hashes[random.nextInt(hashes.length)], random.nextInt(8), random);
+                Set<Integer> expected = new HashSet<>();
+                for (int i = 0; i < hashes.length; i++) {
+                    if (PerceptualHash.distance(query, hashes[i]) <= maxDistance) expected.add(i);
+                }
+                Set<Integer> found = new HashSet<>();
+                index.search(query, maxDistance, (item, distance) -> {
+                    assertEquals(PerceptualHash.distance(query, hashes[item]), distance);
+                    assertTrue(found.add(item));
+                });
+                assertEquals(expected, found);
+            }
+        }
+    }
+
+    @Test
+    public void groupsExactAndNearDuplicates() {
+        DuplicateFinder finder = new DuplicateFinder(8);
+        long base = 0x0F0F_1234_5678_9ABCL;
+        finder.add(1, "aaa", base);
+        finder.add(2, "bbb", 0x7777_0000_FFFF_1111L);
+        finder.add(3, "aaa", base);
+        finder.add(4, "ccc", base ^ 0b101);
+        finder.add(5, "ddd", null);
+        finder.add(6, "ddd", null);
+        finder.add(7, null, ~base);
+
+        List<DuplicateFinder.Group> groups = finder.group(MAX_DISTANCE);
+        assertEquals(2, groups.size());
+        assertArrayEquals(new long[]{1, 3, 4}, groups.get(0).ids);
+        assertFalse(groups.get(0).exact);
+        assertArrayEquals(new long[]{5, 6}, groups.get(1).ids);
+        assertTrue(groups.get(1).exact);
+    }
+
+    @Test
+    public void groupingMatchesPairwiseScan() {
+        Random random = new Random(2024);
+        long[] hashes = new long[ITEMS];
+        String[] contents = new String[ITEMS];
+        // 约 5% 是连拍的近似重复，1% 是重新导入的完全相同副本
+        for (int i = 0; i < ITEMS; i++) {
+            int roll = random.nextInt(100);
+            if (i > 0 && roll < 5) {
+                hashes[i] = flipBits(hashes[i - 1], 1 + random.nextInt(4), random);
+                contents[i] = "c" + i;
+            } else if (i > 0 && roll < 6) {
+                int source = random.nextInt(i);
+                hashes[i] = hashes[source];
+                contents[i] = contents[source];
+            } else {
+                hashes[i] = random.nextLong();
+                contents[i] = "c" + i;
+            }
+        }
+
+        DuplicateFinder finder = new DuplicateFinder(ITEMS);
+        for (int i = 0; i < ITEMS; i++) finder.add(i, contents[i], hashes[i]);
+        List<DuplicateFinder.Group> groups = finder.group(MAX_DISTANCE);
+
+        // 两两比较的对照；完全相同的副本哈希也相同，已包含在近邻对里
+        int[] parent = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) parent[i] = i;
+        for (int i = 0; i < ITEMS; i++) {
+            long hash = hashes[i];
+            for (int j = 0; j < i; j++) {
+                if (Long.bitCount(hash ^ hashes[j]) <= MAX_DISTANCE) parent[root(parent, i)] = root(parent, j);
+            }
+        }
+        int[] sizes = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) sizes[root(parent, i)]++;
+        int linearGrouped = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            if (sizes[root(parent, i)] > 1) linearGrouped++;
+        }
+
+        int grouped = 0;
+        for (DuplicateFinder.Group group : groups) grouped += group.ids.length;
+        assertEquals(linearGrouped, grouped);
+        assertTrue(grouped >= ITEMS * 5 / 100);
+        // 索引只核对少量候选，两两比较要核对 ITEMS * (ITEMS - 1) / 2 对
+        assertTrue(finder.lastCheckedCandidates() < (long) ITEMS * (ITEMS - 1) / 20);
+    }
+
+    private static int root(int[] parent, int i) {
+        while (parent[i] != i) i = parent[i] = parent[parent[i]];
+        return i;
+    }
+
+    private static long flipBits(long hash, int bits, Random random) {
+        long flipped = hash;
+        Set<Integer> used = new HashSet<>();
+        while (used.size() < bits) {
+            int bit = random.nextInt(64);
+            if (used.add(bit)) flipped ^= 1L << bit;
+        }
+        return flipped;
+    }
+
+    // 左暗右亮的渐变上叠加几个亮块，避免画面对称
+    private static byte[] gradientScene(int width, int height) {
+        byte[] image = new byte[width * height];
+        List<int[]> blocks = new ArrayList<>();
+        blocks.add(new int[]{10, 10, 20, 15});
+        blocks.add(new int[]{60, 40, 25, 20});
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = 40 + x * 150 / width + (int) (20 * Math.sin(y / 7.0));
+                for (int[] b : blocks) {
+                    if (x >= b[0] && x < b[0] + b[2] && y >= b[1] && y < b[1] + b[3]) value = 250 - value / 3;
+                }
+                image[y * width + x] = (byte) value;
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.simplecamera.analysis;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * ShotScorer 的正确性检查：合成清晰、模糊、过曝三种图像比较分数，并把分块结果与逐像素的参考实现对照。
+ */
+public class ShotScorerBenchmarkTest {
+    private static final int WIDTH = 512;
+    private static final int HEIGHT = 384;
+
+    @Test
+    public void sharpBeatsBlurredAndOverexposed() {
+        byte[] sharp = texture(WIDTH, HEIGHT, 42);
+        byte[] blurred = boxBlur(sharp, WIDTH, HEIGHT, 3);
+        byte[] overexposed = brighten(sharp, 140);
+
+        ShotScorer scorer = new ShotScorer(ForkJoinPool.commonPool());
+        ShotScorer.Score sharpScore = scorer.score(sharp, WIDTH, HEIGHT);
+        ShotScorer.Score blurredScore = scorer.score(blurred, WIDTH, HEIGHT);
+        ShotScorer.Score overexposedScore = scorer.score(overexposed, WIDTH, HEIGHT);
+
+        assertTrue(sharpScore.sharpness > blurredScore.sharpness);
+        assertTrue(sharpScore.total > blurredScore.total);
+        assertTrue(sharpScore.exposure > overexposedScore.exposure);
+        assertTrue(sharpScore.total > overexposedScore.total);
+    }
+
+    @Test
+    public void tiledResultMatchesSingleTile() {
+        byte[] image = texture(WIDTH, HEIGHT, 7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ShotScorer.Score tiled = new ShotScorer(pool).score(image, WIDTH, HEIGHT);
+            assertEquals(referenceVariance(image, WIDTH, HEIGHT), tiled.laplacianVariance, 1e-6);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void groupsByCreatedDateGap() {
+        long[] dates = {1000, 1500, 1900, 9000, 20000, 20100};
+        List<int[]> groups = ShotScorer.groupByProximity(dates, 2000);
+        assertEquals(3, groups.size());
+        assertArrayEquals(new int[]{0, 3}, groups.get(0));
+        assertArrayEquals(new int[]{3, 4}, groups.get(1));
+        assertArrayEquals(new int[]{4, 6}, groups.get(2));
+        assertTrue(ShotScorer.groupByProximity(new long[0], 2000).isEmpty());
+    }
+
+    // 整幅图作为一块、逐像素计算的拉普拉斯方差，不经过 SharpnessAnalyzer
+    private static double referenceVariance(byte[] luma, int width, int height) {
+        long count = 0;
+        double sum = 0;
+        double sumSquares = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int lap = 4 * (luma[y * width + x] & 0xFF)
+                        - (luma[y * width + x - 1] & 0xFF) - (luma[y * width + x + 1] & 0xFF)
+                        - (luma[(y - 1) * width + x] & 0xFF) - (luma[(y + 1) * width + x] & 0xFF);
+                sum += lap;
+                sumSquares += (double) lap * lap;
+                count++;
+            }
+        }
+        double mean = sum / count;
+        return sumSquares / count - mean * mean;
+    }
+
+    // 平滑渐变叠加随机细节，模拟对焦清晰、曝光正常的场景
+    private static byte[] texture(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] out = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = 60 + (x * 100 / width) + (y * 20 / height);
+                int detail = ((x / 4 + y / 4) % 2 == 0 ? 20 : -20) + random.nextInt(21) - 10;
+                out[y * width + x] = (byte) Math.max(0, Math.min(255, base + detail));
+            }
+        }
+        return out;
+    }
+
+    private static byte[] boxBlur(byte[] in, int width, int height, int radius) {
+        byte[] out = new byte[in.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    int yy = y + dy;
+                    if (yy < 0 || yy >= height) continue;
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int xx = x + dx;
+                        if (xx < 0 || xx >= width) continue;
+                        sum += in[yy * width + xx] & 0xFF;
+                        count++;
+                    }
+                }
+                out[y * width + x] = (byte) (sum / count);
+            }
+        }
+        return out;
+    }
+
+    private static byte[] brighten(byte[] in, int delta) {
+        byte[] out = new byte[in.length];
+        for (int i = 0; i < in.length; i++) out[i] = (byte) Math.min(255, (in[i] & 0xFF) + delta);
+        return out;
+    }
+}
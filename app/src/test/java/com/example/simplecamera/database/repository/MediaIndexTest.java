@@ -0,0 +1,175 @@
+package com.example.simplecamera.database.repository;
+
+import com.example.simplecamera.database.entity.MediaFile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * MediaIndex 的排序、查找与增删，以及取出条目时字段不丢失
+ */
+public class MediaIndexTest {
+
+    private static MediaFile photo(long id, long date, String path) {
+        MediaFile file = new MediaFile(path, 0, date, null);
+        file.id = id;
+        return file;
+    }
+
+    private static MediaFile video(long id, long date, String path, long duration, Long session) {
+        MediaFile file = new MediaFile(path, 1, date, duration);
+        file.id = id;
+        file.recordingSession = session;
+        file.segmentIndex = session != null ? 0 : null;
+        return file;
+    }
+
+    @Test
+    public void sortsNewestFirstAndFindsById() {
+        MediaIndex index = MediaIndex.of(Arrays.asList(
+                photo(1, 1000, "/sdcard/DCIM/a.jpg"),
+                photo(3, 3000, "content://media/external/images/media/3"),
+                video(2, 2000, "/sdcard/DCIM/b.mp4", 4500, 2000L),
+                photo(4, 3000, "/sdcard/DCIM/c.jpg")));
+
+        assertEquals(4, index.size());
+        assertEquals(4, index.id(0));
+        assertEquals(3, index.id(1));
+        assertEquals(2, index.id(2));
+        assertEquals(1, index.id(3));
+        for (int i = 0; i < index.size(); i++) assertEquals(i, index.positionOfId(index.id(i)));
+        assertEquals(-1, index.positionOfId(99));
+
+        int video = index.positionOfId(2);
+        assertEquals(1, index.type(video));
+        assertEquals(4500, index.duration(video));
+        assertEquals(2000, index.session(video));
+        assertEquals("/sdcard/DCIM/b.mp4", index.path(video));
+        assertEquals(MediaIndex.NO_DURATION, index.duration(0));
+        assertEquals(MediaIndex.NO_SESSION, index.session(0));
+        assertEquals("content://media/external/images/media/3", index.path(1));
+        assertEquals(2, index.positionOfPath("/sdcard/DCIM/b.mp4"));
+        assertEquals(-1, index.positionOfPath("/sdcard/DCIM/b.mp"));
+    }
+
+    @Test
+    public void findsFirstOlderThanDate() {
+        List<MediaFile> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) files.add(photo(i + 1, 1000L * i, "/p/" + i + ".jpg"));
+        MediaIndex index = MediaIndex.of(files);
+
+        assertEquals(0, index.firstOlderThan(10_000));
+        assertEquals(1, index.firstOlderThan(9000));
+        assertEquals(1, index.firstOlderThan(8500));
+        assertEquals(2, index.firstOlderThan(8000));
+        assertEquals(10, index.firstOlderThan(0));
+        assertEquals(10, index.firstOlderThan(-1));
+    }
+
+    @Test
+    public void addRemoveAndUpdateProduceNewInstances() {
+        MediaIndex base = MediaIndex.of(Arrays.asList(
+                photo(1, 1000, "/p/1.jpg"), photo(2, 2000, "/p/2.jpg"), photo(3, 3000, "/p/3.jpg")));
+
+        MediaIndex added = base.withAdded(Arrays.asList(photo(5, 2500, "/q/5.jpg"), photo(6, 500, "/p/6.jpg")));
+        assertEquals(3, base.size());
+        assertEquals(5, added.size());
+        assertEquals(1, added.positionOfId(5));
+        assertEquals(4, added.positionOfId(6));
+        assertEquals("/q/5.jpg", added.path(1));
+
+        MediaIndex removed = added.without(new long[]{3, 6, 42});
+        assertEquals(3, removed.size());
+        assertEquals(5, removed.id(0));
+        assertEquals(2, removed.id(1));
+        assertEquals(1, removed.id(2));
+        assertSame(removed, removed.without(new long[]{42}));
+
+        MediaIndex scored = removed.withShotScore(2, 0.75);
+        assertTrue(Double.isNaN(removed.shotScore(1)));
+        assertEquals(0.75, scored.shotScore(1), 0);
+
+        MediaIndex best = scored.withBestShot(2, Arrays.asList(1L, 2L, 5L));
+        assertTrue(best.isBestShot(best.positionOfId(2)));
+        assertFalse(best.isBestShot(best.positionOfId(1)));
+        assertSame(best, best.withBestShot(2, Arrays.asList(1L, 2L, 5L)));
+
+        MediaFile file = best.toMediaFile(best.positionOfId(2));
+        assertEquals(2, file.id);
+        assertEquals("/p/2.jpg", file.filePath);
+        assertEquals(0.75, file.shotScore, 1e-6);
+        assertTrue(file.bestShot);
+        assertNull(file.duration);
+        assertNull(file.recordingSession);
+    }
+
+    @Test
+    public void addingExistingIdReplacesIt() {
+        MediaIndex base = MediaIndex.of(Collections.singletonList(photo(1, 1000, "/p/1.jpg")));
+        MediaIndex replaced = base.withAdded(Collections.singletonList(photo(1, 5000, "/p/1b.jpg")));
+        assertEquals(1, replaced.size());
+        assertEquals(5000, replaced.date(0));
+        assertEquals("/p/1b.jpg", replaced.path(0));
+    }
+
+    @Test
+    public void toMediaFileKeepsListedColumns() {
+        MediaFile segment = video(7, 7000, "/sdcard/Movies/v.mp4", 60_000, 7000L);
+        segment.sizeBytes = 5_000_000_000L;
+        segment.bitrateBps = 12_000_000L;
+        MediaFile photo = photo(8, 8000, "/sdcard/DCIM/p.jpg");
+        photo.sizeBytes = 3_456_789L;
+        photo.shotScore = 0.123456789012;
+        MediaIndex index = MediaIndex.of(Arrays.asList(segment, photo));
+
+        MediaFile video = index.toMediaFile(index.positionOfId(7));
+        assertEquals(Long.valueOf(5_000_000_000L), video.sizeBytes);
+        assertEquals(Long.valueOf(12_000_000L), video.bitrateBps);
+        assertEquals(Long.valueOf(7000L), video.recordingSession);
+        assertEquals(Integer.valueOf(0), video.segmentIndex);
+        assertEquals(Long.valueOf(60_000L), video.duration);
+        assertNull(video.shotScore);
+
+        MediaFile still = index.toMediaFile(index.positionOfId(8));
+        assertEquals(Long.valueOf(3_456_789L), still.sizeBytes);
+        assertNull(still.bitrateBps);
+        assertNull(still.segmentIndex);
+        assertEquals(0.123456789012, still.shotScore, 0);
+    }
+
+    @Test
+    public void incrementalAddsAndRemovesKeepIdLookup() {
+        Random random = new Random(3);
+        List<MediaFile> all = new ArrayList<>();
+        MediaIndex index = MediaIndex.EMPTY;
+        long nextId = 1;
+        for (int round = 0; round < 40; round++) {
+            List<MediaFile> batch = new ArrayList<>();
+            for (int i = random.nextInt(5); i >= 0; i--) {
+                // id 与时间不同序，模拟导入的旧照片
+                batch.add(photo(nextId++, random.nextInt(10_000), "/p/" + nextId + ".jpg"));
+            }
+            all.addAll(batch);
+            index = index.withAdded(batch);
+            if (round % 3 == 2) {
+                MediaFile gone = all.remove(random.nextInt(all.size()));
+                index = index.without(new long[]{gone.id});
+            }
+        }
+
+        MediaIndex rebuilt = MediaIndex.of(all);
+        assertEquals(rebuilt.size(), index.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(rebuilt.id(i), index.id(i));
+            assertEquals(i, index.positionOfId(index.id(i)));
+        }
+        assertEquals(-1, index.positionOfId(nextId));
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.simplecamera.export;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * ZipStreamWriter 的输出能被标准实现读回，取消能中止写入，
+ * 多文件归档的内容与 ZipOutputStream 逐个拷贝的朴素做法一致
+ */
+public class ZipStreamWriterTest {
+    private static final int ARCHIVE_FILES = 4;
+    private static final int ARCHIVE_FILE_SIZE = 256 * 1024;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("zip", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void storedAndDeflatedEntriesReadBack() throws Exception {
+        byte[] photo = randomBytes(300_000, 1);
+        byte[] video = randomBytes(3_000_000, 2);
+        byte[] text = new byte[100_000];
+        Arrays.fill(text, (byte) 'a');
+        byte[] empty = new byte[0];
+        File[] sources = {write("IMG_1.jpg", photo), write("VID_2.mp4", video), write("notes.txt", text),
+                write("empty.jpg", empty)};
+
+        File zipFile = new File(dir, "out.zip");
+        long[] reported = {0};
+        try (FileOutputStream out = new FileOutputStream(zipFile);
+             ZipStreamWriter zip = new ZipStreamWriter(out.getChannel())) {
+            for (File source : sources) {
+                try (FileInputStream in = new FileInputStream(source)) {
+                    zip.putFile("照片/" + source.getName(), in.getChannel(), 1_700_000_000_000L,
+                            !source.getName().endsWith(".txt"), delta -> reported[0] += delta);
+                }
+            }
+            zip.finish();
+            assertEquals(zipFile.length(), zip.bytesWritten());
+        }
+        assertEquals(photo.length + video.length + text.length, reported[0]);
+
+        try (ZipFile read = new ZipFile(zipFile)) {
+            assertEquals(4, read.size());
+            ZipEntry stored = read.getEntry("照片/VID_2.mp4");
+            assertEquals(ZipEntry.STORED, stored.getMethod());
+            assertArrayEquals(video, readAll(read.getInputStream(stored)));
+            ZipEntry deflated = read.getEntry("照片/notes.txt");
+            assertEquals(ZipEntry.DEFLATED, deflated.getMethod());
+            assertTrue(deflated.getCompressedSize() < text.length / 10);
+            assertArrayEquals(text, readAll(read.getInputStream(deflated)));
+        }
+        // 顺序读取同样要能校验 CRC 与长度
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(zipFile))) {
+            byte[][] expected = {photo, video, text, empty};
+            for (byte[] content : expected) {
+                assertNotNull(in.getNextEntry());
+                assertArrayEquals(content, readAll(in));
+            }
+            assertNull(in.getNextEntry());
+        }
+    }
+
+    @Test
+    public void cancelStopsBeforeNextChunk() throws Exception {
+        File source = write("VID_1.mp4", randomBytes(20 * 1024 * 1024, 3));
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "cancelled.zip"));
+             ZipStreamWriter zip = new ZipStreamWriter(out.getChannel());
+             FileInputStream in = new FileInputStream(source)) {
+            zip.putFile("VID_1.mp4", in.getChannel(), 0, true, delta -> zip.cancel());
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            // 第一块写完后取消
+        }
+    }
+
+    @Test
+    public void multiFileArchiveMatchesZipOutputStream() throws Exception {
+        File[] sources = new File[ARCHIVE_FILES];
+        for (int i = 0; i < ARCHIVE_FILES; i++) {
+            sources[i] = write("IMG_" + i + ".jpg", randomBytes(ARCHIVE_FILE_SIZE, 10 + i));
+        }
+        File naive = naiveZip(sources, new File(dir, "naive.zip"), true);
+        File streamed = streamZip(sources, new File(dir, "stream.zip"));
+
+        try (ZipFile expected = new ZipFile(naive); ZipFile actual = new ZipFile(streamed)) {
+            assertEquals(ARCHIVE_FILES, actual.size());
+            for (File source : sources) {
+                ZipEntry want = expected.getEntry(source.getName());
+                ZipEntry got = actual.getEntry(source.getName());
+                assertNotNull(got);
+                assertEquals(want.getCrc(), got.getCrc());
+                assertEquals(want.getSize(), got.getSize());
+                assertArrayEquals(readAll(expected.getInputStream(want)), readAll(actual.getInputStream(got)));
+            }
+        }
+    }
+
+    // STORED 时 ZipOutputStream 要求先给出 CRC，只能多读一遍
+    private File naiveZip(File[] sources, File target, boolean store) throws IOException {
+        byte[] buffer = new byte[8192];
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(target))) {
+            for (File source : sources) {
+                ZipEntry entry = new ZipEntry(source.getName());
+                if (store) {
+                    CRC32 crc = new CRC32();
+                    try (InputStream in = new FileInputStream(source)) {
+                        int read;
+                        while ((read = in.read(buffer)) > 0) crc.update(buffer, 0, read);
+                    }
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(source.length());
+                    entry.setCompressedSize(source.length());
+                    entry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(entry);
+                try (InputStream in = new FileInputStream(source)) {
+                    int read;
+                    while ((read = in.read(buffer)) > 0) zip.write(buffer, 0, read);
+                }
+                zip.closeEntry();
+            }
+        }
+        return target;
+    }
+
+    private File streamZip(File[] sources, File target) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target);
+             ZipStreamWriter zip = new ZipStreamWriter(out.getChannel())) {
+            for (File source : sources) {
+                try (FileInputStream in = new FileInputStream(source);
+                     FileChannel channel = in.getChannel()) {
+                    zip.putFile(source.getName(), channel, source.lastModified(), true, null);
+                }
+            }
+            zip.finish();
+        }
+        return target;
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        File file = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    // 随机字节与 JPEG、MP4 一样几乎不可压缩
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        return in.readAllBytes();
+    }
+}
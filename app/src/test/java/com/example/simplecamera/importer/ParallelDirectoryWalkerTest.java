@@ -0,0 +1,143 @@
+package com.example.simplecamera.importer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * ParallelDirectoryWalker 的正确性：过滤、隐藏文件、异常与中断传递，以及多目录下单线程与多线程计数一致
+ */
+public class ParallelDirectoryWalkerTest {
+    private static final int FILES = 2_000;
+    private static final int DIRS = 20;
+
+    private File root;
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("walker", "");
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+        deleteTree(root);
+    }
+
+    @Test
+    public void findsMatchingFilesAndSkipsHiddenOnes() throws Exception {
+        File nested = new File(root, "a/b/c");
+        assertTrue(nested.mkdirs());
+        touch(new File(root, "IMG_1.jpg"));
+        touch(new File(root, "a/VID_2.mp4"));
+        touch(new File(nested, "IMG_3.JPG"));
+        touch(new File(nested, "notes.txt"));
+        touch(new File(root, ".thumbnails/IMG_4.jpg"));
+
+        Set<String> found = Collections.synchronizedSet(new HashSet<>());
+        int[] visits = new int[1];
+        long matched = new ParallelDirectoryWalker(pool, () -> countVisit(visits)).walk(root,
+                ParallelDirectoryWalkerTest::isMedia, batch -> {
+                    for (ParallelDirectoryWalker.Entry entry : batch) found.add(new File(entry.path).getName());
+                });
+
+        assertEquals(3, matched);
+        assertEquals(new HashSet<>(Arrays.asList("IMG_1.jpg", "VID_2.mp4", "IMG_3.JPG")), found);
+        // 根目录、a、a/b、a/b/c（隐藏目录不访问）
+        assertEquals(4, visits[0]);
+    }
+
+    @Test
+    public void sinkFailureIsRethrown() throws Exception {
+        touch(new File(root, "IMG_1.jpg"));
+        try {
+            new ParallelDirectoryWalker(pool, null).walk(root, ParallelDirectoryWalkerTest::isMedia, batch -> {
+                throw new IllegalStateException("sink");
+            });
+            fail("expected the sink failure");
+        } catch (IllegalStateException e) {
+            assertEquals("sink", e.getMessage());
+        }
+    }
+
+    @Test
+    public void sinkInterruptionReachesCaller() throws Exception {
+        touch(new File(root, "IMG_1.jpg"));
+        try {
+            new ParallelDirectoryWalker(pool, null).walk(root, ParallelDirectoryWalkerTest::isMedia, batch -> {
+                throw new InterruptedException("sink");
+            });
+            fail("expected the walk to be interrupted");
+        } catch (InterruptedException expected) {
+            // 中断在调用 walk() 的线程上抛出
+        }
+    }
+
+    @Test
+    public void countsEveryFileAcrossManyDirectories() throws Exception {
+        for (int d = 0; d < DIRS; d++) {
+            File dir = new File(root, "d" + d);
+            assertTrue(dir.mkdir());
+            for (int f = 0; f < FILES / DIRS; f++) touch(new File(dir, "IMG_" + d + "_" + f + ".jpg"));
+        }
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            for (ForkJoinPool executor : new ForkJoinPool[]{single, pool}) {
+                long[] count = new long[1];
+                long matched = new ParallelDirectoryWalker(executor, null).walk(root,
+                        ParallelDirectoryWalkerTest::isMedia, batch -> countBatch(count, batch));
+                assertEquals(FILES, matched);
+                assertEquals(FILES, count[0]);
+            }
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private static void countVisit(int[] visits) {
+        synchronized (visits) {
+            visits[0]++;
+        }
+    }
+
+    private static void countBatch(long[] count, List<ParallelDirectoryWalker.Entry> batch) {
+        synchronized (count) {
+            count[0] += batch.size();
+        }
+    }
+
+    private static boolean isMedia(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".mp4");
+    }
+
+    private static void touch(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory()) assertTrue(parent.mkdirs());
+        assertTrue(file.createNewFile());
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteTree(child);
+        }
+        file.delete();
+    }
+}
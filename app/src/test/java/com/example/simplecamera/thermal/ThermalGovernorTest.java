@@ -0,0 +1,131 @@
+package com.example.simplecamera.thermal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ThermalGovernor 的档位与滞回策略，使用假的温控来源与时钟
+ */
+public class ThermalGovernorTest {
+    private static final long RECOVERY_MS = 60_000;
+
+    private static class FakeThermalSource implements ThermalSource {
+        int status = STATUS_NONE;
+        Listener listener;
+
+        @Override
+        public int getCurrentStatus() {
+            return status;
+        }
+
+        @Override
+        public void setListener(Listener listener) {
+            this.listener = listener;
+        }
+
+        void emit(int newStatus) {
+            status = newStatus;
+            if (listener != null) listener.onThermalStatusChanged(newStatus);
+        }
+    }
+
+    private final FakeThermalSource source = new FakeThermalSource();
+    private long now = 0;
+    private final ThermalGovernor governor = new ThermalGovernor(source, () -> now, RECOVERY_MS);
+    private final List<Integer> changes = new ArrayList<>();
+
+    private void start() {
+        governor.start(level -> changes.add(level.index));
+    }
+
+    @Test
+    public void stepsDownImmediatelyAsStatusRises() {
+        start();
+        assertEquals(0, governor.getLevel().index);
+        source.emit(ThermalSource.STATUS_MODERATE);
+        assertEquals(1, governor.getLevel().index);
+        source.emit(ThermalSource.STATUS_CRITICAL);
+        assertEquals(3, governor.getLevel().index);
+        assertEquals(15, governor.getLevel().maxPreviewFps);
+        assertEquals(4, governor.getLevel().analysisFrameStride);
+    }
+
+    @Test
+    public void degradesVideoThenFrameRateThenAnalysis() {
+        ThermalGovernor.Level previous = ThermalGovernor.LEVELS[0];
+        ThermalGovernor.Level l1 = ThermalGovernor.LEVELS[1];
+        ThermalGovernor.Level l2 = ThermalGovernor.LEVELS[2];
+        ThermalGovernor.Level l3 = ThermalGovernor.LEVELS[3];
+        assertTrue(l1.videoQualitySteps > previous.videoQualitySteps);
+        assertEquals(0, l1.maxPreviewFps);
+        assertTrue(l2.maxPreviewFps > 0);
+        assertEquals(1, l2.analysisFrameStride);
+        assertTrue(l3.analysisFrameStride > 1);
+    }
+
+    @Test
+    public void recoversOneLevelPerDelay() {
+        start();
+        source.emit(ThermalSource.STATUS_CRITICAL);
+        source.emit(ThermalSource.STATUS_NONE);
+        assertEquals(3, governor.getLevel().index);
+        assertTrue(governor.isRecovering());
+
+        now += RECOVERY_MS - 1;
+        governor.evaluate();
+        assertEquals(3, governor.getLevel().index);
+
+        now += 1;
+        governor.evaluate();
+        assertEquals(2, governor.getLevel().index);
+
+        now += RECOVERY_MS;
+        governor.evaluate();
+        now += RECOVERY_MS;
+        governor.evaluate();
+        assertEquals(0, governor.getLevel().index);
+        assertFalse(governor.isRecovering());
+    }
+
+    @Test
+    public void flappingAroundThresholdDoesNotRecover() {
+        start();
+        source.emit(ThermalSource.STATUS_SEVERE);
+        for (int i = 0; i < 10; i++) {
+            source.emit(ThermalSource.STATUS_LIGHT);
+            now += RECOVERY_MS / 2;
+            governor.evaluate();
+            source.emit(ThermalSource.STATUS_SEVERE);
+        }
+        assertEquals(2, governor.getLevel().index);
+        // 只有第一次升级产生了回调
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void recordingFailureWhileWarmAddsOneLevel() {
+        start();
+        governor.reportRecordingFailure();
+        assertEquals(0, governor.getLevel().index);
+
+        source.emit(ThermalSource.STATUS_LIGHT);
+        governor.reportRecordingFailure();
+        assertEquals(1, governor.getLevel().index);
+
+        governor.evaluate();
+        now += RECOVERY_MS;
+        governor.evaluate();
+        assertEquals(0, governor.getLevel().index);
+    }
+
+    @Test
+    public void stopDetachesFromSource() {
+        start();
+        governor.stop();
+        assertNull(source.listener);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.simplecamera.thumbnail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * PackedThumbnailStore 的分配、替换、打开时压缩与崩溃恢复，以及冷打开后读到的内容与每张一个文件一致
+ */
+public class PackedThumbnailStoreTest {
+    private static final int THUMBNAILS = 200;
+    private static final int THUMBNAIL_BYTES = 12 * 1024;
+
+    private File dir;
+    private File packFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("thumbs", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        packFile = new File(dir, "thumbnails.pack");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void storesReplacesAndReopens() throws IOException {
+        byte[] first = thumbnail(1, 5000);
+        byte[] second = thumbnail(2, 7000);
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            assertTrue(store.put(10, first, 0, first.length));
+            assertTrue(store.put(11, second, 0, second.length));
+            assertArrayEquals(first, bytes(store.get(10)));
+            assertTrue(store.get(10).isReadOnly());
+            assertNull(store.get(12));
+
+            assertTrue(store.put(10, second, 0, second.length));
+            assertEquals(2, store.size());
+            assertArrayEquals(second, bytes(store.get(10)));
+            assertFalse(store.put(13, new byte[PackedThumbnailStore.MAX_THUMBNAIL_BYTES + 1], 0,
+                    PackedThumbnailStore.MAX_THUMBNAIL_BYTES + 1));
+            store.remove(11);
+        }
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            assertEquals(1, store.size());
+            assertArrayEquals(second, bytes(store.get(10)));
+            assertFalse(store.contains(11));
+        }
+    }
+
+    @Test
+    public void keepsHandedOutSlicesAndCompactsOnOpen() throws IOException {
+        int count = PackedThumbnailStore.SLOTS_PER_SEGMENT * 3 + 10;
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            for (int id = 0; id < count; id++) {
+                byte[] data = thumbnail(id, 100 + id % 50);
+                assertTrue(store.put(id, data, 0, data.length));
+            }
+            assertEquals(PackedThumbnailStore.SLOTS_PER_SEGMENT * 4, store.capacity());
+            ByteBuffer removedSlice = store.get(1);
+
+            Set<Long> keep = keep(count);
+            assertEquals(count - keep.size(), store.retainAll(keep));
+            assertEquals(count - keep.size(), store.retiredSlots());
+            // 释放的槽在关闭前不复用，之前交出的切片内容不变
+            byte[] extra = thumbnail(-1, 300);
+            assertTrue(store.put(-1, extra, 0, extra.length));
+            assertEquals(PackedThumbnailStore.SLOTS_PER_SEGMENT * 4, store.capacity());
+            assertArrayEquals(thumbnail(1, 101), bytes(removedSlice));
+            for (long id : keep) assertArrayEquals(thumbnail(id, 100 + (int) (id % 50)), bytes(store.get(id)));
+        }
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            assertEquals(PackedThumbnailStore.SLOTS_PER_SEGMENT, store.capacity());
+            assertEquals(0, store.retiredSlots());
+            assertEquals(PackedThumbnailStore.FILE_HEADER
+                    + (long) PackedThumbnailStore.SLOTS_PER_SEGMENT * PackedThumbnailStore.SLOT_SIZE, packFile.length());
+            assertEquals(keep(count).size() + 1, store.size());
+            for (long id : keep(count)) assertArrayEquals(thumbnail(id, 100 + (int) (id % 50)), bytes(store.get(id)));
+            assertArrayEquals(thumbnail(-1, 300), bytes(store.get(-1)));
+        }
+    }
+
+    @Test
+    public void recoversFromInterruptedWrites() throws IOException {
+        byte[] old = thumbnail(1, 4000);
+        byte[] fresh = thumbnail(2, 4000);
+        byte[] other = thumbnail(3, 4000);
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            store.put(1, old, 0, old.length);
+            store.put(2, other, 0, other.length);
+            store.put(3, other, 0, other.length);
+        }
+        byte[] oldHeader = readAt(slotOffset(0), 32);
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            // 替换写进槽 3，槽 0 被释放
+            store.put(1, fresh, 0, fresh.length);
+        }
+        // 模拟替换后释放旧槽之前崩溃：旧槽头仍然有效，打开时保留代数更大的一份
+        writeAt(slotOffset(0), oldHeader);
+        // 槽 1 的数据只写了一半
+        writeAt(slotOffset(1) + 32 + 100, new byte[]{0x55, 0x66});
+        // 槽 2 的槽头只写了一半
+        writeAt(slotOffset(2) + 8, new byte[]{1, 2, 3});
+
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            assertArrayEquals(fresh, bytes(store.get(1)));
+            assertFalse(store.contains(3));
+            assertTrue(store.contains(2));
+            assertNull(store.get(2));
+            assertFalse(store.contains(2));
+            assertEquals(1, store.size());
+            // 损坏的槽已释放，可以重新写入
+            assertTrue(store.put(2, other, 0, other.length));
+            assertArrayEquals(other, bytes(store.get(2)));
+        }
+    }
+
+    @Test
+    public void rejectsForeignFile() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(packFile)) {
+            out.write(thumbnail(9, 10_000));
+        }
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            assertEquals(0, store.size());
+            assertEquals(0, store.capacity());
+            byte[] data = thumbnail(4, 2000);
+            assertTrue(store.put(4, data, 0, data.length));
+        }
+    }
+
+    @Test
+    public void coldOpenMatchesSeparateFiles() throws IOException {
+        File separate = new File(dir, "separate");
+        assertTrue(separate.mkdir());
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            for (int id = 0; id < THUMBNAILS; id++) {
+                byte[] data = thumbnail(id, THUMBNAIL_BYTES - id % 2048);
+                store.put(id, data, 0, data.length);
+                try (FileOutputStream out = new FileOutputStream(new File(separate, id + ".jpg"))) {
+                    out.write(data);
+                }
+            }
+        }
+
+        long separateSum = 0;
+        for (int id = 0; id < THUMBNAILS; id++) {
+            File file = new File(separate, id + ".jpg");
+            try (FileInputStream in = new FileInputStream(file)) {
+                byte[] data = new byte[(int) file.length()];
+                int read = 0;
+                while (read < data.length) read += in.read(data, read, data.length - read);
+                separateSum += checksum(ByteBuffer.wrap(data));
+            }
+        }
+        long packedSum = 0;
+        try (PackedThumbnailStore store = PackedThumbnailStore.open(packFile)) {
+            assertEquals(THUMBNAILS, store.size());
+            for (int id = 0; id < THUMBNAILS; id++) packedSum += checksum(store.get(id));
+        }
+        assertEquals(separateSum, packedSum);
+    }
+
+    private static Set<Long> keep(int count) {
+        Set<Long> keep = new HashSet<>();
+        for (long id = 0; id < count; id += 7) keep.add(id);
+        return keep;
+    }
+
+    // 逐字节读一遍，相当于解码器读取数据
+    private static long checksum(ByteBuffer buffer) {
+        long sum = 0;
+        while (buffer.hasRemaining()) sum += buffer.get() & 0xFF;
+        return sum;
+    }
+
+    private static byte[] thumbnail(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+
+    private static long slotOffset(int slot) {
+        return PackedThumbnailStore.FILE_HEADER + (long) slot * PackedThumbnailStore.SLOT_SIZE;
+    }
+
+    private byte[] readAt(long position, int length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(packFile, "r")) {
+            byte[] data = new byte[length];
+            raf.seek(position);
+            raf.readFully(data);
+            return data;
+        }
+    }
+
+    private void writeAt(long position, byte[] data) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(packFile, "rw")) {
+            raf.seek(position);
+            raf.write(data);
+        }
+    }
+}